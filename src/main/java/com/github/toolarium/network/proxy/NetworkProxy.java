@@ -6,19 +6,44 @@
 package com.github.toolarium.network.proxy;
 
 import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.INetworkProxyNode;
 import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfigurationWatcher;
+import com.github.toolarium.network.proxy.config.NetworkProxyTls;
+import com.github.toolarium.network.proxy.config.WorkerMode;
+import com.github.toolarium.network.proxy.handler.drain.DrainHandler;
+import com.github.toolarium.network.proxy.handler.drain.ShutdownHttpHandler;
 import com.github.toolarium.network.proxy.handler.health.HealthHttpHandler;
+import com.github.toolarium.network.proxy.handler.limit.RateLimitHandler;
+import com.github.toolarium.network.proxy.handler.metrics.MetricsHttpHandler;
+import com.github.toolarium.network.proxy.handler.metrics.TlsMetrics;
+import com.github.toolarium.network.proxy.handler.proxy.ConnectionPrewarmer;
 import com.github.toolarium.network.proxy.handler.route.RouteHandler;
+import com.github.toolarium.network.proxy.handler.tls.SslContextFactory;
+import com.github.toolarium.network.proxy.handler.tls.TlsConnectionHandler;
+import com.github.toolarium.network.proxy.handler.worker.WorkerHttpHandler;
 import com.github.toolarium.network.proxy.logger.LifecycleLogger;
 import com.github.toolarium.network.proxy.logger.VerboseLevel;
 import com.github.toolarium.network.proxy.logger.access.AccessLogHttpHandler;
+import com.github.toolarium.network.proxy.logger.access.AccessLogOverflowPolicy;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.HttpHandler;
 import io.undertow.server.RoutingHandler;
+import io.undertow.server.handlers.accesslog.AccessLogReceiver;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import jptools.runtime.ReflectionUtil;
 import org.fusesource.jansi.AnsiConsole;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.Options;
+import org.xnio.Sequence;
+import org.xnio.XnioWorker;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Help.ColorScheme;
@@ -39,6 +64,8 @@ public class NetworkProxy implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(NetworkProxy.class);
     
+    @Option(names = { "-c", "--config" }, paramLabel = "configurationFile", description = "The configuration file (properties or json), changes of the nodes are reloaded.")
+    private String configurationFile;
     @Option(names = { "-b", "--bind" }, paramLabel = "address", description = "The bind address, by default 0.0.0.0.")
     private String hostname;
     @Option(names = { "-p", "--port" }, paramLabel = "port", description = "The port, by default 8080.")
@@ -51,12 +78,26 @@ public class NetworkProxy implements Runnable {
     private Integer maxRequestTime;
     @Option(names = { "--healthPath" }, paramLabel = "healthPath", defaultValue = "/q/health", description = "The health path, by default /q/health.")
     private String healthPath;    
+    @Option(names = { "--metricsPath" }, paramLabel = "metricsPath", defaultValue = "/q/metrics", description = "The metrics path, by default /q/metrics.")
+    private String metricsPath;
+    @Option(names = { "--shutdownPath" }, paramLabel = "shutdownPath", description = "The shutdown path, a POST from the loopback address starts the graceful shutdown, by default disabled.")
+    private String shutdownPath;
+    @Option(names = { "--shutdownTimeout" }, paramLabel = "shutdownTimeout", description = "The max time in milliseconds to drain the in-flight requests on shutdown, by default 30000.")
+    private Integer shutdownTimeout;
     @Option(names = { "--basicauth" }, paramLabel = "authentication", description = "The basic authentication: user:password, by default disabled.")
     private String basicAuth;
     @Option(names = { "--ioThreads" }, paramLabel = "ioThreads", description = "The number of I/O threads.")
     private Integer ioThreads;
     @Option(names = { "--workerThreads" }, paramLabel = "workerThreads", description = "The number of worker threads.")
     private Integer workerThreads;
+    @Option(names = { "--workerMode" }, paramLabel = "workerMode", description = "The threads of the blocking handlers: (${COMPLETION-CANDIDATES}), by default PLATFORM.")
+    private WorkerMode workerMode;
+    @Option(names = { "--rateLimit" }, paramLabel = "rateLimit", description = "The rate limit of all requests as json, e.g. {\"enabled\": true, \"rate\": 100}, the key ADDRESS or HEADER, by default disabled.")
+    private String rateLimit;
+    @Option(names = { "--tls" }, paramLabel = "tls", description = "The HTTPS listener as json, e.g. {\"enabled\": true, \"port\": 8443, \"keyStore\": \"proxy.p12\", \"keyStorePassword\": \"changeit\"}, by default disabled.")
+    private String tls;
+    @Option(names = { "--http2" }, paramLabel = "http2", arity = "1", description = "Enable HTTP/2 (h2 and h2c) on the listeners, by default true.")
+    private Boolean http2;
     @Option(names = { "--name" }, paramLabel = "networkProxyName", defaultValue = "", description = "The network proxy name.")
     private String networkProxyName;    
     @Option(names = { "--verbose" }, paramLabel = "verboseLevel", defaultValue = "INFO", description = "Specify the verbose level: (${COMPLETION-CANDIDATES}), by default INFO.")
@@ -67,12 +108,22 @@ public class NetworkProxy implements Runnable {
     private String accessLogFormatString;
     @Option(names = { "--accessLogFilePattern" }, paramLabel = "accessLogFilePattern", description = "Defines the access log file pattern, default: logs/access-%%d{yyyy-MM-dd}.log.gz.")
     private String accessLogFilePattern;
+    @Option(names = { "--accessLogBufferSize" }, paramLabel = "accessLogBufferSize", description = "The number of buffered access log lines, by default 8192.")
+    private Integer accessLogBufferSize;
+    @Option(names = { "--accessLogOverflowPolicy" }, paramLabel = "accessLogOverflowPolicy", description = "The policy if the access log buffer is full: (${COMPLETION-CANDIDATES}), by default DROP.")
+    private AccessLogOverflowPolicy accessLogOverflowPolicy;
     @Option(names = {"-h", "--help" }, usageHelp = true, description = "Display this help message")
     private boolean usageHelpRequested;
 
     private NetworkProxyConfiguration configuration;
     private LifecycleLogger lifecycleLogger;
     private transient Undertow reverseProxy;
+    private transient RouteHandler routeHandler;
+    private transient AccessLogReceiver accessLogReceiver;
+    private transient ExecutorService workerExecutor;
+    private transient XnioWorker worker;
+    private transient DrainHandler drainHandler;
+    private transient NetworkProxyConfigurationWatcher configurationWatcher;
     private boolean hasError;
 
     
@@ -83,6 +134,12 @@ public class NetworkProxy implements Runnable {
         configuration = null;
         lifecycleLogger = new LifecycleLogger();
         reverseProxy = null;
+        routeHandler = null;
+        accessLogReceiver = null;
+        workerExecutor = null;
+        worker = null;
+        drainHandler = null;
+        configurationWatcher = null;
         hasError = false;
         networkProxyName = "toolarium-network-proxy";
     }
@@ -96,16 +153,21 @@ public class NetworkProxy implements Runnable {
     public INetworkProxyConfiguration getConfiguration() {
         if (configuration == null) {
             setConfiguration(new NetworkProxyConfiguration()
+                    .setConfigurationFile(configurationFile)
                     .readProperties()
                     .setHostname(hostname).setPort(port)
                     .setNetworkProxyNodeList(networkProxyNodeList)
                     .setConnectionsByThread(connectionsByThread)
                     .setMaxRequestTime(maxRequestTime)
                     .setHealthPath(healthPath)
+                    .setMetricsPath(metricsPath)
+                    .setShutdownPath(shutdownPath).setShutdownTimeout(shutdownTimeout)
                     .setBasicAuthentication(basicAuth)
-                    .setIoThreads(ioThreads).setWorkerThreads(workerThreads)
+                    .setIoThreads(ioThreads).setWorkerThreads(workerThreads).setWorkerMode(workerMode)
+                    .setRateLimit(rateLimit).setTls(tls).setHttp2(http2)
                     .setNetworkProxyName(networkProxyName)
-                    .setVerboseLevel(verboseLevel).setAccessLogFilePattern(accessLogFilePattern).setAccessLogFormatString(accessLogFormatString));
+                    .setVerboseLevel(verboseLevel).setAccessLogFilePattern(accessLogFilePattern).setAccessLogFormatString(accessLogFormatString)
+                    .setAccessLogBufferSize(accessLogBufferSize).setAccessLogOverflowPolicy(accessLogOverflowPolicy));
         }
 
         return configuration;
@@ -149,6 +211,11 @@ public class NetworkProxy implements Runnable {
         // parse command line and run
         CommandLine commandLine = new CommandLine(networkProxy).setColorScheme(networkProxy.getColorSchmea());        
         int exitCode = commandLine.execute(args);
+        if (networkProxy.isRunning()) {
+            // drain the in-flight requests on SIGTERM
+            Runtime.getRuntime().addShutdownHook(new Thread(networkProxy::shutdown, "networkproxy-shutdown"));
+        }
+        
         if (networkProxy.hasError()) {
             LOG.debug("Executed Ended with code:" + exitCode);
         } else {
@@ -177,14 +244,90 @@ public class NetworkProxy implements Runnable {
      */
     public synchronized void stop() {
         if (isRunning()) {
+            if (configurationWatcher != null) {
+                configurationWatcher.stop();
+                configurationWatcher = null;
+            }
+            
             reverseProxy.stop();
             reverseProxy = null;
+            drainHandler = null;
+            
+            routeHandler.close();
+            routeHandler = null;
+
+            AccessLogHttpHandler.close(accessLogReceiver);
+            accessLogReceiver = null;
+
+            WorkerHttpHandler.close(workerExecutor);
+            workerExecutor = null;
+
+            WorkerHttpHandler.closeWorker(worker);
+            worker = null;
         } else {
             LOG.warn("Network proxy is already stopped.");
         }
     }
 
 
+    /**
+     * Shutdown the server gracefully: the health reports DOWN and every response closes its connection. The listeners
+     * keep serving the existing and new connections while the server drains, that the upstream load balancers get the
+     * DOWN state on their kept-alive connections. As soon as the in-flight requests are completed or the shutdown timeout
+     * is reached, the server is stopped: the connection pools of the backend instances are closed and the access log is
+     * flushed.
+     */
+    public void shutdown() {
+        final DrainHandler drain;
+        synchronized (this) {
+            if (!isRunning() || drainHandler == null || drainHandler.isDraining()) {
+                return;
+            }
+
+            drain = drainHandler;
+            drain.drain();
+        }
+
+        LOG.info("Drain network proxy [" + configuration.getHostname() + "] on port [" + configuration.getPort() + "]...");
+        try {
+            if (!drain.awaitDrained(configuration.getShutdownTimeout())) {
+                LOG.warn("Shutdown timeout of " + configuration.getShutdownTimeout() + "ms reached, cut " + drain.getActiveExchanges() + " in-flight requests.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        stop();
+    }
+
+
+    /**
+     * Check if the server drains the in-flight requests before it stops
+     *
+     * @return true if it drains
+     */
+    public boolean isDraining() {
+        final DrainHandler drain = drainHandler;
+        return drain != null && drain.isDraining();
+    }
+
+
+    /**
+     * Reload the network proxy nodes without restart
+     *
+     * @param networkProxyNodeList the network proxy nodes
+     */
+    public synchronized void reload(List<INetworkProxyNode> networkProxyNodeList) {
+        if (!isRunning()) {
+            LOG.warn("Network proxy is not running, ignore reload.");
+            return;
+        }
+
+        routeHandler.update(networkProxyNodeList);
+        configuration.setNetworkProxyNodeList(networkProxyNodeList);
+    }
+
+
     /**
      * Check if the server is running
      *
@@ -195,6 +338,20 @@ public class NetworkProxy implements Runnable {
     }
 
     
+    /**
+     * Get the XNIO worker of the running server
+     *
+     * @return the worker or null if the server is not running
+     */
+    public XnioWorker getWorker() {
+        final Undertow server = reverseProxy;
+        if (server == null) {
+            return null;
+        }
+        return server.getWorker();
+    }
+
+
     /**
      * Check if there are any errors
      *
@@ -222,27 +379,75 @@ public class NetworkProxy implements Runnable {
 
             // create routing
             RoutingHandler routingHandler = Handlers.routing();
-            // TODO: routingHandler.setFallbackHandler(RoutingHandlers::notFoundHandler);
             
-            // add routes
-            HealthHttpHandler.addHandler(configuration, routingHandler);
+            // add routes for backend nodes (fallback of the routing handler)
+            routeHandler = RouteHandler.addHandler(configuration, routingHandler);
 
-            // add routes for backend nodes
-            RouteHandler.addHandler(configuration, routingHandler);
+            // add routes
+            HealthHttpHandler.addHandler(configuration, routingHandler, routeHandler, this::isDraining);
+            ShutdownHttpHandler.addHandler(configuration, routingHandler, this::shutdown);
+            MetricsHttpHandler.addHandler(configuration, routingHandler, routeHandler, this::getWorker);
 
             // create simple server
-            reverseProxy = Undertow.builder()
-                    .setIoThreads(configuration.getIoThreads()).setWorkerThreads(configuration.getWorkerThreads())
-                    .addHttpListener(configuration.getPort(), configuration.getHostname(), AccessLogHttpHandler.addHandler(configuration, routingHandler))
-                    .setHandler(routingHandler)
-                   .build();
+            accessLogReceiver = AccessLogHttpHandler.createReceiver(configuration);
+            workerExecutor = WorkerHttpHandler.createExecutor(configuration);
+            HttpHandler handler = RateLimitHandler.addHandler(configuration.getRateLimit(), routingHandler);
+            handler = AccessLogHttpHandler.addHandler(configuration, accessLogReceiver, handler);
+            handler = WorkerHttpHandler.addHandler(workerExecutor, handler);
+            drainHandler = new DrainHandler(handler);
+            handler = drainHandler;
+            worker = WorkerHttpHandler.createWorker(configuration);
+            Undertow.Builder builder = Undertow.builder().setWorker(worker)
+                    .setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, true)
+                    .setServerOption(UndertowOptions.ENABLE_HTTP2, configuration.isHttp2())
+                    .addHttpListener(configuration.getPort(), configuration.getHostname(), handler)
+                    .setHandler(routingHandler);
+            
+            // terminate tls: the certificate is selected by the server name, the sessions are resumed
+            final NetworkProxyTls tls = configuration.getTls();
+            if (tls != null && tls.isEnabled()) {
+                final TlsMetrics tlsMetrics = routeHandler.getMetricsRegistry().getTlsMetrics();
+                builder.addHttpsListener(tls.getPort(), configuration.getHostname(), SslContextFactory.createSslContext(tls, tlsMetrics), new TlsConnectionHandler(handler, tlsMetrics))
+                        .setSocketOption(Options.SSL_ENABLED_PROTOCOLS, Sequence.of(tls.getProtocols()));
+            }
+            
+            // pre-warm the connection pools on the worker by a private loopback server before the listeners are started
+            final ConnectionPrewarmer connectionPrewarmer = new ConnectionPrewarmer(routeHandler.getBackendRegistry().getInstances(),
+                                                                                    configuration.getIoThreads(), configuration.getMaxRequestTime());
+            if (connectionPrewarmer.isRequired()) {
+                connectionPrewarmer.prewarm(worker);
+            }
+            
+            reverseProxy = builder.build();
             reverseProxy.start();
             
+            // watch the configuration file
+            if (configuration.getConfigurationFile() != null) {
+                configurationWatcher = new NetworkProxyConfigurationWatcher(Paths.get(configuration.getConfigurationFile()), this::reload).start();
+            }
+
             if (!VerboseLevel.NONE.equals(verboseLevel)) {
                 lifecycleLogger.printServerStartup(configuration, reverseProxy.getListenerInfo());
             }
-        } catch (RuntimeException ex) {
+        } catch (RuntimeException | IOException | GeneralSecurityException ex) {
             hasError = true;
+            if (reverseProxy == null && routeHandler != null) {
+                routeHandler.close();
+                routeHandler = null;
+            }
+
+            if (reverseProxy == null) {
+                drainHandler = null;
+                AccessLogHttpHandler.close(accessLogReceiver);
+                accessLogReceiver = null;
+
+                WorkerHttpHandler.close(workerExecutor);
+                workerExecutor = null;
+
+                WorkerHttpHandler.closeWorker(worker);
+                worker = null;
+            }
+            
             if (!VerboseLevel.NONE.equals(verboseLevel)) {
                 lifecycleLogger.printServerStartup(configuration, null);
             }
@@ -0,0 +1,19 @@
+/*
+ * BackendProtocol.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+/**
+ * Defines the protocol of the connections to the backend instances of a node
+ * 
+ * @author patrick
+ */
+public enum BackendProtocol {
+    /** Every connection handles one request at a time */
+    HTTP_1_1,
+
+    /** A connection multiplexes the requests as streams: h2 negotiated by ALPN for https instances, h2c with prior knowledge for http instances */
+    HTTP_2
+}
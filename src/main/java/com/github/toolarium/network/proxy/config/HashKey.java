@@ -0,0 +1,25 @@
+/*
+ * HashKey.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+/**
+ * Defines by which key the requests are hashed to the instances
+ * 
+ * @author patrick
+ */
+public enum HashKey {
+    /** The address of the client */
+    ADDRESS,
+
+    /** The value of the configured header; the address of the client if the header is missing */
+    HEADER,
+
+    /** The value of the configured cookie; the address of the client if the cookie is missing */
+    COOKIE,
+
+    /** The configured segment of the request path; the address of the client if the path has less segments */
+    PATH_SEGMENT
+}
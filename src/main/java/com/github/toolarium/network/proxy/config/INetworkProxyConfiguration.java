@@ -6,6 +6,7 @@
 package com.github.toolarium.network.proxy.config;
 
 import com.github.toolarium.network.proxy.logger.VerboseLevel;
+import com.github.toolarium.network.proxy.logger.access.AccessLogOverflowPolicy;
 import java.util.List;
 import java.util.Set;
 
@@ -24,6 +25,15 @@ public interface INetworkProxyConfiguration {
      */
     String getNetworkProxyName();
 
+
+    /**
+     * Get the configuration file (properties or json). If it is defined the network proxy nodes will be reloaded
+     * as soon as the file changes.
+     *
+     * @return the configuration file or null
+     */
+    String getConfigurationFile();
+
     
     /**
      * Get the hostname
@@ -137,6 +147,10 @@ public interface INetworkProxyConfiguration {
      * <li><code>%{s,xxx}</code> xxx is an attribute in the HttpSession
      * </ul>
      * </p>
+     * <p>
+     * The format string is compiled once, the fields above except the session and request attributes are written
+     * directly as bytes without garbage per request.
+     * </p>
      * 
      * @return the accesslog format string
      */
@@ -153,6 +167,22 @@ public interface INetworkProxyConfiguration {
      */
     String getAccessLogFilePattern();
 
+
+    /**
+     * Get the number of access log lines which are buffered until the writer thread writes them
+     *
+     * @return the access log buffer size
+     */
+    int getAccessLogBufferSize();
+
+
+    /**
+     * Get the policy if the access log buffer is full: the line is dropped or the request thread waits
+     *
+     * @return the access log overflow policy
+     */
+    AccessLogOverflowPolicy getAccessLogOverflowPolicy();
+
     
     /**
      * Define if the resource has basic authentication  
@@ -186,6 +216,46 @@ public interface INetworkProxyConfiguration {
     String getHealthPath();
 
 
+    /**
+     * Define if the server exposes the metrics
+     *
+     * @return true if it is enabled
+     */
+    boolean hasMetrics();
+
+
+    /**
+     * Get the metrics path, the metrics are exposed in the Prometheus text format
+     *
+     * @return the metrics path
+     */
+    String getMetricsPath();
+
+
+    /**
+     * Define if the server exposes the shutdown endpoint
+     *
+     * @return true if it is enabled
+     */
+    boolean hasShutdown();
+
+
+    /**
+     * Get the shutdown path, a POST request from the loopback address starts the graceful shutdown
+     *
+     * @return the shutdown path
+     */
+    String getShutdownPath();
+
+
+    /**
+     * Get the max time of the graceful shutdown to wait for the in-flight requests
+     *
+     * @return the shutdown timeout in milliseconds
+     */
+    int getShutdownTimeout();
+
+
     /**
      * Get the number of I/O threads
      *
@@ -201,4 +271,37 @@ public interface INetworkProxyConfiguration {
      */
     int getWorkerThreads();
 
+
+    /**
+     * Get the worker mode: the blocking handlers are dispatched to the XNIO worker pool or to virtual threads
+     *
+     * @return the worker mode
+     */
+    WorkerMode getWorkerMode();
+
+
+    /**
+     * Get the rate limit of all requests, the nodes may have their own rate limit
+     *
+     * @return the rate limit
+     */
+    NetworkProxyRateLimit getRateLimit();
+
+
+    /**
+     * Get the HTTPS listener, it listens beside the HTTP listener on its own port
+     *
+     * @return the HTTPS listener
+     */
+    NetworkProxyTls getTls();
+
+
+    /**
+     * Check if HTTP/2 is enabled on the listeners: h2 is negotiated by ALPN on the HTTPS listener, h2c by an upgrade
+     * or with prior knowledge on the HTTP listener
+     *
+     * @return true if HTTP/2 is enabled
+     */
+    boolean isHttp2();
+
 }
@@ -7,6 +7,7 @@ package com.github.toolarium.network.proxy.config;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -47,4 +48,132 @@ public interface INetworkProxyNode {
      */
     List<URI> getInstances();
 
+
+    /**
+     * Get the named instance groups, their instances are balanced in addition to the instances of the node
+     *
+     * @return the instance groups
+     */
+    List<NetworkProxyInstanceGroup> getGroups();
+
+
+    /**
+     * Get the weights of the instances, an instance without weight has the weight 1
+     *
+     * @return the weights of the instances
+     */
+    Map<URI, Integer> getWeights();
+
+
+    /**
+     * Get the protocol of the connections to the instances
+     *
+     * @return the backend protocol
+     */
+    BackendProtocol getBackendProtocol();
+
+    
+    /**
+     * Get the connection pool of the instances
+     *
+     * @return the connection pool
+     */
+    NetworkProxyConnectionPool getConnectionPool();
+
+    
+    /**
+     * Get the load balancing strategy
+     *
+     * @return the load balancing strategy
+     */
+    LoadBalancingStrategy getLoadBalancingStrategy();
+
+    
+    /**
+     * Get the consistent hashing, it is used by the load balancing strategy {@link LoadBalancingStrategy#CONSISTENT_HASH}
+     *
+     * @return the consistent hash
+     */
+    NetworkProxyConsistentHash getConsistentHash();
+
+    
+    /**
+     * Get the sticky sessions
+     *
+     * @return the sticky session
+     */
+    NetworkProxyStickySession getStickySession();
+
+    
+    /**
+     * Get the slow start of the instances
+     *
+     * @return the slow start
+     */
+    NetworkProxySlowStart getSlowStart();
+
+    
+    /**
+     * Get the active health check of the instances
+     *
+     * @return the health check
+     */
+    NetworkProxyHealthCheck getHealthCheck();
+
+    
+    /**
+     * Get the passive outlier detection of the instances
+     *
+     * @return the outlier detection
+     */
+    NetworkProxyOutlierDetection getOutlierDetection();
+
+    
+    /**
+     * Get the response cache
+     *
+     * @return the response cache
+     */
+    NetworkProxyCache getCache();
+
+
+    /**
+     * Get the response compression
+     *
+     * @return the response compression
+     */
+    NetworkProxyCompression getCompression();
+
+    
+    /**
+     * Get the adaptive concurrency limit
+     *
+     * @return the concurrency limit
+     */
+    NetworkProxyConcurrencyLimit getConcurrencyLimit();
+
+    
+    /**
+     * Get the rate limit of the node
+     *
+     * @return the rate limit
+     */
+    NetworkProxyRateLimit getRateLimit();
+
+    
+    /**
+     * Get the retries
+     *
+     * @return the retry
+     */
+    NetworkProxyRetry getRetry();
+
+    
+    /**
+     * Get the hedged requests
+     *
+     * @return the hedge
+     */
+    NetworkProxyHedge getHedge();
+
 }
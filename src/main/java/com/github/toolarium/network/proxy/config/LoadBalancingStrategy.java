@@ -0,0 +1,31 @@
+/*
+ * LoadBalancingStrategy.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+/**
+ * Defines the load balancing strategy of a network proxy node
+ * 
+ * @author patrick
+ */
+public enum LoadBalancingStrategy {
+    /** The instances are selected one after another */
+    ROUND_ROBIN,
+
+    /** The instance with the least outstanding requests is selected */
+    LEAST_OUTSTANDING,
+
+    /** Two random instances are compared, the one with less outstanding requests is selected */
+    POWER_OF_TWO_CHOICES,
+
+    /** Two random instances are compared by their peak exponentially weighted moving average latency multiplied with the outstanding requests */
+    PEAK_EWMA,
+
+    /** The instance is selected by the consistent hash of a request key, an overloaded instance passes the request to the next one on the ring */
+    CONSISTENT_HASH,
+
+    /** The instance is selected randomly by the weights of its group and of itself, a node with groups or weights and round robin is balanced weighted */
+    WEIGHTED
+}
@@ -0,0 +1,275 @@
+/*
+ * NetworkProxyCache.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the response cache of a network proxy node. Only responses which are cacheable by their
+ * <code>Cache-Control</code> or <code>Expires</code> header are cached. Optionally large response bodies are stored in a
+ * memory-mapped file which survives a restart. Concurrent identical requests of a missing response are coalesced
+ * into one backend request.
+ *
+ * @author patrick
+ */
+public class NetworkProxyCache implements Serializable {
+    private static final long serialVersionUID = 5120973526391870412L;
+    private boolean enabled;
+    private long maxSize;
+    private int maxEntrySize;
+    private String diskFile;
+    private long diskSize;
+    private int diskThreshold;
+    private boolean coalescing;
+    private long coalescingMaxWait;
+
+
+    /**
+     * Constructor for NetworkProxyCache
+     */
+    public NetworkProxyCache() {
+        this.enabled = false;
+        this.maxSize = 64L * 1024L * 1024L;
+        this.maxEntrySize = 1024 * 1024;
+        this.diskFile = null;
+        this.diskSize = 1024L * 1024L * 1024L;
+        this.diskThreshold = 64 * 1024;
+        this.coalescing = true;
+        this.coalescingMaxWait = 5000;
+    }
+
+
+    /**
+     * Check if the response cache is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the response cache
+     *
+     * @param enabled true to enable
+     * @return the cache
+     */
+    public NetworkProxyCache setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the max size of the cache in bytes
+     *
+     * @return the max size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+
+    /**
+     * Set the max size of the cache in bytes
+     *
+     * @param maxSize the max size
+     * @return the cache
+     */
+    public NetworkProxyCache setMaxSize(long maxSize) {
+        if (maxSize > 0) {
+            this.maxSize = maxSize;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max size of one cached response body in bytes
+     *
+     * @return the max entry size in bytes
+     */
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+
+    /**
+     * Set the max size of one cached response body in bytes
+     *
+     * @param maxEntrySize the max entry size
+     * @return the cache
+     */
+    public NetworkProxyCache setMaxEntrySize(int maxEntrySize) {
+        if (maxEntrySize > 0) {
+            this.maxEntrySize = maxEntrySize;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the memory-mapped file of the disk cache tier
+     *
+     * @return the file or null if the disk tier is disabled
+     */
+    public String getDiskFile() {
+        return diskFile;
+    }
+
+
+    /**
+     * Set the memory-mapped file of the disk cache tier
+     *
+     * @param diskFile the file or null to disable the disk tier
+     * @return the cache
+     */
+    public NetworkProxyCache setDiskFile(String diskFile) {
+        this.diskFile = diskFile;
+        return this;
+    }
+
+
+    /**
+     * Get the size of the memory-mapped file in bytes
+     *
+     * @return the size in bytes
+     */
+    public long getDiskSize() {
+        return diskSize;
+    }
+
+
+    /**
+     * Set the size of the memory-mapped file in bytes
+     *
+     * @param diskSize the size
+     * @return the cache
+     */
+    public NetworkProxyCache setDiskSize(long diskSize) {
+        if (diskSize > 0) {
+            this.diskSize = diskSize;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the min body size in bytes of a response which is stored in the disk tier instead of the heap
+     *
+     * @return the disk threshold in bytes
+     */
+    public int getDiskThreshold() {
+        return diskThreshold;
+    }
+
+
+    /**
+     * Set the min body size in bytes of a response which is stored in the disk tier
+     *
+     * @param diskThreshold the disk threshold
+     * @return the cache
+     */
+    public NetworkProxyCache setDiskThreshold(int diskThreshold) {
+        if (diskThreshold >= 0) {
+            this.diskThreshold = diskThreshold;
+        }
+        return this;
+    }
+
+
+    /**
+     * Check if concurrent identical requests are coalesced
+     *
+     * @return true if they are coalesced
+     */
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+
+    /**
+     * Enable or disable the coalescing of concurrent identical requests
+     *
+     * @param coalescing true to enable
+     * @return the cache
+     */
+    public NetworkProxyCache setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+
+    /**
+     * Get the max wait in milliseconds of a coalesced request, afterwards it is proxied directly
+     *
+     * @return the max wait in milliseconds
+     */
+    public long getCoalescingMaxWait() {
+        return coalescingMaxWait;
+    }
+
+
+    /**
+     * Set the max wait in milliseconds of a coalesced request
+     *
+     * @param coalescingMaxWait the max wait
+     * @return the cache
+     */
+    public NetworkProxyCache setCoalescingMaxWait(long coalescingMaxWait) {
+        if (coalescingMaxWait > 0) {
+            this.coalescingMaxWait = coalescingMaxWait;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, maxSize, maxEntrySize, diskFile, diskSize, diskThreshold, coalescing, coalescingMaxWait);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyCache other = (NetworkProxyCache) obj;
+        return enabled == other.enabled && maxSize == other.maxSize && maxEntrySize == other.maxEntrySize
+                && Objects.equals(diskFile, other.diskFile) && diskSize == other.diskSize && diskThreshold == other.diskThreshold
+                && coalescing == other.coalescing && coalescingMaxWait == other.coalescingMaxWait;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyCache [enabled=" + enabled + ", maxSize=" + maxSize + ", maxEntrySize=" + maxEntrySize
+                + ", diskFile=" + diskFile + ", diskSize=" + diskSize + ", diskThreshold=" + diskThreshold
+                + ", coalescing=" + coalescing + ", coalescingMaxWait=" + coalescingMaxWait + "]";
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * NetworkProxyCertificate.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines a certificate of the HTTPS listener in PEM files: the certificate chain, the server certificate first, and
+ * the unencrypted private key in PKCS#8 format (<code>BEGIN PRIVATE KEY</code>).
+ *
+ * @author patrick
+ */
+public class NetworkProxyCertificate implements Serializable {
+    private static final long serialVersionUID = 7286140517462397285L;
+    private String certificate;
+    private String privateKey;
+
+
+    /**
+     * Constructor for NetworkProxyCertificate
+     */
+    public NetworkProxyCertificate() {
+        this(null, null);
+    }
+
+
+    /**
+     * Constructor for NetworkProxyCertificate
+     *
+     * @param certificate the PEM file of the certificate chain
+     * @param privateKey the PEM file of the private key
+     */
+    public NetworkProxyCertificate(String certificate, String privateKey) {
+        this.certificate = certificate;
+        this.privateKey = privateKey;
+    }
+
+
+    /**
+     * Get the PEM file of the certificate chain
+     *
+     * @return the PEM file of the certificate chain
+     */
+    public String getCertificate() {
+        return certificate;
+    }
+
+
+    /**
+     * Set the PEM file of the certificate chain
+     *
+     * @param certificate the PEM file of the certificate chain
+     * @return the certificate
+     */
+    public NetworkProxyCertificate setCertificate(String certificate) {
+        this.certificate = certificate;
+        return this;
+    }
+
+
+    /**
+     * Get the PEM file of the private key
+     *
+     * @return the PEM file of the private key
+     */
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+
+    /**
+     * Set the PEM file of the private key
+     *
+     * @param privateKey the PEM file of the private key
+     * @return the certificate
+     */
+    public NetworkProxyCertificate setPrivateKey(String privateKey) {
+        this.privateKey = privateKey;
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(certificate, privateKey);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyCertificate other = (NetworkProxyCertificate) obj;
+        return Objects.equals(certificate, other.certificate) && Objects.equals(privateKey, other.privateKey);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyCertificate [certificate=" + certificate + ", privateKey=" + privateKey + "]";
+    }
+}
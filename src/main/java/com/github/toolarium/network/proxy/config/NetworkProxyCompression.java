@@ -0,0 +1,177 @@
+/*
+ * NetworkProxyCompression.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Defines the response compression of a network proxy node. A response is compressed with gzip or deflate as negotiated
+ * by the <code>Accept-Encoding</code> header of the request if its content type starts with one of the content types
+ * and its length is unknown or at least the min size. Responses which are already encoded are passed as they are.
+ *
+ * @author patrick
+ */
+public class NetworkProxyCompression implements Serializable {
+    private static final long serialVersionUID = -2841375830127769012L;
+    private static final List<String> DEFAULT_CONTENT_TYPES = Arrays.asList("text/", "application/json", "application/javascript", "application/xml",
+                                                                           "application/problem+json", "image/svg+xml");
+    private boolean enabled;
+    private int minSize;
+    private List<String> contentTypes;
+    private int level;
+
+
+    /**
+     * Constructor for NetworkProxyCompression
+     */
+    public NetworkProxyCompression() {
+        this.enabled = false;
+        this.minSize = 1024;
+        this.contentTypes = new ArrayList<>(DEFAULT_CONTENT_TYPES);
+        this.level = 6;
+    }
+
+
+    /**
+     * Check if the response compression is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the response compression
+     *
+     * @param enabled true to enable
+     * @return the compression
+     */
+    public NetworkProxyCompression setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the min size of a response to compress in bytes
+     *
+     * @return the min size in bytes
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+
+    /**
+     * Set the min size of a response to compress in bytes
+     *
+     * @param minSize the min size in bytes
+     * @return the compression
+     */
+    public NetworkProxyCompression setMinSize(int minSize) {
+        if (minSize >= 0) {
+            this.minSize = minSize;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the content types to compress, a content type matches all content types which start with it
+     *
+     * @return the content types
+     */
+    public List<String> getContentTypes() {
+        return contentTypes;
+    }
+
+
+    /**
+     * Set the content types to compress, a content type matches all content types which start with it
+     *
+     * @param contentTypes the content types, null for the default
+     * @return the compression
+     */
+    public NetworkProxyCompression setContentTypes(List<String> contentTypes) {
+        if (contentTypes == null) {
+            this.contentTypes = new ArrayList<>(DEFAULT_CONTENT_TYPES);
+        } else {
+            this.contentTypes = contentTypes;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the compression level
+     *
+     * @return the compression level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+
+    /**
+     * Set the compression level
+     *
+     * @param level the compression level between 1 (fastest) and 9 (best)
+     * @return the compression
+     */
+    public NetworkProxyCompression setLevel(int level) {
+        if (level >= 1 && level <= 9) {
+            this.level = level;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, minSize, contentTypes, level);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyCompression other = (NetworkProxyCompression) obj;
+        return enabled == other.enabled && minSize == other.minSize && Objects.equals(contentTypes, other.contentTypes) && level == other.level;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyCompression [enabled=" + enabled + ", minSize=" + minSize + ", contentTypes=" + contentTypes + ", level=" + level + "]";
+    }
+}
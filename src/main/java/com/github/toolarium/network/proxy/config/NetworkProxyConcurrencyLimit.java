@@ -0,0 +1,224 @@
+/*
+ * NetworkProxyConcurrencyLimit.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the adaptive concurrency limit of a network proxy node. The limit of the concurrent requests follows the
+ * observed latency: it grows as long as the latency is stable and shrinks as soon as the latency increases. Requests
+ * above the limit are rejected immediately with 503 and a <code>Retry-After</code> header.
+ *
+ * @author patrick
+ */
+public class NetworkProxyConcurrencyLimit implements Serializable {
+    private static final long serialVersionUID = 2265043851923684170L;
+    private boolean enabled;
+    private int initialLimit;
+    private int minLimit;
+    private int maxLimit;
+    private int tolerance;
+    private int retryAfter;
+
+
+    /**
+     * Constructor for NetworkProxyConcurrencyLimit
+     */
+    public NetworkProxyConcurrencyLimit() {
+        this.enabled = false;
+        this.initialLimit = 20;
+        this.minLimit = 1;
+        this.maxLimit = 1000;
+        this.tolerance = 50;
+        this.retryAfter = 1;
+    }
+
+
+    /**
+     * Check if the concurrency limit is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the concurrency limit
+     *
+     * @param enabled true to enable
+     * @return the concurrency limit
+     */
+    public NetworkProxyConcurrencyLimit setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the initial limit of the concurrent requests
+     *
+     * @return the initial limit
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+
+    /**
+     * Set the initial limit of the concurrent requests
+     *
+     * @param initialLimit the initial limit
+     * @return the concurrency limit
+     */
+    public NetworkProxyConcurrencyLimit setInitialLimit(int initialLimit) {
+        if (initialLimit > 0) {
+            this.initialLimit = initialLimit;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the min limit of the concurrent requests
+     *
+     * @return the min limit
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+
+    /**
+     * Set the min limit of the concurrent requests
+     *
+     * @param minLimit the min limit
+     * @return the concurrency limit
+     */
+    public NetworkProxyConcurrencyLimit setMinLimit(int minLimit) {
+        if (minLimit > 0) {
+            this.minLimit = minLimit;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max limit of the concurrent requests
+     *
+     * @return the max limit
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+
+    /**
+     * Set the max limit of the concurrent requests
+     *
+     * @param maxLimit the max limit
+     * @return the concurrency limit
+     */
+    public NetworkProxyConcurrencyLimit setMaxLimit(int maxLimit) {
+        if (maxLimit > 0) {
+            this.maxLimit = maxLimit;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the tolerated increase of the latency in percent of the long-term latency before the limit is reduced
+     *
+     * @return the tolerance in percent
+     */
+    public int getTolerance() {
+        return tolerance;
+    }
+
+
+    /**
+     * Set the tolerated increase of the latency in percent
+     *
+     * @param tolerance the tolerance in percent
+     * @return the concurrency limit
+     */
+    public NetworkProxyConcurrencyLimit setTolerance(int tolerance) {
+        if (tolerance >= 0) {
+            this.tolerance = tolerance;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the value of the <code>Retry-After</code> header of a rejected request in seconds
+     *
+     * @return the retry after in seconds
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+
+    /**
+     * Set the value of the <code>Retry-After</code> header of a rejected request in seconds
+     *
+     * @param retryAfter the retry after in seconds
+     * @return the concurrency limit
+     */
+    public NetworkProxyConcurrencyLimit setRetryAfter(int retryAfter) {
+        if (retryAfter >= 0) {
+            this.retryAfter = retryAfter;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, initialLimit, minLimit, maxLimit, tolerance, retryAfter);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyConcurrencyLimit other = (NetworkProxyConcurrencyLimit) obj;
+        return enabled == other.enabled && initialLimit == other.initialLimit && minLimit == other.minLimit && maxLimit == other.maxLimit
+                && tolerance == other.tolerance && retryAfter == other.retryAfter;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyConcurrencyLimit [enabled=" + enabled + ", initialLimit=" + initialLimit + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit
+                + ", tolerance=" + tolerance + ", retryAfter=" + retryAfter + "]";
+    }
+}
@@ -6,6 +6,7 @@
 package com.github.toolarium.network.proxy.config;
 
 import com.github.toolarium.network.proxy.logger.VerboseLevel;
+import com.github.toolarium.network.proxy.logger.access.AccessLogOverflowPolicy;
 import com.github.toolarium.network.proxy.util.JSONUtil;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -13,6 +14,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -36,8 +41,11 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
     private static final String SLASH = "/";
     private static final String END_VALUE = "].";
     private static final String NETWORKPROXY_PROPERTIES = "networkproxy.properties";
+    private static final String NETWORKPROXY_NODES = "networkProxyNodes";
+    private static final String JSON_EXTENSION = ".json";
     private static final Logger LOG = LoggerFactory.getLogger(NetworkProxyConfiguration.class);
     private String networkProxyName;
+    private String configurationFile;
     private String hostname;
     private int port;
     private Map<String, NetworkProxyNode> networkProxyNodeMap;
@@ -46,10 +54,19 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
     private VerboseLevel verboseLevel;
     private String accessLogFormatString;
     private String accessLogFilePattern;
+    private int accessLogBufferSize;
+    private AccessLogOverflowPolicy accessLogOverflowPolicy;
     private String basicAuthentication;
     private String healthPath;
+    private String metricsPath;
+    private String shutdownPath;
+    private int shutdownTimeout;
     private int ioThreads;
     private int workerThreads;
+    private WorkerMode workerMode;
+    private NetworkProxyRateLimit rateLimit;
+    private NetworkProxyTls tls;
+    private boolean http2;
 
     
     /**
@@ -57,6 +74,7 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
      */
     public NetworkProxyConfiguration() {
         this.networkProxyName = "";
+        this.configurationFile = null;
         this.hostname = "0.0.0.0";
         this.port = 8080;
         this.networkProxyNodeMap = new ConcurrentHashMap<>();
@@ -65,10 +83,19 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
         this.verboseLevel = VerboseLevel.INFO;
         this.accessLogFormatString = "combined";
         this.accessLogFilePattern = "logs/access-%d{yyyy-MM-dd}.log.gz"; // "logs/access-%d{yyyy-MM-dd}.%i.log.gz"
+        this.accessLogBufferSize = 8192;
+        this.accessLogOverflowPolicy = AccessLogOverflowPolicy.DROP;
         this.basicAuthentication = null;
         this.healthPath = "/q/health";
+        this.metricsPath = "/q/metrics";
+        this.shutdownPath = null;
+        this.shutdownTimeout = 30000;
         this.ioThreads = Math.max(Runtime.getRuntime().availableProcessors(), 2);
         this.workerThreads = ioThreads * 8;
+        this.workerMode = WorkerMode.PLATFORM;
+        this.rateLimit = new NetworkProxyRateLimit();
+        this.tls = new NetworkProxyTls();
+        this.http2 = true;
     }
 
 
@@ -80,6 +107,7 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
     public NetworkProxyConfiguration(INetworkProxyConfiguration configuration) {
         this();
         this.networkProxyName = configuration.getNetworkProxyName();
+        this.configurationFile = configuration.getConfigurationFile();
         this.hostname = configuration.getHostname();
         this.port = configuration.getPort();
         setNetworkProxyNodeList(configuration.getNetworkProxyNodeList());
@@ -88,10 +116,19 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
         this.verboseLevel = configuration.getVerboseLevel();
         this.accessLogFormatString = configuration.getAccessLogFormatString();
         this.accessLogFilePattern = configuration.getAccessLogFilePattern();
+        this.accessLogBufferSize = configuration.getAccessLogBufferSize();
+        this.accessLogOverflowPolicy = configuration.getAccessLogOverflowPolicy();
         this.basicAuthentication = configuration.getBasicAuthentication();
         this.healthPath = configuration.getHealthPath();
+        this.metricsPath = configuration.getMetricsPath();
+        this.shutdownPath = configuration.getShutdownPath();
+        this.shutdownTimeout = configuration.getShutdownTimeout();
         this.ioThreads = configuration.getIoThreads();
         this.workerThreads = configuration.getWorkerThreads();
+        this.workerMode = configuration.getWorkerMode();
+        setRateLimit(configuration.getRateLimit());
+        setTls(configuration.getTls());
+        this.http2 = configuration.isHttp2();
     }
 
 
@@ -120,6 +157,31 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
     }
 
 
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getConfigurationFile()
+     */
+    @Override
+    public String getConfigurationFile() {
+        return configurationFile;
+    }
+
+    
+    /**
+     * Set the configuration file
+     *
+     * @param configurationFile the configuration file (properties or json)
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setConfigurationFile(String configurationFile) {
+        if (configurationFile != null && !configurationFile.isBlank()) {
+            LOG.debug("Set configuration file: [" + configurationFile + END_VALUE);
+            this.configurationFile = configurationFile.trim();
+        }
+        
+        return this;
+    }
+
+
     /**
      * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getHostname()
      */
@@ -269,7 +331,7 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
         
         if (networkProxyNodeList != null) {
             for (INetworkProxyNode networkProxyNode : networkProxyNodeList) {
-                this.networkProxyNodeMap.put(networkProxyNode.getResource(), new NetworkProxyNode(networkProxyNode.getName(), networkProxyNode.getResource(), networkProxyNode.getMethods(), networkProxyNode.getInstances()));
+                this.networkProxyNodeMap.put(networkProxyNode.getResource(), new NetworkProxyNode(networkProxyNode));
             }
         }
         return this;
@@ -399,6 +461,56 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
     }
 
 
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getAccessLogBufferSize()
+     */
+    @Override
+    public int getAccessLogBufferSize() {
+        return accessLogBufferSize;
+    }
+
+    
+    /**
+     * Set the number of access log lines which are buffered
+     *
+     * @param accessLogBufferSize the access log buffer size
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setAccessLogBufferSize(Integer accessLogBufferSize) {
+        if (accessLogBufferSize != null && accessLogBufferSize.intValue() > 0) {
+            LOG.debug("Set accessLogBufferSize: [" + accessLogBufferSize + END_VALUE);
+            this.accessLogBufferSize = accessLogBufferSize;
+        }
+        
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getAccessLogOverflowPolicy()
+     */
+    @Override
+    public AccessLogOverflowPolicy getAccessLogOverflowPolicy() {
+        return accessLogOverflowPolicy;
+    }
+
+    
+    /**
+     * Set the policy if the access log buffer is full
+     *
+     * @param accessLogOverflowPolicy the access log overflow policy
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setAccessLogOverflowPolicy(AccessLogOverflowPolicy accessLogOverflowPolicy) {
+        if (accessLogOverflowPolicy != null) {
+            LOG.debug("Set accessLogOverflowPolicy: [" + accessLogOverflowPolicy + END_VALUE);
+            this.accessLogOverflowPolicy = accessLogOverflowPolicy;
+        }
+        
+        return this;
+    }
+
+
     /**
      * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#hasBasicAuthentication()
      */
@@ -471,6 +583,102 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
     }
 
 
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#hasMetrics()
+     */
+    @Override
+    public boolean hasMetrics() {
+        return metricsPath != null && !metricsPath.isBlank();
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getMetricsPath()
+     */
+    @Override
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+
+    /**
+     * Set the metrics path
+     *
+     * @param metricsPath the resource path
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setMetricsPath(String metricsPath) {
+        if (metricsPath == null || metricsPath.isBlank()) {
+            LOG.debug("Disable metrics.");
+        } else {
+            LOG.debug("Enable metrics: [" + metricsPath + END_VALUE);
+        }
+
+        this.metricsPath = metricsPath;
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#hasShutdown()
+     */
+    @Override
+    public boolean hasShutdown() {
+        return shutdownPath != null && !shutdownPath.isBlank();
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getShutdownPath()
+     */
+    @Override
+    public String getShutdownPath() {
+        return shutdownPath;
+    }
+
+
+    /**
+     * Set the shutdown path
+     *
+     * @param shutdownPath the resource path, null to disable
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setShutdownPath(String shutdownPath) {
+        if (shutdownPath == null || shutdownPath.isBlank()) {
+            LOG.debug("Disable shutdown.");
+        } else {
+            LOG.debug("Enable shutdown: [" + shutdownPath + END_VALUE);
+        }
+
+        this.shutdownPath = shutdownPath;
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getShutdownTimeout()
+     */
+    @Override
+    public int getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    
+    /**
+     * Set the max time of the graceful shutdown to wait for the in-flight requests
+     *
+     * @param shutdownTimeout the shutdown timeout in milliseconds, 0 to stop immediately
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setShutdownTimeout(Integer shutdownTimeout) {
+        if (shutdownTimeout != null && shutdownTimeout >= 0) {
+            LOG.debug("Set shutdown timeout: [" + shutdownTimeout + END_VALUE);
+            this.shutdownTimeout = shutdownTimeout;
+        }
+        return this;
+    }
+
+
     /**
      * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getIoThreads()
      */
@@ -522,12 +730,169 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
 
 
     /**
-     * Read the configuration from the classpath
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getWorkerMode()
+     */
+    @Override
+    public WorkerMode getWorkerMode() {
+        return workerMode;
+    }
+
+    
+    /**
+     * Set the worker mode
+     *
+     * @param workerMode the worker mode
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setWorkerMode(WorkerMode workerMode) {
+        if (workerMode != null) {
+            LOG.debug("Set workerMode: [" + workerMode + END_VALUE);
+            this.workerMode = workerMode;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getRateLimit()
+     */
+    @Override
+    public NetworkProxyRateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    
+    /**
+     * Set the rate limit of all requests
+     *
+     * @param rateLimit the rate limit as json, e.g. <code>{"enabled": true, "rate": 100}</code>
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setRateLimit(String rateLimit) {
+        if (rateLimit != null && !rateLimit.isBlank()) {
+            try {
+                setRateLimit(JSONUtil.getInstance().read(NetworkProxyRateLimit.class, rateLimit));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Invalid rate limit [" + rateLimit + "], keep [" + this.rateLimit + "]: " + e.getMessage());
+            }
+        }
+        return this;
+    }
+
+    
+    /**
+     * Set the rate limit of all requests. The rate limit of all requests runs before the authentication of the nodes,
+     * therefore the key {@link RateLimitKey#PRINCIPAL} is rejected: it would always fall back to the client address.
+     *
+     * @param rateLimit the rate limit, null to disable
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setRateLimit(NetworkProxyRateLimit rateLimit) {
+        if (rateLimit != null && RateLimitKey.PRINCIPAL.equals(rateLimit.getKey())) {
+            LOG.warn("Invalid rate limit [" + rateLimit + "], the key " + RateLimitKey.PRINCIPAL + " is only supported by the rate limit of a node, keep ["
+                     + this.rateLimit + END_VALUE);
+            return this;
+        }
+
+        LOG.debug("Set rateLimit: [" + rateLimit + END_VALUE);
+        this.rateLimit = rateLimit;
+        if (this.rateLimit == null) {
+            this.rateLimit = new NetworkProxyRateLimit();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getTls()
+     */
+    @Override
+    public NetworkProxyTls getTls() {
+        return tls;
+    }
+
+    
+    /**
+     * Set the HTTPS listener
+     *
+     * @param tls the HTTPS listener as json, e.g. <code>{"enabled": true, "port": 8443, "keyStore": "proxy.p12", "keyStorePassword": "changeit"}</code>
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setTls(String tls) {
+        if (tls != null && !tls.isBlank()) {
+            try {
+                setTls(JSONUtil.getInstance().read(NetworkProxyTls.class, tls));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Invalid tls [" + tls + "], keep [" + this.tls + "]: " + e.getMessage());
+            }
+        }
+        return this;
+    }
+
+    
+    /**
+     * Set the HTTPS listener
+     *
+     * @param tls the HTTPS listener, null to disable
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setTls(NetworkProxyTls tls) {
+        LOG.debug("Set tls: [" + tls + END_VALUE);
+        this.tls = tls;
+        if (this.tls == null) {
+            this.tls = new NetworkProxyTls();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#isHttp2()
+     */
+    @Override
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    
+    /**
+     * Enable or disable HTTP/2 on the listeners
+     *
+     * @param http2 true to enable HTTP/2
+     * @return the configuration
+     */
+    public NetworkProxyConfiguration setHttp2(Boolean http2) {
+        if (http2 != null) {
+            LOG.debug("Set http2: [" + http2 + END_VALUE);
+            this.http2 = http2;
+        }
+        return this;
+    }
+
+
+    /**
+     * Read the configuration from the classpath and from the configuration file if it is defined
      * 
      * @return the configuration
      */
     public NetworkProxyConfiguration readProperties() {
-        Properties properties = readPropertiesFromClasspath();
+        readProperties(readPropertiesFromClasspath());
+
+        if (configurationFile != null) {
+            readProperties(readPropertiesFromFile(Paths.get(configurationFile)));
+        }
+        
+        return this;
+    }
+
+
+    /**
+     * Read the configuration from the properties
+     * 
+     * @param properties the properties or null
+     * @return the configuration
+     */
+    protected NetworkProxyConfiguration readProperties(Properties properties) {
         if (properties == null) {
             return this;
         }
@@ -540,19 +905,28 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
         if (!networkProxyNodeMap.isEmpty()) {
             networkProxyNodeMapJson = JSONUtil.getInstance().write(networkProxyNodeMap, false);
         }
-        setNetworkProxyNodeList(readProperty(properties, "networkProxyNodes", networkProxyNodeMapJson, false));
+        setNetworkProxyNodeList(readProperty(properties, NETWORKPROXY_NODES, networkProxyNodeMapJson, false));
         setConnectionsByThread(readProperty(properties, "connectionsByThread", connectionsByThread, false));
         setMaxRequestTime(readProperty(properties, "maxRequestTime", maxRequestTime, false));
 
         setIoThreads(readProperty(properties, "ioThreads", ioThreads, false));
         setWorkerThreads(readProperty(properties, "workerThreads", workerThreads, false));
+        setWorkerMode(readProperty(properties, "workerMode", workerMode, false));
+        setRateLimit(readProperty(properties, "rateLimit", JSONUtil.getInstance().write(rateLimit, false), false));
+        setTls(readProperty(properties, "tls", JSONUtil.getInstance().write(tls, false), false));
+        setHttp2(readProperty(properties, "http2", http2, false));
 
         setVerboseLevel(readProperty(properties, "verboseLevel", verboseLevel, false));
         setAccessLogFormatString(readProperty(properties, "accessLogFormatString", accessLogFormatString, false));
         setAccessLogFilePattern(readProperty(properties, "accessLogFilePattern", accessLogFilePattern, false));
+        setAccessLogBufferSize(readProperty(properties, "accessLogBufferSize", accessLogBufferSize, false));
+        setAccessLogOverflowPolicy(readProperty(properties, "accessLogOverflowPolicy", accessLogOverflowPolicy, false));
         
         //setBasicAuthentication(readProperty(properties, "basicAuthentication", basicAuthentication, true));
         setHealthPath(readProperty(properties, "healthPath", healthPath, true));
+        setMetricsPath(readProperty(properties, "metricsPath", metricsPath, true));
+        setShutdownPath(readProperty(properties, "shutdownPath", shutdownPath, true));
+        setShutdownTimeout(readProperty(properties, "shutdownTimeout", shutdownTimeout, false));
         return this;
     }
 
@@ -567,33 +941,76 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
         
         try {
             try (InputStream stream = this.getClass().getResourceAsStream(SLASH + NETWORKPROXY_PROPERTIES)) {
-                int countEntries = 0;
                 if (stream != null) {
                     LOG.debug("Found " + NETWORKPROXY_PROPERTIES + "...");
+                    properties = parseProperties(stream);
+                }
+            }
+        } catch (IOException ex) { 
+            LOG.info("Could not read and parse confuguration " + NETWORKPROXY_PROPERTIES + " from classpath.");
+        }
+        
+        return properties;
+    }
+
+
+    /**
+     * Read properties from a file. A json file contains only the network proxy nodes.
+     *
+     * @param file the file
+     * @return the read properties
+     */
+    protected Properties readPropertiesFromFile(Path file) {
+        Properties properties = null;
+        
+        try {
+            if (file.getFileName().toString().toLowerCase().endsWith(JSON_EXTENSION)) {
+                String content = Files.readString(file, StandardCharsets.UTF_8);
+                if (!content.isBlank()) {
                     properties = new Properties();
-                    String line;
-                    InputStreamReader inputStreamReader = new InputStreamReader(stream);
-                    BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-                    while ((line = bufferedReader.readLine()) != null) {
-                        if (!line.isBlank() && !line.trim().startsWith("#")) {
-                            String c = line.trim();
-                            int idx = c.indexOf('=');
-                            if (idx > 0) {
-                                String key = c.substring(0, idx).trim();
-                                String value = c.substring(idx + 1).trim();
-                                properties.setProperty(key, value);
-                                countEntries++;
-                            }
-                        }
-                    }
+                    properties.setProperty(NETWORKPROXY_NODES, content.trim());
                 }
-                
-                if (countEntries == 0) {
-                    properties = null;
+            } else {
+                try (InputStream stream = Files.newInputStream(file)) {
+                    properties = parseProperties(stream);
                 }
             }
         } catch (IOException ex) { 
-            LOG.info("Could not read and parse confuguration " + NETWORKPROXY_PROPERTIES + " from classpath.");
+            LOG.warn("Could not read and parse confuguration file [" + file + "]: " + ex.getMessage());
+        }
+        
+        return properties;
+    }
+
+
+    /**
+     * Read properties from a stream
+     *
+     * @param stream the stream
+     * @return the read properties or null if there are no entries
+     * @throws IOException In case of an I/O error
+     */
+    protected Properties parseProperties(InputStream stream) throws IOException {
+        Properties properties = new Properties();
+        int countEntries = 0;
+        String line;
+        InputStreamReader inputStreamReader = new InputStreamReader(stream);
+        BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+        while ((line = bufferedReader.readLine()) != null) {
+            if (!line.isBlank() && !line.trim().startsWith("#")) {
+                String c = line.trim();
+                int idx = c.indexOf('=');
+                if (idx > 0) {
+                    String key = c.substring(0, idx).trim();
+                    String value = c.substring(idx + 1).trim();
+                    properties.setProperty(key, value);
+                    countEntries++;
+                }
+            }
+        }
+        
+        if (countEntries == 0) {
+            return null;
         }
         
         return properties;
@@ -712,4 +1129,60 @@ public class NetworkProxyConfiguration implements INetworkProxyConfiguration, Se
             return defaultValue;
         }
     }
+
+
+    /**
+     * Read access log overflow policy property
+     *
+     * @param properties the properties
+     * @param name the name
+     * @param defaultValue the default value
+     * @param allowEmptyValue true to allow empty values otherwise in case of an empty value the default value will be taken
+     * @return the result
+     */
+    protected AccessLogOverflowPolicy readProperty(Properties properties, String name, AccessLogOverflowPolicy defaultValue, boolean allowEmptyValue) {
+        String result = readProperty(properties, name, "" + defaultValue, allowEmptyValue);
+        if ((result == null || result.isBlank())) {
+            if (allowEmptyValue) {
+                return null;
+            } else {
+                return defaultValue;
+            }
+        }
+        
+        try {
+            return AccessLogOverflowPolicy.valueOf(result.trim().toUpperCase());
+        } catch (Exception e) {
+            LOG.warn("Invalid value [" + result + "] for attribute [" + name + "], keep default value [" + defaultValue + END_VALUE);
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * Read worker mode property
+     *
+     * @param properties the properties
+     * @param name the name
+     * @param defaultValue the default value
+     * @param allowEmptyValue true to allow empty values otherwise in case of an empty value the default value will be taken
+     * @return the result
+     */
+    protected WorkerMode readProperty(Properties properties, String name, WorkerMode defaultValue, boolean allowEmptyValue) {
+        String result = readProperty(properties, name, "" + defaultValue, allowEmptyValue);
+        if ((result == null || result.isBlank())) {
+            if (allowEmptyValue) {
+                return null;
+            } else {
+                return defaultValue;
+            }
+        }
+        
+        try {
+            return WorkerMode.valueOf(result.trim().toUpperCase());
+        } catch (Exception e) {
+            LOG.warn("Invalid value [" + result + "] for attribute [" + name + "], keep default value [" + defaultValue + END_VALUE);
+            return defaultValue;
+        }
+    }
 }
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,13 +64,12 @@ public final class NetworkProxyConfigurationParser {
         if (inputNetworkProxyNodeList != null && inputNetworkProxyNodeList.length > 0) {
             for (int i = 0; i < inputNetworkProxyNodeList.length; i++) {
                 if (inputNetworkProxyNodeList[i] != null && inputNetworkProxyNodeList[i].length() > 0) {                    
-                    if (inputNetworkProxyNodeList[i].trim().startsWith("{") && inputNetworkProxyNodeList[i].trim().endsWith("}")) {
+                    final String input = inputNetworkProxyNodeList[i].trim();
+                    if ((input.startsWith("{") && input.endsWith("}")) || (input.startsWith("[") && input.endsWith("]"))) {
                         // json
                         try {
-                            @SuppressWarnings("unchecked")
-                            List<INetworkProxyNode> n = JSONUtil.getInstance().read(List.class, inputNetworkProxyNodeList[i]);
-                            networkProxyNodeList.addAll(n);
-                        } catch (IOException e) {
+                            networkProxyNodeList.addAll(parseJson(input));
+                        } catch (IOException | RuntimeException e) {
                             LOG.warn("Invalid value network proxy node list: " + e.getMessage() + "[" + inputNetworkProxyNodeList[i] + "]");
                         }
                     } else {
@@ -130,4 +130,66 @@ public final class NetworkProxyConfigurationParser {
         
         return networkProxyNodeList;
     }
+
+
+    /**
+     * Parse a json network proxy node list. It supports a list of nodes, e.g. <code>[{"resource":"/a","instances":["http://localhost:1"]}]</code>,
+     * or a map with the resource as key and either the node or the instance list as value, e.g. <code>{"/a":["http://localhost:1"]}</code>.
+     *
+     * @param input the json input
+     * @return the network proxy nodes
+     * @throws IOException In case of an invalid json
+     */
+    private List<INetworkProxyNode> parseJson(String input) throws IOException {
+        List<INetworkProxyNode> networkProxyNodeList = new ArrayList<>();
+        if (input.startsWith("[")) {
+            NetworkProxyNode[] nodes = JSONUtil.getInstance().read(NetworkProxyNode[].class, input);
+            if (nodes != null) {
+                for (NetworkProxyNode node : nodes) {
+                    networkProxyNodeList.add(setDefaultName(node));
+                }
+            }
+            return networkProxyNodeList;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = JSONUtil.getInstance().read(Map.class, input);
+        if (map == null) {
+            return networkProxyNodeList;
+        }
+        
+        for (Map.Entry<String, Object> e : map.entrySet()) {
+            if (e.getValue() instanceof List) {
+                final List<URI> instances = new ArrayList<>();
+                for (Object instance : (List<?>) e.getValue()) {
+                    instances.add(URI.create(("" + instance).trim()));
+                }
+                networkProxyNodeList.add(new NetworkProxyNode(null, e.getKey(), null, instances));
+            } else if (e.getValue() instanceof Map) {
+                NetworkProxyNode node = JSONUtil.getInstance().read(NetworkProxyNode.class, JSONUtil.getInstance().write(e.getValue(), false));
+                if (!((Map<?, ?>) e.getValue()).containsKey("resource")) {
+                    node.setResource(e.getKey());
+                }
+                networkProxyNodeList.add(setDefaultName(node));
+            } else {
+                LOG.warn("Invalid network proxy node [" + e.getKey() + "]: " + e.getValue());
+            }
+        }
+
+        return networkProxyNodeList;
+    }
+
+
+    /**
+     * Set the name of a parsed node without name to its resource, as the constructor of the node does
+     *
+     * @param node the parsed node
+     * @return the node
+     */
+    private NetworkProxyNode setDefaultName(NetworkProxyNode node) {
+        if (node.getName() == null || node.getName().isBlank()) {
+            node.setName(node.getResource());
+        }
+        return node;
+    }
 }
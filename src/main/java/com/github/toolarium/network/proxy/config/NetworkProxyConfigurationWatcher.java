@@ -0,0 +1,158 @@
+/*
+ * NetworkProxyConfigurationWatcher.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Watches the configuration file and notifies a listener with the re-parsed network proxy nodes as soon as
+ * the file content changes.
+ *
+ * @author patrick
+ */
+public class NetworkProxyConfigurationWatcher implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(NetworkProxyConfigurationWatcher.class);
+    private static final long QUIET_PERIOD = 200;
+    private final Path file;
+    private final Consumer<List<INetworkProxyNode>> listener;
+    private volatile WatchService watchService;
+    private byte[] lastContent;
+
+
+    /**
+     * Constructor for NetworkProxyConfigurationWatcher
+     *
+     * @param file the configuration file
+     * @param listener the listener
+     */
+    public NetworkProxyConfigurationWatcher(Path file, Consumer<List<INetworkProxyNode>> listener) {
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.watchService = null;
+        this.lastContent = readContent();
+    }
+
+
+    /**
+     * Start the watcher thread
+     *
+     * @return the watcher
+     * @throws IOException In case the directory can not be watched
+     */
+    public NetworkProxyConfigurationWatcher start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(this, "networkproxy-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOG.info("Watch configuration file [" + file + "].");
+        return this;
+    }
+
+
+    /**
+     * Stop the watcher thread
+     */
+    public void stop() {
+        WatchService currentWatchService = watchService;
+        watchService = null;
+        if (currentWatchService != null) {
+            try {
+                currentWatchService.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close watch service: " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        try {
+            WatchService currentWatchService = watchService;
+            while (currentWatchService != null) {
+                WatchKey key = currentWatchService.take();
+
+                // wait until the directory is quiet, editors and config maps write in several steps
+                do {
+                    key.pollEvents();
+                    key.reset();
+                    key = currentWatchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                reload();
+                currentWatchService = watchService;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException expected) {
+            // NOP, stopped
+        }
+    }
+
+
+    /**
+     * Reload the configuration if the content has changed
+     */
+    protected void reload() {
+        byte[] content = readContent();
+        if (content == null || Arrays.equals(content, lastContent)) {
+            return;
+        }
+
+        lastContent = content;
+        LOG.info("Configuration file [" + file + "] changed, reload network proxy nodes...");
+        try {
+            NetworkProxyConfiguration configuration = new NetworkProxyConfiguration();
+            configuration.readProperties(configuration.readPropertiesFromFile(file));
+            List<INetworkProxyNode> networkProxyNodeList = configuration.getNetworkProxyNodeList();
+            if (networkProxyNodeList.isEmpty()) {
+                // protect against a broken file, keep the current nodes
+                LOG.warn("No network proxy nodes found in configuration file [" + file + "], keep current configuration.");
+                return;
+            }
+
+            listener.accept(networkProxyNodeList);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not reload configuration file [" + file + "]: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Read the content of the file
+     *
+     * @return the content or null
+     */
+    private byte[] readContent() {
+        try {
+            if (Files.isReadable(file)) {
+                return Files.readAllBytes(file);
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not read configuration file [" + file + "]: " + e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * NetworkProxyConnectionPool.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the connection pool of the instances of a network proxy node. Every instance has a pool per IO thread with up
+ * to the connections per thread, 0 takes the global connections by thread. With a time to live the idle connections
+ * above the soft max are closed after the time to live, the soft max connections are kept. An instance which could not
+ * be connected is retried after the problem server retry. A request which finds all connections of its IO thread busy
+ * waits in a queue of up to the max queue size per IO thread for a free connection, without a queue it is rejected with
+ * 503 (service unavailable). The pre-warm opens the number of connections per IO thread
+ * to every instance when the network proxy is started, before the listeners accept requests.
+ *
+ * @author patrick
+ */
+public class NetworkProxyConnectionPool implements Serializable {
+    private static final long serialVersionUID = 6139846027715306241L;
+    private int connectionsPerThread;
+    private int softMaxConnectionsPerThread;
+    private int ttl;
+    private int problemServerRetry;
+    private int maxQueueSize;
+    private int prewarm;
+
+
+    /**
+     * Constructor for NetworkProxyConnectionPool
+     */
+    public NetworkProxyConnectionPool() {
+        this.connectionsPerThread = 0;
+        this.softMaxConnectionsPerThread = 0;
+        this.ttl = -1;
+        this.problemServerRetry = 10;
+        this.maxQueueSize = 0;
+        this.prewarm = 0;
+    }
+
+
+    /**
+     * Get the max number of connections per IO thread to an instance
+     *
+     * @return the connections per thread, 0 for the global connections by thread
+     */
+    public int getConnectionsPerThread() {
+        return connectionsPerThread;
+    }
+
+
+    /**
+     * Set the max number of connections per IO thread to an instance
+     *
+     * @param connectionsPerThread the connections per thread, 0 for the global connections by thread
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool setConnectionsPerThread(int connectionsPerThread) {
+        if (connectionsPerThread >= 0) {
+            this.connectionsPerThread = connectionsPerThread;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of idle connections per IO thread which are kept independent of the time to live
+     *
+     * @return the soft max connections per thread, 0 for the default of 5
+     */
+    public int getSoftMaxConnectionsPerThread() {
+        return softMaxConnectionsPerThread;
+    }
+
+
+    /**
+     * Set the number of idle connections per IO thread which are kept independent of the time to live
+     *
+     * @param softMaxConnectionsPerThread the soft max connections per thread, 0 for the default of 5
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool setSoftMaxConnectionsPerThread(int softMaxConnectionsPerThread) {
+        if (softMaxConnectionsPerThread >= 0) {
+            this.softMaxConnectionsPerThread = softMaxConnectionsPerThread;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the time to live of an idle connection above the soft max
+     *
+     * @return the time to live in milliseconds, -1 to keep the connections
+     */
+    public int getTtl() {
+        return ttl;
+    }
+
+
+    /**
+     * Set the time to live of an idle connection above the soft max
+     *
+     * @param ttl the time to live in milliseconds, -1 to keep the connections
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool setTtl(int ttl) {
+        if (ttl == -1 || ttl > 0) {
+            this.ttl = ttl;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the time after which an instance which could not be connected is retried
+     *
+     * @return the problem server retry in seconds
+     */
+    public int getProblemServerRetry() {
+        return problemServerRetry;
+    }
+
+
+    /**
+     * Set the time after which an instance which could not be connected is retried
+     *
+     * @param problemServerRetry the problem server retry in seconds
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool setProblemServerRetry(int problemServerRetry) {
+        if (problemServerRetry > 0) {
+            this.problemServerRetry = problemServerRetry;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max number of requests per IO thread which wait for a connection if all connections are busy
+     *
+     * @return the max queue size, 0 to reject the requests
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+
+    /**
+     * Set the max number of requests per IO thread which wait for a connection if all connections are busy
+     *
+     * @param maxQueueSize the max queue size, 0 to reject the requests
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool setMaxQueueSize(int maxQueueSize) {
+        if (maxQueueSize >= 0) {
+            this.maxQueueSize = maxQueueSize;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of connections per IO thread which are opened to every instance on startup
+     *
+     * @return the pre-warmed connections per thread, 0 to start with empty pools
+     */
+    public int getPrewarm() {
+        return prewarm;
+    }
+
+
+    /**
+     * Set the number of connections per IO thread which are opened to every instance on startup, it is limited by the
+     * connections per thread
+     *
+     * @param prewarm the pre-warmed connections per thread, 0 to start with empty pools
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool setPrewarm(int prewarm) {
+        if (prewarm >= 0) {
+            this.prewarm = prewarm;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(connectionsPerThread, softMaxConnectionsPerThread, ttl, problemServerRetry, maxQueueSize, prewarm);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyConnectionPool other = (NetworkProxyConnectionPool) obj;
+        return connectionsPerThread == other.connectionsPerThread && softMaxConnectionsPerThread == other.softMaxConnectionsPerThread
+                && ttl == other.ttl && problemServerRetry == other.problemServerRetry && maxQueueSize == other.maxQueueSize
+                && prewarm == other.prewarm;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyConnectionPool [connectionsPerThread=" + connectionsPerThread + ", softMaxConnectionsPerThread=" + softMaxConnectionsPerThread
+                + ", ttl=" + ttl + ", problemServerRetry=" + problemServerRetry + ", maxQueueSize=" + maxQueueSize
+                + ", prewarm=" + prewarm + "]";
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * NetworkProxyConsistentHash.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the consistent hashing of a network proxy node, it is used by the load balancing strategy
+ * {@link LoadBalancingStrategy#CONSISTENT_HASH}. Every instance has a number of virtual nodes on a hash ring; a request
+ * is passed to the instance of the next virtual node of its key. With a load factor the outstanding requests of an
+ * instance are bounded by the load factor in percent of the average, an overloaded instance passes the request to
+ * the next instance on the ring.
+ *
+ * @author patrick
+ */
+public class NetworkProxyConsistentHash implements Serializable {
+    private static final long serialVersionUID = 3381946093468219513L;
+    private HashKey key;
+    private String name;
+    private int segment;
+    private int virtualNodes;
+    private int loadFactor;
+
+
+    /**
+     * Constructor for NetworkProxyConsistentHash
+     */
+    public NetworkProxyConsistentHash() {
+        this.key = HashKey.ADDRESS;
+        this.name = null;
+        this.segment = 0;
+        this.virtualNodes = 100;
+        this.loadFactor = 125;
+    }
+
+
+    /**
+     * Get the key of the hashing
+     *
+     * @return the key
+     */
+    public HashKey getKey() {
+        return key;
+    }
+
+
+    /**
+     * Set the key of the hashing
+     *
+     * @param key the key
+     * @return the consistent hash
+     */
+    public NetworkProxyConsistentHash setKey(HashKey key) {
+        if (key != null) {
+            this.key = key;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the name of the header or cookie in case the key is {@link HashKey#HEADER} or {@link HashKey#COOKIE}
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Set the name of the header or cookie
+     *
+     * @param name the name
+     * @return the consistent hash
+     */
+    public NetworkProxyConsistentHash setName(String name) {
+        if (name != null && !name.isBlank()) {
+            this.name = name.trim();
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the index of the path segment in case the key is {@link HashKey#PATH_SEGMENT}, the first segment has the index 0
+     *
+     * @return the index of the path segment
+     */
+    public int getSegment() {
+        return segment;
+    }
+
+
+    /**
+     * Set the index of the path segment
+     *
+     * @param segment the index of the path segment
+     * @return the consistent hash
+     */
+    public NetworkProxyConsistentHash setSegment(int segment) {
+        if (segment >= 0) {
+            this.segment = segment;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of virtual nodes of an instance on the hash ring
+     *
+     * @return the number of virtual nodes
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+
+    /**
+     * Set the number of virtual nodes of an instance on the hash ring
+     *
+     * @param virtualNodes the number of virtual nodes
+     * @return the consistent hash
+     */
+    public NetworkProxyConsistentHash setVirtualNodes(int virtualNodes) {
+        if (virtualNodes > 0) {
+            this.virtualNodes = virtualNodes;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the load factor: the max outstanding requests of an instance in percent of the average, 0 if the load is not bounded
+     *
+     * @return the load factor in percent
+     */
+    public int getLoadFactor() {
+        return loadFactor;
+    }
+
+
+    /**
+     * Set the load factor in percent of the average, 0 if the load is not bounded
+     *
+     * @param loadFactor the load factor, at least 100 or 0
+     * @return the consistent hash
+     */
+    public NetworkProxyConsistentHash setLoadFactor(int loadFactor) {
+        if (loadFactor == 0 || loadFactor >= 100) {
+            this.loadFactor = loadFactor;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, name, segment, virtualNodes, loadFactor);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyConsistentHash other = (NetworkProxyConsistentHash) obj;
+        return key == other.key && Objects.equals(name, other.name) && segment == other.segment && virtualNodes == other.virtualNodes
+                && loadFactor == other.loadFactor;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyConsistentHash [key=" + key + ", name=" + name + ", segment=" + segment + ", virtualNodes=" + virtualNodes + ", loadFactor=" + loadFactor + "]";
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * NetworkProxyHealthCheck.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the active health check of the instances of a network proxy node.
+ *
+ * @author patrick
+ */
+public class NetworkProxyHealthCheck implements Serializable {
+    private static final long serialVersionUID = 2658467251826651921L;
+    private String path;
+    private int interval;
+    private int timeout;
+    private int healthyThreshold;
+    private int unhealthyThreshold;
+
+
+    /**
+     * Constructor for NetworkProxyHealthCheck
+     */
+    public NetworkProxyHealthCheck() {
+        this.path = null;
+        this.interval = 5000;
+        this.timeout = 2000;
+        this.healthyThreshold = 2;
+        this.unhealthyThreshold = 2;
+    }
+
+
+    /**
+     * Get the health check path of the instances, e.g. /q/health. If it is not defined the health check is disabled.
+     *
+     * @return the path or null
+     */
+    public String getPath() {
+        return path;
+    }
+
+
+    /**
+     * Set the health check path
+     *
+     * @param path the path
+     * @return the health check
+     */
+    public NetworkProxyHealthCheck setPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+
+    /**
+     * Get the interval in milliseconds between two health checks
+     *
+     * @return the interval in milliseconds
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+
+    /**
+     * Set the interval in milliseconds
+     *
+     * @param interval the interval
+     * @return the health check
+     */
+    public NetworkProxyHealthCheck setInterval(int interval) {
+        if (interval > 0) {
+            this.interval = interval;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the timeout in milliseconds of a health check
+     *
+     * @return the timeout in milliseconds
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+
+    /**
+     * Set the timeout in milliseconds
+     *
+     * @param timeout the timeout
+     * @return the health check
+     */
+    public NetworkProxyHealthCheck setTimeout(int timeout) {
+        if (timeout > 0) {
+            this.timeout = timeout;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of consecutive successful health checks until an unhealthy instance is healthy again
+     *
+     * @return the healthy threshold
+     */
+    public int getHealthyThreshold() {
+        return healthyThreshold;
+    }
+
+
+    /**
+     * Set the healthy threshold
+     *
+     * @param healthyThreshold the healthy threshold
+     * @return the health check
+     */
+    public NetworkProxyHealthCheck setHealthyThreshold(int healthyThreshold) {
+        if (healthyThreshold > 0) {
+            this.healthyThreshold = healthyThreshold;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of consecutive failed health checks until a healthy instance is unhealthy
+     *
+     * @return the unhealthy threshold
+     */
+    public int getUnhealthyThreshold() {
+        return unhealthyThreshold;
+    }
+
+
+    /**
+     * Set the unhealthy threshold
+     *
+     * @param unhealthyThreshold the unhealthy threshold
+     * @return the health check
+     */
+    public NetworkProxyHealthCheck setUnhealthyThreshold(int unhealthyThreshold) {
+        if (unhealthyThreshold > 0) {
+            this.unhealthyThreshold = unhealthyThreshold;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, interval, timeout, healthyThreshold, unhealthyThreshold);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyHealthCheck other = (NetworkProxyHealthCheck) obj;
+        return Objects.equals(path, other.path) && interval == other.interval && timeout == other.timeout
+                && healthyThreshold == other.healthyThreshold && unhealthyThreshold == other.unhealthyThreshold;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyHealthCheck [path=" + path + ", interval=" + interval + ", timeout=" + timeout
+                + ", healthyThreshold=" + healthyThreshold + ", unhealthyThreshold=" + unhealthyThreshold + "]";
+    }
+}
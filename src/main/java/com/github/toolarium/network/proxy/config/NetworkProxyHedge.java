@@ -0,0 +1,198 @@
+/*
+ * NetworkProxyHedge.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the hedged requests of a network proxy node. If a GET or HEAD request is not answered within the percentile
+ * of the recent latency, a second copy is sent to another instance and the first response wins. The delay is bounded
+ * by the min and max delay; the hedged requests are bounded by a budget in percent of the requests.
+ *
+ * @author patrick
+ */
+public class NetworkProxyHedge implements Serializable {
+    private static final long serialVersionUID = -2604390712158743210L;
+    private boolean enabled;
+    private int percentile;
+    private long minDelay;
+    private long maxDelay;
+    private int budgetPercent;
+
+
+    /**
+     * Constructor for NetworkProxyHedge
+     */
+    public NetworkProxyHedge() {
+        this.enabled = false;
+        this.percentile = 95;
+        this.minDelay = 5;
+        this.maxDelay = 1000;
+        this.budgetPercent = 10;
+    }
+
+
+    /**
+     * Check if the hedged requests are enabled
+     *
+     * @return true if they are enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the hedged requests
+     *
+     * @param enabled true to enable
+     * @return the hedge
+     */
+    public NetworkProxyHedge setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the percentile of the recent latency after which a request is hedged
+     *
+     * @return the percentile
+     */
+    public int getPercentile() {
+        return percentile;
+    }
+
+
+    /**
+     * Set the percentile of the recent latency after which a request is hedged
+     *
+     * @param percentile the percentile between 1 and 99
+     * @return the hedge
+     */
+    public NetworkProxyHedge setPercentile(int percentile) {
+        if (percentile > 0 && percentile < 100) {
+            this.percentile = percentile;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the min delay in milliseconds before a request is hedged
+     *
+     * @return the min delay in milliseconds
+     */
+    public long getMinDelay() {
+        return minDelay;
+    }
+
+
+    /**
+     * Set the min delay in milliseconds before a request is hedged
+     *
+     * @param minDelay the min delay in milliseconds
+     * @return the hedge
+     */
+    public NetworkProxyHedge setMinDelay(long minDelay) {
+        if (minDelay >= 0) {
+            this.minDelay = minDelay;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max delay in milliseconds before a request is hedged, it is used as long as no latency is known
+     *
+     * @return the max delay in milliseconds
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+
+    /**
+     * Set the max delay in milliseconds before a request is hedged
+     *
+     * @param maxDelay the max delay in milliseconds
+     * @return the hedge
+     */
+    public NetworkProxyHedge setMaxDelay(long maxDelay) {
+        if (maxDelay >= 0) {
+            this.maxDelay = maxDelay;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the hedge budget: the max hedged requests in percent of the requests
+     *
+     * @return the budget in percent
+     */
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+
+    /**
+     * Set the hedge budget in percent of the requests
+     *
+     * @param budgetPercent the budget in percent
+     * @return the hedge
+     */
+    public NetworkProxyHedge setBudgetPercent(int budgetPercent) {
+        if (budgetPercent >= 0) {
+            this.budgetPercent = budgetPercent;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, percentile, minDelay, maxDelay, budgetPercent);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyHedge other = (NetworkProxyHedge) obj;
+        return enabled == other.enabled && percentile == other.percentile && minDelay == other.minDelay
+                && maxDelay == other.maxDelay && budgetPercent == other.budgetPercent;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyHedge [enabled=" + enabled + ", percentile=" + percentile + ", minDelay=" + minDelay
+                + ", maxDelay=" + maxDelay + ", budgetPercent=" + budgetPercent + "]";
+    }
+}
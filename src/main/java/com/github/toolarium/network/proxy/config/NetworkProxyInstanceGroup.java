@@ -0,0 +1,181 @@
+/*
+ * NetworkProxyInstanceGroup.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Defines a named group of instances of a network proxy node, e.g. <code>stable</code> and <code>canary</code>. The
+ * weight of a group is its share of the requests relative to the other groups; the instances which are not in a group
+ * form the default group with the weight 100. Within a group the requests are split by the weights of the instances.
+ * A group with the weight 0 gets no requests as long as another group has an available instance.
+ *
+ * @author patrick
+ */
+public class NetworkProxyInstanceGroup implements Serializable {
+    private static final long serialVersionUID = 3307462358270140158L;
+    private String name;
+    private int weight;
+    private List<URI> instances;
+
+
+    /**
+     * Constructor for NetworkProxyInstanceGroup
+     */
+    public NetworkProxyInstanceGroup() {
+        this(null, 100);
+    }
+
+
+    /**
+     * Constructor for NetworkProxyInstanceGroup
+     *
+     * @param name the name
+     * @param weight the weight
+     */
+    public NetworkProxyInstanceGroup(String name, int weight) {
+        this.name = name;
+        this.weight = 100;
+        this.instances = new ArrayList<>();
+        setWeight(weight);
+    }
+
+
+    /**
+     * Get the name of the group
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Set the name of the group
+     *
+     * @param name the name
+     * @return the instance group
+     */
+    public NetworkProxyInstanceGroup setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+
+    /**
+     * Get the weight of the group relative to the other groups of the node
+     *
+     * @return the weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+
+    /**
+     * Set the weight of the group relative to the other groups of the node
+     *
+     * @param weight the weight, 0 or more
+     * @return the instance group
+     */
+    public NetworkProxyInstanceGroup setWeight(int weight) {
+        if (weight >= 0) {
+            this.weight = weight;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the instances of the group
+     *
+     * @return the instances
+     */
+    public List<URI> getInstances() {
+        return instances;
+    }
+
+
+    /**
+     * Set the instances of the group
+     *
+     * @param instances the instances
+     * @return the instance group
+     */
+    public NetworkProxyInstanceGroup setInstances(List<URI> instances) {
+        this.instances = instances;
+        if (this.instances == null) {
+            this.instances = new ArrayList<>();
+        }
+        return this;
+    }
+
+
+    /**
+     * Add instances to the group
+     *
+     * @param instances the comma separated instances
+     * @return the instance group
+     * @throws IllegalArgumentException In case of an invalid uri
+     */
+    public NetworkProxyInstanceGroup addInstance(String instances) throws IllegalArgumentException {
+        for (String instance : instances.split(",")) {
+            try {
+                this.instances.add(new URI(instance.trim()));
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid instance uri [" + instance + "]: " + e.getMessage());
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, weight, instances);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyInstanceGroup other = (NetworkProxyInstanceGroup) obj;
+        return Objects.equals(name, other.name) && weight == other.weight && Objects.equals(instances, other.instances);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyInstanceGroup [name=" + name + ", weight=" + weight + ", instances=" + instances + "]";
+    }
+}
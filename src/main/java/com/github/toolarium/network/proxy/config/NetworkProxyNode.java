@@ -10,7 +10,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 
@@ -26,6 +28,22 @@ public class NetworkProxyNode implements INetworkProxyNode, Serializable {
     private String resource;
     private List<String> methods;
     private List<URI> instances;
+    private List<NetworkProxyInstanceGroup> groups;
+    private Map<URI, Integer> weights;
+    private BackendProtocol backendProtocol;
+    private NetworkProxyConnectionPool connectionPool;
+    private LoadBalancingStrategy loadBalancingStrategy;
+    private NetworkProxyConsistentHash consistentHash;
+    private NetworkProxyStickySession stickySession;
+    private NetworkProxySlowStart slowStart;
+    private NetworkProxyHealthCheck healthCheck;
+    private NetworkProxyOutlierDetection outlierDetection;
+    private NetworkProxyCache cache;
+    private NetworkProxyCompression compression;
+    private NetworkProxyConcurrencyLimit concurrencyLimit;
+    private NetworkProxyRateLimit rateLimit;
+    private NetworkProxyRetry retry;
+    private NetworkProxyHedge hedge;
 
     
     /**
@@ -79,6 +97,49 @@ public class NetworkProxyNode implements INetworkProxyNode, Serializable {
         if (this.instances == null) {
             this.instances = new ArrayList<>();
         }
+        
+        this.groups = new ArrayList<>();
+        this.weights = new LinkedHashMap<>();
+        this.backendProtocol = BackendProtocol.HTTP_1_1;
+        this.connectionPool = new NetworkProxyConnectionPool();
+        this.loadBalancingStrategy = LoadBalancingStrategy.ROUND_ROBIN;
+        this.consistentHash = new NetworkProxyConsistentHash();
+        this.stickySession = new NetworkProxyStickySession();
+        this.slowStart = new NetworkProxySlowStart();
+        this.healthCheck = new NetworkProxyHealthCheck();
+        this.outlierDetection = new NetworkProxyOutlierDetection();
+        this.cache = new NetworkProxyCache();
+        this.compression = new NetworkProxyCompression();
+        this.concurrencyLimit = new NetworkProxyConcurrencyLimit();
+        this.rateLimit = new NetworkProxyRateLimit();
+        this.retry = new NetworkProxyRetry();
+        this.hedge = new NetworkProxyHedge();
+    }
+
+    
+    /**
+     * Constructor for NetworkProxyNode
+     * 
+     * @param node the node to copy
+     */
+    public NetworkProxyNode(INetworkProxyNode node) {
+        this(node.getName(), node.getResource(), node.getMethods(), node.getInstances());
+        setGroups(node.getGroups());
+        setWeights(node.getWeights());
+        setBackendProtocol(node.getBackendProtocol());
+        setConnectionPool(node.getConnectionPool());
+        setLoadBalancingStrategy(node.getLoadBalancingStrategy());
+        setConsistentHash(node.getConsistentHash());
+        setStickySession(node.getStickySession());
+        setSlowStart(node.getSlowStart());
+        setHealthCheck(node.getHealthCheck());
+        setOutlierDetection(node.getOutlierDetection());
+        setCache(node.getCache());
+        setCompression(node.getCompression());
+        setConcurrencyLimit(node.getConcurrencyLimit());
+        setRateLimit(node.getRateLimit());
+        setRetry(node.getRetry());
+        setHedge(node.getHedge());
     }
 
     
@@ -216,12 +277,430 @@ public class NetworkProxyNode implements INetworkProxyNode, Serializable {
     }
 
 
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getGroups()
+     */
+    @Override
+    public List<NetworkProxyInstanceGroup> getGroups() {
+        return groups;
+    }
+
+    
+    /**
+     * Set the instance groups
+     *
+     * @param groups the instance groups
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setGroups(List<NetworkProxyInstanceGroup> groups) {
+        this.groups = groups;
+        if (this.groups == null) {
+            this.groups = new ArrayList<>();
+        }
+        return this;
+    }
+
+    
+    /**
+     * Add an instance group
+     *
+     * @param group the instance group
+     * @return the network proxy node
+     */
+    public NetworkProxyNode addGroup(NetworkProxyInstanceGroup group) {
+        groups.add(group);
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getWeights()
+     */
+    @Override
+    public Map<URI, Integer> getWeights() {
+        return weights;
+    }
+
+    
+    /**
+     * Set the weights of the instances
+     *
+     * @param weights the weights of the instances
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setWeights(Map<URI, Integer> weights) {
+        this.weights = weights;
+        if (this.weights == null) {
+            this.weights = new LinkedHashMap<>();
+        }
+        return this;
+    }
+
+    
+    /**
+     * Set the weight of an instance
+     *
+     * @param instance the instance
+     * @param weight the weight, 0 or more
+     * @return the network proxy node
+     * @throws IllegalArgumentException In case of an invalid uri or weight
+     */
+    public NetworkProxyNode setWeight(String instance, int weight) throws IllegalArgumentException {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Invalid weight [" + weight + "] of instance [" + instance + "]!");
+        }
+        
+        try {
+            weights.put(new URI(instance.trim()), weight);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid instance uri [" + instance + "]: " + e.getMessage());
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getBackendProtocol()
+     */
+    @Override
+    public BackendProtocol getBackendProtocol() {
+        return backendProtocol;
+    }
+
+    
+    /**
+     * Set the protocol of the connections to the instances
+     *
+     * @param backendProtocol the backend protocol, null for HTTP/1.1
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setBackendProtocol(BackendProtocol backendProtocol) {
+        this.backendProtocol = backendProtocol;
+        if (this.backendProtocol == null) {
+            this.backendProtocol = BackendProtocol.HTTP_1_1;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getConnectionPool()
+     */
+    @Override
+    public NetworkProxyConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    
+    /**
+     * Set the connection pool of the instances
+     *
+     * @param connectionPool the connection pool, null for the default
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setConnectionPool(NetworkProxyConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        if (this.connectionPool == null) {
+            this.connectionPool = new NetworkProxyConnectionPool();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getLoadBalancingStrategy()
+     */
+    @Override
+    public LoadBalancingStrategy getLoadBalancingStrategy() {
+        return loadBalancingStrategy;
+    }
+
+    
+    /**
+     * Set the load balancing strategy
+     *
+     * @param loadBalancingStrategy the load balancing strategy, null for round robin
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setLoadBalancingStrategy(LoadBalancingStrategy loadBalancingStrategy) {
+        this.loadBalancingStrategy = loadBalancingStrategy;
+        if (this.loadBalancingStrategy == null) {
+            this.loadBalancingStrategy = LoadBalancingStrategy.ROUND_ROBIN;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getConsistentHash()
+     */
+    @Override
+    public NetworkProxyConsistentHash getConsistentHash() {
+        return consistentHash;
+    }
+
+    
+    /**
+     * Set the consistent hashing
+     *
+     * @param consistentHash the consistent hash, null for the default
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setConsistentHash(NetworkProxyConsistentHash consistentHash) {
+        this.consistentHash = consistentHash;
+        if (this.consistentHash == null) {
+            this.consistentHash = new NetworkProxyConsistentHash();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getStickySession()
+     */
+    @Override
+    public NetworkProxyStickySession getStickySession() {
+        return stickySession;
+    }
+
+    
+    /**
+     * Set the sticky sessions
+     *
+     * @param stickySession the sticky session, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setStickySession(NetworkProxyStickySession stickySession) {
+        this.stickySession = stickySession;
+        if (this.stickySession == null) {
+            this.stickySession = new NetworkProxyStickySession();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getSlowStart()
+     */
+    @Override
+    public NetworkProxySlowStart getSlowStart() {
+        return slowStart;
+    }
+
+    
+    /**
+     * Set the slow start
+     *
+     * @param slowStart the slow start, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setSlowStart(NetworkProxySlowStart slowStart) {
+        this.slowStart = slowStart;
+        if (this.slowStart == null) {
+            this.slowStart = new NetworkProxySlowStart();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getHealthCheck()
+     */
+    @Override
+    public NetworkProxyHealthCheck getHealthCheck() {
+        return healthCheck;
+    }
+
+    
+    /**
+     * Set the active health check of the instances
+     *
+     * @param healthCheck the health check, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setHealthCheck(NetworkProxyHealthCheck healthCheck) {
+        this.healthCheck = healthCheck;
+        if (this.healthCheck == null) {
+            this.healthCheck = new NetworkProxyHealthCheck();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getOutlierDetection()
+     */
+    @Override
+    public NetworkProxyOutlierDetection getOutlierDetection() {
+        return outlierDetection;
+    }
+
+    
+    /**
+     * Set the passive outlier detection of the instances
+     *
+     * @param outlierDetection the outlier detection, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setOutlierDetection(NetworkProxyOutlierDetection outlierDetection) {
+        this.outlierDetection = outlierDetection;
+        if (this.outlierDetection == null) {
+            this.outlierDetection = new NetworkProxyOutlierDetection();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getCache()
+     */
+    @Override
+    public NetworkProxyCache getCache() {
+        return cache;
+    }
+
+    
+    /**
+     * Set the response cache
+     *
+     * @param cache the response cache, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setCache(NetworkProxyCache cache) {
+        this.cache = cache;
+        if (this.cache == null) {
+            this.cache = new NetworkProxyCache();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getCompression()
+     */
+    @Override
+    public NetworkProxyCompression getCompression() {
+        return compression;
+    }
+
+    
+    /**
+     * Set the response compression
+     *
+     * @param compression the response compression, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setCompression(NetworkProxyCompression compression) {
+        this.compression = compression;
+        if (this.compression == null) {
+            this.compression = new NetworkProxyCompression();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getConcurrencyLimit()
+     */
+    @Override
+    public NetworkProxyConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    
+    /**
+     * Set the adaptive concurrency limit
+     *
+     * @param concurrencyLimit the concurrency limit, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setConcurrencyLimit(NetworkProxyConcurrencyLimit concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        if (this.concurrencyLimit == null) {
+            this.concurrencyLimit = new NetworkProxyConcurrencyLimit();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getRateLimit()
+     */
+    @Override
+    public NetworkProxyRateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    
+    /**
+     * Set the rate limit of the node
+     *
+     * @param rateLimit the rate limit, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setRateLimit(NetworkProxyRateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+        if (this.rateLimit == null) {
+            this.rateLimit = new NetworkProxyRateLimit();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getRetry()
+     */
+    @Override
+    public NetworkProxyRetry getRetry() {
+        return retry;
+    }
+
+    
+    /**
+     * Set the retries
+     *
+     * @param retry the retry, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setRetry(NetworkProxyRetry retry) {
+        this.retry = retry;
+        if (this.retry == null) {
+            this.retry = new NetworkProxyRetry();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.config.INetworkProxyNode#getHedge()
+     */
+    @Override
+    public NetworkProxyHedge getHedge() {
+        return hedge;
+    }
+
+    
+    /**
+     * Set the hedged requests
+     *
+     * @param hedge the hedge, null to disable
+     * @return the network proxy node
+     */
+    public NetworkProxyNode setHedge(NetworkProxyHedge hedge) {
+        this.hedge = hedge;
+        if (this.hedge == null) {
+            this.hedge = new NetworkProxyHedge();
+        }
+        return this;
+    }
+
+
     /**
      * @see java.lang.Object#hashCode()
      */
     @Override
     public int hashCode() {
-        return Objects.hash(instances, methods, name, resource);
+        return Objects.hash(instances, groups, weights, methods, name, resource, backendProtocol, connectionPool, loadBalancingStrategy, consistentHash, stickySession, slowStart, healthCheck, outlierDetection, cache, compression, concurrencyLimit, rateLimit, retry, hedge);
     }
 
 
@@ -243,8 +722,17 @@ public class NetworkProxyNode implements INetworkProxyNode, Serializable {
         }
         
         NetworkProxyNode other = (NetworkProxyNode) obj;
-        return Objects.equals(instances, other.instances) && Objects.equals(methods, other.methods)
-                && Objects.equals(name, other.name) && Objects.equals(resource, other.resource);
+        return Objects.equals(instances, other.instances) && Objects.equals(groups, other.groups)
+                && Objects.equals(weights, other.weights) && Objects.equals(methods, other.methods)
+                && Objects.equals(name, other.name) && Objects.equals(resource, other.resource)
+                && backendProtocol == other.backendProtocol && Objects.equals(connectionPool, other.connectionPool)
+                && loadBalancingStrategy == other.loadBalancingStrategy && Objects.equals(consistentHash, other.consistentHash)
+                && Objects.equals(stickySession, other.stickySession) && Objects.equals(slowStart, other.slowStart)
+                && Objects.equals(healthCheck, other.healthCheck)
+                && Objects.equals(outlierDetection, other.outlierDetection) && Objects.equals(cache, other.cache)
+                && Objects.equals(compression, other.compression)
+                && Objects.equals(concurrencyLimit, other.concurrencyLimit) && Objects.equals(rateLimit, other.rateLimit)
+                && Objects.equals(retry, other.retry) && Objects.equals(hedge, other.hedge);
     }
 
 
@@ -253,6 +741,11 @@ public class NetworkProxyNode implements INetworkProxyNode, Serializable {
      */
     @Override
     public String toString() {
-        return "NetworkProxyNode [name=" + name + ", resource=" + resource + ", methods=" + methods + ", instances=" + instances + "]";
+        return "NetworkProxyNode [name=" + name + ", resource=" + resource + ", methods=" + methods + ", instances=" + instances
+                + ", groups=" + groups + ", weights=" + weights + ", backendProtocol=" + backendProtocol + ", connectionPool=" + connectionPool
+                + ", loadBalancingStrategy=" + loadBalancingStrategy + ", consistentHash=" + consistentHash + ", stickySession=" + stickySession
+                + ", slowStart=" + slowStart + ", healthCheck=" + healthCheck + ", outlierDetection=" + outlierDetection
+                + ", cache=" + cache + ", compression=" + compression + ", concurrencyLimit=" + concurrencyLimit + ", rateLimit=" + rateLimit + ", retry=" + retry
+                + ", hedge=" + hedge + "]";
     }
 }
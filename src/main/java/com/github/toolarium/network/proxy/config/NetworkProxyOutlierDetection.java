@@ -0,0 +1,251 @@
+/*
+ * NetworkProxyOutlierDetection.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the passive outlier detection of the instances of a network proxy node. The real traffic is observed:
+ * an instance with too many consecutive errors, connect failures or slow responses is ejected for a while.
+ *
+ * @author patrick
+ */
+public class NetworkProxyOutlierDetection implements Serializable {
+    private static final long serialVersionUID = -3071826416723957520L;
+    private boolean enabled;
+    private int consecutiveErrors;
+    private int consecutiveConnectFailures;
+    private int latencyThreshold;
+    private int baseEjectionTime;
+    private int maxEjectionTime;
+    private int maxEjectionPercent;
+
+
+    /**
+     * Constructor for NetworkProxyOutlierDetection
+     */
+    public NetworkProxyOutlierDetection() {
+        this.enabled = false;
+        this.consecutiveErrors = 5;
+        this.consecutiveConnectFailures = 3;
+        this.latencyThreshold = 0;
+        this.baseEjectionTime = 30000;
+        this.maxEjectionTime = 300000;
+        this.maxEjectionPercent = 50;
+    }
+
+
+    /**
+     * Check if the outlier detection is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the outlier detection
+     *
+     * @param enabled true to enable
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the number of consecutive server errors (5xx) or slow responses until an instance is ejected
+     *
+     * @return the number of consecutive errors
+     */
+    public int getConsecutiveErrors() {
+        return consecutiveErrors;
+    }
+
+
+    /**
+     * Set the number of consecutive errors
+     *
+     * @param consecutiveErrors the number of consecutive errors
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setConsecutiveErrors(int consecutiveErrors) {
+        if (consecutiveErrors > 0) {
+            this.consecutiveErrors = consecutiveErrors;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of consecutive connect failures until an instance is ejected
+     *
+     * @return the number of consecutive connect failures
+     */
+    public int getConsecutiveConnectFailures() {
+        return consecutiveConnectFailures;
+    }
+
+
+    /**
+     * Set the number of consecutive connect failures
+     *
+     * @param consecutiveConnectFailures the number of consecutive connect failures
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setConsecutiveConnectFailures(int consecutiveConnectFailures) {
+        if (consecutiveConnectFailures > 0) {
+            this.consecutiveConnectFailures = consecutiveConnectFailures;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the latency threshold in milliseconds: a slower response is counted as error. 0 disables the latency check.
+     *
+     * @return the latency threshold in milliseconds
+     */
+    public int getLatencyThreshold() {
+        return latencyThreshold;
+    }
+
+
+    /**
+     * Set the latency threshold in milliseconds
+     *
+     * @param latencyThreshold the latency threshold
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setLatencyThreshold(int latencyThreshold) {
+        if (latencyThreshold >= 0) {
+            this.latencyThreshold = latencyThreshold;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the base ejection time in milliseconds, it is doubled with every further ejection of an instance.
+     *
+     * @return the base ejection time in milliseconds
+     */
+    public int getBaseEjectionTime() {
+        return baseEjectionTime;
+    }
+
+
+    /**
+     * Set the base ejection time in milliseconds
+     *
+     * @param baseEjectionTime the base ejection time
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setBaseEjectionTime(int baseEjectionTime) {
+        if (baseEjectionTime > 0) {
+            this.baseEjectionTime = baseEjectionTime;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max ejection time in milliseconds
+     *
+     * @return the max ejection time in milliseconds
+     */
+    public int getMaxEjectionTime() {
+        return maxEjectionTime;
+    }
+
+
+    /**
+     * Set the max ejection time in milliseconds
+     *
+     * @param maxEjectionTime the max ejection time
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setMaxEjectionTime(int maxEjectionTime) {
+        if (maxEjectionTime > 0) {
+            this.maxEjectionTime = maxEjectionTime;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max percentage of instances of a node which can be ejected at the same time
+     *
+     * @return the max ejection percentage
+     */
+    public int getMaxEjectionPercent() {
+        return maxEjectionPercent;
+    }
+
+
+    /**
+     * Set the max ejection percentage
+     *
+     * @param maxEjectionPercent the max ejection percentage
+     * @return the outlier detection
+     */
+    public NetworkProxyOutlierDetection setMaxEjectionPercent(int maxEjectionPercent) {
+        if (maxEjectionPercent >= 0 && maxEjectionPercent <= 100) {
+            this.maxEjectionPercent = maxEjectionPercent;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, consecutiveErrors, consecutiveConnectFailures, latencyThreshold, baseEjectionTime, maxEjectionTime, maxEjectionPercent);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyOutlierDetection other = (NetworkProxyOutlierDetection) obj;
+        return enabled == other.enabled && consecutiveErrors == other.consecutiveErrors && consecutiveConnectFailures == other.consecutiveConnectFailures
+                && latencyThreshold == other.latencyThreshold && baseEjectionTime == other.baseEjectionTime
+                && maxEjectionTime == other.maxEjectionTime && maxEjectionPercent == other.maxEjectionPercent;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyOutlierDetection [enabled=" + enabled + ", consecutiveErrors=" + consecutiveErrors + ", consecutiveConnectFailures=" + consecutiveConnectFailures
+                + ", latencyThreshold=" + latencyThreshold + ", baseEjectionTime=" + baseEjectionTime + ", maxEjectionTime=" + maxEjectionTime
+                + ", maxEjectionPercent=" + maxEjectionPercent + "]";
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * NetworkProxyRateLimit.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the rate limit of the network proxy or of a network proxy node. Every client key has a token bucket which
+ * is refilled with the rate and holds at most the burst; a request without a token is rejected with 429 and a
+ * <code>Retry-After</code> header. The number of tracked keys is bounded, only refilled keys are replaced.
+ *
+ * @author patrick
+ */
+public class NetworkProxyRateLimit implements Serializable {
+    private static final long serialVersionUID = -6418315872053321705L;
+    private boolean enabled;
+    private RateLimitKey key;
+    private String header;
+    private int rate;
+    private int burst;
+    private int maxKeys;
+
+
+    /**
+     * Constructor for NetworkProxyRateLimit
+     */
+    public NetworkProxyRateLimit() {
+        this.enabled = false;
+        this.key = RateLimitKey.ADDRESS;
+        this.header = "X-API-Key";
+        this.rate = 100;
+        this.burst = 100;
+        this.maxKeys = 65536;
+    }
+
+
+    /**
+     * Check if the rate limit is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the rate limit
+     *
+     * @param enabled true to enable
+     * @return the rate limit
+     */
+    public NetworkProxyRateLimit setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the key of the rate limit
+     *
+     * @return the key
+     */
+    public RateLimitKey getKey() {
+        return key;
+    }
+
+
+    /**
+     * Set the key of the rate limit
+     *
+     * @param key the key
+     * @return the rate limit
+     */
+    public NetworkProxyRateLimit setKey(RateLimitKey key) {
+        if (key != null) {
+            this.key = key;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the name of the header in case the key is {@link RateLimitKey#HEADER}
+     *
+     * @return the name of the header
+     */
+    public String getHeader() {
+        return header;
+    }
+
+
+    /**
+     * Set the name of the header
+     *
+     * @param header the name of the header
+     * @return the rate limit
+     */
+    public NetworkProxyRateLimit setHeader(String header) {
+        if (header != null && !header.isBlank()) {
+            this.header = header.trim();
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of requests per second and key
+     *
+     * @return the rate
+     */
+    public int getRate() {
+        return rate;
+    }
+
+
+    /**
+     * Set the number of requests per second and key
+     *
+     * @param rate the rate
+     * @return the rate limit
+     */
+    public NetworkProxyRateLimit setRate(int rate) {
+        if (rate > 0) {
+            this.rate = rate;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max number of requests of a key in a burst
+     *
+     * @return the burst
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+
+    /**
+     * Set the max number of requests of a key in a burst
+     *
+     * @param burst the burst
+     * @return the rate limit
+     */
+    public NetworkProxyRateLimit setBurst(int burst) {
+        if (burst > 0) {
+            this.burst = burst;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max number of tracked keys
+     *
+     * @return the max number of keys
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+
+    /**
+     * Set the max number of tracked keys
+     *
+     * @param maxKeys the max number of keys
+     * @return the rate limit
+     */
+    public NetworkProxyRateLimit setMaxKeys(int maxKeys) {
+        if (maxKeys > 0) {
+            this.maxKeys = maxKeys;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, key, header, rate, burst, maxKeys);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyRateLimit other = (NetworkProxyRateLimit) obj;
+        return enabled == other.enabled && key == other.key && Objects.equals(header, other.header) && rate == other.rate && burst == other.burst
+                && maxKeys == other.maxKeys;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyRateLimit [enabled=" + enabled + ", key=" + key + ", header=" + header + ", rate=" + rate + ", burst=" + burst + ", maxKeys=" + maxKeys + "]";
+    }
+}
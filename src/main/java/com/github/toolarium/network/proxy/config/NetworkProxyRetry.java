@@ -0,0 +1,199 @@
+/*
+ * NetworkProxyRetry.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the retries of a network proxy node. A request is retried on another connection if the connect fails; if the
+ * request was already sent it is only retried in case of an idempotent method. A request body up to the max buffer
+ * size is buffered that it can be sent again. The retries are bounded by a budget: a percentage of the requests of the
+ * last seconds plus a min number of retries per second.
+ *
+ * @author patrick
+ */
+public class NetworkProxyRetry implements Serializable {
+    private static final long serialVersionUID = 7514080529916353874L;
+    private boolean enabled;
+    private int maxRetries;
+    private int budgetPercent;
+    private int minRetriesPerSecond;
+    private int maxBufferSize;
+
+
+    /**
+     * Constructor for NetworkProxyRetry
+     */
+    public NetworkProxyRetry() {
+        this.enabled = false;
+        this.maxRetries = 2;
+        this.budgetPercent = 20;
+        this.minRetriesPerSecond = 10;
+        this.maxBufferSize = 64 * 1024;
+    }
+
+
+    /**
+     * Check if the retries are enabled
+     *
+     * @return true if they are enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the retries
+     *
+     * @param enabled true to enable
+     * @return the retry
+     */
+    public NetworkProxyRetry setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the max number of retries of a request
+     *
+     * @return the max number of retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+
+    /**
+     * Set the max number of retries of a request
+     *
+     * @param maxRetries the max number of retries
+     * @return the retry
+     */
+    public NetworkProxyRetry setMaxRetries(int maxRetries) {
+        if (maxRetries >= 0) {
+            this.maxRetries = maxRetries;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the retry budget: the max retries in percent of the requests
+     *
+     * @return the budget in percent
+     */
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+
+    /**
+     * Set the retry budget in percent of the requests
+     *
+     * @param budgetPercent the budget in percent
+     * @return the retry
+     */
+    public NetworkProxyRetry setBudgetPercent(int budgetPercent) {
+        if (budgetPercent >= 0) {
+            this.budgetPercent = budgetPercent;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the number of retries per second which are allowed independent of the budget
+     *
+     * @return the min retries per second
+     */
+    public int getMinRetriesPerSecond() {
+        return minRetriesPerSecond;
+    }
+
+
+    /**
+     * Set the number of retries per second which are allowed independent of the budget
+     *
+     * @param minRetriesPerSecond the min retries per second
+     * @return the retry
+     */
+    public NetworkProxyRetry setMinRetriesPerSecond(int minRetriesPerSecond) {
+        if (minRetriesPerSecond >= 0) {
+            this.minRetriesPerSecond = minRetriesPerSecond;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max size of a request body in bytes which is buffered that the request can be retried
+     *
+     * @return the max buffer size in bytes
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+
+    /**
+     * Set the max size of a request body in bytes which is buffered
+     *
+     * @param maxBufferSize the max buffer size in bytes
+     * @return the retry
+     */
+    public NetworkProxyRetry setMaxBufferSize(int maxBufferSize) {
+        if (maxBufferSize >= 0) {
+            this.maxBufferSize = maxBufferSize;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, maxRetries, budgetPercent, minRetriesPerSecond, maxBufferSize);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyRetry other = (NetworkProxyRetry) obj;
+        return enabled == other.enabled && maxRetries == other.maxRetries && budgetPercent == other.budgetPercent
+                && minRetriesPerSecond == other.minRetriesPerSecond && maxBufferSize == other.maxBufferSize;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyRetry [enabled=" + enabled + ", maxRetries=" + maxRetries + ", budgetPercent=" + budgetPercent
+                + ", minRetriesPerSecond=" + minRetriesPerSecond + ", maxBufferSize=" + maxBufferSize + "]";
+    }
+}
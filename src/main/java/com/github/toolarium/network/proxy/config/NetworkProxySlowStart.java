@@ -0,0 +1,170 @@
+/*
+ * NetworkProxySlowStart.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the slow start of the instances of a network proxy node. An instance which is added or becomes available
+ * again gets only a part of its share of the requests during the window; its weight ramps up from the min weight to
+ * the full weight, linearly or exponentially.
+ *
+ * @author patrick
+ */
+public class NetworkProxySlowStart implements Serializable {
+    private static final long serialVersionUID = 5120934871530286641L;
+    private boolean enabled;
+    private long window;
+    private SlowStartMode mode;
+    private int minWeight;
+
+
+    /**
+     * Constructor for NetworkProxySlowStart
+     */
+    public NetworkProxySlowStart() {
+        this.enabled = false;
+        this.window = 30000;
+        this.mode = SlowStartMode.LINEAR;
+        this.minWeight = 10;
+    }
+
+
+    /**
+     * Check if the slow start is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the slow start
+     *
+     * @param enabled true to enable
+     * @return the slow start
+     */
+    public NetworkProxySlowStart setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the window of the slow start in milliseconds
+     *
+     * @return the window in milliseconds
+     */
+    public long getWindow() {
+        return window;
+    }
+
+
+    /**
+     * Set the window of the slow start in milliseconds
+     *
+     * @param window the window in milliseconds
+     * @return the slow start
+     */
+    public NetworkProxySlowStart setWindow(long window) {
+        if (window > 0) {
+            this.window = window;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the mode of the ramp up
+     *
+     * @return the mode
+     */
+    public SlowStartMode getMode() {
+        return mode;
+    }
+
+
+    /**
+     * Set the mode of the ramp up
+     *
+     * @param mode the mode
+     * @return the slow start
+     */
+    public NetworkProxySlowStart setMode(SlowStartMode mode) {
+        if (mode != null) {
+            this.mode = mode;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the weight at the beginning of the slow start in percent of the full weight
+     *
+     * @return the min weight in percent
+     */
+    public int getMinWeight() {
+        return minWeight;
+    }
+
+
+    /**
+     * Set the weight at the beginning of the slow start in percent of the full weight
+     *
+     * @param minWeight the min weight between 1 and 100
+     * @return the slow start
+     */
+    public NetworkProxySlowStart setMinWeight(int minWeight) {
+        if (minWeight > 0 && minWeight <= 100) {
+            this.minWeight = minWeight;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, window, mode, minWeight);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxySlowStart other = (NetworkProxySlowStart) obj;
+        return enabled == other.enabled && window == other.window && mode == other.mode && minWeight == other.minWeight;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxySlowStart [enabled=" + enabled + ", window=" + window + ", mode=" + mode + ", minWeight=" + minWeight + "]";
+    }
+}
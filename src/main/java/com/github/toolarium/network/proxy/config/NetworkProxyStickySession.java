@@ -0,0 +1,147 @@
+/*
+ * NetworkProxyStickySession.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+/**
+ * Defines the sticky sessions of a network proxy node. The proxy issues an affinity cookie with the compact route id of
+ * the instance which served a request and passes the following requests of the client to the same instance as long as
+ * it is available. If a session cookie is configured, e.g. <code>JSESSIONID</code>, the affinity cookie is only issued
+ * when the instance creates a session.
+ *
+ * @author patrick
+ */
+public class NetworkProxyStickySession implements Serializable {
+    private static final long serialVersionUID = -4925167420983735164L;
+    private boolean enabled;
+    private String cookie;
+    private String sessionCookie;
+
+
+    /**
+     * Constructor for NetworkProxyStickySession
+     */
+    public NetworkProxyStickySession() {
+        this.enabled = false;
+        this.cookie = "NETWORK_PROXY_ROUTE";
+        this.sessionCookie = null;
+    }
+
+
+    /**
+     * Check if the sticky sessions are enabled
+     *
+     * @return true if they are enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the sticky sessions
+     *
+     * @param enabled true to enable
+     * @return the sticky session
+     */
+    public NetworkProxyStickySession setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the name of the affinity cookie
+     *
+     * @return the name of the cookie
+     */
+    public String getCookie() {
+        return cookie;
+    }
+
+
+    /**
+     * Set the name of the affinity cookie
+     *
+     * @param cookie the name of the cookie
+     * @return the sticky session
+     */
+    public NetworkProxyStickySession setCookie(String cookie) {
+        if (cookie != null && !cookie.isBlank()) {
+            this.cookie = cookie.trim();
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the name of the session cookie of the instances
+     *
+     * @return the name of the session cookie or null if the affinity cookie is issued with every response
+     */
+    public String getSessionCookie() {
+        return sessionCookie;
+    }
+
+
+    /**
+     * Set the name of the session cookie of the instances, e.g. <code>JSESSIONID</code>
+     *
+     * @param sessionCookie the name of the session cookie or null
+     * @return the sticky session
+     */
+    public NetworkProxyStickySession setSessionCookie(String sessionCookie) {
+        if (sessionCookie == null || sessionCookie.isBlank()) {
+            this.sessionCookie = null;
+        } else {
+            this.sessionCookie = sessionCookie.trim();
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, cookie, sessionCookie);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyStickySession other = (NetworkProxyStickySession) obj;
+        return enabled == other.enabled && Objects.equals(cookie, other.cookie) && Objects.equals(sessionCookie, other.sessionCookie);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "NetworkProxyStickySession [enabled=" + enabled + ", cookie=" + cookie + ", sessionCookie=" + sessionCookie + "]";
+    }
+}
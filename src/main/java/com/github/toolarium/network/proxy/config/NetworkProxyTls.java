@@ -0,0 +1,327 @@
+/*
+ * NetworkProxyTls.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Defines the HTTPS listener of the network proxy. The certificates are read from a key store and from PEM files; the
+ * certificate of a connection is selected by the server name (SNI) of the client, the first certificate is the
+ * default. Resumed sessions skip the full handshake: by session tickets or by the server session cache. The session
+ * tickets are a setting of the JVM, see {@link com.github.toolarium.network.proxy.handler.tls.SslContextFactory}.
+ *
+ * @author patrick
+ */
+public class NetworkProxyTls implements Serializable {
+    private static final long serialVersionUID = -1733860291472560138L;
+    private static final List<String> DEFAULT_PROTOCOLS = Arrays.asList("TLSv1.3", "TLSv1.2");
+    private boolean enabled;
+    private int port;
+    private String keyStore;
+    private String keyStorePassword;
+    private String keyStoreType;
+    private List<NetworkProxyCertificate> certificates;
+    private List<String> protocols;
+    private int sessionCacheSize;
+    private int sessionTimeout;
+
+
+    /**
+     * Constructor for NetworkProxyTls
+     */
+    public NetworkProxyTls() {
+        this.enabled = false;
+        this.port = 8443;
+        this.keyStore = null;
+        this.keyStorePassword = null;
+        this.keyStoreType = "PKCS12";
+        this.certificates = new ArrayList<>();
+        this.protocols = new ArrayList<>(DEFAULT_PROTOCOLS);
+        this.sessionCacheSize = 20480;
+        this.sessionTimeout = 3600;
+    }
+
+
+    /**
+     * Check if the HTTPS listener is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enable or disable the HTTPS listener
+     *
+     * @param enabled true to enable
+     * @return the tls
+     */
+    public NetworkProxyTls setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+
+    /**
+     * Get the port of the HTTPS listener
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return port;
+    }
+
+
+    /**
+     * Set the port of the HTTPS listener
+     *
+     * @param port the port
+     * @return the tls
+     */
+    public NetworkProxyTls setPort(int port) {
+        if (port > 0) {
+            this.port = port;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the key store file
+     *
+     * @return the key store file or null
+     */
+    public String getKeyStore() {
+        return keyStore;
+    }
+
+
+    /**
+     * Set the key store file, all key entries are used as certificates
+     *
+     * @param keyStore the key store file or null
+     * @return the tls
+     */
+    public NetworkProxyTls setKeyStore(String keyStore) {
+        this.keyStore = keyStore;
+        return this;
+    }
+
+
+    /**
+     * Get the password of the key store and its keys
+     *
+     * @return the password or null
+     */
+    public String getKeyStorePassword() {
+        return keyStorePassword;
+    }
+
+
+    /**
+     * Set the password of the key store and its keys
+     *
+     * @param keyStorePassword the password or null
+     * @return the tls
+     */
+    public NetworkProxyTls setKeyStorePassword(String keyStorePassword) {
+        this.keyStorePassword = keyStorePassword;
+        return this;
+    }
+
+
+    /**
+     * Get the type of the key store
+     *
+     * @return the type of the key store
+     */
+    public String getKeyStoreType() {
+        return keyStoreType;
+    }
+
+
+    /**
+     * Set the type of the key store
+     *
+     * @param keyStoreType the type of the key store, e.g. PKCS12 or JKS
+     * @return the tls
+     */
+    public NetworkProxyTls setKeyStoreType(String keyStoreType) {
+        if (keyStoreType != null && !keyStoreType.isBlank()) {
+            this.keyStoreType = keyStoreType.trim();
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the certificates in PEM files
+     *
+     * @return the certificates
+     */
+    public List<NetworkProxyCertificate> getCertificates() {
+        return certificates;
+    }
+
+
+    /**
+     * Set the certificates in PEM files
+     *
+     * @param certificates the certificates
+     * @return the tls
+     */
+    public NetworkProxyTls setCertificates(List<NetworkProxyCertificate> certificates) {
+        this.certificates = certificates;
+        if (this.certificates == null) {
+            this.certificates = new ArrayList<>();
+        }
+        return this;
+    }
+
+
+    /**
+     * Add a certificate in PEM files
+     *
+     * @param certificate the PEM file of the certificate chain
+     * @param privateKey the PEM file of the private key
+     * @return the tls
+     */
+    public NetworkProxyTls addCertificate(String certificate, String privateKey) {
+        certificates.add(new NetworkProxyCertificate(certificate, privateKey));
+        return this;
+    }
+
+
+    /**
+     * Get the enabled protocols
+     *
+     * @return the protocols
+     */
+    public List<String> getProtocols() {
+        return protocols;
+    }
+
+
+    /**
+     * Set the enabled protocols
+     *
+     * @param protocols the protocols, null for the default
+     * @return the tls
+     */
+    public NetworkProxyTls setProtocols(List<String> protocols) {
+        if (protocols == null || protocols.isEmpty()) {
+            this.protocols = new ArrayList<>(DEFAULT_PROTOCOLS);
+        } else {
+            this.protocols = protocols;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the max number of sessions in the server session cache
+     *
+     * @return the max number of sessions, 0 for no limit
+     */
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+
+    /**
+     * Set the max number of sessions in the server session cache
+     *
+     * @param sessionCacheSize the max number of sessions, 0 for no limit
+     * @return the tls
+     */
+    public NetworkProxyTls setSessionCacheSize(int sessionCacheSize) {
+        if (sessionCacheSize >= 0) {
+            this.sessionCacheSize = sessionCacheSize;
+        }
+        return this;
+    }
+
+
+    /**
+     * Get the timeout of a cached session in seconds
+     *
+     * @return the timeout in seconds
+     */
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+
+    /**
+     * Set the timeout of a cached session in seconds
+     *
+     * @param sessionTimeout the timeout in seconds
+     * @return the tls
+     */
+    public NetworkProxyTls setSessionTimeout(int sessionTimeout) {
+        if (sessionTimeout > 0) {
+            this.sessionTimeout = sessionTimeout;
+        }
+        return this;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, port, keyStore, keyStorePassword, keyStoreType, certificates, protocols, sessionCacheSize, sessionTimeout);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        NetworkProxyTls other = (NetworkProxyTls) obj;
+        return enabled == other.enabled && port == other.port && Objects.equals(keyStore, other.keyStore)
+                && Objects.equals(keyStorePassword, other.keyStorePassword) && Objects.equals(keyStoreType, other.keyStoreType)
+                && Objects.equals(certificates, other.certificates) && Objects.equals(protocols, other.protocols)
+                && sessionCacheSize == other.sessionCacheSize && sessionTimeout == other.sessionTimeout;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        String password = null;
+        if (keyStorePassword != null) {
+            password = "...";
+        }
+
+        return "NetworkProxyTls [enabled=" + enabled + ", port=" + port + ", keyStore=" + keyStore + ", keyStorePassword=" + password
+                + ", keyStoreType=" + keyStoreType + ", certificates=" + certificates + ", protocols=" + protocols
+                + ", sessionCacheSize=" + sessionCacheSize + ", sessionTimeout=" + sessionTimeout + "]";
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * RateLimitKey.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+/**
+ * Defines by which key the requests are rate limited
+ * 
+ * @author patrick
+ */
+public enum RateLimitKey {
+    /** The address of the client */
+    ADDRESS,
+
+    /**
+     * The authenticated principal, the address of the client if the request is not authenticated. Only supported by the
+     * rate limit of a node which runs after the authentication.
+     */
+    PRINCIPAL,
+
+    /** The value of the configured header, e.g. an API key; the address of the client if the header is missing */
+    HEADER
+}
@@ -0,0 +1,19 @@
+/*
+ * SlowStartMode.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+/**
+ * Defines how the weight of an instance ramps up during the slow start
+ * 
+ * @author patrick
+ */
+public enum SlowStartMode {
+    /** The weight grows linearly from the min weight to the full weight */
+    LINEAR,
+
+    /** The weight grows exponentially from the min weight to the full weight, it stays low at the beginning */
+    EXPONENTIAL
+}
@@ -0,0 +1,19 @@
+/*
+ * WorkerMode.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.config;
+
+/**
+ * Defines on which threads the blocking handlers are executed
+ * 
+ * @author patrick
+ */
+public enum WorkerMode {
+    /** The blocking handlers are dispatched to the XNIO worker pool */
+    PLATFORM,
+
+    /** The blocking handlers are dispatched to a new virtual thread per task, it requires Java 21 or later */
+    VIRTUAL
+}
@@ -0,0 +1,222 @@
+/*
+ * CacheControl.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+
+/**
+ * The parsed directives of a <code>Cache-Control</code> header as far as they are relevant for a shared cache.
+ *
+ * @author patrick
+ */
+public final class CacheControl {
+    private static final CacheControl EMPTY = new CacheControl();
+    private boolean noStore;
+    private boolean noCache;
+    private boolean privateResponse;
+    private boolean publicResponse;
+    private boolean mustRevalidate;
+    private long maxAge;
+    private long sharedMaxAge;
+    private long staleWhileRevalidate;
+
+
+    /**
+     * Constructor for CacheControl
+     */
+    private CacheControl() {
+        this.maxAge = -1;
+        this.sharedMaxAge = -1;
+        this.staleWhileRevalidate = 0;
+    }
+
+
+    /**
+     * Parse a cache control header
+     *
+     * @param value the header value or null
+     * @return the cache control
+     */
+    public static CacheControl parse(String value) {
+        if (value == null || value.isBlank()) {
+            return EMPTY;
+        }
+
+        CacheControl result = new CacheControl();
+        for (String directive : value.split(",")) {
+            String name = directive.trim().toLowerCase();
+            String argument = null;
+            int index = name.indexOf('=');
+            if (index > 0) {
+                argument = name.substring(index + 1).trim();
+                name = name.substring(0, index).trim();
+            }
+
+            switch (name) {
+                case "no-store":
+                    result.noStore = true;
+                    break;
+                case "no-cache":
+                    result.noCache = true;
+                    break;
+                case "private":
+                    result.privateResponse = true;
+                    break;
+                case "public":
+                    result.publicResponse = true;
+                    break;
+                case "must-revalidate":
+                case "proxy-revalidate":
+                    result.mustRevalidate = true;
+                    break;
+                case "max-age":
+                    result.maxAge = parseSeconds(argument);
+                    break;
+                case "s-maxage":
+                    result.sharedMaxAge = parseSeconds(argument);
+                    break;
+                case "stale-while-revalidate":
+                    result.staleWhileRevalidate = Math.max(parseSeconds(argument), 0);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Check if the response must not be stored
+     *
+     * @return true if no-store is set
+     */
+    public boolean isNoStore() {
+        return noStore;
+    }
+
+
+    /**
+     * Check if a cached response must not be used without revalidation
+     *
+     * @return true if no-cache is set
+     */
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+
+    /**
+     * Check if a stale response must not be served
+     *
+     * @return true if must-revalidate is set
+     */
+    public boolean isMustRevalidate() {
+        return mustRevalidate;
+    }
+
+
+    /**
+     * Get the stale while revalidate period in seconds
+     *
+     * @return the stale while revalidate period in seconds
+     */
+    public long getStaleWhileRevalidate() {
+        if (mustRevalidate) {
+            return 0;
+        }
+        return staleWhileRevalidate;
+    }
+
+
+    /**
+     * Check if a response with this cache control can be stored in a shared cache
+     *
+     * @param authorized true if the request contains an authorization
+     * @return true if it can be stored
+     */
+    public boolean isStorable(boolean authorized) {
+        if (noStore || noCache || privateResponse) {
+            return false;
+        }
+        return !authorized || publicResponse || sharedMaxAge >= 0 || mustRevalidate;
+    }
+
+
+    /**
+     * Get the freshness lifetime of a response in seconds
+     *
+     * @param expires the expires header or null
+     * @param date the date header or null
+     * @return the freshness lifetime in seconds or -1 if it is not defined
+     */
+    public long getFreshnessLifetime(String expires, String date) {
+        if (sharedMaxAge >= 0) {
+            return sharedMaxAge;
+        }
+
+        if (maxAge >= 0) {
+            return maxAge;
+        }
+
+        if (expires == null) {
+            return -1;
+        }
+
+        final long expiresTime = parseDate(expires);
+        if (expiresTime < 0) {
+            // an invalid date means already expired
+            return 0;
+        }
+
+        long dateTime = parseDate(date);
+        if (dateTime < 0) {
+            dateTime = System.currentTimeMillis();
+        }
+        return Math.max((expiresTime - dateTime) / 1000, 0);
+    }
+
+
+    /**
+     * Parse seconds
+     *
+     * @param value the value
+     * @return the seconds or -1
+     */
+    private static long parseSeconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Parse a http date
+     *
+     * @param value the value
+     * @return the time in milliseconds or -1
+     */
+    private static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
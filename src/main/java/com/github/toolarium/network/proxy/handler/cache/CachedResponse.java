@@ -0,0 +1,459 @@
+/*
+ * CachedResponse.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * A cached response: status code, end-to-end headers and the body. It is immutable except the revalidation flag.
+ * A response without body which has only vary headers is the marker of a resource with variants. A response which
+ * is restored from the {@link MappedResponseStore} has to be released as soon as its body is written.
+ *
+ * @author patrick
+ */
+public class CachedResponse {
+    /** The cache status header */
+    public static final HttpString X_CACHE = new HttpString("X-Cache");
+    private static final int HEADER_OVERHEAD = 64;
+    private static final Set<HttpString> EXCLUDED_HEADERS = Set.of(Headers.CONNECTION, Headers.KEEP_ALIVE, Headers.PROXY_AUTHENTICATE, Headers.PROXY_AUTHORIZATION,
+                                                                  Headers.TE, Headers.TRAILER, Headers.TRANSFER_ENCODING, Headers.UPGRADE, Headers.CONTENT_LENGTH,
+                                                                  Headers.AGE, X_CACHE);
+    private final int statusCode;
+    private final HttpString[] headerNames;
+    private final String[] headerValues;
+    private final String[] vary;
+    private final ByteBuffer body;
+    private final long freshUntil;
+    private final long staleUntil;
+    private final long responseTime;
+    private final long initialAge;
+    private final AtomicBoolean revalidating;
+    private final Runnable release;
+
+
+    /**
+     * Constructor for CachedResponse
+     *
+     * @param template the template
+     * @param body the body
+     * @param now the current time in nanoseconds
+     */
+    protected CachedResponse(Template template, ByteBuffer body, long now) {
+        this.statusCode = template.statusCode;
+        this.headerNames = template.headerNames;
+        this.headerValues = template.headerValues;
+        this.vary = template.vary;
+        this.body = body.asReadOnlyBuffer();
+        this.responseTime = now;
+        this.initialAge = template.age;
+        this.freshUntil = now + TimeUnit.SECONDS.toNanos(Math.max(template.freshnessLifetime - template.age, 0));
+        this.staleUntil = freshUntil + TimeUnit.SECONDS.toNanos(template.staleWhileRevalidate);
+        this.revalidating = new AtomicBoolean(false);
+        this.release = null;
+    }
+
+
+    /**
+     * Constructor for a restored CachedResponse
+     *
+     * @param statusCode the status code
+     * @param headerNames the header names
+     * @param headerValues the header values
+     * @param vary the vary headers
+     * @param body the body
+     * @param responseTime the response time in nanoseconds
+     * @param initialAge the age in seconds at the response time
+     * @param freshUntil the end of the freshness in nanoseconds
+     * @param staleUntil the end of the stale period in nanoseconds
+     * @param release the release of the body or null
+     */
+    CachedResponse(int statusCode, HttpString[] headerNames, String[] headerValues, String[] vary, ByteBuffer body,
+                   long responseTime, long initialAge, long freshUntil, long staleUntil, Runnable release) {
+        this.statusCode = statusCode;
+        this.headerNames = headerNames;
+        this.headerValues = headerValues;
+        this.vary = vary;
+        this.body = body.asReadOnlyBuffer();
+        this.responseTime = responseTime;
+        this.initialAge = initialAge;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+        this.revalidating = new AtomicBoolean(false);
+        this.release = release;
+    }
+
+
+    /**
+     * Constructor for a vary marker
+     *
+     * @param vary the vary headers
+     * @param freshUntil the end of the freshness
+     * @param staleUntil the end of the stale period
+     */
+    private CachedResponse(String[] vary, long freshUntil, long staleUntil) {
+        this.statusCode = 0;
+        this.headerNames = new HttpString[0];
+        this.headerValues = new String[0];
+        this.vary = vary;
+        this.body = ByteBuffer.allocate(0);
+        this.responseTime = System.nanoTime();
+        this.initialAge = 0;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+        this.revalidating = new AtomicBoolean(false);
+        this.release = null;
+    }
+
+
+    /**
+     * Create the template of a cached response in case the response is storable in a shared cache
+     *
+     * @param statusCode the status code
+     * @param responseHeaders the response headers
+     * @param authorized true if the request contains an authorization
+     * @param maxEntrySize the max size of the body
+     * @return the template or null if the response is not storable
+     */
+    public static Template createTemplate(int statusCode, HeaderMap responseHeaders, boolean authorized, int maxEntrySize) {
+        if (statusCode != 200 || responseHeaders.contains(Headers.SET_COOKIE)) {
+            return null;
+        }
+
+        final String varyValue = join(responseHeaders.get(Headers.VARY));
+        final List<String> varyList = new ArrayList<>();
+        if (varyValue != null) {
+            for (String name : varyValue.split(",")) {
+                String trimmedName = name.trim();
+                if ("*".equals(trimmedName)) {
+                    return null;
+                }
+
+                if (!trimmedName.isEmpty()) {
+                    varyList.add(trimmedName.toLowerCase());
+                }
+            }
+        }
+
+        final CacheControl cacheControl = CacheControl.parse(join(responseHeaders.get(Headers.CACHE_CONTROL)));
+        if (!cacheControl.isStorable(authorized)) {
+            return null;
+        }
+
+        final long freshnessLifetime = cacheControl.getFreshnessLifetime(responseHeaders.getFirst(Headers.EXPIRES), responseHeaders.getFirst(Headers.DATE));
+        if (freshnessLifetime <= 0 && cacheControl.getStaleWhileRevalidate() <= 0) {
+            return null;
+        }
+
+        final String contentLength = responseHeaders.getFirst(Headers.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > maxEntrySize) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        long age = 0;
+        final String ageValue = responseHeaders.getFirst(Headers.AGE);
+        if (ageValue != null) {
+            try {
+                age = Math.max(Long.parseLong(ageValue.trim()), 0);
+            } catch (NumberFormatException e) {
+                age = 0;
+            }
+        }
+
+        final List<HttpString> names = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        for (HeaderValues headerValues : responseHeaders) {
+            if (!EXCLUDED_HEADERS.contains(headerValues.getHeaderName())) {
+                for (String value : headerValues) {
+                    names.add(headerValues.getHeaderName());
+                    values.add(value);
+                }
+            }
+        }
+
+        return new Template(statusCode, names.toArray(new HttpString[names.size()]), values.toArray(new String[values.size()]),
+                            varyList.toArray(new String[varyList.size()]), Math.max(freshnessLifetime, 0), cacheControl.getStaleWhileRevalidate(), age);
+    }
+
+
+    /**
+     * Create a vary marker of a response
+     *
+     * @param response the response with vary headers
+     * @return the vary marker
+     */
+    public static CachedResponse createVaryMarker(CachedResponse response) {
+        return new CachedResponse(response.vary, response.freshUntil, response.staleUntil);
+    }
+
+
+    /**
+     * Check if this is a vary marker
+     *
+     * @return true if it is a vary marker
+     */
+    public boolean isVaryMarker() {
+        return statusCode == 0;
+    }
+
+
+    /**
+     * Get the status code
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+
+    /**
+     * Get the lower case names of the vary headers
+     *
+     * @return the vary headers
+     */
+    public String[] getVary() {
+        return vary;
+    }
+
+
+    /**
+     * Get a read-only view of the body
+     *
+     * @return the body
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+
+    /**
+     * Get the content length
+     *
+     * @return the content length
+     */
+    public int getContentLength() {
+        return body.remaining();
+    }
+
+
+    /**
+     * Get the header names
+     *
+     * @return the header names
+     */
+    HttpString[] getHeaderNames() {
+        return headerNames;
+    }
+
+
+    /**
+     * Get the header values
+     *
+     * @return the header values
+     */
+    String[] getHeaderValues() {
+        return headerValues;
+    }
+
+
+    /**
+     * Get the end of the freshness
+     *
+     * @return the end of the freshness in nanoseconds
+     */
+    long getFreshUntil() {
+        return freshUntil;
+    }
+
+
+    /**
+     * Get the end of the stale period
+     *
+     * @return the end of the stale period in nanoseconds
+     */
+    long getStaleUntil() {
+        return staleUntil;
+    }
+
+
+    /**
+     * Copy the headers into the response headers
+     *
+     * @param responseHeaders the response headers
+     */
+    public void copyHeaders(HeaderMap responseHeaders) {
+        for (int i = 0; i < headerNames.length; i++) {
+            responseHeaders.add(headerNames[i], headerValues[i]);
+        }
+    }
+
+
+    /**
+     * Check if the response is fresh
+     *
+     * @param now the current time in nanoseconds
+     * @return true if it is fresh
+     */
+    public boolean isFresh(long now) {
+        return now - freshUntil < 0;
+    }
+
+
+    /**
+     * Check if the response is stale but can be served while it is revalidated
+     *
+     * @param now the current time in nanoseconds
+     * @return true if it can be served
+     */
+    public boolean isStaleWhileRevalidate(long now) {
+        return now - staleUntil < 0;
+    }
+
+
+    /**
+     * Get the age of the response in seconds
+     *
+     * @param now the current time in nanoseconds
+     * @return the age in seconds
+     */
+    public long getAge(long now) {
+        return initialAge + TimeUnit.NANOSECONDS.toSeconds(Math.max(now - responseTime, 0));
+    }
+
+
+    /**
+     * Start the revalidation
+     *
+     * @return true if the revalidation was not already started
+     */
+    public boolean startRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+
+    /**
+     * End the revalidation
+     */
+    public void endRevalidation() {
+        revalidating.set(false);
+    }
+
+
+    /**
+     * Release the body of the response, e.g. after it was written. A heap response doesn't need to be released.
+     */
+    public void release() {
+        if (release != null) {
+            release.run();
+        }
+    }
+
+
+    /**
+     * Get the weight of this response in bytes
+     *
+     * @return the weight
+     */
+    public int getWeight() {
+        int weight = body.capacity() + HEADER_OVERHEAD;
+        for (int i = 0; i < headerNames.length; i++) {
+            weight += headerNames[i].length() + headerValues[i].length() + HEADER_OVERHEAD;
+        }
+        return weight;
+    }
+
+
+    /**
+     * Join header values
+     *
+     * @param headerValues the header values or null
+     * @return the joined values or null
+     */
+    private static String join(HeaderValues headerValues) {
+        if (headerValues == null || headerValues.isEmpty()) {
+            return null;
+        }
+
+        if (headerValues.size() == 1) {
+            return headerValues.getFirst();
+        }
+        return String.join(",", headerValues);
+    }
+
+
+    /**
+     * The template of a cached response: all information except the body.
+     */
+    public static final class Template {
+        private final int statusCode;
+        private final HttpString[] headerNames;
+        private final String[] headerValues;
+        private final String[] vary;
+        private final long freshnessLifetime;
+        private final long staleWhileRevalidate;
+        private final long age;
+
+
+        /**
+         * Constructor for Template
+         *
+         * @param statusCode the status code
+         * @param headerNames the header names
+         * @param headerValues the header values
+         * @param vary the vary headers
+         * @param freshnessLifetime the freshness lifetime in seconds
+         * @param staleWhileRevalidate the stale while revalidate period in seconds
+         * @param age the age in seconds
+         */
+        Template(int statusCode, HttpString[] headerNames, String[] headerValues, String[] vary, long freshnessLifetime, long staleWhileRevalidate, long age) {
+            this.statusCode = statusCode;
+            this.headerNames = headerNames;
+            this.headerValues = headerValues;
+            this.vary = vary;
+            this.freshnessLifetime = freshnessLifetime;
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            this.age = age;
+        }
+
+
+        /**
+         * Get the lower case names of the vary headers
+         *
+         * @return the vary headers
+         */
+        public String[] getVary() {
+            return vary;
+        }
+
+
+        /**
+         * Create the cached response
+         *
+         * @param body the body
+         * @param now the current time in nanoseconds
+         * @return the cached response
+         */
+        public CachedResponse build(ByteBuffer body, long now) {
+            return new CachedResponse(this, body, now);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * CachingStreamSinkConduit.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+
+/**
+ * A stream sink conduit which copies the written response body. As soon as the body is completely written it is
+ * passed to the listener; a body which exceeds the max size or a truncated response is not passed.
+ *
+ * @author patrick
+ */
+public class CachingStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+    private final int maxSize;
+    private final Consumer<ByteBuffer> listener;
+    private byte[] buffer;
+    private int length;
+    private boolean abandoned;
+
+
+    /**
+     * Constructor for CachingStreamSinkConduit
+     *
+     * @param next the next conduit
+     * @param maxSize the max size of the body
+     * @param listener the listener of the complete body
+     */
+    public CachingStreamSinkConduit(StreamSinkConduit next, int maxSize, Consumer<ByteBuffer> listener) {
+        super(next);
+        this.maxSize = maxSize;
+        this.listener = listener;
+        this.buffer = new byte[Math.min(maxSize, 4096)];
+        this.length = 0;
+        this.abandoned = false;
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#write(java.nio.ByteBuffer)
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final int position = src.position();
+        final int written = next.write(src);
+        copy(src, position, written);
+        return written;
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#write(java.nio.ByteBuffer[], int, int)
+     */
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        final int[] positions = new int[len];
+        for (int i = 0; i < len; i++) {
+            positions[i] = srcs[offs + i].position();
+        }
+
+        final long written = next.write(srcs, offs, len);
+        for (int i = 0; i < len; i++) {
+            copy(srcs[offs + i], positions[i], srcs[offs + i].position() - positions[i]);
+        }
+        return written;
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#writeFinal(java.nio.ByteBuffer)
+     */
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#writeFinal(java.nio.ByteBuffer[], int, int)
+     */
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offs, len);
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#transferFrom(java.nio.channels.FileChannel, long, long)
+     */
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#transferFrom(org.xnio.channels.StreamSourceChannel, long, java.nio.ByteBuffer)
+     */
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#terminateWrites()
+     */
+    @Override
+    public void terminateWrites() throws IOException {
+        next.terminateWrites();
+        if (!abandoned) {
+            abandoned = true;
+            // trim the buffer that the weight of the cached body is exact
+            listener.accept(ByteBuffer.wrap(Arrays.copyOf(buffer, length)));
+        }
+        buffer = null;
+    }
+
+
+    /**
+     * @see org.xnio.conduits.AbstractStreamSinkConduit#truncateWrites()
+     */
+    @Override
+    public void truncateWrites() throws IOException {
+        abandoned = true;
+        buffer = null;
+        next.truncateWrites();
+    }
+
+
+    /**
+     * Copy the written bytes
+     *
+     * @param src the source buffer
+     * @param position the position before the write
+     * @param written the number of written bytes
+     */
+    private void copy(ByteBuffer src, int position, int written) {
+        if (abandoned || written <= 0) {
+            return;
+        }
+
+        if (length + written > maxSize) {
+            abandoned = true;
+            buffer = null;
+            return;
+        }
+
+        if (length + written > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(Math.max(buffer.length * 2, length + written), maxSize));
+        }
+
+        final ByteBuffer view = src.duplicate();
+        view.limit(position + written);
+        view.position(position);
+        view.get(buffer, length, written);
+        length += written;
+    }
+}
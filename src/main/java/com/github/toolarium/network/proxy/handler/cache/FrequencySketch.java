@@ -0,0 +1,138 @@
+/*
+ * FrequencySketch.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+
+/**
+ * A count-min sketch with 4 bit counters to estimate the access frequency of the cache entries (TinyLFU). The
+ * counters are halved after a sample period, therefore the frequencies age and the sketch adapts to a changed
+ * workload. It is not thread-safe.
+ *
+ * @author patrick
+ */
+public class FrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_FREQUENCY = 15;
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+
+    /**
+     * Constructor for FrequencySketch
+     *
+     * @param expectedEntries the expected number of entries
+     */
+    public FrequencySketch(int expectedEntries) {
+        int length = Integer.highestOneBit(Math.max(expectedEntries, 8) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+        this.size = 0;
+    }
+
+
+    /**
+     * Get the estimated frequency of an element
+     *
+     * @param hashCode the hash code of the element
+     * @return the estimated frequency, max. 15
+     */
+    public int frequency(int hashCode) {
+        final int hash = spread(hashCode);
+        final int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            final int index = indexOf(hash, i);
+            final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+
+    /**
+     * Increment the frequency of an element
+     *
+     * @param hashCode the hash code of the element
+     */
+    public void increment(int hashCode) {
+        final int hash = spread(hashCode);
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added) {
+            size++;
+            if (size >= sampleSize) {
+                reset();
+            }
+        }
+    }
+
+
+    /**
+     * Halve all counters
+     */
+    protected void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+
+
+    /**
+     * Increment a counter if it has not reached the max value
+     *
+     * @param index the index of the table
+     * @param counter the counter of the table entry (0-15)
+     * @return true if the counter was incremented
+     */
+    private boolean incrementAt(int index, int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Get the table index of a hash for a depth
+     *
+     * @param hash the hash
+     * @param depth the depth (0-3)
+     * @return the index
+     */
+    private int indexOf(int hash, int depth) {
+        long result = (hash + SEEDS[depth]) * SEEDS[depth];
+        result += result >>> 32;
+        return ((int) result) & tableMask;
+    }
+
+
+    /**
+     * Spread the bits of a hash code
+     *
+     * @param hashCode the hash code
+     * @return the spread hash
+     */
+    private static int spread(int hashCode) {
+        int result = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+        result = ((result >>> 16) ^ result) * 0x45d9f3b;
+        return (result >>> 16) ^ result;
+    }
+}
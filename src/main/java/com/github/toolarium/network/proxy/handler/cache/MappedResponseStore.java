@@ -0,0 +1,578 @@
+/*
+ * MappedResponseStore.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import io.undertow.util.HttpString;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A response store in a memory-mapped file. The file is split into segments which are written as a log, the oldest
+ * unpinned segment is recycled if the current segment is full. The records are located by an {@link OpenAddressingIndex}
+ * outside of the heap, its size is bounded by the min body size of the stored responses. A body is returned as a slice
+ * of the mapping that it can be written to the client channel without a copy; as long as the slice is not released its
+ * segment is pinned and skipped by the recycling, a slow reader therefore doesn't block the writes.
+ *
+ * <p>The file survives a restart: the segments are scanned on open to rebuild the index. A record is valid only if its
+ * generation matches the generation of its segment, records of a former generation are therefore ignored.</p>
+ *
+ * @author patrick
+ */
+public class MappedResponseStore implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedResponseStore.class);
+    private static final int SEGMENT_MAGIC = 0x4e505331;
+    private static final int RECORD_MAGIC = 0x4e505231;
+    private static final int SEGMENT_HEADER_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 64;
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    private static final int MIN_SEGMENTS = 4;
+    private static final int EXPECTED_RECORD_SIZE = 1024;
+    private static final int MAX_INDEX_ENTRIES = 1 << 22;
+    private static final int RECYCLING = -1;
+    private final Path file;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final Segment[] segments;
+    private final OpenAddressingIndex index;
+    private final StampedLock lock;
+    private Segment current;
+    private long sequence;
+    private volatile boolean closed;
+
+
+    /**
+     * Constructor for MappedResponseStore
+     *
+     * @param file the file
+     * @param size the size of the file in bytes
+     * @throws IOException In case the file could not be mapped
+     */
+    public MappedResponseStore(Path file, long size) throws IOException {
+        this(file, size, 0);
+    }
+
+
+    /**
+     * Constructor for MappedResponseStore
+     *
+     * @param file the file
+     * @param size the size of the file in bytes
+     * @param minBodySize the min body size of a stored response in bytes, it bounds the number of records and therefore
+     *        the size of the index
+     * @throws IOException In case the file could not be mapped
+     */
+    public MappedResponseStore(Path file, long size, int minBodySize) throws IOException {
+        int segmentCount = (int) Math.max(MIN_SEGMENTS, (size + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+        this.file = file;
+        this.segmentSize = (int) Math.max(size / segmentCount, SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) & ~7;
+        this.segments = new Segment[segmentCount];
+        final long expectedRecordSize = Math.max(EXPECTED_RECORD_SIZE, RECORD_HEADER_SIZE + (long) Math.max(minBodySize, 0));
+        this.index = new OpenAddressingIndex((int) Math.min((long) segmentCount * segmentSize / expectedRecordSize, MAX_INDEX_ENTRIES));
+        this.lock = new StampedLock();
+        this.closed = false;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long fileSize = (long) segmentCount * segmentSize;
+            final boolean restore = channel.size() == fileSize;
+            if (channel.size() > fileSize) {
+                channel.truncate(fileSize);
+            }
+
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = new Segment(i, channel.map(FileChannel.MapMode.READ_WRITE, (long) i * segmentSize, segmentSize));
+            }
+
+            if (!restore || !restore()) {
+                initialize();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Get a response. If a response is returned its segment is pinned until the response is released.
+     *
+     * @param key the key
+     * @return the response or null
+     */
+    public CachedResponse get(String key) {
+        if (closed) {
+            return null;
+        }
+
+        final long hash = OpenAddressingIndex.hash(key);
+        long stamp = lock.tryOptimisticRead();
+        long location = index.get(hash);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                location = index.get(hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if (location < 0) {
+            return null;
+        }
+
+        final Segment segment = segments[(int) (location >>> 48)];
+        if (!segment.pin()) {
+            return null;
+        }
+
+        try {
+            if ((segment.generation & 0xFFFF) != ((location >>> 32) & 0xFFFF)) {
+                // the segment was recycled in the meantime
+                segment.unpin();
+                return null;
+            }
+
+            final CachedResponse response = read(segment, (int) location, key);
+            if (response == null) {
+                segment.unpin();
+            }
+            return response;
+        } catch (RuntimeException e) {
+            segment.unpin();
+            LOG.debug("Could not read cached response [" + key + "] from [" + file + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Put a response. The response is not stored if it is larger than a segment, all other segments are pinned or the
+     * index is full.
+     *
+     * @param key the key
+     * @param response the response
+     * @return true if the response was stored
+     */
+    public boolean put(String key, CachedResponse response) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] headerBytes = encodeHeaders(response);
+        final ByteBuffer body = response.getBody();
+        final long recordSize = align(RECORD_HEADER_SIZE + (long) keyBytes.length + headerBytes.length + body.remaining());
+        if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            return false;
+        }
+
+        final long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return false;
+            }
+
+            Segment segment = current;
+            if (segment.writePosition + recordSize > segmentSize) {
+                segment = recycleOldestSegment();
+                if (segment == null) {
+                    return false;
+                }
+                current = segment;
+            }
+
+            final long nowNanos = System.nanoTime();
+            final long nowMillis = System.currentTimeMillis();
+            final int offset = segment.writePosition;
+            final MappedByteBuffer buffer = segment.buffer;
+            buffer.putInt(offset, 0);
+            buffer.putInt(offset + 4, segment.generation);
+            buffer.putInt(offset + 8, (int) recordSize);
+            buffer.putInt(offset + 12, keyBytes.length);
+            buffer.putInt(offset + 16, headerBytes.length);
+            buffer.putInt(offset + 20, body.remaining());
+            buffer.putInt(offset + 24, response.getStatusCode());
+            buffer.putInt(offset + 28, 0);
+            buffer.putLong(offset + 32, nowMillis);
+            buffer.putLong(offset + 40, response.getAge(nowNanos));
+            buffer.putLong(offset + 48, nowMillis + TimeUnit.NANOSECONDS.toMillis(response.getFreshUntil() - nowNanos));
+            buffer.putLong(offset + 56, nowMillis + TimeUnit.NANOSECONDS.toMillis(response.getStaleUntil() - nowNanos));
+            final ByteBuffer view = buffer.duplicate();
+            view.position(offset + RECORD_HEADER_SIZE);
+            view.put(keyBytes).put(headerBytes).put(body);
+
+            // the magic is written at last that an incomplete record is not restored
+            buffer.putInt(offset, RECORD_MAGIC);
+            segment.writePosition += (int) recordSize;
+
+            if (!index.put(OpenAddressingIndex.hash(key), location(segment, offset))) {
+                LOG.debug("The index of [" + file + "] is full, response [" + key + "] is not stored.");
+                return false;
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    /**
+     * Remove a response
+     *
+     * @param key the key
+     */
+    public void remove(String key) {
+        final long stamp = lock.writeLock();
+        try {
+            index.remove(OpenAddressingIndex.hash(key));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    /**
+     * Get the number of indexed responses
+     *
+     * @return the number of indexed responses
+     */
+    public int size() {
+        final long stamp = lock.readLock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+
+    /**
+     * Get the file
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        final long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+            // a pinned slice is still valid after the channel is closed, the mapping is released by the garbage collector
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not close the cache file [" + file + "]: " + e.getMessage());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    /**
+     * Initialize all segments, the content is discarded
+     */
+    private void initialize() {
+        index.clear();
+        sequence = 0;
+        for (Segment segment : segments) {
+            segment.generation = 1;
+            segment.sequence = 0;
+            segment.writePosition = SEGMENT_HEADER_SIZE;
+            writeSegmentHeader(segment);
+            segment.buffer.putInt(SEGMENT_HEADER_SIZE, 0);
+        }
+
+        current = segments[0];
+        current.sequence = ++sequence;
+        writeSegmentHeader(current);
+    }
+
+
+    /**
+     * Restore the segments and rebuild the index
+     *
+     * @return false if the file is not valid
+     */
+    private boolean restore() {
+        for (Segment segment : segments) {
+            final MappedByteBuffer buffer = segment.buffer;
+            if (buffer.getInt(0) != SEGMENT_MAGIC || buffer.getInt(16) != segmentSize) {
+                return false;
+            }
+            segment.generation = buffer.getInt(4);
+            segment.sequence = buffer.getLong(8);
+        }
+
+        // the newer segments are indexed last that their records replace older records of the same key
+        final List<Segment> ordered = new ArrayList<>(Arrays.asList(segments));
+        ordered.sort(Comparator.comparingLong(segment -> segment.sequence));
+        final long now = System.currentTimeMillis();
+        for (Segment segment : ordered) {
+            final MappedByteBuffer buffer = segment.buffer;
+            int offset = SEGMENT_HEADER_SIZE;
+            while (offset + RECORD_HEADER_SIZE <= segmentSize && buffer.getInt(offset) == RECORD_MAGIC && buffer.getInt(offset + 4) == segment.generation) {
+                final int recordSize = buffer.getInt(offset + 8);
+                if (recordSize < RECORD_HEADER_SIZE || offset + (long) recordSize > segmentSize) {
+                    break;
+                }
+
+                if (buffer.getLong(offset + 56) > now) {
+                    final byte[] keyBytes = new byte[buffer.getInt(offset + 12)];
+                    final ByteBuffer view = buffer.duplicate();
+                    view.position(offset + RECORD_HEADER_SIZE);
+                    view.get(keyBytes);
+                    index.put(OpenAddressingIndex.hash(new String(keyBytes, StandardCharsets.UTF_8)), location(segment, offset));
+                }
+                offset += recordSize;
+            }
+            segment.writePosition = offset;
+            sequence = Math.max(sequence, segment.sequence);
+        }
+
+        current = ordered.get(ordered.size() - 1);
+        LOG.info("Restored " + index.size() + " cached responses from [" + file + "].");
+        return true;
+    }
+
+
+    /**
+     * Recycle the oldest segment which is not pinned, the write lock is held
+     *
+     * @return the recycled segment or null if all other segments are pinned
+     */
+    private Segment recycleOldestSegment() {
+        Segment oldest = null;
+        for (Segment segment : segments) {
+            if (segment != current && segment.pins.get() == 0 && (oldest == null || segment.sequence < oldest.sequence)) {
+                oldest = segment;
+            }
+        }
+
+        if (oldest == null || !oldest.pins.compareAndSet(0, RECYCLING)) {
+            return null;
+        }
+
+        try {
+            final long segmentIndex = oldest.index;
+            index.removeIf(location -> (location >>> 48) == segmentIndex);
+            oldest.generation++;
+            oldest.sequence = ++sequence;
+            oldest.writePosition = SEGMENT_HEADER_SIZE;
+            writeSegmentHeader(oldest);
+            return oldest;
+        } finally {
+            oldest.pins.set(0);
+        }
+    }
+
+
+    /**
+     * Read a record, the segment is pinned
+     *
+     * @param segment the segment
+     * @param offset the offset of the record
+     * @param key the expected key
+     * @return the response or null if the record doesn't belong to the key
+     */
+    private CachedResponse read(Segment segment, int offset, String key) {
+        final MappedByteBuffer buffer = segment.buffer;
+        if (buffer.getInt(offset) != RECORD_MAGIC || buffer.getInt(offset + 4) != segment.generation) {
+            return null;
+        }
+
+        final int keyLength = buffer.getInt(offset + 12);
+        final int headerLength = buffer.getInt(offset + 16);
+        final int bodyLength = buffer.getInt(offset + 20);
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length != keyLength) {
+            return null;
+        }
+
+        for (int i = 0; i < keyLength; i++) {
+            if (buffer.get(offset + RECORD_HEADER_SIZE + i) != keyBytes[i]) {
+                // an other key with the same hash
+                return null;
+            }
+        }
+
+        final byte[] headerBytes = new byte[headerLength];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(offset + RECORD_HEADER_SIZE + keyLength);
+        view.get(headerBytes);
+        final String[] lines = new String(headerBytes, StandardCharsets.UTF_8).split("\n", -1);
+        final String[] vary = parseVary(lines[0]);
+        final int headerCount = lines.length - 1;
+        final HttpString[] headerNames = new HttpString[headerCount];
+        final String[] headerValues = new String[headerCount];
+        for (int i = 0; i < headerCount; i++) {
+            final String line = lines[i + 1];
+            final int index = line.indexOf(':');
+            headerNames[i] = new HttpString(line.substring(0, index));
+            headerValues[i] = line.substring(index + 1);
+        }
+
+        final long nowNanos = System.nanoTime();
+        final long nowMillis = System.currentTimeMillis();
+        final long storedAt = buffer.getLong(offset + 32);
+        view.limit(view.position() + bodyLength);
+        final ByteBuffer body = view.slice();
+        return new CachedResponse(buffer.getInt(offset + 24), headerNames, headerValues, vary, body,
+                                  nowNanos - TimeUnit.MILLISECONDS.toNanos(Math.max(nowMillis - storedAt, 0)), buffer.getLong(offset + 40),
+                                  nowNanos + TimeUnit.MILLISECONDS.toNanos(buffer.getLong(offset + 48) - nowMillis),
+                                  nowNanos + TimeUnit.MILLISECONDS.toNanos(buffer.getLong(offset + 56) - nowMillis),
+                                  segment::unpin);
+    }
+
+
+    /**
+     * Write the header of a segment
+     *
+     * @param segment the segment
+     */
+    private void writeSegmentHeader(Segment segment) {
+        segment.buffer.putInt(0, SEGMENT_MAGIC);
+        segment.buffer.putInt(4, segment.generation);
+        segment.buffer.putLong(8, segment.sequence);
+        segment.buffer.putInt(16, segmentSize);
+    }
+
+
+    /**
+     * Encode the vary headers and the headers of a response, one per line
+     *
+     * @param response the response
+     * @return the encoded headers
+     */
+    private static byte[] encodeHeaders(CachedResponse response) {
+        final StringBuilder result = new StringBuilder(String.join(",", response.getVary()));
+        final HttpString[] headerNames = response.getHeaderNames();
+        final String[] headerValues = response.getHeaderValues();
+        for (int i = 0; i < headerNames.length; i++) {
+            result.append('\n').append(headerNames[i]).append(':').append(headerValues[i]);
+        }
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Parse the vary headers
+     *
+     * @param value the encoded vary headers
+     * @return the vary headers
+     */
+    private static String[] parseVary(String value) {
+        if (value.isEmpty()) {
+            return new String[0];
+        }
+        return value.split(",");
+    }
+
+
+    /**
+     * Create the location of a record in the index
+     *
+     * @param segment the segment
+     * @param offset the offset
+     * @return the location
+     */
+    private static long location(Segment segment, int offset) {
+        return ((long) segment.index << 48) | ((long) (segment.generation & 0xFFFF) << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * Align a size to 8 bytes
+     *
+     * @param size the size
+     * @return the aligned size
+     */
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+
+    /**
+     * A segment of the file
+     */
+    private static final class Segment {
+        private final int index;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger pins;
+        private volatile int generation;
+        private long sequence;
+        private int writePosition;
+
+
+        /**
+         * Constructor for Segment
+         *
+         * @param index the index of the segment
+         * @param buffer the mapped buffer
+         */
+        Segment(int index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+            this.pins = new AtomicInteger(0);
+        }
+
+
+        /**
+         * Pin the segment that it is not recycled
+         *
+         * @return false if the segment is recycled at the moment
+         */
+        boolean pin() {
+            for (;;) {
+                final int count = pins.get();
+                if (count == RECYCLING) {
+                    return false;
+                }
+
+                if (pins.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+
+        /**
+         * Unpin the segment
+         */
+        void unpin() {
+            pins.decrementAndGet();
+        }
+    }
+}
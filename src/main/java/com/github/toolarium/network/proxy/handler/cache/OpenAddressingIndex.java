@@ -0,0 +1,240 @@
+/*
+ * OpenAddressingIndex.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+
+/**
+ * A compact hash table of long keys and long values with open addressing and linear probing. The slots are stored
+ * off-heap in a direct buffer, a removed slot is filled by backward shifting that no tombstones are needed. The
+ * key <code>0</code> marks a free slot.
+ *
+ * <p>The index is not thread-safe, a concurrent reader has to validate its result.</p>
+ *
+ * @author patrick
+ */
+public final class OpenAddressingIndex {
+    private static final int SLOT_SIZE = 16;
+    private final ByteBuffer slots;
+    private final int capacity;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+
+
+    /**
+     * Constructor for OpenAddressingIndex
+     *
+     * @param expectedEntries the expected number of entries
+     */
+    public OpenAddressingIndex(int expectedEntries) {
+        int slotCount = 16;
+        while (slotCount < expectedEntries * 2L && slotCount < (1 << 26)) {
+            slotCount <<= 1;
+        }
+
+        this.capacity = slotCount;
+        this.mask = slotCount - 1;
+        this.maxSize = slotCount / 4 * 3;
+        this.slots = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+        this.size = 0;
+    }
+
+
+    /**
+     * Hash a string into a key which is never <code>0</code>
+     *
+     * @param value the value
+     * @return the key
+     */
+    public static long hash(String value) {
+        // FNV-1a followed by a final mix
+        long result = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            result ^= value.charAt(i);
+            result *= 0x100000001b3L;
+        }
+
+        result ^= result >>> 33;
+        result *= 0xff51afd7ed558ccdL;
+        result ^= result >>> 33;
+        if (result == 0) {
+            return 1;
+        }
+        return result;
+    }
+
+
+    /**
+     * Get the value of a key
+     *
+     * @param key the key
+     * @return the value or -1 if the key is not contained
+     */
+    public long get(long key) {
+        int slot = spread(key) & mask;
+        for (int i = 0; i < capacity; i++) {
+            final long slotKey = slots.getLong(slot * SLOT_SIZE);
+            if (slotKey == key) {
+                return slots.getLong(slot * SLOT_SIZE + 8);
+            }
+
+            if (slotKey == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Put a value
+     *
+     * @param key the key, not <code>0</code>
+     * @param value the value, not negative
+     * @return false if the index is full
+     */
+    public boolean put(long key, long value) {
+        int slot = spread(key) & mask;
+        for (;;) {
+            final long slotKey = slots.getLong(slot * SLOT_SIZE);
+            if (slotKey == key) {
+                slots.putLong(slot * SLOT_SIZE + 8, value);
+                return true;
+            }
+
+            if (slotKey == 0) {
+                if (size >= maxSize) {
+                    return false;
+                }
+
+                slots.putLong(slot * SLOT_SIZE + 8, value);
+                slots.putLong(slot * SLOT_SIZE, key);
+                size++;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    /**
+     * Remove a key
+     *
+     * @param key the key
+     * @return the removed value or -1
+     */
+    public long remove(long key) {
+        int slot = spread(key) & mask;
+        for (int i = 0; i < capacity; i++) {
+            final long slotKey = slots.getLong(slot * SLOT_SIZE);
+            if (slotKey == key) {
+                final long value = slots.getLong(slot * SLOT_SIZE + 8);
+                delete(slot);
+                return value;
+            }
+
+            if (slotKey == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Remove all entries with a matching value
+     *
+     * @param predicate the predicate of the values
+     * @return the number of removed entries
+     */
+    public int removeIf(LongPredicate predicate) {
+        int removed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            // a deleted slot is filled by a shifted entry which has to be tested as well
+            while (slots.getLong(slot * SLOT_SIZE) != 0 && predicate.test(slots.getLong(slot * SLOT_SIZE + 8))) {
+                delete(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            slots.putLong(slot * SLOT_SIZE, 0);
+        }
+        size = 0;
+    }
+
+
+    /**
+     * Get the number of entries
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Get the number of slots
+     *
+     * @return the number of slots
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Delete a slot and shift the following entries of the probe sequence backwards
+     *
+     * @param slot the slot
+     */
+    private void delete(int slot) {
+        int hole = slot;
+        int current = slot;
+        for (;;) {
+            current = (current + 1) & mask;
+            final long key = slots.getLong(current * SLOT_SIZE);
+            if (key == 0) {
+                break;
+            }
+
+            // the entry can fill the hole if its home slot is not cyclically between the hole and its slot
+            final int home = spread(key) & mask;
+            if (((current - home) & mask) >= ((current - hole) & mask)) {
+                slots.putLong(hole * SLOT_SIZE, key);
+                slots.putLong(hole * SLOT_SIZE + 8, slots.getLong(current * SLOT_SIZE + 8));
+                hole = current;
+            }
+        }
+
+        slots.putLong(hole * SLOT_SIZE, 0);
+        size--;
+    }
+
+
+    /**
+     * Spread the key bits
+     *
+     * @param key the key
+     * @return the spread hash
+     */
+    private static int spread(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+}
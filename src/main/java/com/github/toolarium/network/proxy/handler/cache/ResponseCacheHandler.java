@@ -0,0 +1,626 @@
+/*
+ * ResponseCacheHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyCache;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import com.github.toolarium.network.proxy.handler.proxy.NodeProxyClient;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The response cache of a network proxy node. Cacheable responses of GET requests are stored in a {@link TinyLfuCache}
+ * bounded by bytes. A hit is served directly from the IO thread. A stale response within its
+ * <code>stale-while-revalidate</code> period is served as well and refreshed in the background. If a disk file is
+ * configured, bodies from the disk threshold on are stored in a {@link MappedResponseStore} instead of the heap;
+ * they are written from the mapping without a copy and are still available after a restart. Concurrent GET requests
+ * of a missing response wait for the {@link SingleFlight} of the first request instead of hitting the backend as well.
+ * A handler which replaces the handler of a changed node takes over the cache if the cache settings are unchanged, or
+ * else the disk store if the same file is mapped with the same size; a file is never mapped by two stores.
+ *
+ * @author patrick
+ */
+public class ResponseCacheHandler implements HttpHandler, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCacheHandler.class);
+    private static final int EXPECTED_ENTRY_SIZE = 4096;
+    private static final String HIT = "HIT";
+    private static final String STALE = "STALE";
+    private static final String MISS = "MISS";
+    private static final HttpString[] REVALIDATION_HEADERS = {Headers.ACCEPT, Headers.ACCEPT_ENCODING, Headers.ACCEPT_LANGUAGE, Headers.AUTHORIZATION};
+    private final HttpHandler next;
+    private final NetworkProxyCache configuration;
+    private final NodeProxyClient proxyClient;
+    private final TinyLfuCache<String, CachedResponse> cache;
+    private final MappedResponseStore diskStore;
+    private final SingleFlight singleFlight;
+    private final long maxRequestTime;
+
+
+    /**
+     * Private class, the http client of the background revalidation which will be created by accessing the holder class.
+     */
+    private static class HOLDER {
+        static final HttpClient INSTANCE = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+
+    /**
+     * Constructor for ResponseCacheHandler
+     *
+     * @param next the next handler
+     * @param configuration the cache configuration
+     * @param proxyClient the proxy client of the node, it is used to revalidate in the background
+     * @param maxRequestTime the max request time in milliseconds of a background revalidation
+     */
+    public ResponseCacheHandler(HttpHandler next, NetworkProxyCache configuration, NodeProxyClient proxyClient, long maxRequestTime) {
+        this(next, configuration, proxyClient, maxRequestTime, null);
+    }
+
+
+    /**
+     * Constructor for ResponseCacheHandler
+     *
+     * @param next the next handler
+     * @param configuration the cache configuration
+     * @param proxyClient the proxy client of the node, it is used to revalidate in the background
+     * @param maxRequestTime the max request time in milliseconds of a background revalidation
+     * @param previous the previous cache handler of the node whose cache is taken over or null
+     */
+    public ResponseCacheHandler(HttpHandler next, NetworkProxyCache configuration, NodeProxyClient proxyClient, long maxRequestTime, ResponseCacheHandler previous) {
+        this.next = next;
+        this.configuration = configuration;
+        this.proxyClient = proxyClient;
+        this.maxRequestTime = maxRequestTime;
+        if (previous != null && previous.configuration.equals(configuration)) {
+            this.cache = previous.cache;
+            this.diskStore = previous.diskStore;
+            this.singleFlight = previous.singleFlight;
+            return;
+        }
+
+        this.cache = new TinyLfuCache<>(configuration.getMaxSize(), (int) Math.min(configuration.getMaxSize() / EXPECTED_ENTRY_SIZE, Integer.MAX_VALUE), CachedResponse::getWeight);
+        if (previous != null && previous.diskStore != null && isSameDiskFile(previous.configuration, configuration)
+                && previous.configuration.getDiskSize() == configuration.getDiskSize()) {
+            this.diskStore = previous.diskStore;
+        } else {
+            this.diskStore = openDiskStore(configuration);
+        }
+
+        if (configuration.isCoalescing()) {
+            this.singleFlight = new SingleFlight(configuration.getCoalescingMaxWait());
+        } else {
+            this.singleFlight = null;
+        }
+    }
+
+
+    /**
+     * Check if a new cache of a node has to wait until the previous cache is closed: the disk file is mapped again with
+     * another size.
+     *
+     * @param previous the previous cache handler or null
+     * @param configuration the new cache configuration or null
+     * @return true if the previous cache has to be closed before the new cache is created
+     */
+    public static boolean isRemapped(ResponseCacheHandler previous, NetworkProxyCache configuration) {
+        return previous != null && previous.diskStore != null && configuration != null && configuration.isEnabled()
+                && isSameDiskFile(previous.configuration, configuration) && previous.configuration.getDiskSize() != configuration.getDiskSize();
+    }
+
+
+    /**
+     * Get the cache
+     *
+     * @return the cache
+     */
+    public TinyLfuCache<String, CachedResponse> getCache() {
+        return cache;
+    }
+
+
+    /**
+     * Get the disk store
+     *
+     * @return the disk store or null if it is not configured
+     */
+    public MappedResponseStore getDiskStore() {
+        return diskStore;
+    }
+
+
+    /**
+     * Get the coalescing of concurrent requests
+     *
+     * @return the single flight or null if the coalescing is disabled
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final HttpString method = exchange.getRequestMethod();
+        final boolean isGet = Methods.GET.equals(method);
+        if (!isGet && !Methods.HEAD.equals(method)) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        final HeaderMap requestHeaders = exchange.getRequestHeaders();
+        final CacheControl requestCacheControl = CacheControl.parse(requestHeaders.getFirst(Headers.CACHE_CONTROL));
+        if (requestCacheControl.isNoStore()) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        final String primaryKey = createPrimaryKey(exchange);
+        final long now = System.nanoTime();
+        if (!requestCacheControl.isNoCache() && !requestHeaders.contains(Headers.PRAGMA)) {
+            final CachedResponse response = lookup(primaryKey, requestHeaders);
+            if (response != null) {
+                if (response.isFresh(now)) {
+                    serve(exchange, response, now, HIT);
+                    return;
+                }
+
+                if (response.isStaleWhileRevalidate(now)) {
+                    revalidate(exchange, primaryKey, response);
+                    serve(exchange, response, now, STALE);
+                    return;
+                }
+                response.release();
+            }
+
+            if (singleFlight != null) {
+                final SingleFlight.Flight flight = singleFlight.get(primaryKey);
+                if (flight != null) {
+                    flight.await(exchange, this::proceed);
+                    return;
+                }
+            }
+        }
+
+        forward(exchange, primaryKey, true);
+    }
+
+
+    /**
+     * Forward a request to the backend and store a cacheable response
+     *
+     * @param exchange the exchange
+     * @param primaryKey the primary key
+     * @param lead true if the request can start a flight which is awaited by concurrent requests
+     * @throws Exception In case of an error
+     */
+    protected void forward(HttpServerExchange exchange, String primaryKey, boolean lead) throws Exception {
+        exchange.getResponseHeaders().put(CachedResponse.X_CACHE, MISS);
+        if (Methods.GET.equals(exchange.getRequestMethod())) {
+            final HeaderMap requestHeaders = exchange.getRequestHeaders();
+            final boolean authorized = requestHeaders.contains(Headers.AUTHORIZATION);
+            SingleFlight.Flight startedFlight = null;
+            if (lead && singleFlight != null) {
+                startedFlight = singleFlight.start(primaryKey, copyHeaders(requestHeaders, null));
+            }
+
+            final SingleFlight.Flight flight = startedFlight;
+            if (flight != null) {
+                // an error or a response which is not stored releases the waiting requests
+                exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                    flight.land(null);
+                    nextListener.proceed();
+                });
+            }
+
+            exchange.addResponseWrapper((factory, ex) -> {
+                final CachedResponse.Template template = CachedResponse.createTemplate(ex.getStatusCode(), ex.getResponseHeaders(), authorized, configuration.getMaxEntrySize());
+                if (template == null) {
+                    if (flight != null) {
+                        flight.land(null);
+                    }
+                    return factory.create();
+                }
+
+                final HeaderMap varyHeaders = copyHeaders(requestHeaders, template.getVary());
+                return new CachingStreamSinkConduit(factory.create(), configuration.getMaxEntrySize(), body -> {
+                    final CachedResponse response = template.build(body, System.nanoTime());
+                    store(primaryKey, varyHeaders, response);
+                    if (flight != null) {
+                        flight.land(response);
+                    }
+                });
+            });
+        }
+
+        next.handleRequest(exchange);
+    }
+
+
+    /**
+     * Lookup a cached response
+     *
+     * @param primaryKey the primary key
+     * @param requestHeaders the request headers
+     * @return the cached response or null
+     */
+    protected CachedResponse lookup(String primaryKey, HeaderMap requestHeaders) {
+        final CachedResponse response = get(primaryKey);
+        if (response == null || !response.isVaryMarker()) {
+            return response;
+        }
+
+        final String[] vary = response.getVary();
+        response.release();
+        return get(createVariantKey(primaryKey, vary, requestHeaders));
+    }
+
+
+    /**
+     * Store a response
+     *
+     * @param primaryKey the primary key
+     * @param requestHeaders the request headers
+     * @param response the response
+     */
+    protected void store(String primaryKey, HeaderMap requestHeaders, CachedResponse response) {
+        if (response.getVary().length == 0) {
+            put(primaryKey, response);
+        } else {
+            final CachedResponse varyMarker = CachedResponse.createVaryMarker(response);
+            cache.put(primaryKey, varyMarker);
+            if (put(createVariantKey(primaryKey, response.getVary(), requestHeaders), response)) {
+                // the variant is found after a restart only with its marker
+                diskStore.put(primaryKey, varyMarker);
+            }
+        }
+    }
+
+
+    /**
+     * Serve a cached response
+     *
+     * @param exchange the exchange
+     * @param response the cached response
+     * @param now the current time in nanoseconds
+     * @param cacheStatus the cache status
+     */
+    protected void serve(HttpServerExchange exchange, CachedResponse response, long now, String cacheStatus) {
+        exchange.setStatusCode(response.getStatusCode());
+        final HeaderMap responseHeaders = exchange.getResponseHeaders();
+        response.copyHeaders(responseHeaders);
+        responseHeaders.put(Headers.AGE, response.getAge(now));
+        responseHeaders.put(Headers.CONTENT_LENGTH, response.getContentLength());
+        responseHeaders.put(CachedResponse.X_CACHE, cacheStatus);
+
+        if (Methods.HEAD.equals(exchange.getRequestMethod())) {
+            response.release();
+            exchange.endExchange();
+        } else {
+            exchange.getResponseSender().send(response.getBody(), new ReleaseCallback(response));
+        }
+    }
+
+
+    /**
+     * Revalidate a stale response in the background. Only one revalidation per response is started. The instance is
+     * selected by the load balancer of the node among the available instances; if no instance is available, e.g. all
+     * are ejected or unhealthy, the revalidation is skipped and the stale response is served further.
+     *
+     * @param exchange the exchange
+     * @param primaryKey the primary key
+     * @param response the stale response
+     */
+    protected void revalidate(HttpServerExchange exchange, String primaryKey, CachedResponse response) {
+        if (!response.startRevalidation()) {
+            return;
+        }
+
+        final List<BackendInstance> instances = proxyClient.getAvailableInstances();
+        if (instances.isEmpty()) {
+            response.endRevalidation();
+            return;
+        }
+
+        final BackendInstance[] selectableInstances = instances.toArray(new BackendInstance[instances.size()]);
+        final BackendInstance instance = selectableInstances[proxyClient.getLoadBalancer().select(selectableInstances, exchange)];
+        final HeaderMap requestHeaders = copyHeaders(exchange.getRequestHeaders(), null);
+        try {
+            final HttpRequest.Builder builder = HttpRequest.newBuilder(instance.createRequestUri(exchange)).timeout(Duration.ofMillis(maxRequestTime)).GET();
+            for (HttpString name : REVALIDATION_HEADERS) {
+                addHeader(builder, requestHeaders, name.toString());
+            }
+            for (String name : response.getVary()) {
+                addHeader(builder, requestHeaders, name);
+            }
+
+            final boolean authorized = requestHeaders.contains(Headers.AUTHORIZATION);
+            final HttpRequest request = builder.build();
+
+            // the revalidation is an outstanding request of the instance that the load balancing takes it into account
+            final long startTimestamp = instance.start();
+            HOLDER.INSTANCE.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((backendResponse, e) -> {
+                try {
+                    instance.end(startTimestamp, backendResponse != null && backendResponse.statusCode() < 500);
+                    if (backendResponse != null) {
+                        final HeaderMap responseHeaders = new HeaderMap();
+                        for (Map.Entry<String, List<String>> header : backendResponse.headers().map().entrySet()) {
+                            if (!header.getKey().startsWith(":")) {
+                                responseHeaders.addAll(new HttpString(header.getKey()), header.getValue());
+                            }
+                        }
+
+                        final byte[] body = backendResponse.body();
+                        final CachedResponse.Template template = CachedResponse.createTemplate(backendResponse.statusCode(), responseHeaders, authorized, configuration.getMaxEntrySize());
+                        if (template != null && body.length <= configuration.getMaxEntrySize()) {
+                            store(primaryKey, requestHeaders, template.build(ByteBuffer.wrap(body), System.nanoTime()));
+                        }
+                    } else {
+                        LOG.debug("Could not revalidate [" + primaryKey + "]: " + e.getMessage());
+                    }
+                } finally {
+                    response.endRevalidation();
+                }
+            });
+        } catch (RuntimeException e) {
+            LOG.debug("Could not revalidate [" + primaryKey + "]: " + e.getMessage());
+            response.endRevalidation();
+        }
+    }
+
+
+    /**
+     * Check if the cache is taken over by another handler
+     *
+     * @param other the other handler or null
+     * @return true if the other handler uses the heap cache or the disk store of this handler
+     */
+    public boolean isSharedWith(ResponseCacheHandler other) {
+        return other != null && (other.cache == cache || (diskStore != null && other.diskStore == diskStore));
+    }
+
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        if (diskStore != null) {
+            diskStore.close();
+        }
+    }
+
+
+    /**
+     * Create the primary cache key of a request
+     *
+     * @param exchange the exchange
+     * @return the primary key
+     */
+    protected String createPrimaryKey(HttpServerExchange exchange) {
+        final String queryString = exchange.getQueryString();
+        if (queryString == null || queryString.isEmpty()) {
+            return exchange.getHostAndPort() + exchange.getRequestURI();
+        }
+        return exchange.getHostAndPort() + exchange.getRequestURI() + '?' + queryString;
+    }
+
+
+    /**
+     * Create the key of a variant
+     *
+     * @param primaryKey the primary key
+     * @param vary the vary headers
+     * @param requestHeaders the request headers
+     * @return the variant key
+     */
+    protected String createVariantKey(String primaryKey, String[] vary, HeaderMap requestHeaders) {
+        final StringBuilder result = new StringBuilder(primaryKey);
+        for (String name : vary) {
+            result.append('\n').append(name).append(':');
+            final HeaderValues values = requestHeaders.get(name);
+            if (values != null) {
+                result.append(String.join(",", values));
+            }
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * Proceed a request which waited for a flight
+     *
+     * @param exchange the exchange
+     * @param response the response of the flight or null
+     * @throws Exception In case of an error
+     */
+    private void proceed(HttpServerExchange exchange, CachedResponse response) throws Exception {
+        if (response != null) {
+            serve(exchange, response, System.nanoTime(), HIT);
+        } else {
+            forward(exchange, createPrimaryKey(exchange), false);
+        }
+    }
+
+
+    /**
+     * Get a response from the heap or the disk
+     *
+     * @param key the key
+     * @return the response or null
+     */
+    private CachedResponse get(String key) {
+        final CachedResponse response = cache.get(key);
+        if (response != null || diskStore == null) {
+            return response;
+        }
+        return diskStore.get(key);
+    }
+
+
+    /**
+     * Put a response into the disk if its body reaches the threshold, otherwise into the heap
+     *
+     * @param key the key
+     * @param response the response
+     * @return true if the response was stored on the disk
+     */
+    private boolean put(String key, CachedResponse response) {
+        if (diskStore == null) {
+            cache.put(key, response);
+            return false;
+        }
+
+        if (response.getContentLength() >= configuration.getDiskThreshold() && diskStore.put(key, response)) {
+            cache.remove(key);
+            return true;
+        }
+
+        cache.put(key, response);
+        diskStore.remove(key);
+        return false;
+    }
+
+
+    /**
+     * Open the disk store
+     *
+     * @param configuration the cache configuration
+     * @return the disk store or null
+     */
+    private static MappedResponseStore openDiskStore(NetworkProxyCache configuration) {
+        if (configuration.getDiskFile() == null || configuration.getDiskFile().isBlank()) {
+            return null;
+        }
+
+        try {
+            return new MappedResponseStore(Paths.get(configuration.getDiskFile()), configuration.getDiskSize(), configuration.getDiskThreshold());
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not open the cache file [" + configuration.getDiskFile() + "], only the heap is used: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Check if two cache configurations map the same disk file
+     *
+     * @param configuration the configuration
+     * @param other the other configuration
+     * @return true if both map the same file
+     */
+    private static boolean isSameDiskFile(NetworkProxyCache configuration, NetworkProxyCache other) {
+        return configuration.getDiskFile() != null && !configuration.getDiskFile().isBlank() && configuration.getDiskFile().equals(other.getDiskFile());
+    }
+
+
+    /**
+     * Copy request headers, they are used after the exchange is completed
+     *
+     * @param headers the headers
+     * @param names the names to copy or null to copy all
+     * @return the copy
+     */
+    private static HeaderMap copyHeaders(HeaderMap headers, String[] names) {
+        final HeaderMap result = new HeaderMap();
+        if (names == null) {
+            for (HeaderValues values : headers) {
+                result.addAll(values.getHeaderName(), values);
+            }
+        } else {
+            for (String name : names) {
+                final HeaderValues values = headers.get(name);
+                if (values != null) {
+                    result.addAll(values.getHeaderName(), values);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Add a request header to the backend request
+     *
+     * @param builder the request builder
+     * @param requestHeaders the request headers
+     * @param name the header name
+     */
+    private static void addHeader(HttpRequest.Builder builder, HeaderMap requestHeaders, String name) {
+        final HeaderValues values = requestHeaders.get(name);
+        if (values == null) {
+            return;
+        }
+
+        for (String value : values) {
+            try {
+                builder.header(name, value);
+            } catch (IllegalArgumentException e) {
+                LOG.debug("Restricted header [" + name + "] is not revalidated.");
+            }
+        }
+    }
+
+
+    /**
+     * Releases a cached response as soon as its body is written and ends the exchange.
+     */
+    private static final class ReleaseCallback implements IoCallback {
+        private final CachedResponse response;
+
+
+        /**
+         * Constructor for ReleaseCallback
+         *
+         * @param response the response
+         */
+        ReleaseCallback(CachedResponse response) {
+            this.response = response;
+        }
+
+
+        /**
+         * @see io.undertow.io.IoCallback#onComplete(io.undertow.server.HttpServerExchange, io.undertow.io.Sender)
+         */
+        @Override
+        public void onComplete(HttpServerExchange exchange, Sender sender) {
+            response.release();
+            IoCallback.END_EXCHANGE.onComplete(exchange, sender);
+        }
+
+
+        /**
+         * @see io.undertow.io.IoCallback#onException(io.undertow.server.HttpServerExchange, io.undertow.io.Sender, java.io.IOException)
+         */
+        @Override
+        public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+            response.release();
+            IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * SingleFlight.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.SameThreadExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.xnio.XnioExecutor;
+
+
+/**
+ * Collapses concurrent identical requests: the first request of a key starts a flight to the backend, the following
+ * requests of the same key are suspended until the flight lands. They are resumed on their own IO thread with the
+ * response of the flight, or without response if it was not cacheable, its vary headers don't match or the max wait
+ * is exceeded.
+ *
+ * @author patrick
+ */
+public class SingleFlight {
+    private final Map<String, Flight> flights;
+    private final long maxWait;
+    private final LongAdder coalescedCount;
+
+
+    /**
+     * Constructor for SingleFlight
+     *
+     * @param maxWait the max wait of a suspended request in milliseconds
+     */
+    public SingleFlight(long maxWait) {
+        this.flights = new ConcurrentHashMap<>();
+        this.maxWait = maxWait;
+        this.coalescedCount = new LongAdder();
+    }
+
+
+    /**
+     * Start a flight
+     *
+     * @param key the key
+     * @param requestHeaders the request headers of the leading request, they are compared with the vary headers of the response
+     * @return the flight or null if a flight of the key is already running
+     */
+    public Flight start(String key, HeaderMap requestHeaders) {
+        final Flight flight = new Flight(key, requestHeaders);
+        if (flights.putIfAbsent(key, flight) != null) {
+            return null;
+        }
+        return flight;
+    }
+
+
+    /**
+     * Get the running flight of a key
+     *
+     * @param key the key
+     * @return the flight or null
+     */
+    public Flight get(String key) {
+        return flights.get(key);
+    }
+
+
+    /**
+     * Get the number of running flights
+     *
+     * @return the number of running flights
+     */
+    public int size() {
+        return flights.size();
+    }
+
+
+    /**
+     * Get the number of requests which were served by the response of an other request
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+
+    /**
+     * The continuation of a suspended request
+     */
+    @FunctionalInterface
+    public interface Continuation {
+        /**
+         * Continue the request
+         *
+         * @param exchange the exchange
+         * @param response the response of the flight or null if the request has to be proxied
+         * @throws Exception In case of an error
+         */
+        void proceed(HttpServerExchange exchange, CachedResponse response) throws Exception;
+    }
+
+
+    /**
+     * A running request to the backend.
+     */
+    public final class Flight {
+        private final String key;
+        private final HeaderMap requestHeaders;
+        private final List<Waiter> waiters;
+        private boolean landed;
+        private CachedResponse response;
+
+
+        /**
+         * Constructor for Flight
+         *
+         * @param key the key
+         * @param requestHeaders the request headers
+         */
+        Flight(String key, HeaderMap requestHeaders) {
+            this.key = key;
+            this.requestHeaders = requestHeaders;
+            this.waiters = new ArrayList<>();
+            this.landed = false;
+        }
+
+
+        /**
+         * Suspend a request until the flight lands. It has to be called from the handler of the request.
+         *
+         * @param exchange the exchange
+         * @param continuation the continuation of the request
+         */
+        public void await(HttpServerExchange exchange, Continuation continuation) {
+            // the waiter is registered after the handler returned that the exchange can be dispatched again
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+                final Waiter waiter = new Waiter(exchange, continuation);
+                synchronized (this) {
+                    if (!landed) {
+                        waiters.add(waiter);
+                        waiter.timer = exchange.getIoThread().executeAfter(() -> timeout(waiter), maxWait, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                }
+
+                if (waiter.claim()) {
+                    waiter.resume(select(waiter.exchange));
+                }
+            });
+        }
+
+
+        /**
+         * Land the flight and resume the suspended requests. Only the first call has an effect.
+         *
+         * @param cachedResponse the response or null if the response is not cacheable
+         */
+        public void land(CachedResponse cachedResponse) {
+            final List<Waiter> suspended;
+            synchronized (this) {
+                if (landed) {
+                    return;
+                }
+
+                landed = true;
+                response = cachedResponse;
+                suspended = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+
+            flights.remove(key, this);
+            for (Waiter waiter : suspended) {
+                if (waiter.claim()) {
+                    waiter.timer.remove();
+                    waiter.resume(select(waiter.exchange));
+                }
+            }
+        }
+
+
+        /**
+         * Resume a waiter after the max wait
+         *
+         * @param waiter the waiter
+         */
+        private void timeout(Waiter waiter) {
+            if (!waiter.claim()) {
+                return;
+            }
+
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+            waiter.resume(null);
+        }
+
+
+        /**
+         * Select the response of a suspended request, the flight is landed
+         *
+         * @param exchange the exchange of the suspended request
+         * @return the response or null if the vary headers don't match
+         */
+        private CachedResponse select(HttpServerExchange exchange) {
+            if (response == null) {
+                return null;
+            }
+
+            final HeaderMap headers = exchange.getRequestHeaders();
+            for (String name : response.getVary()) {
+                if (!join(requestHeaders.get(name)).equals(join(headers.get(name)))) {
+                    return null;
+                }
+            }
+
+            coalescedCount.increment();
+            return response;
+        }
+
+
+        /**
+         * Join header values
+         *
+         * @param values the values or null
+         * @return the joined values
+         */
+        private String join(HeaderValues values) {
+            if (values == null) {
+                return "";
+            }
+            return String.join(",", values);
+        }
+    }
+
+
+    /**
+     * A suspended request
+     */
+    private static final class Waiter {
+        private final HttpServerExchange exchange;
+        private final Continuation continuation;
+        private final AtomicBoolean claimed;
+        private XnioExecutor.Key timer;
+
+
+        /**
+         * Constructor for Waiter
+         *
+         * @param exchange the exchange
+         * @param continuation the continuation
+         */
+        Waiter(HttpServerExchange exchange, Continuation continuation) {
+            this.exchange = exchange;
+            this.continuation = continuation;
+            this.claimed = new AtomicBoolean(false);
+        }
+
+
+        /**
+         * Claim the waiter, either by the landing or by the timeout
+         *
+         * @return true if it was not claimed before
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+
+        /**
+         * Resume the request on its IO thread
+         *
+         * @param response the response or null
+         */
+        void resume(CachedResponse response) {
+            exchange.dispatch(exchange.getIoThread(), ex -> continuation.proceed(ex, response));
+        }
+    }
+}
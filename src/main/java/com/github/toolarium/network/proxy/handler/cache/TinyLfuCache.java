@@ -0,0 +1,462 @@
+/*
+ * TinyLfuCache.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+
+/**
+ * A cache bounded by the weight (bytes) of its entries with a W-TinyLFU admission and eviction policy: new entries
+ * enter a small LRU window (1%), entries evicted from the window compete with the LRU victim of the main area
+ * by their estimated frequency. The main area is a segmented LRU with a probation and a protected (80%) segment.
+ *
+ * <p>Reads are lock-free: the access is only recorded if the policy lock is free, otherwise it is dropped as in
+ * a lossy read buffer. Writes hold the policy lock.</p>
+ *
+ * @author patrick
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TinyLfuCache<K, V> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = 3;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToIntFunction<V> weigher;
+    private final Map<K, Node<K, V>> data;
+    private final ReentrantLock lock;
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K, V> window;
+    private final AccessOrderDeque<K, V> probation;
+    private final AccessOrderDeque<K, V> protectedSegment;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder evictionCount;
+    private volatile long weightedSize;
+    private long windowWeight;
+    private long protectedWeight;
+
+
+    /**
+     * Constructor for TinyLfuCache
+     *
+     * @param maximumWeight the maximum weight of all entries
+     * @param expectedEntries the expected number of entries to size the frequency sketch
+     * @param weigher the weigher of the values
+     */
+    public TinyLfuCache(long maximumWeight, int expectedEntries, ToIntFunction<V> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(maximumWeight / 100, 1);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 80 / 100;
+        this.weigher = weigher;
+        this.data = new ConcurrentHashMap<>();
+        this.lock = new ReentrantLock();
+        this.sketch = new FrequencySketch(expectedEntries);
+        this.window = new AccessOrderDeque<>();
+        this.probation = new AccessOrderDeque<>();
+        this.protectedSegment = new AccessOrderDeque<>();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+        this.weightedSize = 0;
+        this.windowWeight = 0;
+        this.protectedWeight = 0;
+    }
+
+
+    /**
+     * Get a value
+     *
+     * @param key the key
+     * @return the value or null
+     */
+    public V get(K key) {
+        final Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount.increment();
+            if (lock.tryLock()) {
+                try {
+                    sketch.increment(key.hashCode());
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return null;
+        }
+
+        hitCount.increment();
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+
+    /**
+     * Put a value. A value which is heavier than the maximum weight is not cached.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        final int weight = weigher.applyAsInt(value);
+        if (weight > maximumWeight) {
+            remove(key);
+            return;
+        }
+
+        lock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                weightedSize += weight - node.weight;
+                if (node.queue == WINDOW) {
+                    windowWeight += weight - node.weight;
+                } else if (node.queue == PROTECTED) {
+                    protectedWeight += weight - node.weight;
+                }
+                node.value = value;
+                node.weight = weight;
+                onAccess(node);
+            } else {
+                node = new Node<>(key, value, weight);
+                data.put(key, node);
+                window.add(node);
+                windowWeight += weight;
+                weightedSize += weight;
+            }
+
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Remove a value
+     *
+     * @param key the key
+     * @return the removed value or null
+     */
+    public V remove(K key) {
+        lock.lock();
+        try {
+            final Node<K, V> node = data.get(key);
+            if (node == null) {
+                return null;
+            }
+
+            unlink(node);
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Remove all values
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the number of entries
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return data.size();
+    }
+
+
+    /**
+     * Get the weight of all entries
+     *
+     * @return the weight of all entries
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+
+    /**
+     * Get the maximum weight
+     *
+     * @return the maximum weight
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+
+    /**
+     * Get the number of cache hits
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+
+    /**
+     * Get the number of cache misses
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+
+    /**
+     * Get the number of evictions
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+
+    /**
+     * Record the access of an entry, the lock is held
+     *
+     * @param node the node
+     */
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == PROBATION) {
+            // promote to the protected segment
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedSegment.add(node);
+            protectedWeight += node.weight;
+
+            while (protectedWeight > protectedMaximum && protectedSegment.peekFirst() != null) {
+                final Node<K, V> demoted = protectedSegment.pollFirst();
+                protectedWeight -= demoted.weight;
+                demoted.queue = PROBATION;
+                probation.add(demoted);
+            }
+        } else if (node.queue == PROTECTED) {
+            protectedSegment.moveToBack(node);
+        }
+    }
+
+
+    /**
+     * Evict entries until the weight is below the maximum weight, the lock is held
+     */
+    private void evict() {
+        // the entries which overflow the window are candidates of the main area
+        Node<K, V> firstCandidate = null;
+        while (windowWeight > windowMaximum && window.peekFirst() != null) {
+            final Node<K, V> candidate = window.pollFirst();
+            windowWeight -= candidate.weight;
+            candidate.queue = PROBATION;
+            probation.add(candidate);
+            if (firstCandidate == null) {
+                firstCandidate = candidate;
+            }
+        }
+
+        while (weightedSize > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            if (victim == null) {
+                return;
+            }
+
+            final Node<K, V> candidate = firstCandidate;
+            if (candidate != null && candidate != victim && candidate.queue == PROBATION
+                    && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                // TinyLFU admission: the candidate has to be more frequent than the victim
+                victim = candidate;
+            }
+
+            if (victim == firstCandidate) {
+                firstCandidate = victim.next;
+            }
+            unlink(victim);
+            evictionCount.increment();
+        }
+    }
+
+
+    /**
+     * Remove a node from the data and its queue, the lock is held
+     *
+     * @param node the node
+     */
+    private void unlink(Node<K, V> node) {
+        if (node.queue == WINDOW) {
+            window.remove(node);
+            windowWeight -= node.weight;
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else if (node.queue == PROTECTED) {
+            protectedSegment.remove(node);
+            protectedWeight -= node.weight;
+        } else {
+            return;
+        }
+
+        node.queue = REMOVED;
+        weightedSize -= node.weight;
+        data.remove(node.key, node);
+    }
+
+
+    /**
+     * A cache entry
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private int weight;
+        private int queue;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+
+        /**
+         * Constructor for Node
+         *
+         * @param key the key
+         * @param value the value
+         * @param weight the weight
+         */
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.queue = WINDOW;
+        }
+    }
+
+
+    /**
+     * An intrusive doubly linked list in access order: the least recently used node is first.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    private static final class AccessOrderDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+
+        /**
+         * Get the first node
+         *
+         * @return the first node or null
+         */
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+
+        /**
+         * Remove the first node
+         *
+         * @return the first node or null
+         */
+        Node<K, V> pollFirst() {
+            final Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+
+        /**
+         * Add a node at the end
+         *
+         * @param node the node
+         */
+        void add(Node<K, V> node) {
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+
+        /**
+         * Remove a node
+         *
+         * @param node the node
+         */
+        void remove(Node<K, V> node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+
+            node.previous = null;
+            node.next = null;
+        }
+
+
+        /**
+         * Move a node to the end
+         *
+         * @param node the node
+         */
+        void moveToBack(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                add(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * CompressionHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.compression;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyCompression;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ResponseCommitListener;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Compresses the responses of a route with gzip or deflate as negotiated by the <code>Accept-Encoding</code> header. The
+ * decision is taken when the response starts, by its status, content type, length and encoding; the compressing
+ * conduit takes its deflater from a {@link DeflaterPool} of the IO thread and its buffers from the buffer pool of the
+ * connection, a compressed response allocates no deflater and no buffer of its own. A response with a compressible
+ * content type varies by <code>Accept-Encoding</code>.
+ *
+ * @author patrick
+ */
+public class CompressionHandler implements HttpHandler {
+    private static final String ACCEPT_ENCODING = Headers.ACCEPT_ENCODING_STRING;
+    private static final String ACCEPT_ENCODING_LOWER_CASE = ACCEPT_ENCODING.toLowerCase(Locale.ROOT);
+    private static final int MAX_DEFLATERS_PER_THREAD = 16;
+    private final HttpHandler next;
+    private final HttpHandler encodingHandler;
+    private final int minSize;
+    private final String[] contentTypes;
+    private final ResponseCommitListener varyListener;
+
+
+    /**
+     * Constructor for CompressionHandler
+     *
+     * @param next the next handler
+     * @param compression the compression settings
+     */
+    public CompressionHandler(HttpHandler next, NetworkProxyCompression compression) {
+        this.next = next;
+        this.minSize = compression.getMinSize();
+
+        final List<String> contentTypeList = compression.getContentTypes();
+        this.contentTypes = new String[contentTypeList.size()];
+        for (int i = 0; i < contentTypes.length; i++) {
+            contentTypes[i] = contentTypeList.get(i).trim().toLowerCase(Locale.ROOT);
+        }
+
+        final ContentEncodingRepository repository = new ContentEncodingRepository()
+                .addEncodingHandler("gzip", new GzipEncodingProvider(new DeflaterPool(compression.getLevel(), true, MAX_DEFLATERS_PER_THREAD)), 100, this::isCompressible)
+                .addEncodingHandler("deflate", new DeflateEncodingProvider(new DeflaterPool(compression.getLevel(), false, MAX_DEFLATERS_PER_THREAD)), 50, this::isCompressible);
+        this.encodingHandler = new EncodingHandler(next, repository);
+        this.varyListener = exchange -> {
+            if (isCompressibleContentType(exchange.getResponseHeaders().getFirst(Headers.CONTENT_TYPE))) {
+                addVary(exchange.getResponseHeaders());
+            }
+        };
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        exchange.addResponseCommitListener(varyListener);
+        if (!exchange.getRequestHeaders().contains(Headers.ACCEPT_ENCODING)) {
+            // nothing to negotiate
+            next.handleRequest(exchange);
+            return;
+        }
+
+        encodingHandler.handleRequest(exchange);
+    }
+
+
+    /**
+     * Add the compression handler
+     *
+     * @param compression the compression settings
+     * @param handlerToWrap the handler to wrap
+     * @return the handler
+     */
+    public static HttpHandler addHandler(final NetworkProxyCompression compression, final HttpHandler handlerToWrap) {
+        if (compression == null || !compression.isEnabled()) {
+            return handlerToWrap;
+        }
+
+        return new CompressionHandler(handlerToWrap, compression);
+    }
+
+
+    /**
+     * Check if the response of an exchange is compressed
+     *
+     * @param exchange the exchange
+     * @return true if the response is compressed
+     */
+    protected boolean isCompressible(HttpServerExchange exchange) {
+        final int statusCode = exchange.getStatusCode();
+        if (statusCode < 200 || statusCode == 204 || statusCode == 206 || statusCode == 304) {
+            return false;
+        }
+
+        final HeaderMap responseHeaders = exchange.getResponseHeaders();
+        if (responseHeaders.contains(Headers.CONTENT_ENCODING) || responseHeaders.contains(Headers.CONTENT_RANGE)) {
+            return false;
+        }
+
+        final String cacheControl = responseHeaders.getFirst(Headers.CACHE_CONTROL);
+        if (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-transform")) {
+            return false;
+        }
+
+        if (!isCompressibleContentType(responseHeaders.getFirst(Headers.CONTENT_TYPE))) {
+            return false;
+        }
+
+        // an unknown length is streamed and compressed
+        final String contentLength = responseHeaders.getFirst(Headers.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.trim()) >= minSize;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Check if a content type is compressible
+     *
+     * @param contentType the content type or null
+     * @return true if it starts with one of the configured content types
+     */
+    protected boolean isCompressibleContentType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+
+        for (String compressibleContentType : contentTypes) {
+            if (contentType.regionMatches(true, 0, compressibleContentType, 0, compressibleContentType.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Add <code>Accept-Encoding</code> to the <code>Vary</code> header of a response
+     *
+     * @param responseHeaders the response headers
+     */
+    private static void addVary(HeaderMap responseHeaders) {
+        final HeaderValues vary = responseHeaders.get(Headers.VARY);
+        if (vary != null) {
+            for (String value : vary) {
+                if ("*".equals(value.trim()) || value.toLowerCase(Locale.ROOT).contains(ACCEPT_ENCODING_LOWER_CASE)) {
+                    return;
+                }
+            }
+        }
+        responseHeaders.add(Headers.VARY, ACCEPT_ENCODING);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * DeflaterPool.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.compression;
+
+import io.undertow.util.ObjectPool;
+import io.undertow.util.PooledObject;
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+
+
+/**
+ * A pool of deflaters per thread. A response is compressed on the IO thread of its connection, therefore every IO
+ * thread keeps its own free deflaters without any synchronization: a deflater is taken when a response starts and
+ * reset and returned to the thread which releases it when the response ends. Only if more responses of a thread are
+ * compressed at the same time than the thread keeps, a deflater is created and released afterwards.
+ *
+ * @author patrick
+ */
+public class DeflaterPool implements ObjectPool<Deflater> {
+    private final int level;
+    private final boolean nowrap;
+    private final int maxPerThread;
+    private final ThreadLocal<ArrayDeque<Deflater>> deflaters;
+
+
+    /**
+     * Constructor for DeflaterPool
+     *
+     * @param level the compression level
+     * @param nowrap true for a raw deflate stream without zlib header, e.g. for gzip
+     * @param maxPerThread the max free deflaters per thread
+     */
+    public DeflaterPool(int level, boolean nowrap, int maxPerThread) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.maxPerThread = maxPerThread;
+        this.deflaters = ThreadLocal.withInitial(ArrayDeque::new);
+    }
+
+
+    /**
+     * @see io.undertow.util.ObjectPool#allocate()
+     */
+    @Override
+    public PooledObject<Deflater> allocate() {
+        Deflater deflater = deflaters.get().pollFirst();
+        if (deflater == null) {
+            deflater = new Deflater(level, nowrap);
+        }
+        return new PooledDeflater(deflater);
+    }
+
+
+    /**
+     * Get the number of free deflaters of the current thread
+     *
+     * @return the number of free deflaters
+     */
+    public int size() {
+        return deflaters.get().size();
+    }
+
+
+    /**
+     * Release a deflater to the current thread
+     *
+     * @param deflater the deflater
+     */
+    protected void release(Deflater deflater) {
+        final ArrayDeque<Deflater> free = deflaters.get();
+        if (free.size() < maxPerThread) {
+            deflater.reset();
+            free.addFirst(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+
+    /**
+     * A deflater taken from the pool, it is returned once when it is closed.
+     */
+    private final class PooledDeflater implements PooledObject<Deflater> {
+        private Deflater deflater;
+
+
+        /**
+         * Constructor for PooledDeflater
+         *
+         * @param deflater the deflater
+         */
+        PooledDeflater(Deflater deflater) {
+            this.deflater = deflater;
+        }
+
+
+        /**
+         * @see io.undertow.util.PooledObject#getObject()
+         */
+        @Override
+        public Deflater getObject() {
+            return deflater;
+        }
+
+
+        /**
+         * @see io.undertow.util.PooledObject#close()
+         */
+        @Override
+        public void close() {
+            if (deflater != null) {
+                release(deflater);
+                deflater = null;
+            }
+        }
+    }
+}
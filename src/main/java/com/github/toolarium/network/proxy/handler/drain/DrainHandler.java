@@ -0,0 +1,117 @@
+/*
+ * DrainHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.drain;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Tracks the in-flight exchanges for the graceful shutdown. As soon as the handler drains, the responses close their
+ * connection that the clients reconnect to another instance, and the shutdown waits until the in-flight exchanges are
+ * completed or the deadline is reached. The exchanges are counted by a shared completion listener, the waiting thread
+ * is only notified while the handler drains.
+ *
+ * @author patrick
+ */
+public class DrainHandler implements HttpHandler {
+    private final HttpHandler next;
+    private final AtomicLong activeExchanges;
+    private final ExchangeCompletionListener exchangeCompletionListener;
+    private final Object lock;
+    private volatile boolean draining;
+
+
+    /**
+     * Constructor for DrainHandler
+     *
+     * @param next the next handler
+     */
+    public DrainHandler(HttpHandler next) {
+        this.next = next;
+        this.activeExchanges = new AtomicLong();
+        this.lock = new Object();
+        this.draining = false;
+        this.exchangeCompletionListener = (exchange, nextListener) -> {
+            try {
+                if (activeExchanges.decrementAndGet() == 0 && draining) {
+                    synchronized (lock) {
+                        lock.notifyAll();
+                    }
+                }
+            } finally {
+                nextListener.proceed();
+            }
+        };
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        activeExchanges.incrementAndGet();
+        exchange.addExchangeCompleteListener(exchangeCompletionListener);
+        if (draining) {
+            exchange.setPersistent(false);
+        }
+        next.handleRequest(exchange);
+    }
+
+
+    /**
+     * Get the number of in-flight exchanges
+     *
+     * @return the number of in-flight exchanges
+     */
+    public long getActiveExchanges() {
+        return activeExchanges.get();
+    }
+
+
+    /**
+     * Check if the handler drains
+     *
+     * @return true if it drains
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+
+    /**
+     * Start to drain: the following responses close their connection
+     */
+    public void drain() {
+        draining = true;
+    }
+
+
+    /**
+     * Wait until the in-flight exchanges are completed
+     *
+     * @param timeout the timeout in milliseconds
+     * @return true if all exchanges are completed, false if the timeout elapsed
+     * @throws InterruptedException In case the thread was interrupted
+     */
+    public boolean awaitDrained(long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (lock) {
+            while (activeExchanges.get() > 0) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+        }
+        return true;
+    }
+}
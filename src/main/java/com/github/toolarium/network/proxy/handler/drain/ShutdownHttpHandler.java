@@ -0,0 +1,71 @@
+/*
+ * ShutdownHttpHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.drain;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import java.net.InetSocketAddress;
+
+
+/**
+ * Implements the shutdown handler: a POST request from the loopback address starts the graceful shutdown in its own
+ * thread and is answered immediately with 202, requests from other addresses are rejected with 403.
+ *
+ * @author patrick
+ */
+public final class ShutdownHttpHandler implements HttpHandler {
+    private final Runnable shutdown;
+
+
+    /**
+     * Constructor for ShutdownHttpHandler
+     *
+     * @param shutdown the graceful shutdown
+     */
+    private ShutdownHttpHandler(Runnable shutdown) {
+        this.shutdown = shutdown;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final InetSocketAddress sourceAddress = exchange.getSourceAddress();
+        if (sourceAddress == null || sourceAddress.getAddress() == null || !sourceAddress.getAddress().isLoopbackAddress()) {
+            exchange.setStatusCode(StatusCodes.FORBIDDEN);
+            exchange.endExchange();
+            return;
+        }
+
+        new Thread(shutdown, "networkproxy-shutdown").start();
+
+        exchange.setStatusCode(StatusCodes.ACCEPTED);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send("{ \"status\": \"DRAINING\" }");
+    }
+
+
+    /**
+     * Add the shutdown handler
+     *
+     * @param configuration the configuration
+     * @param routingHandler the routing handler
+     * @param shutdown the graceful shutdown
+     * @return the handler
+     */
+    public static RoutingHandler addHandler(final INetworkProxyConfiguration configuration, RoutingHandler routingHandler, Runnable shutdown) {
+        if (configuration.hasShutdown()) {
+            routingHandler.post(configuration.getShutdownPath(), new ShutdownHttpHandler(shutdown));
+        }
+        return routingHandler;
+    }
+}
@@ -6,18 +6,39 @@
 package com.github.toolarium.network.proxy.handler.health;
 
 import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import com.github.toolarium.network.proxy.handler.route.RouteHandler;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.RoutingHandler;
 import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 
 /**
- * Implements the health handler
+ * Implements the health handler. In case there are backend instances, their health and circuit state is reported
+ * as well; the state of the backend instances doesn't change the status of the network proxy. While the network proxy
+ * drains on shutdown the status is DOWN with 503 that the upstream load balancers stop to send requests.
  *
  * @author patrick
  */
 public final class HealthHttpHandler implements HttpHandler {
+    private final RouteHandler routeHandler;
+    private final BooleanSupplier draining;
+
+
+    /**
+     * Constructor for HealthHttpHandler
+     *
+     * @param routeHandler the route handler or null
+     * @param draining the supplier of the drain state
+     */
+    private HealthHttpHandler(RouteHandler routeHandler, BooleanSupplier draining) {
+        this.routeHandler = routeHandler;
+        this.draining = draining;
+    }
 
 
     /**
@@ -25,34 +46,71 @@ public final class HealthHttpHandler implements HttpHandler {
      */
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
+        List<BackendInstance> instances = List.of();
+        if (routeHandler != null) {
+            instances = routeHandler.getBackendRegistry().getInstances();
+        }
+
         exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
-        exchange.getResponseSender().send("{ \"status\": \"UP\" }");
-
-        /*
-        {
-            "status": "UP",
-            "checks": [
-                {
-                    "name": "I'm alive",
-                    "status": "UP"
-                }
-            ]
+        if (draining.getAsBoolean()) {
+            exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+            exchange.getResponseSender().send("{ \"status\": \"DOWN\" }");
+            return;
+        }
+
+        if (instances.isEmpty()) {
+            exchange.getResponseSender().send("{ \"status\": \"UP\" }");
+            return;
         }
-        */
+
+        StringBuilder result = new StringBuilder("{ \"status\": \"UP\", \"backends\": [");
+        for (int i = 0; i < instances.size(); i++) {
+            BackendInstance instance = instances.get(i);
+            if (i > 0) {
+                result.append(',');
+            }
+
+            String status = "DOWN";
+            if (instance.isAvailable()) {
+                status = "UP";
+            }
+
+            result.append(" { \"name\": \"").append(escape(instance.getKey()))
+                  .append("\", \"status\": \"").append(status)
+                  .append("\", \"healthy\": ").append(instance.isHealthy())
+                  .append(", \"circuitState\": \"").append(instance.getCircuitState())
+                  .append("\", \"ejections\": ").append(instance.getEjectionCount())
+                  .append(" }");
+        }
+        result.append(" ] }");
+        exchange.getResponseSender().send(result.toString());
     }
 
 
     /**
-     * Add basic authentication
+     * Add the health handler
      *
      * @param configuration the configuration
      * @param routingHandler the routing handler
+     * @param routeHandler the route handler of the backend instances or null
+     * @param draining the supplier of the drain state
      * @return the handler
      */
-    public static RoutingHandler addHandler(final INetworkProxyConfiguration configuration, RoutingHandler routingHandler) {
+    public static RoutingHandler addHandler(final INetworkProxyConfiguration configuration, RoutingHandler routingHandler, RouteHandler routeHandler, BooleanSupplier draining) {
         if (configuration.hasHealthCheck()) {
-            routingHandler.get(configuration.getHealthPath(), new HealthHttpHandler());
+            routingHandler.get(configuration.getHealthPath(), new HealthHttpHandler(routeHandler, draining));
         }
         return routingHandler;
     }
+
+
+    /**
+     * Escape a json string value
+     *
+     * @param value the value
+     * @return the escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * ConcurrencyLimitHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.limit;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyConcurrencyLimit;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+
+/**
+ * Sheds the load of a route: a request above the adaptive concurrency limit is rejected immediately with 503 and a
+ * <code>Retry-After</code> header instead of waiting for a connection of the backend. An admitted request is released
+ * by a shared completion listener which reports the latency from the recorded start time of the request.
+ *
+ * @author patrick
+ */
+public class ConcurrencyLimitHandler implements HttpHandler {
+    private final HttpHandler next;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final String retryAfter;
+    private final ExchangeCompletionListener exchangeCompletionListener;
+
+
+    /**
+     * Constructor for ConcurrencyLimitHandler
+     *
+     * @param next the next handler
+     * @param concurrencyLimit the concurrency limit settings
+     */
+    public ConcurrencyLimitHandler(HttpHandler next, NetworkProxyConcurrencyLimit concurrencyLimit) {
+        this.next = next;
+        this.concurrencyLimiter = new ConcurrencyLimiter(concurrencyLimit);
+        this.retryAfter = String.valueOf(concurrencyLimit.getRetryAfter());
+        this.exchangeCompletionListener = (exchange, nextListener) -> {
+            try {
+                final long requestStartTime = exchange.getRequestStartTime();
+                long latency = -1;
+                if (requestStartTime != -1) {
+                    latency = System.nanoTime() - requestStartTime;
+                }
+                concurrencyLimiter.release(latency, isDropped(exchange.getStatusCode()));
+            } finally {
+                nextListener.proceed();
+            }
+        };
+    }
+
+
+    /**
+     * Get the concurrency limiter
+     *
+     * @return the concurrency limiter
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!concurrencyLimiter.tryAcquire()) {
+            exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+            exchange.getResponseHeaders().put(Headers.RETRY_AFTER, retryAfter);
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.addExchangeCompleteListener(exchangeCompletionListener);
+        next.handleRequest(exchange);
+    }
+
+
+    /**
+     * Check if the backend dropped the request: it was not reachable, overloaded or too slow
+     *
+     * @param statusCode the status code
+     * @return true if the request was dropped
+     */
+    private static boolean isDropped(int statusCode) {
+        return statusCode == StatusCodes.BAD_GATEWAY || statusCode == StatusCodes.SERVICE_UNAVAILABLE || statusCode == StatusCodes.GATEWAY_TIME_OUT;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * ConcurrencyLimiter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.limit;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyConcurrencyLimit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The adaptive concurrency limiter of a node, a gradient algorithm driven by the observed latency. The short-term
+ * latency of every response is compared with the long-term latency (an exponentially weighted moving average): the
+ * gradient <code>tolerance * longRtt / shortRtt</code> shrinks the limit as soon as the latency grows above the
+ * tolerance, a queue allowance of <code>sqrt(limit)</code> lets it grow while the latency is stable. A dropped request
+ * (gateway error) reduces the limit multiplicatively. The limit doesn't grow while less than half of it is used.
+ * The admission only compares and increments the in-flight counter, the limit is updated under a lock.
+ *
+ * @author patrick
+ */
+public class ConcurrencyLimiter {
+    private static final double LONG_RTT_FACTOR = 2.0 / (600 + 1);
+    private static final double LONG_RTT_DRIFT = 0.95;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+    private final AtomicInteger inFlight;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRtt;
+
+
+    /**
+     * Constructor for ConcurrencyLimiter
+     *
+     * @param concurrencyLimit the concurrency limit settings
+     */
+    public ConcurrencyLimiter(NetworkProxyConcurrencyLimit concurrencyLimit) {
+        this.inFlight = new AtomicInteger();
+        this.minLimit = concurrencyLimit.getMinLimit();
+        this.maxLimit = Math.max(concurrencyLimit.getMaxLimit(), minLimit);
+        this.tolerance = 1.0 + concurrencyLimit.getTolerance() / 100.0;
+        this.estimatedLimit = Math.min(Math.max(concurrencyLimit.getInitialLimit(), minLimit), maxLimit);
+        this.limit = (int) estimatedLimit;
+        this.longRtt = 0;
+    }
+
+
+    /**
+     * Try to admit a request
+     *
+     * @return true if the request is admitted, it must be released afterwards; false if the limit is reached
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.get();
+        while (current < limit) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            current = inFlight.get();
+        }
+        return false;
+    }
+
+
+    /**
+     * Release an admitted request and update the limit
+     *
+     * @param rtt the latency in nanoseconds or -1 if it is unknown
+     * @param dropped true if the backend dropped the request
+     */
+    public void release(long rtt, boolean dropped) {
+        final int currentInFlight = inFlight.getAndDecrement();
+        if (dropped || rtt > 0) {
+            update(rtt, currentInFlight, dropped);
+        }
+    }
+
+
+    /**
+     * Get the current limit
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+
+    /**
+     * Get the number of requests in flight
+     *
+     * @return the number of requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+
+    /**
+     * Update the limit by a sample
+     *
+     * @param rtt the latency in nanoseconds
+     * @param currentInFlight the requests in flight including the sample
+     * @param dropped true if the backend dropped the request
+     */
+    protected synchronized void update(long rtt, int currentInFlight, boolean dropped) {
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF_RATIO);
+            limit = (int) estimatedLimit;
+            return;
+        }
+
+        final double shortRtt = rtt;
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) * LONG_RTT_FACTOR;
+        }
+
+        // the latency dropped a lot, let the long-term latency follow faster
+        if (longRtt / shortRtt > 2) {
+            longRtt *= LONG_RTT_DRIFT;
+        }
+
+        // the limit is not the bottleneck
+        if (currentInFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        final double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.min(Math.max(newLimit, minLimit), maxLimit);
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * RateLimitHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.limit;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyRateLimit;
+import com.github.toolarium.network.proxy.config.RateLimitKey;
+import io.undertow.security.api.SecurityContext;
+import io.undertow.security.idm.Account;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Limits the rate of the requests by client key. The key is resolved from objects which the exchange already holds
+ * (the client address, the name of the authenticated principal or a header value) and the token bucket is looked up
+ * in a {@link TokenBucketTable}, therefore an admitted request allocates nothing and runs on the I/O thread. A rejected
+ * request gets 429 and a <code>Retry-After</code> header. A request without the principal or the header of the key is
+ * limited by its client address; the principal is therefore only resolved by a handler which runs after the
+ * authentication.
+ *
+ * @author patrick
+ */
+public class RateLimitHandler implements HttpHandler {
+    private static final String UNKNOWN_ADDRESS = "-";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private final HttpHandler next;
+    private final RateLimitKey key;
+    private final HttpString header;
+    private final TokenBucketTable tokenBucketTable;
+
+
+    /**
+     * Constructor for RateLimitHandler
+     *
+     * @param next the next handler
+     * @param rateLimit the rate limit settings
+     */
+    public RateLimitHandler(HttpHandler next, NetworkProxyRateLimit rateLimit) {
+        this.next = next;
+        this.key = rateLimit.getKey();
+        this.header = new HttpString(rateLimit.getHeader());
+        this.tokenBucketTable = new TokenBucketTable(rateLimit.getRate(), rateLimit.getBurst(), rateLimit.getMaxKeys());
+    }
+
+
+    /**
+     * Get the token bucket table
+     *
+     * @return the token bucket table
+     */
+    public TokenBucketTable getTokenBucketTable() {
+        return tokenBucketTable;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final long waitTime = tokenBucketTable.tryAcquire(resolveKey(exchange), System.nanoTime());
+        if (waitTime == 0) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, Math.max((waitTime + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND, 1));
+        exchange.endExchange();
+    }
+
+
+    /**
+     * Add the rate limit handler
+     *
+     * @param rateLimit the rate limit settings or null
+     * @param handlerToWrap the handler to wrap
+     * @return the handler
+     */
+    public static HttpHandler addHandler(final NetworkProxyRateLimit rateLimit, final HttpHandler handlerToWrap) {
+        if (rateLimit == null || !rateLimit.isEnabled()) {
+            return handlerToWrap;
+        }
+
+        return new RateLimitHandler(handlerToWrap, rateLimit);
+    }
+
+
+    /**
+     * Resolve the client key of a request
+     *
+     * @param exchange the exchange
+     * @return the client key
+     */
+    protected Object resolveKey(HttpServerExchange exchange) {
+        if (RateLimitKey.PRINCIPAL.equals(key)) {
+            final SecurityContext securityContext = exchange.getSecurityContext();
+            if (securityContext != null) {
+                final Account account = securityContext.getAuthenticatedAccount();
+                if (account != null && account.getPrincipal() != null) {
+                    return account.getPrincipal().getName();
+                }
+            }
+        } else if (RateLimitKey.HEADER.equals(key)) {
+            final String value = exchange.getRequestHeaders().getFirst(header);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        final InetSocketAddress sourceAddress = exchange.getSourceAddress();
+        if (sourceAddress != null) {
+            final InetAddress address = sourceAddress.getAddress();
+            if (address != null) {
+                return address;
+            }
+        }
+        return UNKNOWN_ADDRESS;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * TokenBucketTable.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.limit;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A bounded table of token buckets. The table is split into lock stripes, every stripe keeps its buckets in parallel
+ * arrays which are organized in sets of a few slots: a key can only be stored in the set of its hash. If the set is
+ * full the least recently used bucket of the set which is refilled completely is replaced; such a bucket is equal to
+ * a new one, therefore the eviction loses nothing. A bucket which is still refilling is never evicted, otherwise a
+ * throttled client could push its own bucket out by other keys of the same set and come back with a full burst. If
+ * no bucket of the set can be replaced, the new key takes its tokens from the overflow bucket which is shared by all
+ * such keys of the stripe. The memory is bounded by the max number of keys. A lookup allocates nothing.
+ *
+ * @author patrick
+ */
+public class TokenBucketTable {
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int WAYS = 8;
+    private final double tokensPerNano;
+    private final double burst;
+    private final Stripe[] stripes;
+
+
+    /**
+     * Constructor for TokenBucketTable
+     *
+     * @param rate the tokens per second
+     * @param burst the max tokens of a bucket
+     * @param maxKeys the max number of keys
+     */
+    public TokenBucketTable(int rate, int burst, int maxKeys) {
+        this.tokensPerNano = (double) rate / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(burst, 1);
+
+        // the sets of a stripe: the next power of two of the required sets
+        final int sets = Integer.highestOneBit(Math.max((maxKeys - 1) / (STRIPES * WAYS), 0) * 2 + 1);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(sets);
+        }
+    }
+
+
+    /**
+     * Try to take a token of the bucket of a key
+     *
+     * @param key the key
+     * @param now the current time in nanoseconds
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    public long tryAcquire(Object key, long now) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x9E3779B9;
+        return stripes[hash & (STRIPES - 1)].tryAcquire(key, hash >>> STRIPE_BITS, now);
+    }
+
+
+    /**
+     * Get the max number of keys
+     *
+     * @return the max number of keys
+     */
+    public int getCapacity() {
+        return STRIPES * stripes[0].keys.length;
+    }
+
+
+    /**
+     * Get the number of tracked keys
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        int result = 0;
+        for (Stripe stripe : stripes) {
+            result += stripe.size();
+        }
+        return result;
+    }
+
+
+    /**
+     * A lock stripe of the table
+     */
+    private final class Stripe {
+        private final Object[] keys;
+        private final int[] hashes;
+        private final double[] tokens;
+        private final long[] timestamps;
+        private final int overflow;
+        private final int setMask;
+
+
+        /**
+         * Constructor for Stripe
+         *
+         * @param sets the number of sets, a power of two
+         */
+        Stripe(int sets) {
+            this.keys = new Object[sets * WAYS];
+            this.hashes = new int[sets * WAYS];
+            this.overflow = sets * WAYS;
+            this.tokens = new double[overflow + 1];
+            this.timestamps = new long[overflow + 1];
+            this.tokens[overflow] = burst;
+            this.timestamps[overflow] = System.nanoTime();
+            this.setMask = sets - 1;
+        }
+
+
+        /**
+         * Try to take a token of the bucket of a key
+         *
+         * @param key the key
+         * @param hash the hash of the key
+         * @param now the current time in nanoseconds
+         * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+         */
+        synchronized long tryAcquire(Object key, int hash, long now) {
+            final int start = (hash & setMask) * WAYS;
+            int victim = -1;
+            long victimAge = -1;
+            for (int i = start; i < start + WAYS; i++) {
+                final Object slotKey = keys[i];
+                if (slotKey == null) {
+                    if (victimAge != Long.MAX_VALUE) {
+                        victim = i;
+                        victimAge = Long.MAX_VALUE;
+                    }
+                } else if (hashes[i] == hash && slotKey.equals(key)) {
+                    return take(i, now);
+                } else if (now - timestamps[i] > victimAge && isRefilled(i, now)) {
+                    victim = i;
+                    victimAge = now - timestamps[i];
+                }
+            }
+
+            if (victim < 0) {
+                return take(overflow, now);
+            }
+
+            keys[victim] = key;
+            hashes[victim] = hash;
+            tokens[victim] = burst;
+            timestamps[victim] = now;
+            return take(victim, now);
+        }
+
+
+        /**
+         * Check if a bucket is refilled completely
+         *
+         * @param slot the slot of the bucket
+         * @param now the current time in nanoseconds
+         * @return true if the bucket holds the burst
+         */
+        private boolean isRefilled(int slot, long now) {
+            return tokens[slot] + Math.max(now - timestamps[slot], 0) * tokensPerNano >= burst;
+        }
+
+
+        /**
+         * Refill a bucket and try to take a token
+         *
+         * @param slot the slot of the bucket
+         * @param now the current time in nanoseconds
+         * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+         */
+        private long take(int slot, long now) {
+            double available = Math.min(burst, tokens[slot] + Math.max(now - timestamps[slot], 0) * tokensPerNano);
+            timestamps[slot] = now;
+            if (available >= 1) {
+                tokens[slot] = available - 1;
+                return 0;
+            }
+
+            tokens[slot] = available;
+            return (long) Math.ceil((1 - available) / tokensPerNano);
+        }
+
+
+        /**
+         * Get the number of tracked keys of the stripe
+         *
+         * @return the number of keys
+         */
+        synchronized int size() {
+            int result = 0;
+            for (Object key : keys) {
+                if (key != null) {
+                    result++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * LatencyHistogram.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A lock-free latency histogram with log-linear buckets as a HDR histogram: every power of two between 64
+ * microseconds and about 134 seconds is split into two linear sub buckets, the relative error is below 50%.
+ * The bucket is computed by the leading zeros of the value and the counters are striped {@link LongAdder}s, that
+ * recording costs a few nanoseconds also under contention.
+ *
+ * @author patrick
+ */
+public class LatencyHistogram {
+    private static final int MIN_EXPONENT = 6;
+    private static final int MAX_EXPONENT = 27;
+    private static final int SUB_BUCKET_BITS = 1;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long[] UPPER_BOUNDS = createUpperBounds();
+    private final LongAdder[] buckets;
+    private final LongAdder sum;
+
+
+    /**
+     * Constructor for LatencyHistogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[UPPER_BOUNDS.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+    }
+
+
+    /**
+     * Record a latency
+     *
+     * @param latency the latency in nanoseconds
+     */
+    public void record(long latency) {
+        final long value = Math.max(latency, 0);
+        buckets[bucketIndex(value / 1000L)].increment();
+        sum.add(value);
+    }
+
+
+    /**
+     * Get the number of recorded latencies
+     *
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+
+    /**
+     * Get the sum of the recorded latencies
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+
+    /**
+     * Get the counts of the buckets, the last bucket counts the latencies above the highest upper bound
+     *
+     * @return the counts of the buckets
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+
+    /**
+     * Get the number of buckets with an upper bound
+     *
+     * @return the number of buckets with an upper bound
+     */
+    public static int getUpperBoundCount() {
+        return UPPER_BOUNDS.length;
+    }
+
+
+    /**
+     * Get the inclusive upper bound of a bucket
+     *
+     * @param index the index of the bucket
+     * @return the upper bound in microseconds
+     */
+    public static long getUpperBound(int index) {
+        return UPPER_BOUNDS[index];
+    }
+
+
+    /**
+     * Get the bucket of a value
+     *
+     * @param micros the value in microseconds
+     * @return the index of the bucket
+     */
+    static int bucketIndex(long micros) {
+        if (micros <= (1L << MIN_EXPONENT)) {
+            return 0;
+        }
+
+        final long value = micros - 1;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return UPPER_BOUNDS.length;
+        }
+
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+
+    /**
+     * Create the upper bounds of the buckets
+     *
+     * @return the upper bounds in microseconds
+     */
+    private static long[] createUpperBounds() {
+        final long[] upperBounds = new long[1 + (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS];
+        upperBounds[0] = 1L << MIN_EXPONENT;
+        for (int exponent = MIN_EXPONENT; exponent < MAX_EXPONENT; exponent++) {
+            for (int subBucket = 0; subBucket < SUB_BUCKETS; subBucket++) {
+                upperBounds[1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket] = (1L << exponent) + ((subBucket + 1L) << (exponent - SUB_BUCKET_BITS));
+            }
+        }
+        return upperBounds;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * MetricsHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+
+/**
+ * Records the request metrics of a route. The latency is measured from the recorded start time of the request,
+ * the completion listener is shared by all requests.
+ *
+ * @author patrick
+ */
+public class MetricsHandler implements HttpHandler {
+    private final HttpHandler next;
+    private final RequestMetrics requestMetrics;
+    private final ExchangeCompletionListener exchangeCompletionListener;
+
+
+    /**
+     * Constructor for MetricsHandler
+     *
+     * @param next the next handler
+     * @param requestMetrics the request metrics
+     */
+    public MetricsHandler(HttpHandler next, RequestMetrics requestMetrics) {
+        this.next = next;
+        this.requestMetrics = requestMetrics;
+        this.exchangeCompletionListener = (exchange, nextListener) -> {
+            try {
+                final long requestStartTime = exchange.getRequestStartTime();
+                long latency = -1;
+                if (requestStartTime != -1) {
+                    latency = System.nanoTime() - requestStartTime;
+                }
+                requestMetrics.end(exchange.getStatusCode(), latency);
+            } finally {
+                nextListener.proceed();
+            }
+        };
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        requestMetrics.start();
+        exchange.addExchangeCompleteListener(exchangeCompletionListener);
+        next.handleRequest(exchange);
+    }
+}
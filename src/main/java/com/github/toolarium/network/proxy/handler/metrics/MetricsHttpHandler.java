@@ -0,0 +1,349 @@
+/*
+ * MetricsHttpHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import com.github.toolarium.network.proxy.handler.route.RouteHandler;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.Headers;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Supplier;
+import org.xnio.XnioWorker;
+import org.xnio.management.XnioWorkerMXBean;
+
+
+/**
+ * Implements the metrics handler: the metrics of the routes, the backend instances, the HTTPS listener and the XNIO
+ * worker are exposed in the Prometheus text format.
+ *
+ * @author patrick
+ */
+public final class MetricsHttpHandler implements HttpHandler {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX = "networkproxy_";
+    private static final String[] UPPER_BOUNDS = createUpperBounds();
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private final RouteHandler routeHandler;
+    private final Supplier<XnioWorker> workerSupplier;
+    private final boolean tls;
+
+
+    /**
+     * Constructor for MetricsHttpHandler
+     *
+     * @param routeHandler the route handler or null
+     * @param workerSupplier the supplier of the XNIO worker
+     * @param tls true if the HTTPS listener is enabled
+     */
+    private MetricsHttpHandler(RouteHandler routeHandler, Supplier<XnioWorker> workerSupplier, boolean tls) {
+        this.routeHandler = routeHandler;
+        this.workerSupplier = workerSupplier;
+        this.tls = tls;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        List<RouteMetrics> routeMetricsList = List.of();
+        if (routeHandler != null) {
+            routeMetricsList = routeHandler.getMetricsRegistry().getRouteMetrics();
+        }
+
+        StringBuilder result = new StringBuilder(4096);
+        appendRouteMetrics(result, routeMetricsList);
+        appendBackendMetrics(result, routeMetricsList);
+        if (tls && routeHandler != null) {
+            appendTlsMetrics(result, routeHandler.getMetricsRegistry().getTlsMetrics());
+        }
+        appendWorkerMetrics(result);
+
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, CONTENT_TYPE);
+        exchange.getResponseSender().send(result.toString());
+    }
+
+
+    /**
+     * Add the metrics handler
+     *
+     * @param configuration the configuration
+     * @param routingHandler the routing handler
+     * @param routeHandler the route handler or null
+     * @param workerSupplier the supplier of the XNIO worker, it may supply null
+     * @return the handler
+     */
+    public static RoutingHandler addHandler(final INetworkProxyConfiguration configuration, RoutingHandler routingHandler, RouteHandler routeHandler, Supplier<XnioWorker> workerSupplier) {
+        if (configuration.hasMetrics()) {
+            routingHandler.get(configuration.getMetricsPath(), new MetricsHttpHandler(routeHandler, workerSupplier, configuration.getTls() != null && configuration.getTls().isEnabled()));
+        }
+        return routingHandler;
+    }
+
+
+    /**
+     * Append the metrics of the routes
+     *
+     * @param result the result
+     * @param routeMetricsList the route metrics
+     */
+    private void appendRouteMetrics(StringBuilder result, List<RouteMetrics> routeMetricsList) {
+        final String requests = PREFIX + "requests_total";
+        appendHeader(result, requests, "counter", "The number of responses by route and status class.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            appendResponses(result, requests, routeLabels(routeMetrics), routeMetrics.getRequestMetrics());
+        }
+
+        final String inFlight = PREFIX + "requests_in_flight";
+        appendHeader(result, inFlight, "gauge", "The number of requests in flight by route.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            appendSample(result, inFlight, routeLabels(routeMetrics), routeMetrics.getRequestMetrics().getInFlight());
+        }
+
+        final String duration = PREFIX + "request_duration_seconds";
+        appendHeader(result, duration, "histogram", "The duration of the requests by route.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            appendHistogram(result, duration, routeLabels(routeMetrics), routeMetrics.getRequestMetrics().getLatency());
+        }
+    }
+
+
+    /**
+     * Append the metrics of the backend instances
+     *
+     * @param result the result
+     * @param routeMetricsList the route metrics
+     */
+    private void appendBackendMetrics(StringBuilder result, List<RouteMetrics> routeMetricsList) {
+        final String requests = PREFIX + "backend_requests_total";
+        appendHeader(result, requests, "counter", "The number of responses by backend instance and status class.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            for (BackendInstance instance : routeMetrics.getInstances()) {
+                appendResponses(result, requests, instanceLabels(routeMetrics, instance), instance.getMetrics());
+            }
+        }
+
+        final String inFlight = PREFIX + "backend_requests_in_flight";
+        appendHeader(result, inFlight, "gauge", "The number of outstanding requests by backend instance.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            for (BackendInstance instance : routeMetrics.getInstances()) {
+                appendSample(result, inFlight, instanceLabels(routeMetrics, instance), instance.getOutstandingRequests());
+            }
+        }
+
+        final String connectFailures = PREFIX + "backend_connect_failures_total";
+        appendHeader(result, connectFailures, "counter", "The number of failed connects by backend instance.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            for (BackendInstance instance : routeMetrics.getInstances()) {
+                appendSample(result, connectFailures, instanceLabels(routeMetrics, instance), instance.getMetrics().getConnectFailures());
+            }
+        }
+
+        final String up = PREFIX + "backend_up";
+        appendHeader(result, up, "gauge", "1 if the backend instance is available, otherwise 0.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            for (BackendInstance instance : routeMetrics.getInstances()) {
+                long available = 0;
+                if (instance.isAvailable()) {
+                    available = 1;
+                }
+                appendSample(result, up, instanceLabels(routeMetrics, instance), available);
+            }
+        }
+
+        final String duration = PREFIX + "backend_request_duration_seconds";
+        appendHeader(result, duration, "histogram", "The duration of the requests by backend instance.");
+        for (RouteMetrics routeMetrics : routeMetricsList) {
+            for (BackendInstance instance : routeMetrics.getInstances()) {
+                appendHistogram(result, duration, instanceLabels(routeMetrics, instance), instance.getMetrics().getLatency());
+            }
+        }
+    }
+
+
+    /**
+     * Append the metrics of the HTTPS listener
+     *
+     * @param result the result
+     * @param tlsMetrics the metrics of the HTTPS listener
+     */
+    private void appendTlsMetrics(StringBuilder result, TlsMetrics tlsMetrics) {
+        final String connections = PREFIX + "tls_connections_total";
+        appendHeader(result, connections, "counter", "The number of connections of the HTTPS listener with a completed handshake.");
+        appendSample(result, connections, "", tlsMetrics.getConnections());
+
+        final String handshakes = PREFIX + "tls_handshakes_total";
+        appendHeader(result, handshakes, "counter", "The number of handshakes of the HTTPS listener by type.");
+        appendSample(result, handshakes, "{type=\"full\"}", tlsMetrics.getFullHandshakes());
+        appendSample(result, handshakes, "{type=\"resumed\"}", tlsMetrics.getResumedHandshakes());
+    }
+
+
+    /**
+     * Append the metrics of the XNIO worker
+     *
+     * @param result the result
+     */
+    private void appendWorkerMetrics(StringBuilder result) {
+        XnioWorker worker = null;
+        if (workerSupplier != null) {
+            worker = workerSupplier.get();
+        }
+
+        if (worker == null) {
+            return;
+        }
+
+        final XnioWorkerMXBean mxBean = worker.getMXBean();
+        final String ioThreads = PREFIX + "io_threads";
+        appendHeader(result, ioThreads, "gauge", "The number of I/O threads.");
+        appendSample(result, ioThreads, "", mxBean.getIoThreadCount());
+
+        final String workerThreads = PREFIX + "worker_threads";
+        appendHeader(result, workerThreads, "gauge", "The number of worker threads by state.");
+        appendSample(result, workerThreads, "{state=\"core\"}", mxBean.getCoreWorkerPoolSize());
+        appendSample(result, workerThreads, "{state=\"max\"}", mxBean.getMaxWorkerPoolSize());
+        appendSample(result, workerThreads, "{state=\"current\"}", mxBean.getWorkerPoolSize());
+        appendSample(result, workerThreads, "{state=\"busy\"}", mxBean.getBusyWorkerThreadCount());
+
+        final String queueSize = PREFIX + "worker_queue_size";
+        appendHeader(result, queueSize, "gauge", "The number of tasks waiting for a worker thread.");
+        appendSample(result, queueSize, "", mxBean.getWorkerQueueSize());
+
+        double utilization = 0;
+        if (mxBean.getMaxWorkerPoolSize() > 0) {
+            utilization = (double) mxBean.getBusyWorkerThreadCount() / mxBean.getMaxWorkerPoolSize();
+        }
+        final String workerUtilization = PREFIX + "worker_utilization";
+        appendHeader(result, workerUtilization, "gauge", "The ratio of the busy worker threads to the max worker threads.");
+        result.append(workerUtilization).append(' ').append(utilization).append('\n');
+    }
+
+
+    /**
+     * Append the header of a metric
+     *
+     * @param result the result
+     * @param name the name
+     * @param type the type
+     * @param help the help
+     */
+    private void appendHeader(StringBuilder result, String name, String type, String help) {
+        result.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        result.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+
+    /**
+     * Append a sample
+     *
+     * @param result the result
+     * @param name the name
+     * @param labels the labels including the braces or an empty string
+     * @param value the value
+     */
+    private void appendSample(StringBuilder result, String name, String labels, long value) {
+        result.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+
+    /**
+     * Append the responses by status class, status classes without response are skipped
+     *
+     * @param result the result
+     * @param name the name
+     * @param labels the labels including the braces
+     * @param requestMetrics the request metrics
+     */
+    private void appendResponses(StringBuilder result, String name, String labels, RequestMetrics requestMetrics) {
+        final String labelPrefix = labels.substring(0, labels.length() - 1);
+        for (int i = 0; i < RequestMetrics.getStatusClassCount(); i++) {
+            final long count = requestMetrics.getResponseCount(i);
+            if (count > 0) {
+                appendSample(result, name, labelPrefix + ",status=\"" + RequestMetrics.getStatusClassName(i) + "\"}", count);
+            }
+        }
+    }
+
+
+    /**
+     * Append a histogram with cumulative buckets
+     *
+     * @param result the result
+     * @param name the name
+     * @param labels the labels including the braces
+     * @param histogram the histogram
+     */
+    private void appendHistogram(StringBuilder result, String name, String labels, LatencyHistogram histogram) {
+        final String labelPrefix = labels.substring(0, labels.length() - 1);
+        final long[] counts = histogram.getBucketCounts();
+        long cumulativeCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulativeCount += counts[i];
+            String upperBound = "+Inf";
+            if (i < UPPER_BOUNDS.length) {
+                upperBound = UPPER_BOUNDS[i];
+            }
+            appendSample(result, name + "_bucket", labelPrefix + ",le=\"" + upperBound + "\"}", cumulativeCount);
+        }
+        result.append(name).append("_sum").append(labels).append(' ').append(histogram.getSum() / NANOS_PER_SECOND).append('\n');
+        appendSample(result, name + "_count", labels, cumulativeCount);
+    }
+
+
+    /**
+     * Get the labels of a route
+     *
+     * @param routeMetrics the route metrics
+     * @return the labels
+     */
+    private String routeLabels(RouteMetrics routeMetrics) {
+        return "{node=\"" + escape(routeMetrics.getName()) + "\",route=\"" + escape(routeMetrics.getResource()) + "\"}";
+    }
+
+
+    /**
+     * Get the labels of a backend instance
+     *
+     * @param routeMetrics the route metrics
+     * @param instance the backend instance
+     * @return the labels
+     */
+    private String instanceLabels(RouteMetrics routeMetrics, BackendInstance instance) {
+        return "{node=\"" + escape(routeMetrics.getName()) + "\",route=\"" + escape(routeMetrics.getResource())
+               + "\",instance=\"" + escape(instance.getUri().toString()) + "\"}";
+    }
+
+
+    /**
+     * Escape a label value
+     *
+     * @param value the value
+     * @return the escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+
+    /**
+     * Create the upper bounds of the histogram buckets in seconds
+     *
+     * @return the upper bounds
+     */
+    private static String[] createUpperBounds() {
+        final String[] upperBounds = new String[LatencyHistogram.getUpperBoundCount()];
+        for (int i = 0; i < upperBounds.length; i++) {
+            upperBounds[i] = BigDecimal.valueOf(LatencyHistogram.getUpperBound(i), 6).stripTrailingZeros().toPlainString();
+        }
+        return upperBounds;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * MetricsRegistry.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The registry of the route metrics and the metrics of the HTTPS listener, the metrics of the backend instances are
+ * kept by the instances.
+ *
+ * @author patrick
+ */
+public class MetricsRegistry {
+    private final Map<String, RouteMetrics> routeMetrics;
+    private final TlsMetrics tlsMetrics;
+
+
+    /**
+     * Constructor for MetricsRegistry
+     */
+    public MetricsRegistry() {
+        this.routeMetrics = new ConcurrentHashMap<>();
+        this.tlsMetrics = new TlsMetrics();
+    }
+
+
+    /**
+     * Get or create the metrics of a route and update its node
+     *
+     * @param resource the resource path of the route
+     * @param name the name of the node or null
+     * @param instances the backend instances of the node
+     * @return the route metrics
+     */
+    public RouteMetrics getRouteMetrics(String resource, String name, List<BackendInstance> instances) {
+        return routeMetrics.computeIfAbsent(resource, RouteMetrics::new).update(name, instances);
+    }
+
+
+    /**
+     * Get the metrics of all routes sorted by their resource path
+     *
+     * @return the route metrics
+     */
+    public List<RouteMetrics> getRouteMetrics() {
+        List<RouteMetrics> result = new ArrayList<>(routeMetrics.values());
+        result.sort(Comparator.comparing(RouteMetrics::getResource));
+        return result;
+    }
+
+
+    /**
+     * Get the metrics of the HTTPS listener
+     *
+     * @return the metrics of the HTTPS listener
+     */
+    public TlsMetrics getTlsMetrics() {
+        return tlsMetrics;
+    }
+
+
+    /**
+     * Retain only the metrics of the given routes
+     *
+     * @param resources the resource paths of the active routes
+     */
+    public void retain(Collection<String> resources) {
+        routeMetrics.keySet().retainAll(resources);
+    }
+}
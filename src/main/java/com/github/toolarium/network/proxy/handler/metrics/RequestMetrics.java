@@ -0,0 +1,155 @@
+/*
+ * RequestMetrics.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The lock-free request metrics of a route or a backend instance: the responses by status class, the latency
+ * histogram, the requests in flight and the connect failures.
+ *
+ * @author patrick
+ */
+public class RequestMetrics {
+    private static final String[] STATUS_CLASSES = {"other", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    private final LongAdder[] responses;
+    private final LatencyHistogram latency;
+    private final LongAdder inFlight;
+    private final LongAdder connectFailures;
+
+
+    /**
+     * Constructor for RequestMetrics
+     */
+    public RequestMetrics() {
+        this.responses = new LongAdder[STATUS_CLASSES.length];
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = new LongAdder();
+        }
+        this.latency = new LatencyHistogram();
+        this.inFlight = new LongAdder();
+        this.connectFailures = new LongAdder();
+    }
+
+
+    /**
+     * Start of a request
+     */
+    public void start() {
+        inFlight.increment();
+    }
+
+
+    /**
+     * End of a request which was started by {@link #start()}
+     *
+     * @param statusCode the status code
+     * @param latencyNanos the latency in nanoseconds or a negative value if it is unknown
+     */
+    public void end(int statusCode, long latencyNanos) {
+        inFlight.decrement();
+        record(statusCode, latencyNanos);
+    }
+
+
+    /**
+     * Record a response
+     *
+     * @param statusCode the status code
+     * @param latencyNanos the latency in nanoseconds or a negative value if it is unknown
+     */
+    public void record(int statusCode, long latencyNanos) {
+        responses[statusClass(statusCode)].increment();
+        if (latencyNanos >= 0) {
+            latency.record(latencyNanos);
+        }
+    }
+
+
+    /**
+     * Record a failed connect to a backend instance
+     */
+    public void recordConnectFailure() {
+        connectFailures.increment();
+    }
+
+
+    /**
+     * Get the number of responses of a status class
+     *
+     * @param statusClass the status class, see {@link #getStatusClassName(int)}
+     * @return the number of responses
+     */
+    public long getResponseCount(int statusClass) {
+        return responses[statusClass].sum();
+    }
+
+
+    /**
+     * Get the latency histogram
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+
+    /**
+     * Get the number of requests in flight
+     *
+     * @return the number of requests in flight
+     */
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+
+    /**
+     * Get the number of failed connects
+     *
+     * @return the number of failed connects
+     */
+    public long getConnectFailures() {
+        return connectFailures.sum();
+    }
+
+
+    /**
+     * Get the number of status classes
+     *
+     * @return the number of status classes
+     */
+    public static int getStatusClassCount() {
+        return STATUS_CLASSES.length;
+    }
+
+
+    /**
+     * Get the name of a status class, e.g. <code>2xx</code>
+     *
+     * @param statusClass the status class
+     * @return the name
+     */
+    public static String getStatusClassName(int statusClass) {
+        return STATUS_CLASSES[statusClass];
+    }
+
+
+    /**
+     * Get the status class of a status code
+     *
+     * @param statusCode the status code
+     * @return the status class
+     */
+    static int statusClass(int statusCode) {
+        if (statusCode < 100 || statusCode >= 600) {
+            return 0;
+        }
+        return statusCode / 100;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * RouteMetrics.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import java.util.List;
+
+
+/**
+ * The metrics of a route. They survive a reload of the route: a changed node keeps its counters and updates its
+ * name and backend instances.
+ *
+ * @author patrick
+ */
+public class RouteMetrics {
+    private final String resource;
+    private final RequestMetrics requestMetrics;
+    private volatile String name;
+    private volatile List<BackendInstance> instances;
+
+
+    /**
+     * Constructor for RouteMetrics
+     *
+     * @param resource the resource path of the route
+     */
+    public RouteMetrics(String resource) {
+        this.resource = resource;
+        this.requestMetrics = new RequestMetrics();
+        this.name = resource;
+        this.instances = List.of();
+    }
+
+
+    /**
+     * Get the resource path
+     *
+     * @return the resource path
+     */
+    public String getResource() {
+        return resource;
+    }
+
+
+    /**
+     * Get the name of the node
+     *
+     * @return the name of the node, the resource path if the node has no name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Get the request metrics of the route
+     *
+     * @return the request metrics
+     */
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+
+    /**
+     * Get the backend instances of the route
+     *
+     * @return the backend instances
+     */
+    public List<BackendInstance> getInstances() {
+        return instances;
+    }
+
+
+    /**
+     * Update the node of the route
+     *
+     * @param name the name of the node or null
+     * @param instances the backend instances
+     * @return this instance
+     */
+    RouteMetrics update(String name, List<BackendInstance> instances) {
+        if (name == null || name.isBlank()) {
+            this.name = resource;
+        } else {
+            this.name = name;
+        }
+        this.instances = List.copyOf(instances);
+        return this;
+    }
+}
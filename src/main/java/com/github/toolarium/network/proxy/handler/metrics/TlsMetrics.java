@@ -0,0 +1,75 @@
+/*
+ * TlsMetrics.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The lock-free metrics of the HTTPS listener: the connections and the full handshakes. A full handshake selects a
+ * certificate, a resumed one does not; the connections without full handshake were resumed.
+ *
+ * @author patrick
+ */
+public class TlsMetrics {
+    private final LongAdder connections;
+    private final LongAdder fullHandshakes;
+
+
+    /**
+     * Constructor for TlsMetrics
+     */
+    public TlsMetrics() {
+        this.connections = new LongAdder();
+        this.fullHandshakes = new LongAdder();
+    }
+
+
+    /**
+     * Record a connection with a completed handshake
+     */
+    public void recordConnection() {
+        connections.increment();
+    }
+
+
+    /**
+     * Record a full handshake
+     */
+    public void recordFullHandshake() {
+        fullHandshakes.increment();
+    }
+
+
+    /**
+     * Get the number of connections with a completed handshake
+     *
+     * @return the number of connections
+     */
+    public long getConnections() {
+        return connections.sum();
+    }
+
+
+    /**
+     * Get the number of full handshakes
+     *
+     * @return the number of full handshakes
+     */
+    public long getFullHandshakes() {
+        return fullHandshakes.sum();
+    }
+
+
+    /**
+     * Get the number of resumed handshakes
+     *
+     * @return the number of resumed handshakes
+     */
+    public long getResumedHandshakes() {
+        return Math.max(getConnections() - getFullHandshakes(), 0);
+    }
+}
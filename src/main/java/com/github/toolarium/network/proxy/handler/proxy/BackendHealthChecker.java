@@ -0,0 +1,247 @@
+/*
+ * BackendHealthChecker.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyHealthCheck;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The active health checker of the backend instances. Every instance with a configured health check path is probed
+ * asynchronously in the configured interval. After the unhealthy threshold of consecutive failed probes the instance
+ * is marked as unhealthy and is not balanced anymore; after the healthy threshold of consecutive successful probes it
+ * receives traffic again. As long as an healthy instance has failed probes, the probes are repeated faster, that a
+ * failing instance is detected within one interval.
+ *
+ * @author patrick
+ */
+public class BackendHealthChecker {
+    private static final Logger LOG = LoggerFactory.getLogger(BackendHealthChecker.class);
+    private final ScheduledExecutorService scheduler;
+    private final HttpClient httpClient;
+    private final Map<String, HealthCheckTask> tasks;
+
+
+    /**
+     * Constructor for BackendHealthChecker
+     *
+     * @param scheduler the scheduler of the health checks
+     */
+    public BackendHealthChecker(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).followRedirects(HttpClient.Redirect.NEVER).build();
+        this.tasks = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Schedule the health check of an instance. An already scheduled health check with the same settings is kept.
+     * If the health check has no path the instance is not checked and is healthy.
+     *
+     * @param instance the instance
+     * @param healthCheck the health check settings
+     */
+    public void schedule(BackendInstance instance, NetworkProxyHealthCheck healthCheck) {
+        if (healthCheck == null || healthCheck.getPath() == null || healthCheck.getPath().isBlank()) {
+            cancel(instance);
+            instance.setHealthy(true);
+            return;
+        }
+
+        HealthCheckTask task = tasks.get(instance.getKey());
+        if (task != null && task.healthCheck.equals(healthCheck)) {
+            return;
+        }
+
+        cancel(instance);
+        task = new HealthCheckTask(instance, healthCheck);
+        tasks.put(instance.getKey(), task);
+        LOG.debug("Schedule health check of backend instance [" + instance.getKey() + "]: " + healthCheck);
+        task.schedule(0);
+    }
+
+
+    /**
+     * Cancel the health check of an instance
+     *
+     * @param instance the instance
+     */
+    public void cancel(BackendInstance instance) {
+        HealthCheckTask task = tasks.remove(instance.getKey());
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+
+    /**
+     * Get the number of scheduled health checks
+     *
+     * @return the number of scheduled health checks
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+
+    /**
+     * Stop all health checks
+     */
+    public void close() {
+        for (HealthCheckTask task : tasks.values()) {
+            task.cancel();
+        }
+        tasks.clear();
+    }
+
+
+    /**
+     * The health check task of one instance. The probes of an instance never overlap: the next probe is scheduled
+     * after the previous one has completed.
+     */
+    private final class HealthCheckTask implements Runnable {
+        private final BackendInstance instance;
+        private final NetworkProxyHealthCheck healthCheck;
+        private final HttpRequest request;
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> future;
+        private int successes;
+        private int failures;
+
+
+        /**
+         * Constructor for HealthCheckTask
+         *
+         * @param instance the instance
+         * @param healthCheck the health check
+         */
+        HealthCheckTask(BackendInstance instance, NetworkProxyHealthCheck healthCheck) {
+            this.instance = instance;
+            this.healthCheck = healthCheck;
+            this.request = HttpRequest.newBuilder(resolve(instance.getUri(), healthCheck.getPath()))
+                    .timeout(Duration.ofMillis(healthCheck.getTimeout()))
+                    .GET()
+                    .build();
+            this.cancelled = false;
+            this.successes = 0;
+            this.failures = 0;
+        }
+
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            try {
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+                    if (e != null) {
+                        LOG.debug("Health check of backend instance [" + instance.getUri() + "] failed: " + e.getMessage());
+                    }
+                    completed(response != null && response.statusCode() >= 200 && response.statusCode() < 400);
+                });
+            } catch (RuntimeException e) {
+                LOG.debug("Could not check health of backend instance [" + instance.getUri() + "]: " + e.getMessage());
+                completed(false);
+            }
+        }
+
+
+        /**
+         * The probe has completed
+         *
+         * @param success true if the probe was successful
+         */
+        void completed(boolean success) {
+            if (cancelled) {
+                return;
+            }
+
+            if (success) {
+                successes++;
+                failures = 0;
+                if (successes >= healthCheck.getHealthyThreshold() && instance.setHealthy(true)) {
+                    LOG.info("Backend instance [" + instance.getUri() + "] is healthy again.");
+                }
+            } else {
+                failures++;
+                successes = 0;
+                if (failures >= healthCheck.getUnhealthyThreshold() && instance.setHealthy(false)) {
+                    LOG.warn("Backend instance [" + instance.getUri() + "] is unhealthy, it is removed from the load balancing.");
+                }
+            }
+
+            long delay = healthCheck.getInterval();
+            if (instance.isHealthy() && failures > 0) {
+                // confirm a suspected failure within the interval
+                delay = Math.max(delay / healthCheck.getUnhealthyThreshold(), 1);
+            }
+            schedule(delay);
+        }
+
+
+        /**
+         * Schedule the next probe
+         *
+         * @param delay the delay in milliseconds
+         */
+        void schedule(long delay) {
+            if (cancelled) {
+                return;
+            }
+
+            try {
+                future = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Health check of backend instance [" + instance.getUri() + "] stopped.");
+            }
+        }
+
+
+        /**
+         * Cancel the task
+         */
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> currentFuture = future;
+            if (currentFuture != null) {
+                currentFuture.cancel(false);
+            }
+        }
+
+
+        /**
+         * Resolve the health check uri of an instance
+         *
+         * @param uri the instance uri
+         * @param path the health check path
+         * @return the health check uri
+         */
+        private URI resolve(URI uri, String path) {
+            String healthCheckPath = path.trim();
+            if (!healthCheckPath.startsWith("/")) {
+                healthCheckPath = "/" + healthCheckPath;
+            }
+            return uri.resolve(healthCheckPath);
+        }
+    }
+}
@@ -0,0 +1,705 @@
+/*
+ * BackendInstance.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.BackendProtocol;
+import com.github.toolarium.network.proxy.config.NetworkProxyConnectionPool;
+import com.github.toolarium.network.proxy.handler.metrics.RequestMetrics;
+import io.undertow.UndertowOptions;
+import io.undertow.client.UndertowClient;
+import io.undertow.protocols.ssl.UndertowXnioSsl;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ConnectionPoolErrorHandler;
+import io.undertow.server.handlers.proxy.ConnectionPoolManager;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyClient;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.server.handlers.proxy.ProxyConnectionPool;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.net.ssl.SSLContext;
+import org.xnio.OptionMap;
+import org.xnio.Xnio;
+import org.xnio.ssl.XnioSsl;
+
+
+/**
+ * Defines a backend instance of a network proxy node. Every instance has its own connection pool, therefore
+ * the pool can be shared between different versions of the route table. The instance keeps lock-free
+ * statistics of the outstanding requests and the peak exponentially weighted moving average (EWMA) latency.
+ * An instance which is unhealthy or whose circuit is open is not available and is skipped by the load balancing,
+ * the change of the availability is propagated to the registered listeners. The {@link RequestMetrics} of the
+ * instance are kept as long as the instance is registered. With {@link BackendProtocol#HTTP_2} the pool multiplexes the
+ * requests as streams over its connections, a new connection is only opened if there is none to share; the number of
+ * connections per thread is the upper bound. The connections per thread, the soft max, the time to live, the problem
+ * server retry and the queue of the pool are defined by the {@link NetworkProxyConnectionPool} of the node. The instance
+ * owns its connection pool directly, the instances are selected by the node: every attempt of an exchange gets a
+ * connection of the pool, also a retry on the same instance.
+ *
+ * @author patrick
+ */
+public class BackendInstance {
+    private static final ProxyClient.ProxyTarget PROXY_TARGET = new ProxyClient.ProxyTarget() {
+    };
+    private static final int DEFAULT_SOFT_MAX_CONNECTIONS_PER_THREAD = 5;
+    private static final double DECAY_TIME = TimeUnit.SECONDS.toNanos(10);
+    private static final long FAILURE_PENALTY = TimeUnit.SECONDS.toNanos(1);
+    private static final double UNKNOWN_LATENCY_PENALTY = TimeUnit.SECONDS.toNanos(1);
+    private final String key;
+    private final URI uri;
+    private final URI clientUri;
+    private final BackendProtocol protocol;
+    private final NetworkProxyConnectionPool connectionPool;
+    private final int routeId;
+    private final String route;
+    private final ProxyConnectionPool proxyConnectionPool;
+    private final AtomicInteger outstandingRequests;
+    private final AtomicLong peakEwma;
+    private final List<Runnable> availabilityListeners;
+    private final AtomicReference<CircuitState> circuitState;
+    private final AtomicInteger consecutiveErrors;
+    private final AtomicInteger consecutiveConnectFailures;
+    private final AtomicInteger ejectionCount;
+    private final RequestMetrics metrics;
+    private volatile long lastEjection;
+    private volatile long lastUpdate;
+    private volatile long availableSince;
+    private volatile boolean available;
+    private volatile boolean healthy;
+
+
+    /**
+     * Constructor for BackendInstance
+     *
+     * @param key the unique key of the instance
+     * @param uri the uri
+     * @param connectionsByThread the number of connections by thread
+     */
+    public BackendInstance(String key, URI uri, int connectionsByThread) {
+        this(key, uri, connectionsByThread, BackendProtocol.HTTP_1_1);
+    }
+
+
+    /**
+     * Constructor for BackendInstance
+     *
+     * @param key the unique key of the instance
+     * @param uri the uri
+     * @param connectionsByThread the number of connections by thread
+     * @param protocol the protocol of the connections
+     */
+    public BackendInstance(String key, URI uri, int connectionsByThread, BackendProtocol protocol) {
+        this(key, uri, connectionsByThread, protocol, new NetworkProxyConnectionPool());
+    }
+
+
+    /**
+     * Constructor for BackendInstance
+     *
+     * @param key the unique key of the instance
+     * @param uri the uri
+     * @param connectionsByThread the number of connections by thread in case the connection pool doesn't define them
+     * @param protocol the protocol of the connections
+     * @param connectionPool the settings of the connection pool
+     */
+    public BackendInstance(String key, URI uri, int connectionsByThread, BackendProtocol protocol, NetworkProxyConnectionPool connectionPool) {
+        this.key = key;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.connectionPool = connectionPool;
+        this.clientUri = createClientUri(uri, protocol);
+        this.routeId = createRouteId(uri);
+        this.route = Integer.toUnsignedString(routeId, Character.MAX_RADIX);
+        this.proxyConnectionPool = new ProxyConnectionPool(new InstanceConnectionPoolManager(connectionsByThread, connectionPool), clientUri, createSsl(uri),
+                                                           UndertowClient.getInstance(), OptionMap.create(UndertowOptions.ENABLE_HTTP2, protocol == BackendProtocol.HTTP_2));
+        this.outstandingRequests = new AtomicInteger();
+        this.peakEwma = new AtomicLong(Double.doubleToRawLongBits(0.0));
+        this.availabilityListeners = new CopyOnWriteArrayList<>();
+        this.circuitState = new AtomicReference<>(CircuitState.CLOSED);
+        this.consecutiveErrors = new AtomicInteger();
+        this.consecutiveConnectFailures = new AtomicInteger();
+        this.ejectionCount = new AtomicInteger();
+        this.metrics = new RequestMetrics();
+        this.lastEjection = 0;
+        this.lastUpdate = System.nanoTime();
+        this.availableSince = lastUpdate;
+        this.available = true;
+        this.healthy = true;
+    }
+
+
+    /**
+     * Get the unique key of the instance
+     *
+     * @return the key
+     */
+    public String getKey() {
+        return key;
+    }
+
+
+    /**
+     * Get the uri
+     *
+     * @return the uri
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+
+    /**
+     * Get the protocol of the connections
+     *
+     * @return the protocol
+     */
+    public BackendProtocol getProtocol() {
+        return protocol;
+    }
+
+
+    /**
+     * Get the settings of the connection pool
+     *
+     * @return the connection pool
+     */
+    public NetworkProxyConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+
+    /**
+     * Get the compact route id of this instance, it depends only on the uri and is stable across reloads
+     *
+     * @return the route id
+     */
+    public int getRouteId() {
+        return routeId;
+    }
+
+
+    /**
+     * Get the route id of this instance as string, see {@link #getRouteId()}
+     *
+     * @return the route
+     */
+    public String getRoute() {
+        return route;
+    }
+
+
+    /**
+     * Create the uri of a request to this instance which is sent directly and not by the proxy client
+     *
+     * @param exchange the exchange
+     * @return the uri
+     */
+    public URI createRequestUri(HttpServerExchange exchange) {
+        return URI.create(uri.getScheme() + "://" + uri.getRawAuthority() + createRequestPath(exchange));
+    }
+
+
+    /**
+     * Create the path and the query of a request to this instance which is sent directly and not by the proxy handler
+     *
+     * @param exchange the exchange
+     * @return the path and the query
+     */
+    public String createRequestPath(HttpServerExchange exchange) {
+        final StringBuilder result = new StringBuilder();
+        final String path = uri.getRawPath();
+        if (path != null && !path.isEmpty() && !"/".equals(path)) {
+            if (path.endsWith("/")) {
+                result.append(path, 0, path.length() - 1);
+            } else {
+                result.append(path);
+            }
+        }
+
+        result.append(exchange.getRequestURI());
+        final String queryString = exchange.getQueryString();
+        if (queryString != null && !queryString.isEmpty()) {
+            result.append('?').append(queryString);
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * Get a connection of the instance for an attempt of the exchange. A pool with connect problems is still tried as
+     * long as it is not closed, the availability of the instance is decided by the health check and the outlier
+     * detection.
+     *
+     * @param exchange the exchange
+     * @param callback the callback
+     * @param timeout the timeout
+     * @param timeUnit the time unit
+     */
+    public void getConnection(HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit) {
+        final ProxyConnectionPool.AvailabilityType availability = proxyConnectionPool.available();
+        if (availability == ProxyConnectionPool.AvailabilityType.CLOSED || availability == ProxyConnectionPool.AvailabilityType.DRAIN) {
+            callback.couldNotResolveBackend(exchange);
+            return;
+        }
+        proxyConnectionPool.connect(PROXY_TARGET, exchange, callback, timeout, timeUnit, false);
+    }
+
+
+    /**
+     * Get the request metrics of this instance
+     *
+     * @return the request metrics
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Check if the instance is available to receive requests
+     *
+     * @return true if it is available
+     */
+    public boolean isAvailable() {
+        return healthy && circuitState.get() != CircuitState.OPEN;
+    }
+
+
+    /**
+     * Get the timestamp since when the instance is available: the creation or the last change from unavailable to
+     * available, e.g. after an ejection
+     *
+     * @return the timestamp in nanoseconds
+     */
+    public long getAvailableSince() {
+        return availableSince;
+    }
+
+
+    /**
+     * Check if the last active health check was successful
+     *
+     * @return true if the instance is healthy
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+
+    /**
+     * Set the result of the active health check. In case the availability changes the listeners are notified.
+     *
+     * @param healthy true if the instance is healthy
+     * @return true if the health state has changed
+     */
+    public boolean setHealthy(boolean healthy) {
+        if (this.healthy == healthy) {
+            return false;
+        }
+
+        this.healthy = healthy;
+        notifyAvailabilityListeners();
+        return true;
+    }
+
+
+    /**
+     * Get the circuit state
+     *
+     * @return the circuit state
+     */
+    public CircuitState getCircuitState() {
+        return circuitState.get();
+    }
+
+
+    /**
+     * Get the number of ejections of this instance since the last reset
+     *
+     * @return the number of ejections
+     */
+    public int getEjectionCount() {
+        return ejectionCount.get();
+    }
+
+
+    /**
+     * Record a successful response: the consecutive failures are reset and a half open circuit is closed.
+     */
+    public void recordSuccess() {
+        // avoid the write on the hot path if there is nothing to reset
+        if (consecutiveErrors.get() != 0) {
+            consecutiveErrors.set(0);
+        }
+
+        if (consecutiveConnectFailures.get() != 0) {
+            consecutiveConnectFailures.set(0);
+        }
+
+        if (circuitState.get() == CircuitState.HALF_OPEN && circuitState.compareAndSet(CircuitState.HALF_OPEN, CircuitState.CLOSED)) {
+            notifyAvailabilityListeners();
+        }
+    }
+
+
+    /**
+     * Record an error response
+     *
+     * @return the number of consecutive errors
+     */
+    public int recordError() {
+        return consecutiveErrors.incrementAndGet();
+    }
+
+
+    /**
+     * Record a connect failure
+     *
+     * @return the number of consecutive connect failures
+     */
+    public int recordConnectFailure() {
+        return consecutiveConnectFailures.incrementAndGet();
+    }
+
+
+    /**
+     * Open the circuit: the instance is ejected.
+     *
+     * @param resetPeriod the period in nanoseconds without ejection after which the ejection count starts again
+     * @return the number of ejections or 0 if the circuit was already open
+     */
+    public int openCircuit(long resetPeriod) {
+        CircuitState current = circuitState.get();
+        if (current == CircuitState.OPEN || !circuitState.compareAndSet(current, CircuitState.OPEN)) {
+            return 0;
+        }
+
+        final long now = System.nanoTime();
+        if (lastEjection != 0 && now - lastEjection > resetPeriod) {
+            ejectionCount.set(0);
+        }
+        lastEjection = now;
+        consecutiveErrors.set(0);
+        consecutiveConnectFailures.set(0);
+
+        int result = ejectionCount.incrementAndGet();
+        notifyAvailabilityListeners();
+        return result;
+    }
+
+
+    /**
+     * Half open the circuit after the ejection time
+     *
+     * @return true if the circuit was open
+     */
+    public boolean halfOpenCircuit() {
+        if (!circuitState.compareAndSet(CircuitState.OPEN, CircuitState.HALF_OPEN)) {
+            return false;
+        }
+
+        notifyAvailabilityListeners();
+        return true;
+    }
+
+
+    /**
+     * Add a listener which is notified in case the availability changes
+     *
+     * @param listener the listener
+     */
+    public void addAvailabilityListener(Runnable listener) {
+        availabilityListeners.add(listener);
+    }
+
+
+    /**
+     * Remove an availability listener
+     *
+     * @param listener the listener
+     */
+    public void removeAvailabilityListener(Runnable listener) {
+        availabilityListeners.remove(listener);
+    }
+
+
+    /**
+     * Get the number of outstanding requests
+     *
+     * @return the number of outstanding requests
+     */
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+
+    /**
+     * Get the peak EWMA latency in nanoseconds
+     *
+     * @return the peak EWMA latency
+     */
+    public double getPeakEwma() {
+        return Double.longBitsToDouble(peakEwma.get());
+    }
+
+
+    /**
+     * Get the load cost of this instance: the peak EWMA latency weighted with the outstanding requests.
+     *
+     * @return the cost
+     */
+    public double getCost() {
+        final double latency = getPeakEwma();
+        final int outstanding = outstandingRequests.get();
+        if (latency == 0.0 && outstanding > 0) {
+            // no latency measured so far, don't overload a new instance
+            return UNKNOWN_LATENCY_PENALTY + outstanding;
+        }
+        return latency * (outstanding + 1);
+    }
+
+
+    /**
+     * Start of a request
+     *
+     * @return the start timestamp in nanoseconds
+     */
+    public long start() {
+        outstandingRequests.incrementAndGet();
+        return System.nanoTime();
+    }
+
+
+    /**
+     * End of a request
+     *
+     * @param startTimestamp the start timestamp, see {@link #start()}
+     * @param success true if the request was successful; otherwise the latency is penalized
+     * @return the latency of the request in nanoseconds
+     */
+    public long end(long startTimestamp, boolean success) {
+        outstandingRequests.decrementAndGet();
+
+        final long now = System.nanoTime();
+        final long latency = Math.max(now - startTimestamp, 0);
+        if (success) {
+            updatePeakEwma(now, latency);
+        } else {
+            updatePeakEwma(now, Math.max(latency, FAILURE_PENALTY));
+        }
+        return latency;
+    }
+
+
+    /**
+     * Update the peak EWMA: a higher latency is taken immediately, a lower latency decays with the elapsed time.
+     *
+     * @param now the current timestamp
+     * @param latency the latency in nanoseconds
+     */
+    protected void updatePeakEwma(long now, long latency) {
+        final double elapsed = Math.max(now - lastUpdate, 0);
+        lastUpdate = now;
+        final double weight = Math.exp(-elapsed / DECAY_TIME);
+
+        long current;
+        double next;
+        do {
+            current = peakEwma.get();
+            final double value = Double.longBitsToDouble(current);
+            if (latency > value) {
+                next = latency;
+            } else {
+                next = value * weight + latency * (1.0 - weight);
+            }
+        } while (!peakEwma.compareAndSet(current, Double.doubleToRawLongBits(next)));
+    }
+
+
+    /**
+     * Create the route id of an uri: the hash of the uri spread by the finalizer of MurmurHash3
+     *
+     * @param uri the uri
+     * @return the route id
+     */
+    protected static int createRouteId(URI uri) {
+        int h = uri.toString().hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+
+    /**
+     * Create the uri of the connection pool: an http instance is connected with HTTP/2 by prior knowledge (h2c), the
+     * client of an https instance negotiates h2 by ALPN.
+     *
+     * @param uri the uri
+     * @param protocol the protocol of the connections
+     * @return the uri of the connection pool
+     */
+    protected static URI createClientUri(URI uri, BackendProtocol protocol) {
+        if (protocol != BackendProtocol.HTTP_2 || !"http".equalsIgnoreCase(uri.getScheme())) {
+            return uri;
+        }
+
+        try {
+            return new URI("h2c-prior", uri.getRawUserInfo(), uri.getHost(), uri.getPort(), uri.getRawPath(), uri.getRawQuery(), uri.getRawFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid instance uri [" + uri + "]: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Create the ssl of the connections to an https instance
+     *
+     * @param uri the uri
+     * @return the ssl or null if the instance is not connected by https
+     */
+    protected static XnioSsl createSsl(URI uri) {
+        if (!"https".equalsIgnoreCase(uri.getScheme())) {
+            return null;
+        }
+
+        try {
+            return new UndertowXnioSsl(Xnio.getInstance(), OptionMap.EMPTY, SSLContext.getDefault());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not create the ssl context of instance [" + uri + "]: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Notify the availability listeners, a change to available restarts the slow start of the instance
+     */
+    protected void notifyAvailabilityListeners() {
+        final boolean nowAvailable = isAvailable();
+        if (nowAvailable && !available) {
+            availableSince = System.nanoTime();
+        }
+        available = nowAvailable;
+
+        for (Runnable listener : availabilityListeners) {
+            listener.run();
+        }
+    }
+
+
+    /**
+     * Close the connection pool of this instance
+     */
+    public void close() {
+        availabilityListeners.clear();
+        proxyConnectionPool.close();
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "BackendInstance [uri=" + uri + ", protocol=" + protocol + ", healthy=" + healthy + ", circuitState=" + circuitState.get() + "]";
+    }
+
+
+    /**
+     * The settings of the connection pool of an instance. The pool marks a connect failure as problem and retries to
+     * connect after the problem server retry.
+     */
+    private static final class InstanceConnectionPoolManager extends ConnectionPoolErrorHandler.SimpleConnectionPoolErrorHandler implements ConnectionPoolManager {
+        private final int connectionsPerThread;
+        private final int softMaxConnectionsPerThread;
+        private final NetworkProxyConnectionPool connectionPool;
+
+
+        /**
+         * Constructor for InstanceConnectionPoolManager
+         *
+         * @param connectionsByThread the number of connections by thread in case the connection pool doesn't define them
+         * @param connectionPool the settings of the connection pool
+         */
+        InstanceConnectionPoolManager(int connectionsByThread, NetworkProxyConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+            if (connectionPool.getConnectionsPerThread() > 0) {
+                this.connectionsPerThread = connectionPool.getConnectionsPerThread();
+            } else {
+                this.connectionsPerThread = connectionsByThread;
+            }
+
+            if (connectionPool.getSoftMaxConnectionsPerThread() > 0) {
+                this.softMaxConnectionsPerThread = connectionPool.getSoftMaxConnectionsPerThread();
+            } else {
+                this.softMaxConnectionsPerThread = DEFAULT_SOFT_MAX_CONNECTIONS_PER_THREAD;
+            }
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ConnectionPoolManager#getProblemServerRetry()
+         */
+        @Override
+        public int getProblemServerRetry() {
+            return connectionPool.getProblemServerRetry();
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyConnectionPoolConfig#getMaxConnections()
+         */
+        @Override
+        public int getMaxConnections() {
+            return connectionsPerThread;
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyConnectionPoolConfig#getMaxCachedConnections()
+         */
+        @Override
+        public int getMaxCachedConnections() {
+            return connectionsPerThread;
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyConnectionPoolConfig#getSMaxConnections()
+         */
+        @Override
+        public int getSMaxConnections() {
+            return softMaxConnectionsPerThread;
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyConnectionPoolConfig#getTtl()
+         */
+        @Override
+        public long getTtl() {
+            return connectionPool.getTtl();
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyConnectionPoolConfig#getMaxQueueSize()
+         */
+        @Override
+        public int getMaxQueueSize() {
+            return connectionPool.getMaxQueueSize();
+        }
+    }
+}
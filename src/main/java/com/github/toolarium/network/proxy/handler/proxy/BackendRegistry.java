@@ -0,0 +1,152 @@
+/*
+ * BackendRegistry.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The registry of all backend instances. It keeps the connection pools of the instances alive as long
+ * as they are referenced by the current route table and schedules their active health checks. The scheduler
+ * of the registry is shared by the health checks and the outlier detection.
+ *
+ * @author patrick
+ */
+public class BackendRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(BackendRegistry.class);
+    private final INetworkProxyConfiguration configuration;
+    private final Map<String, BackendInstance> instances;
+    private final ScheduledExecutorService scheduler;
+    private final BackendHealthChecker healthChecker;
+
+
+    /**
+     * Constructor for BackendRegistry
+     *
+     * @param configuration the configuration
+     */
+    public BackendRegistry(INetworkProxyConfiguration configuration) {
+        this.configuration = configuration;
+        this.instances = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "networkproxy-backend-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.healthChecker = new BackendHealthChecker(scheduler);
+    }
+
+
+    /**
+     * Get or create the backend instance of a node. The health check of the instance is updated with the
+     * settings of the node.
+     *
+     * @param node the node
+     * @param uri the uri of the instance
+     * @return the backend instance
+     */
+    public BackendInstance getInstance(INetworkProxyNode node, URI uri) {
+        // the connection pool depends on the protocol and its settings: a change creates a new instance with the same key
+        final String key = node.getResource() + " " + uri;
+        BackendInstance instance = instances.computeIfAbsent(key + " " + node.getBackendProtocol() + " " + node.getConnectionPool(), registryKey -> {
+            LOG.debug("Create backend instance [" + key + "] with protocol [" + node.getBackendProtocol() + "] and " + node.getConnectionPool() + ".");
+            return new BackendInstance(key, uri, configuration.getConnectionsByThread(), node.getBackendProtocol(), node.getConnectionPool());
+        });
+
+        healthChecker.schedule(instance, node.getHealthCheck());
+        return instance;
+    }
+
+
+    /**
+     * Get all backend instances sorted by their key
+     *
+     * @return the backend instances
+     */
+    public List<BackendInstance> getInstances() {
+        List<BackendInstance> result = new ArrayList<>(instances.values());
+        result.sort(Comparator.comparing(BackendInstance::getKey));
+        return result;
+    }
+
+
+    /**
+     * Get the scheduler
+     *
+     * @return the scheduler
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+
+    /**
+     * Get the health checker
+     *
+     * @return the health checker
+     */
+    public BackendHealthChecker getHealthChecker() {
+        return healthChecker;
+    }
+
+
+    /**
+     * Get the number of backend instances
+     *
+     * @return the number of backend instances
+     */
+    public int size() {
+        return instances.size();
+    }
+
+
+    /**
+     * Retain only the given backend instances, all other instances will be closed.
+     *
+     * @param activeInstances the active instances
+     */
+    public void retain(Collection<BackendInstance> activeInstances) {
+        Set<BackendInstance> active = new HashSet<>(activeInstances);
+        Iterator<Map.Entry<String, BackendInstance>> it = instances.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, BackendInstance> e = it.next();
+            if (!active.contains(e.getValue())) {
+                LOG.debug("Close backend instance [" + e.getKey() + "].");
+                it.remove();
+                healthChecker.cancel(e.getValue());
+                e.getValue().close();
+            }
+        }
+    }
+
+
+    /**
+     * Close all backend instances
+     */
+    public void close() {
+        healthChecker.close();
+        scheduler.shutdownNow();
+        for (BackendInstance instance : instances.values()) {
+            instance.close();
+        }
+        instances.clear();
+    }
+}
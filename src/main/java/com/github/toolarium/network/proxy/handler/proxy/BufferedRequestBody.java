@@ -0,0 +1,158 @@
+/*
+ * BufferedRequestBody.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.ImmediatePooledByteBuffer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.xnio.channels.StreamSourceChannel;
+
+
+/**
+ * The buffered body of a request which can be sent again. The body is kept in pooled buffers until the exchange is
+ * completed; every attempt reads duplicates of them, therefore the body is never copied. An attempt which consumed
+ * only a part of the body can't be replayed. The provided body can be consumed that the request is complete, e.g. for
+ * the decision of the proxy handler if a sent request can be retried.
+ *
+ * @author patrick
+ */
+public final class BufferedRequestBody implements ExchangeCompletionListener {
+    /** The attachment key of the buffered request body */
+    public static final AttachmentKey<BufferedRequestBody> KEY = AttachmentKey.create(BufferedRequestBody.class);
+    private final PooledByteBuffer[] buffers;
+    private ByteBuffer[] replayBuffers;
+
+
+    /**
+     * Constructor for BufferedRequestBody
+     *
+     * @param buffers the flipped buffers of the body
+     */
+    public BufferedRequestBody(PooledByteBuffer[] buffers) {
+        this.buffers = buffers;
+        this.replayBuffers = new ByteBuffer[0];
+    }
+
+
+    /**
+     * Attach the body to the exchange and provide it as request data
+     *
+     * @param exchange the exchange
+     */
+    public void attach(HttpServerExchange exchange) {
+        exchange.putAttachment(KEY, this);
+        exchange.addExchangeCompleteListener(this);
+        unget(exchange);
+        Connectors.resetRequestChannel(exchange);
+    }
+
+
+    /**
+     * Provide the body again for a further attempt
+     *
+     * @param exchange the exchange
+     * @return true if the body can be sent again; false if a previous attempt consumed a part of it
+     */
+    public boolean replay(HttpServerExchange exchange) {
+        boolean untouched = true;
+        boolean consumed = true;
+        for (ByteBuffer replayBuffer : replayBuffers) {
+            untouched = untouched && replayBuffer.position() == 0;
+            consumed = consumed && !replayBuffer.hasRemaining();
+        }
+
+        if (untouched) {
+            // the previous attempt failed before it has sent the body
+            if (!exchange.isRequestChannelAvailable()) {
+                Connectors.resetRequestChannel(exchange);
+            }
+            return true;
+        }
+
+        if (!consumed) {
+            return false;
+        }
+
+        unget(exchange);
+        Connectors.resetRequestChannel(exchange);
+        return true;
+    }
+
+
+    /**
+     * Consume the provided body that the request is complete, the body is provided again by
+     * {@link #replay(HttpServerExchange)}.
+     *
+     * @param exchange the exchange
+     * @throws IOException In case the body could not be read
+     */
+    public void consume(HttpServerExchange exchange) throws IOException {
+        final StreamSourceChannel channel = exchange.getRequestChannel();
+        if (channel == null) {
+            return;
+        }
+
+        try (PooledByteBuffer buffer = exchange.getConnection().getByteBufferPool().allocate()) {
+            int read;
+            do {
+                buffer.getBuffer().clear();
+                read = channel.read(buffer.getBuffer());
+            } while (read > 0);
+        }
+    }
+
+
+    /**
+     * Get the size of the body
+     *
+     * @return the size in bytes
+     */
+    public int size() {
+        int result = 0;
+        for (PooledByteBuffer buffer : buffers) {
+            result += buffer.getBuffer().remaining();
+        }
+        return result;
+    }
+
+
+    /**
+     * @see io.undertow.server.ExchangeCompletionListener#exchangeEvent(io.undertow.server.HttpServerExchange, io.undertow.server.ExchangeCompletionListener.NextListener)
+     */
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            for (PooledByteBuffer buffer : buffers) {
+                buffer.close();
+            }
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+
+    /**
+     * Provide duplicates of the buffers as request data
+     *
+     * @param exchange the exchange
+     */
+    private void unget(HttpServerExchange exchange) {
+        final ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+        final PooledByteBuffer[] requestData = new PooledByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            duplicates[i] = buffers[i].getBuffer().duplicate();
+            requestData[i] = new ImmediatePooledByteBuffer(duplicates[i]);
+        }
+
+        replayBuffers = duplicates;
+        Connectors.ungetRequestBytes(exchange, requestData);
+    }
+}
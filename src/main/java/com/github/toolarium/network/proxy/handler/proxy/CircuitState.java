@@ -0,0 +1,23 @@
+/*
+ * CircuitState.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+
+/**
+ * Defines the circuit state of a backend instance.
+ *
+ * @author patrick
+ */
+public enum CircuitState {
+    /** The instance receives traffic. */
+    CLOSED,
+
+    /** The instance is ejected as outlier and receives no traffic. */
+    OPEN,
+
+    /** The ejection time has elapsed: the instance receives traffic again, the next failure ejects it immediately. */
+    HALF_OPEN
+}
@@ -0,0 +1,253 @@
+/*
+ * ConnectionPrewarmer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.XnioWorker;
+
+
+/**
+ * Pre-warms the connection pools of the backend instances on startup. The connection pools of the instances exist per IO
+ * thread and hand out their connections only to an exchange of the IO thread, therefore the connections are opened by
+ * requests to a private loopback server on the worker of the network proxy: every request acquires a connection of its
+ * instance and holds it until all connections are acquired, then all exchanges are ended and the connections are
+ * returned to the pools of their IO threads. The loopback connections are spread over the IO threads, therefore the
+ * pre-warm of an instance results in about the configured number of connections per IO thread. The loopback server
+ * is stopped after the pre-warm, before the listeners of the network proxy are started.
+ *
+ * @author patrick
+ */
+public class ConnectionPrewarmer implements HttpHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPrewarmer.class);
+    private static final String INSTANCE_PARAMETER = "instance";
+    private final List<BackendInstance> instances;
+    private final List<Integer> requests;
+    private final int ioThreads;
+    private final long timeout;
+    private final Queue<HttpServerExchange> acquiredExchanges;
+    private final CountDownLatch pending;
+    private volatile boolean released;
+
+
+    /**
+     * Constructor for ConnectionPrewarmer
+     *
+     * @param instances the backend instances
+     * @param ioThreads the number of IO threads
+     * @param timeout the timeout of the pre-warm in milliseconds
+     */
+    public ConnectionPrewarmer(Collection<BackendInstance> instances, int ioThreads, long timeout) {
+        this.instances = new ArrayList<>();
+        this.requests = new ArrayList<>();
+        this.ioThreads = Math.max(ioThreads, 1);
+        this.timeout = timeout;
+        this.acquiredExchanges = new ConcurrentLinkedQueue<>();
+        this.released = false;
+
+        int total = 0;
+        for (BackendInstance instance : instances) {
+            final int prewarm = instance.getConnectionPool().getPrewarm();
+            if (prewarm > 0) {
+                for (int i = 0; i < prewarm * this.ioThreads; i++) {
+                    requests.add(this.instances.size());
+                }
+                this.instances.add(instance);
+                total += prewarm * this.ioThreads;
+            }
+        }
+        this.pending = new CountDownLatch(total);
+    }
+
+
+    /**
+     * Check if there is an instance to pre-warm
+     *
+     * @return true if the pre-warm is required
+     */
+    public boolean isRequired() {
+        return !requests.isEmpty();
+    }
+
+
+    /**
+     * Pre-warm the connection pools by a private loopback server on the given worker. The pooled connections belong to
+     * the IO threads of the worker, therefore the network proxy has to be started on the same worker.
+     *
+     * @param worker the worker of the network proxy
+     * @return the number of pre-warmed connections
+     */
+    public int prewarm(XnioWorker worker) {
+        final Undertow loopbackServer = Undertow.builder().setWorker(worker).addHttpListener(0, "127.0.0.1", this).build();
+        loopbackServer.start();
+
+        try {
+            final long start = System.currentTimeMillis();
+            final int result = prewarm(((InetSocketAddress) loopbackServer.getListenerInfo().get(0).getAddress()).getPort());
+            LOG.info("Pre-warmed " + result + " of " + requests.size() + " connections to " + instances.size() + " backend instances in "
+                     + (System.currentTimeMillis() - start) + "ms.");
+            return result;
+        } finally {
+            loopbackServer.stop();
+        }
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final Deque<String> parameter = exchange.getQueryParameters().get(INSTANCE_PARAMETER);
+        final BackendInstance instance;
+        try {
+            instance = instances.get(Integer.parseInt(parameter.getFirst()));
+        } catch (RuntimeException e) {
+            exchange.setStatusCode(StatusCodes.BAD_REQUEST);
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> instance.getConnection(exchange, new PrewarmCallback(), timeout, TimeUnit.MILLISECONDS));
+    }
+
+
+    /**
+     * Send the pre-warm requests to the loopback listener and wait until the connections are acquired
+     *
+     * @param port the port of the loopback listener
+     * @return the number of pre-warmed connections
+     */
+    protected int prewarm(int port) {
+        final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofMillis(timeout)).build();
+        final List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (Integer index : requests) {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/?" + INSTANCE_PARAMETER + "=" + index))
+                    .timeout(Duration.ofMillis(timeout * 2)).GET().build();
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+
+        try {
+            if (!pending.await(timeout, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Pre-warm of the connections timed out after " + timeout + "ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            release();
+        }
+
+        int result = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            try {
+                if (response.get(timeout, TimeUnit.MILLISECONDS).statusCode() == StatusCodes.NO_CONTENT) {
+                    result++;
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                LOG.debug("Pre-warm request failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Release the acquired connections: the exchanges are ended in their IO thread, which returns the connections to the
+     * pools. The loopback connections are closed with the responses. A connection which is acquired after the release is
+     * returned immediately.
+     */
+    protected void release() {
+        released = true;
+        HttpServerExchange exchange = acquiredExchanges.poll();
+        while (exchange != null) {
+            final HttpServerExchange acquiredExchange = exchange;
+            acquiredExchange.getIoThread().execute(() -> {
+                acquiredExchange.setStatusCode(StatusCodes.NO_CONTENT);
+                acquiredExchange.setPersistent(false);
+                acquiredExchange.endExchange();
+            });
+            exchange = acquiredExchanges.poll();
+        }
+    }
+
+
+    /**
+     * The callback of a pre-warm request: the acquired connection is held until all connections are acquired.
+     */
+    private class PrewarmCallback implements ProxyCallback<ProxyConnection> {
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#completed(io.undertow.server.HttpServerExchange, java.lang.Object)
+         */
+        @Override
+        public void completed(HttpServerExchange exchange, ProxyConnection result) {
+            acquiredExchanges.add(exchange);
+            pending.countDown();
+            if (released || pending.getCount() == 0) {
+                release();
+            }
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#failed(io.undertow.server.HttpServerExchange)
+         */
+        @Override
+        public void failed(HttpServerExchange exchange) {
+            exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+            exchange.endExchange();
+            pending.countDown();
+            if (pending.getCount() == 0) {
+                release();
+            }
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#couldNotResolveBackend(io.undertow.server.HttpServerExchange)
+         */
+        @Override
+        public void couldNotResolveBackend(HttpServerExchange exchange) {
+            failed(exchange);
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#queuedRequestFailed(io.undertow.server.HttpServerExchange)
+         */
+        @Override
+        public void queuedRequestFailed(HttpServerExchange exchange) {
+            failed(exchange);
+        }
+    }
+}
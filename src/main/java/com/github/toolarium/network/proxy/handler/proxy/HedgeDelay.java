@@ -0,0 +1,88 @@
+/*
+ * HedgeDelay.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * The delay of a hedged request: the percentile of the recent latencies. The latencies are kept in a ring of the last
+ * samples; the percentile is computed from a sorted copy of the ring every few samples by the recording thread, that
+ * reading the delay costs a volatile read. As long as too few latencies are known the max delay is used.
+ *
+ * @author patrick
+ */
+public class HedgeDelay {
+    private static final int SAMPLES = 256;
+    private static final int UPDATE_INTERVAL = 32;
+    private final int percentile;
+    private final long minDelay;
+    private final long maxDelay;
+    private final AtomicLongArray latencies;
+    private final AtomicLong count;
+    private volatile long delay;
+
+
+    /**
+     * Constructor for HedgeDelay
+     *
+     * @param percentile the percentile
+     * @param minDelay the min delay in milliseconds
+     * @param maxDelay the max delay in milliseconds
+     */
+    public HedgeDelay(int percentile, long minDelay, long maxDelay) {
+        this.percentile = percentile;
+        this.minDelay = TimeUnit.MILLISECONDS.toNanos(minDelay);
+        this.maxDelay = Math.max(TimeUnit.MILLISECONDS.toNanos(maxDelay), this.minDelay);
+        this.latencies = new AtomicLongArray(SAMPLES);
+        this.count = new AtomicLong();
+        this.delay = this.maxDelay;
+    }
+
+
+    /**
+     * Record a latency
+     *
+     * @param latency the latency in nanoseconds
+     */
+    public void record(long latency) {
+        final long index = count.getAndIncrement();
+        latencies.set((int) (index % SAMPLES), latency);
+        if ((index + 1) % UPDATE_INTERVAL == 0) {
+            update(Math.min(index + 1, SAMPLES));
+        }
+    }
+
+
+    /**
+     * Get the delay after which a request is hedged
+     *
+     * @return the delay in nanoseconds
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+
+    /**
+     * Compute the percentile of the recorded latencies
+     *
+     * @param size the number of recorded latencies
+     */
+    protected void update(long size) {
+        final long[] sorted = new long[(int) size];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+
+        final long value = sorted[(int) Math.min(size - 1, size * percentile / 100)];
+        delay = Math.min(Math.max(value, minDelay), maxDelay);
+    }
+}
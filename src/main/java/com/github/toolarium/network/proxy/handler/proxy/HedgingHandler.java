@@ -0,0 +1,601 @@
+/*
+ * HedgingHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.BackendProtocol;
+import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import com.github.toolarium.network.proxy.config.NetworkProxyHedge;
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientExchange;
+import io.undertow.client.ClientRequest;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import io.undertow.util.Transfer;
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.ChannelExceptionHandler;
+import org.xnio.ChannelListeners;
+import org.xnio.IoUtils;
+import org.xnio.XnioExecutor;
+import org.xnio.channels.StreamSinkChannel;
+
+
+/**
+ * Sends hedged GET and HEAD requests: if the instance selected by the load balancer of the node has not answered
+ * within the {@link HedgeDelay} after the request was sent, a second copy is sent to the next instance and the first
+ * response wins. Both attempts are sent over the pooled connections of the instances. The response of the winner is
+ * streamed to the client as soon as its headers arrive and the connection of the other attempt is closed, therefore a
+ * response is never buffered and a request is never sent again once a response started. The proxy handler can't
+ * abandon a sent request without answering the exchange itself, therefore the hedged requests don't pass it. The hedged
+ * requests are bounded by a {@link RetryBudget}. Requests with a body or of a node with a single instance are passed to
+ * the next handler. A failed attempt is sent once to the next instance. Closing the other attempt would close a shared
+ * HTTP/2 connection and the attempts bypass the sticky sessions, therefore such a node is not hedged.
+ *
+ * @author patrick
+ */
+public class HedgingHandler implements HttpHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(HedgingHandler.class);
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("connection", "keep-alive", "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade", "expect", "content-length");
+    private static final HttpString X_FORWARDED_FOR = new HttpString("X-Forwarded-For");
+    private static final HttpString X_FORWARDED_PROTO = new HttpString("X-Forwarded-Proto");
+    private static final HttpString X_FORWARDED_HOST = new HttpString("X-Forwarded-Host");
+    private final HttpHandler next;
+    private final NodeProxyClient proxyClient;
+    private final HedgeDelay hedgeDelay;
+    private final RetryBudget hedgeBudget;
+    private final long maxRequestTime;
+    private final LongAdder hedgedCount;
+
+
+    /**
+     * Constructor for HedgingHandler
+     *
+     * @param next the next handler
+     * @param hedge the hedge settings
+     * @param proxyClient the proxy client of the node
+     * @param maxRequestTime the max request time in milliseconds
+     */
+    public HedgingHandler(HttpHandler next, NetworkProxyHedge hedge, NodeProxyClient proxyClient, long maxRequestTime) {
+        this.next = next;
+        this.proxyClient = proxyClient;
+        this.hedgeDelay = new HedgeDelay(hedge.getPercentile(), hedge.getMinDelay(), hedge.getMaxDelay());
+        this.hedgeBudget = new RetryBudget(hedge.getBudgetPercent(), 0);
+        this.maxRequestTime = maxRequestTime;
+        this.hedgedCount = new LongAdder();
+    }
+
+
+    /**
+     * Check if the requests of a node can be hedged: the attempts would bypass the sticky session and closing the other
+     * attempt would close a shared HTTP/2 connection of the node.
+     *
+     * @param node the node
+     * @return true if the requests can be hedged
+     */
+    public static boolean isSupported(INetworkProxyNode node) {
+        return (node.getStickySession() == null || !node.getStickySession().isEnabled()) && !BackendProtocol.HTTP_2.equals(node.getBackendProtocol());
+    }
+
+
+    /**
+     * Get the hedge delay
+     *
+     * @return the hedge delay
+     */
+    public HedgeDelay getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+
+    /**
+     * Get the number of hedged requests
+     *
+     * @return the number of hedged requests
+     */
+    public long getHedgedCount() {
+        return hedgedCount.sum();
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final HttpString method = exchange.getRequestMethod();
+        if ((!Methods.GET.equals(method) && !Methods.HEAD.equals(method)) || RetryPolicy.hasBody(exchange)) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        List<BackendInstance> instances = proxyClient.getAvailableInstances();
+        if (instances.isEmpty()) {
+            instances = proxyClient.getInstances();
+        }
+
+        if (instances.size() < 2) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        final BackendInstance[] selectableInstances = instances.toArray(new BackendInstance[instances.size()]);
+        final int start = proxyClient.getLoadBalancer().select(selectableInstances, exchange);
+        final HedgedRequest hedgedRequest = new HedgedRequest(exchange, selectableInstances, start);
+        hedgeBudget.recordRequest();
+
+        // the pooled connections belong to the IO thread of the exchange, the attempts are sent after the handler returned
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(SameThreadExecutor.INSTANCE, hedgedRequest::start);
+        } else {
+            exchange.dispatch(exchange.getIoThread(), hedgedRequest::start);
+        }
+    }
+
+
+    /**
+     * Create a backend request of an exchange
+     *
+     * @param exchange the exchange
+     * @param instance the instance
+     * @return the request
+     */
+    protected ClientRequest createRequest(HttpServerExchange exchange, BackendInstance instance) {
+        final ClientRequest request = new ClientRequest().setMethod(exchange.getRequestMethod()).setPath(instance.createRequestPath(exchange));
+        final HeaderMap requestHeaders = exchange.getRequestHeaders();
+        final HeaderMap headers = request.getRequestHeaders();
+        for (HeaderValues values : requestHeaders) {
+            final HttpString name = values.getHeaderName();
+            if (!HOP_BY_HOP_HEADERS.contains(name.toString().toLowerCase(Locale.ROOT)) && !X_FORWARDED_FOR.equals(name)) {
+                headers.putAll(name, values);
+            }
+        }
+
+        final String address = exchange.getSourceAddress().getAddress().getHostAddress();
+        final String forwardedFor = requestHeaders.getFirst(X_FORWARDED_FOR);
+        if (forwardedFor == null || forwardedFor.isBlank()) {
+            headers.put(X_FORWARDED_FOR, address);
+        } else {
+            headers.put(X_FORWARDED_FOR, forwardedFor + "," + address);
+        }
+
+        if (!requestHeaders.contains(X_FORWARDED_PROTO)) {
+            headers.put(X_FORWARDED_PROTO, exchange.getRequestScheme());
+        }
+
+        if (!requestHeaders.contains(X_FORWARDED_HOST)) {
+            headers.put(X_FORWARDED_HOST, exchange.getHostAndPort());
+        }
+        return request;
+    }
+
+
+    /**
+     * The attempts of a hedged request. The state is confined to the IO thread of the exchange: the pooled connections,
+     * their callbacks and the hedge timer belong to it.
+     */
+    private final class HedgedRequest {
+        private final HttpServerExchange exchange;
+        private final BackendInstance[] instances;
+        private final int start;
+        private final Attempt[] attempts;
+        private final ChannelExceptionHandler<Channel> transferFailure;
+        private int sent;
+        private int failed;
+        private boolean completed;
+        private StreamSinkChannel finishedResponse;
+        private XnioExecutor.Key timer;
+
+
+        /**
+         * Constructor for HedgedRequest
+         *
+         * @param exchange the exchange
+         * @param instances the instances
+         * @param start the index of the selected instance
+         */
+        HedgedRequest(HttpServerExchange exchange, BackendInstance[] instances, int start) {
+            this.exchange = exchange;
+            this.instances = instances;
+            this.start = start;
+            this.attempts = new Attempt[2];
+            this.transferFailure = (channel, e) -> transferFailed(channel, e);
+            this.sent = 1;
+            this.failed = 0;
+            this.completed = false;
+        }
+
+
+        /**
+         * Send the first attempt
+         */
+        void start() {
+            send(0, maxRequestTime, TimeUnit.MILLISECONDS);
+        }
+
+
+        /**
+         * Send the second attempt if the first is still outstanding and the budget allows it
+         */
+        void hedge() {
+            timer = null;
+            if (completed || sent > 1 || !hedgeBudget.tryRetry()) {
+                return;
+            }
+
+            sent = 2;
+            hedgedCount.increment();
+
+            // a copy which waits longer than the hedge delay for a pooled connection is useless
+            send(1, hedgeDelay.getDelay(), TimeUnit.NANOSECONDS);
+        }
+
+
+        /**
+         * Get a connection for an attempt
+         *
+         * @param index the index of the attempt
+         * @param timeout the timeout to wait for a pooled connection, not positive to wait without timeout
+         * @param timeUnit the time unit
+         */
+        void send(int index, long timeout, TimeUnit timeUnit) {
+            final Attempt attempt = new Attempt(index, instances[(start + index) % instances.length]);
+            attempts[index] = attempt;
+            attempt.instance.getConnection(exchange, attempt, timeout, timeUnit);
+        }
+
+
+        /**
+         * The connection of an attempt is ready: the request is sent and the hedge timer starts with the first attempt
+         *
+         * @param attempt the attempt
+         * @param connection the connection
+         */
+        void connected(Attempt attempt, ProxyConnection connection) {
+            attempt.pending = false;
+            attempt.connection = connection;
+            if (completed) {
+                // the other attempt won while this one waited for its connection
+                attempt.cancel();
+                finishResponse();
+                return;
+            }
+
+            if (attempt.index == 0 && sent == 1) {
+                timer = exchange.getIoThread().executeAfter(this::hedge, hedgeDelay.getDelay(), TimeUnit.NANOSECONDS);
+            }
+            connection.getConnection().sendRequest(createRequest(exchange, attempt.instance), new RequestCallback(attempt));
+        }
+
+
+        /**
+         * An attempt failed before its response arrived, it is sent once to the next instance
+         *
+         * @param attempt the attempt
+         * @param instanceFailure true if the instance failed, false if its connection pool is exhausted
+         * @param e the error or null
+         */
+        void failed(Attempt attempt, boolean instanceFailure, IOException e) {
+            attempt.pending = false;
+            if (completed) {
+                attempt.cancel();
+                finishResponse();
+                return;
+            }
+
+            attempt.close();
+            attempt.end(false);
+            if (instanceFailure) {
+                attempt.instance.getMetrics().recordConnectFailure();
+                proxyClient.getOutlierDetector().connectFailure(attempt.instance);
+            }
+            LOG.debug("Request to [" + attempt.instance.getUri() + "] failed: " + e);
+
+            failed++;
+            if (sent < 2) {
+                sent = 2;
+                removeTimer();
+                send(1, maxRequestTime, TimeUnit.MILLISECONDS);
+            } else if (failed == sent) {
+                completed = true;
+                removeTimer();
+                exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+                exchange.endExchange();
+            }
+        }
+
+
+        /**
+         * The response headers of an attempt arrived: the first response wins and is streamed to the client, the other
+         * attempt is cancelled
+         *
+         * @param attempt the attempt
+         * @param clientExchange the exchange of the backend request
+         */
+        void respond(Attempt attempt, ClientExchange clientExchange) {
+            if (completed) {
+                attempt.cancel();
+                return;
+            }
+
+            completed = true;
+            removeTimer();
+            final Attempt other = attempts[1 - attempt.index];
+            if (other != null) {
+                other.cancel();
+            }
+
+            final int statusCode = clientExchange.getResponse().getResponseCode();
+            final long latency = attempt.end(statusCode < 500);
+            attempt.instance.getMetrics().record(statusCode, latency);
+            proxyClient.getOutlierDetector().response(attempt.instance, statusCode, latency);
+            hedgeDelay.record(latency);
+
+            exchange.setStatusCode(statusCode);
+            final HeaderMap responseHeaders = exchange.getResponseHeaders();
+            for (HeaderValues values : clientExchange.getResponse().getResponseHeaders()) {
+                if (!responseHeaders.contains(values.getHeaderName())) {
+                    responseHeaders.putAll(values.getHeaderName(), values);
+                }
+            }
+
+            Transfer.initiateTransfer(clientExchange.getResponseChannel(), exchange.getResponseChannel(), ChannelListeners.closingChannelListener(),
+                                      this::responseTransferred, transferFailure, transferFailure, exchange.getConnection().getByteBufferPool());
+        }
+
+
+        /**
+         * The response is transferred: it is finished as soon as no attempt waits for its connection any more, the pool
+         * of the instance can't hand out a connection for a completed exchange
+         *
+         * @param response the response channel
+         */
+        private void responseTransferred(StreamSinkChannel response) {
+            finishedResponse = response;
+            finishResponse();
+        }
+
+
+        /**
+         * Finish the transferred response if no attempt waits for its connection
+         */
+        private void finishResponse() {
+            if (finishedResponse == null) {
+                return;
+            }
+
+            for (Attempt attempt : attempts) {
+                if (attempt != null && attempt.pending) {
+                    return;
+                }
+            }
+
+            final StreamSinkChannel response = finishedResponse;
+            finishedResponse = null;
+            try {
+                response.shutdownWrites();
+                if (!response.flush()) {
+                    response.getWriteSetter().set(ChannelListeners.flushingChannelListener(null, transferFailure));
+                    response.resumeWrites();
+                }
+            } catch (IOException e) {
+                transferFailed(response, e);
+            }
+        }
+
+
+        /**
+         * The transfer of the response failed, the connections are closed
+         *
+         * @param channel the channel
+         * @param e the error
+         */
+        private void transferFailed(Channel channel, IOException e) {
+            LOG.debug("Transfer of the response failed: " + e.getMessage());
+            for (Attempt attempt : attempts) {
+                if (attempt != null) {
+                    attempt.close();
+                }
+            }
+            IoUtils.safeClose(exchange.getConnection());
+        }
+
+
+        /**
+         * Remove the hedge timer
+         */
+        private void removeTimer() {
+            if (timer != null) {
+                timer.remove();
+                timer = null;
+            }
+        }
+
+
+        /**
+         * An attempt of a hedged request
+         */
+        private final class Attempt implements ProxyCallback<ProxyConnection> {
+            private final int index;
+            private final BackendInstance instance;
+            private final long startTimestamp;
+            private ProxyConnection connection;
+            private boolean pending;
+            private boolean ended;
+
+
+            /**
+             * Constructor for Attempt
+             *
+             * @param index the index of the attempt
+             * @param instance the instance
+             */
+            Attempt(int index, BackendInstance instance) {
+                this.index = index;
+                this.instance = instance;
+                this.startTimestamp = instance.start();
+                this.pending = true;
+                this.ended = false;
+            }
+
+
+            /**
+             * @see io.undertow.server.handlers.proxy.ProxyCallback#completed(io.undertow.server.HttpServerExchange, java.lang.Object)
+             */
+            @Override
+            public void completed(HttpServerExchange exchange, ProxyConnection result) {
+                connected(this, result);
+            }
+
+
+            /**
+             * @see io.undertow.server.handlers.proxy.ProxyCallback#failed(io.undertow.server.HttpServerExchange)
+             */
+            @Override
+            public void failed(HttpServerExchange exchange) {
+                HedgedRequest.this.failed(this, true, null);
+            }
+
+
+            /**
+             * @see io.undertow.server.handlers.proxy.ProxyCallback#couldNotResolveBackend(io.undertow.server.HttpServerExchange)
+             */
+            @Override
+            public void couldNotResolveBackend(HttpServerExchange exchange) {
+                HedgedRequest.this.failed(this, true, null);
+            }
+
+
+            /**
+             * @see io.undertow.server.handlers.proxy.ProxyCallback#queuedRequestFailed(io.undertow.server.HttpServerExchange)
+             */
+            @Override
+            public void queuedRequestFailed(HttpServerExchange exchange) {
+                HedgedRequest.this.failed(this, false, null);
+            }
+
+
+            /**
+             * Record the end of the attempt against its instance, an attempt is recorded only once
+             *
+             * @param success true if the attempt succeeded
+             * @return the latency in nanoseconds
+             */
+            long end(boolean success) {
+                if (ended) {
+                    return 0;
+                }
+                ended = true;
+                return instance.end(startTimestamp, success);
+            }
+
+
+            /**
+             * Cancel the attempt which lost: its connection is closed, the instance is not blamed
+             */
+            void cancel() {
+                close();
+                end(true);
+            }
+
+
+            /**
+             * Close the connection of the attempt, a connection with an outstanding request can't be reused
+             */
+            void close() {
+                if (connection != null) {
+                    IoUtils.safeClose(connection.getConnection());
+                }
+            }
+        }
+
+
+        /**
+         * The callback of a sent request, it waits for the response of the attempt
+         */
+        private final class RequestCallback implements ClientCallback<ClientExchange> {
+            private final Attempt attempt;
+
+
+            /**
+             * Constructor for RequestCallback
+             *
+             * @param attempt the attempt
+             */
+            RequestCallback(Attempt attempt) {
+                this.attempt = attempt;
+            }
+
+
+            /**
+             * @see io.undertow.client.ClientCallback#completed(java.lang.Object)
+             */
+            @Override
+            public void completed(ClientExchange result) {
+                result.setResponseListener(new ResponseCallback(attempt));
+            }
+
+
+            /**
+             * @see io.undertow.client.ClientCallback#failed(java.io.IOException)
+             */
+            @Override
+            public void failed(IOException e) {
+                HedgedRequest.this.failed(attempt, true, e);
+            }
+        }
+
+
+        /**
+         * The callback of the response headers of an attempt
+         */
+        private final class ResponseCallback implements ClientCallback<ClientExchange> {
+            private final Attempt attempt;
+
+
+            /**
+             * Constructor for ResponseCallback
+             *
+             * @param attempt the attempt
+             */
+            ResponseCallback(Attempt attempt) {
+                this.attempt = attempt;
+            }
+
+
+            /**
+             * @see io.undertow.client.ClientCallback#completed(java.lang.Object)
+             */
+            @Override
+            public void completed(ClientExchange result) {
+                respond(attempt, result);
+            }
+
+
+            /**
+             * @see io.undertow.client.ClientCallback#failed(java.io.IOException)
+             */
+            @Override
+            public void failed(IOException e) {
+                HedgedRequest.this.failed(attempt, true, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * NodeProxyClient.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.LoadBalancerFactory;
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyClient;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.StatusCodes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The proxy client of a network proxy node. It selects one of the backend instances by the configured
+ * {@link ILoadBalancer} and delegates to its connection pool. The instances are immutable, a changed node
+ * results in a new proxy client. Only the available instances are balanced: the snapshot is replaced as soon as
+ * the availability of an instance changes. In case no instance is available all instances are used.
+ * The results of the requests are reported to the {@link OutlierDetector} of the node. Every attempt of a request
+ * passes the {@link RetryPolicy} of the node if the retries are enabled. With sticky sessions a request pinned by the
+ * {@link StickySession} is passed to its instance as long as it is available. The {@link SlowStart} reduces the share
+ * of the requests of an instance which became available recently. A retried exchange is recorded once against the
+ * instance which served its response, the attempts before are recorded as failed.
+ *
+ * @author patrick
+ */
+public class NodeProxyClient implements ProxyClient {
+    private static final ProxyTarget PROXY_TARGET = new ProxyTarget() {
+    };
+    private static final AttachmentKey<FailoverCallback> ATTEMPT = AttachmentKey.create(FailoverCallback.class);
+    private static final ExchangeCompletionListener ATTEMPT_LISTENER = (exchange, nextListener) -> {
+        try {
+            final FailoverCallback attempt = exchange.getAttachment(ATTEMPT);
+            if (attempt != null) {
+                attempt.end(exchange.getStatusCode());
+            }
+        } finally {
+            nextListener.proceed();
+        }
+    };
+    private final INetworkProxyNode node;
+    private final BackendInstance[] instances;
+    private final ILoadBalancer loadBalancer;
+    private final OutlierDetector outlierDetector;
+    private final RetryPolicy retryPolicy;
+    private final StickySession stickySession;
+    private final SlowStart slowStart;
+    private final Runnable availabilityListener;
+    private volatile BackendInstance[] availableInstances;
+
+
+    /**
+     * Constructor for NodeProxyClient
+     *
+     * @param node the node
+     * @param instances the backend instances
+     * @param scheduler the scheduler
+     */
+    public NodeProxyClient(INetworkProxyNode node, List<BackendInstance> instances, ScheduledExecutorService scheduler) {
+        this.node = node;
+        this.instances = instances.toArray(new BackendInstance[instances.size()]);
+        this.loadBalancer = LoadBalancerFactory.createLoadBalancer(node);
+        this.outlierDetector = new OutlierDetector(node.getOutlierDetection(), this.instances, scheduler);
+        if (node.getRetry() != null && node.getRetry().isEnabled()) {
+            this.retryPolicy = new RetryPolicy(node.getRetry());
+        } else {
+            this.retryPolicy = null;
+        }
+        if (node.getStickySession() != null && node.getStickySession().isEnabled()) {
+            this.stickySession = new StickySession(node.getStickySession(), node.getResource());
+        } else {
+            this.stickySession = null;
+        }
+        if (node.getSlowStart() != null && node.getSlowStart().isEnabled()) {
+            this.slowStart = new SlowStart(node.getSlowStart(), LoadBalancerFactory.createLoadBalancer(node));
+        } else {
+            this.slowStart = null;
+        }
+        this.availabilityListener = this::updateAvailableInstances;
+        updateAvailableInstances();
+
+        for (BackendInstance instance : this.instances) {
+            instance.addAvailabilityListener(availabilityListener);
+        }
+    }
+
+
+    /**
+     * Get the node
+     *
+     * @return the node
+     */
+    public INetworkProxyNode getNode() {
+        return node;
+    }
+
+
+    /**
+     * Get the backend instances
+     *
+     * @return the backend instances
+     */
+    public List<BackendInstance> getInstances() {
+        return List.of(instances);
+    }
+
+
+    /**
+     * Get the available backend instances
+     *
+     * @return the available backend instances
+     */
+    public List<BackendInstance> getAvailableInstances() {
+        return List.of(availableInstances);
+    }
+
+
+    /**
+     * Get the load balancer
+     *
+     * @return the load balancer
+     */
+    public ILoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+
+    /**
+     * Get the outlier detector
+     *
+     * @return the outlier detector
+     */
+    public OutlierDetector getOutlierDetector() {
+        return outlierDetector;
+    }
+
+
+    /**
+     * Get the retry policy
+     *
+     * @return the retry policy or null if the retries are disabled
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+
+    /**
+     * Get the sticky session
+     *
+     * @return the sticky session or null if the sticky sessions are disabled
+     */
+    public StickySession getStickySession() {
+        return stickySession;
+    }
+
+
+    /**
+     * @see io.undertow.server.handlers.proxy.ProxyClient#findTarget(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public ProxyTarget findTarget(HttpServerExchange exchange) {
+        return PROXY_TARGET;
+    }
+
+
+    /**
+     * @see io.undertow.server.handlers.proxy.ProxyClient#getConnection(io.undertow.server.handlers.proxy.ProxyClient.ProxyTarget,
+     *      io.undertow.server.HttpServerExchange, io.undertow.server.handlers.proxy.ProxyCallback, long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void getConnection(ProxyTarget target, HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit) {
+        final FailoverCallback previousAttempt = exchange.getAttachment(ATTEMPT);
+        if (previousAttempt != null) {
+            // the previous attempt was sent but failed without a response, the proxy handler retries the request
+            previousAttempt.end(StatusCodes.BAD_GATEWAY);
+        }
+
+        if (instances.length == 0) {
+            callback.couldNotResolveBackend(exchange);
+            return;
+        }
+
+        if (retryPolicy != null && !retryPolicy.startAttempt(exchange)) {
+            // the retry budget is exhausted, the request fails without further attempts
+            callback.couldNotResolveBackend(exchange);
+            return;
+        }
+
+        BackendInstance[] selectableInstances = availableInstances;
+        if (selectableInstances.length == 0) {
+            // no instance is available, better to try all than to reject every request
+            selectableInstances = instances;
+        }
+
+        int start = -1;
+        if (stickySession != null) {
+            start = stickySession.select(selectableInstances, exchange);
+        }
+
+        if (start < 0) {
+            start = loadBalancer.select(selectableInstances, exchange);
+            if (slowStart != null) {
+                start = slowStart.select(selectableInstances, start, exchange);
+            }
+        }
+        new FailoverCallback(selectableInstances, start, outlierDetector, stickySession, callback, timeout, timeUnit).connect(exchange);
+    }
+
+
+    /**
+     * Close the proxy client, the backend instances are owned by the registry and stay open.
+     */
+    public void close() {
+        for (BackendInstance instance : instances) {
+            instance.removeAvailabilityListener(availabilityListener);
+        }
+    }
+
+
+    /**
+     * Update the snapshot of the available instances
+     */
+    protected synchronized void updateAvailableInstances() {
+        List<BackendInstance> result = new ArrayList<>(instances.length);
+        for (BackendInstance instance : instances) {
+            if (instance.isAvailable()) {
+                result.add(instance);
+            }
+        }
+        availableInstances = result.toArray(new BackendInstance[result.size()]);
+    }
+
+
+    /**
+     * The failover callback: in case an instance has no connection available the next instance will be tried.
+     * It tracks the outstanding requests and the latency of the selected instance until the exchange is completed or
+     * retried.
+     */
+    private static final class FailoverCallback implements ProxyCallback<ProxyConnection> {
+        private final BackendInstance[] instances;
+        private final int start;
+        private final OutlierDetector outlierDetector;
+        private final StickySession stickySession;
+        private final ProxyCallback<ProxyConnection> callback;
+        private final long timeout;
+        private final TimeUnit timeUnit;
+        private int attempt;
+        private BackendInstance instance;
+        private long startTimestamp;
+        private boolean ended;
+
+
+        /**
+         * Constructor for FailoverCallback
+         *
+         * @param instances the instances
+         * @param start the index of the first instance
+         * @param outlierDetector the outlier detector
+         * @param stickySession the sticky session or null
+         * @param callback the callback
+         * @param timeout the timeout
+         * @param timeUnit the time unit
+         */
+        FailoverCallback(BackendInstance[] instances, int start, OutlierDetector outlierDetector, StickySession stickySession, ProxyCallback<ProxyConnection> callback,
+                         long timeout, TimeUnit timeUnit) {
+            this.instances = instances;
+            this.start = start;
+            this.outlierDetector = outlierDetector;
+            this.stickySession = stickySession;
+            this.callback = callback;
+            this.timeout = timeout;
+            this.timeUnit = timeUnit;
+            this.attempt = 0;
+            this.ended = false;
+        }
+
+
+        /**
+         * Connect to the current instance
+         *
+         * @param exchange the exchange
+         */
+        void connect(HttpServerExchange exchange) {
+            instance = instances[(start + attempt) % instances.length];
+            startTimestamp = instance.start();
+            instance.getConnection(exchange, this, timeout, timeUnit);
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#completed(io.undertow.server.HttpServerExchange, java.lang.Object)
+         */
+        @Override
+        public void completed(HttpServerExchange exchange, ProxyConnection result) {
+            if (exchange.putAttachment(ATTEMPT, this) == null) {
+                // the listener is registered once, it records the attempt which is attached when the exchange completes
+                exchange.addExchangeCompleteListener(ATTEMPT_LISTENER);
+            }
+            if (stickySession != null) {
+                stickySession.pin(exchange, instance);
+            }
+
+            final BufferedRequestBody body = exchange.getAttachment(BufferedRequestBody.KEY);
+            if (body == null) {
+                callback.completed(exchange, result);
+            } else {
+                completedWithBufferedBody(exchange, result, body);
+            }
+        }
+
+
+        /**
+         * Pass the connection of a request with a buffered body to the proxy handler. The proxy handler keeps itself as
+         * retry handler of a request only if the request is complete when it gets the connection, but the provided body
+         * is not read at this point. Therefore the body is consumed before and provided again after the connection is
+         * passed. The proxy handler dispatches the sending of the request to the same thread: inside a handler call it
+         * runs after the handler returned, outside it runs at once and would send the consumed body. The pool calls
+         * back outside a handler call if the connection was opened or queued, therefore the connection is passed by a
+         * root handler; it is not ended by the root handler because the proxy handler always dispatches.
+         *
+         * @param exchange the exchange
+         * @param result the connection
+         * @param body the buffered body
+         */
+        private void completedWithBufferedBody(HttpServerExchange exchange, ProxyConnection result, BufferedRequestBody body) {
+            Connectors.executeRootHandler(completedExchange -> {
+                body.consume(completedExchange);
+                callback.completed(completedExchange, result);
+                body.replay(completedExchange);
+            }, exchange);
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#failed(io.undertow.server.HttpServerExchange)
+         */
+        @Override
+        public void failed(HttpServerExchange exchange) {
+            instance.end(startTimestamp, false);
+            instance.getMetrics().recordConnectFailure();
+            outlierDetector.connectFailure(instance);
+            attempt++;
+            if (attempt < instances.length) {
+                connect(exchange);
+            } else {
+                callback.failed(exchange);
+            }
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#couldNotResolveBackend(io.undertow.server.HttpServerExchange)
+         */
+        @Override
+        public void couldNotResolveBackend(HttpServerExchange exchange) {
+            instance.end(startTimestamp, false);
+            instance.getMetrics().recordConnectFailure();
+            outlierDetector.connectFailure(instance);
+            attempt++;
+            if (attempt < instances.length) {
+                connect(exchange);
+            } else {
+                callback.couldNotResolveBackend(exchange);
+            }
+        }
+
+
+        /**
+         * @see io.undertow.server.handlers.proxy.ProxyCallback#queuedRequestFailed(io.undertow.server.HttpServerExchange)
+         */
+        @Override
+        public void queuedRequestFailed(HttpServerExchange exchange) {
+            // the pool of the instance is exhausted, it is not a failure of the instance itself
+            instance.end(startTimestamp, false);
+            attempt++;
+            if (attempt < instances.length) {
+                connect(exchange);
+            } else {
+                callback.queuedRequestFailed(exchange);
+            }
+        }
+
+
+        /**
+         * Record the result of the attempt against its instance, an attempt is recorded only once
+         *
+         * @param statusCode the status code
+         */
+        void end(int statusCode) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            final long latency = instance.end(startTimestamp, statusCode < 500);
+            instance.getMetrics().record(statusCode, latency);
+            outlierDetector.response(instance, statusCode, latency);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * OutlierDetector.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyOutlierDetection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The passive outlier detection of the instances of a node. The results of the real requests are recorded: after the
+ * configured consecutive errors (5xx or slower than the latency threshold) or connect failures the circuit of an
+ * instance is opened. The ejection time doubles with every ejection up to the max ejection time, afterwards the circuit
+ * is half open: the next success closes it, the next failure opens it again. The success path only reads and resets
+ * atomic counters.
+ *
+ * @author patrick
+ */
+public class OutlierDetector {
+    private static final Logger LOG = LoggerFactory.getLogger(OutlierDetector.class);
+    private final NetworkProxyOutlierDetection outlierDetection;
+    private final BackendInstance[] instances;
+    private final ScheduledExecutorService scheduler;
+    private final boolean enabled;
+    private final long latencyThreshold;
+
+
+    /**
+     * Constructor for OutlierDetector
+     *
+     * @param outlierDetection the outlier detection settings
+     * @param instances the instances of the node
+     * @param scheduler the scheduler to half open the circuit
+     */
+    public OutlierDetector(NetworkProxyOutlierDetection outlierDetection, BackendInstance[] instances, ScheduledExecutorService scheduler) {
+        this.outlierDetection = outlierDetection;
+        this.instances = instances;
+        this.scheduler = scheduler;
+        this.enabled = outlierDetection != null && outlierDetection.isEnabled();
+        if (enabled && outlierDetection.getLatencyThreshold() > 0) {
+            this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(outlierDetection.getLatencyThreshold());
+        } else {
+            this.latencyThreshold = 0;
+        }
+    }
+
+
+    /**
+     * Check if the outlier detection is enabled
+     *
+     * @return true if it is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * A response was received from an instance
+     *
+     * @param instance the instance
+     * @param statusCode the status code
+     * @param latency the latency in nanoseconds
+     */
+    public void response(BackendInstance instance, int statusCode, long latency) {
+        if (!enabled) {
+            return;
+        }
+
+        if (statusCode >= 500 || (latencyThreshold > 0 && latency > latencyThreshold)) {
+            if (instance.recordError() >= outlierDetection.getConsecutiveErrors() || instance.getCircuitState() == CircuitState.HALF_OPEN) {
+                eject(instance, "consecutive errors");
+            }
+        } else {
+            instance.recordSuccess();
+        }
+    }
+
+
+    /**
+     * No connection could be established to an instance
+     *
+     * @param instance the instance
+     */
+    public void connectFailure(BackendInstance instance) {
+        if (!enabled) {
+            return;
+        }
+
+        if (instance.recordConnectFailure() >= outlierDetection.getConsecutiveConnectFailures() || instance.getCircuitState() == CircuitState.HALF_OPEN) {
+            eject(instance, "consecutive connect failures");
+        }
+    }
+
+
+    /**
+     * Eject an instance as long as the max ejection percentage of the node is not exceeded
+     *
+     * @param instance the instance
+     * @param reason the reason
+     */
+    protected void eject(BackendInstance instance, String reason) {
+        int ejected = 0;
+        for (BackendInstance i : instances) {
+            if (i.getCircuitState() == CircuitState.OPEN) {
+                ejected++;
+            }
+        }
+
+        if ((ejected + 1) * 100 > instances.length * outlierDetection.getMaxEjectionPercent()) {
+            LOG.debug("Backend instance [" + instance.getUri() + "] is not ejected, max ejection percent of " + outlierDetection.getMaxEjectionPercent() + "% reached.");
+            return;
+        }
+
+        final long maxEjectionTime = outlierDetection.getMaxEjectionTime();
+        final int ejectionCount = instance.openCircuit(TimeUnit.MILLISECONDS.toNanos(maxEjectionTime + outlierDetection.getBaseEjectionTime()));
+        if (ejectionCount == 0) {
+            return;
+        }
+
+        final long ejectionTime = Math.min((long) outlierDetection.getBaseEjectionTime() << Math.min(ejectionCount - 1, 20), maxEjectionTime);
+        LOG.warn("Backend instance [" + instance.getUri() + "] is ejected for " + ejectionTime + "ms (" + reason + ", ejection " + ejectionCount + ").");
+        try {
+            scheduler.schedule(() -> halfOpen(instance), ejectionTime, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            halfOpen(instance);
+        }
+    }
+
+
+    /**
+     * Half open the circuit of an instance
+     *
+     * @param instance the instance
+     */
+    protected void halfOpen(BackendInstance instance) {
+        if (instance.halfOpenCircuit()) {
+            LOG.info("Backend instance [" + instance.getUri() + "] is half open.");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * RetryBudget.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * The retry budget of a node: the retries of the last seconds are bounded by a percentage of the requests of the same
+ * time, but at least a min number of retries per second is allowed. The requests and retries are counted in one slot per second, a slot
+ * is reset lock-free when it is reused; a count may get lost at the change of a second, the budget is approximate.
+ *
+ * @author patrick
+ */
+public class RetryBudget {
+    private static final int WINDOW_SECONDS = 10;
+    private final int percent;
+    private final long minRetries;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray requests;
+    private final AtomicLongArray retries;
+
+
+    /**
+     * Constructor for RetryBudget
+     *
+     * @param percent the max retries in percent of the requests
+     * @param minRetriesPerSecond the retries per second which are allowed independent of the requests
+     */
+    public RetryBudget(int percent, int minRetriesPerSecond) {
+        this.percent = percent;
+        this.minRetries = (long) minRetriesPerSecond * WINDOW_SECONDS;
+        this.epochs = new AtomicLongArray(WINDOW_SECONDS);
+        this.requests = new AtomicLongArray(WINDOW_SECONDS);
+        this.retries = new AtomicLongArray(WINDOW_SECONDS);
+    }
+
+
+    /**
+     * Record a request
+     */
+    public void recordRequest() {
+        recordRequest(currentSecond());
+    }
+
+
+    /**
+     * Record a request
+     *
+     * @param second the current second
+     */
+    public void recordRequest(long second) {
+        requests.incrementAndGet(slot(second));
+    }
+
+
+    /**
+     * Try to withdraw a retry from the budget
+     *
+     * @return true if the retry is allowed
+     */
+    public boolean tryRetry() {
+        return tryRetry(currentSecond());
+    }
+
+
+    /**
+     * Try to withdraw a retry from the budget
+     *
+     * @param second the current second
+     * @return true if the retry is allowed
+     */
+    public boolean tryRetry(long second) {
+        long requestCount = 0;
+        long retryCount = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (second - epochs.get(i) < WINDOW_SECONDS) {
+                requestCount += requests.get(i);
+                retryCount += retries.get(i);
+            }
+        }
+
+        if (retryCount >= Math.max(minRetries, requestCount * percent / 100)) {
+            return false;
+        }
+
+        retries.incrementAndGet(slot(second));
+        return true;
+    }
+
+
+    /**
+     * Get the slot of a second, the slot is reset if it belongs to an older second
+     *
+     * @param second the second
+     * @return the slot
+     */
+    private int slot(long second) {
+        final int slot = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+        final long epoch = epochs.get(slot);
+        if (epoch != second && epochs.compareAndSet(slot, epoch, second)) {
+            requests.set(slot, 0);
+            retries.set(slot, 0);
+        }
+        return slot;
+    }
+
+
+    /**
+     * Get the current second
+     *
+     * @return the current second
+     */
+    private static long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+}
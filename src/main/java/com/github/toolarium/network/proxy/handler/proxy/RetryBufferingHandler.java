@@ -0,0 +1,155 @@
+/*
+ * RetryBufferingHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+
+
+/**
+ * Buffers the body of an idempotent request up to the max buffer size in pooled buffers before it is proxied, that it
+ * can be sent again by a retry. The body is read without blocking; a larger body or a body without content length is
+ * streamed and such a request is only retried if the connect fails.
+ *
+ * @author patrick
+ */
+public class RetryBufferingHandler implements HttpHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(RetryBufferingHandler.class);
+    private final HttpHandler next;
+    private final int maxBufferSize;
+
+
+    /**
+     * Constructor for RetryBufferingHandler
+     *
+     * @param next the next handler
+     * @param maxBufferSize the max size of a buffered body in bytes
+     */
+    public RetryBufferingHandler(HttpHandler next, int maxBufferSize) {
+        this.next = next;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final long contentLength = exchange.getRequestContentLength();
+        if (contentLength <= 0 || contentLength > maxBufferSize || exchange.isRequestComplete() || !RetryPolicy.isIdempotent(exchange.getRequestMethod())) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        new BodyReader(exchange, exchange.getRequestChannel()).read();
+    }
+
+
+    /**
+     * Reads the body into pooled buffers
+     */
+    private final class BodyReader implements ChannelListener<StreamSourceChannel> {
+        private final HttpServerExchange exchange;
+        private final StreamSourceChannel channel;
+        private final List<PooledByteBuffer> buffers;
+        private boolean resumed;
+
+
+        /**
+         * Constructor for BodyReader
+         *
+         * @param exchange the exchange
+         * @param channel the request channel
+         */
+        BodyReader(HttpServerExchange exchange, StreamSourceChannel channel) {
+            this.exchange = exchange;
+            this.channel = channel;
+            this.buffers = new ArrayList<>(2);
+            this.resumed = false;
+        }
+
+
+        /**
+         * @see org.xnio.ChannelListener#handleEvent(java.nio.channels.Channel)
+         */
+        @Override
+        public void handleEvent(StreamSourceChannel streamSourceChannel) {
+            try {
+                read();
+            } catch (Exception e) {
+                LOG.debug("Could not proxy the buffered request: " + e.getMessage(), e);
+                exchange.endExchange();
+            }
+        }
+
+
+        /**
+         * Read the available data, the next handler is called as soon as the body is read
+         *
+         * @throws Exception in case of an error of the next handler
+         */
+        void read() throws Exception {
+            try {
+                while (true) {
+                    PooledByteBuffer buffer = null;
+                    if (!buffers.isEmpty()) {
+                        buffer = buffers.get(buffers.size() - 1);
+                    }
+
+                    if (buffer == null || !buffer.getBuffer().hasRemaining()) {
+                        buffer = exchange.getConnection().getByteBufferPool().allocate();
+                        buffers.add(buffer);
+                    }
+
+                    final int read = channel.read(buffer.getBuffer());
+                    if (read == -1) {
+                        break;
+                    } else if (read == 0) {
+                        if (!resumed) {
+                            resumed = true;
+                            channel.getReadSetter().set(this);
+                            channel.resumeReads();
+                        }
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.debug("Could not read the request body: " + e.getMessage());
+                for (PooledByteBuffer buffer : buffers) {
+                    buffer.close();
+                }
+                IoUtils.safeClose(channel);
+                exchange.endExchange();
+                return;
+            }
+
+            final PooledByteBuffer[] body = buffers.toArray(new PooledByteBuffer[buffers.size()]);
+            for (PooledByteBuffer buffer : body) {
+                buffer.getBuffer().flip();
+            }
+            new BufferedRequestBody(body).attach(exchange);
+
+            if (resumed) {
+                channel.getReadSetter().set(null);
+                channel.suspendReads();
+                Connectors.executeRootHandler(next, exchange);
+            } else {
+                next.handleRequest(exchange);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * RetryPolicy.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyRetry;
+import io.undertow.predicate.Predicate;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+
+
+/**
+ * The retry policy of a node. The proxy handler retries a request after a connect failure, it asks this predicate
+ * before it retries a request which was already sent: only an idempotent request without body or with a buffered body
+ * is retried. Every attempt is started by {@link #startAttempt(HttpServerExchange)} which withdraws the retries from
+ * the {@link RetryBudget} and replays the buffered body.
+ *
+ * @author patrick
+ */
+public class RetryPolicy implements Predicate {
+    private static final AttachmentKey<RetryPolicy> STARTED = AttachmentKey.create(RetryPolicy.class);
+    private final NetworkProxyRetry retry;
+    private final RetryBudget retryBudget;
+
+
+    /**
+     * Constructor for RetryPolicy
+     *
+     * @param retry the retry settings
+     */
+    public RetryPolicy(NetworkProxyRetry retry) {
+        this.retry = retry;
+        this.retryBudget = new RetryBudget(retry.getBudgetPercent(), retry.getMinRetriesPerSecond());
+    }
+
+
+    /**
+     * Get the retry settings
+     *
+     * @return the retry settings
+     */
+    public NetworkProxyRetry getRetry() {
+        return retry;
+    }
+
+
+    /**
+     * Get the retry budget
+     *
+     * @return the retry budget
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+
+    /**
+     * Start an attempt of a request
+     *
+     * @param exchange the exchange
+     * @return true if the attempt can be started; false if the retry budget is exhausted or the body can't be sent again
+     */
+    public boolean startAttempt(HttpServerExchange exchange) {
+        if (exchange.getAttachment(STARTED) == null) {
+            exchange.putAttachment(STARTED, this);
+            retryBudget.recordRequest();
+            return true;
+        }
+
+        final BufferedRequestBody body = exchange.getAttachment(BufferedRequestBody.KEY);
+        if (body != null && !body.replay(exchange)) {
+            return false;
+        }
+        return retryBudget.tryRetry();
+    }
+
+
+    /**
+     * Check if a request which was already sent can be retried
+     *
+     * @see io.undertow.predicate.Predicate#resolve(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public boolean resolve(HttpServerExchange exchange) {
+        return isIdempotent(exchange.getRequestMethod()) && (!hasBody(exchange) || exchange.getAttachment(BufferedRequestBody.KEY) != null);
+    }
+
+
+    /**
+     * Check if a method is idempotent
+     *
+     * @param method the method
+     * @return true if it is idempotent
+     */
+    public static boolean isIdempotent(HttpString method) {
+        return Methods.GET.equals(method) || Methods.HEAD.equals(method) || Methods.PUT.equals(method) || Methods.DELETE.equals(method)
+               || Methods.OPTIONS.equals(method) || Methods.TRACE.equals(method);
+    }
+
+
+    /**
+     * Check if a request has a body
+     *
+     * @param exchange the exchange
+     * @return true if it has a body
+     */
+    public static boolean hasBody(HttpServerExchange exchange) {
+        return exchange.getRequestContentLength() > 0 || exchange.getRequestHeaders().contains(Headers.TRANSFER_ENCODING);
+    }
+}
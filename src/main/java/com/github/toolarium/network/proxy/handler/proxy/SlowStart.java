@@ -0,0 +1,115 @@
+/*
+ * SlowStart.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.NetworkProxySlowStart;
+import com.github.toolarium.network.proxy.config.SlowStartMode;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer;
+import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The slow start of the instances of a node. During the window after an instance became available, see
+ * {@link BackendInstance#getAvailableSince()}, its weight ramps up from the min weight to 1. The instance selected by
+ * the load balancer keeps a request with the probability of its weight, otherwise the request is selected again by the
+ * load balancer among the instances which are not in their slow start. Therefore the slow start works with every load
+ * balancing strategy and the shed requests keep its split, e.g. of weighted groups; if all instances are in their slow
+ * start, e.g. after the start of the proxy, the selection is kept.
+ *
+ * @author patrick
+ */
+public class SlowStart {
+    private final long window;
+    private final double minWeight;
+    private final boolean exponential;
+    private final ILoadBalancer loadBalancer;
+
+
+    /**
+     * Constructor for SlowStart
+     *
+     * @param slowStart the slow start settings
+     * @param loadBalancer the load balancer of the warmed instances, an own instance of the strategy of the node that
+     *        the tables it builds per set of instances are not replaced on every shed request
+     */
+    public SlowStart(NetworkProxySlowStart slowStart, ILoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+        this.window = TimeUnit.MILLISECONDS.toNanos(slowStart.getWindow());
+        this.minWeight = slowStart.getMinWeight() / 100.0;
+        this.exponential = SlowStartMode.EXPONENTIAL.equals(slowStart.getMode());
+    }
+
+
+    /**
+     * Adjust the instance selected by the load balancer
+     *
+     * @param instances the instances
+     * @param selected the index of the selected instance
+     * @param exchange the exchange
+     * @return the index of the instance to use
+     */
+    public int select(BackendInstance[] instances, int selected, HttpServerExchange exchange) {
+        return select(instances, selected, exchange, System.nanoTime(), ThreadLocalRandom.current().nextDouble());
+    }
+
+
+    /**
+     * Adjust the instance selected by the load balancer
+     *
+     * @param instances the instances
+     * @param selected the index of the selected instance
+     * @param exchange the exchange or null
+     * @param now the current timestamp in nanoseconds
+     * @param random a random number between 0 and 1
+     * @return the index of the instance to use
+     */
+    public int select(BackendInstance[] instances, int selected, HttpServerExchange exchange, long now, double random) {
+        if (random < weight(instances[selected], now)) {
+            return selected;
+        }
+
+        final int[] indexes = new int[instances.length];
+        int count = 0;
+        for (int i = 0; i < instances.length; i++) {
+            if (now - instances[i].getAvailableSince() >= window) {
+                indexes[count++] = i;
+            }
+        }
+
+        if (count == 0) {
+            return selected;
+        }
+
+        final BackendInstance[] warmedInstances = new BackendInstance[count];
+        for (int i = 0; i < count; i++) {
+            warmedInstances[i] = instances[indexes[i]];
+        }
+        return indexes[loadBalancer.select(warmedInstances, exchange)];
+    }
+
+
+    /**
+     * Get the weight of an instance
+     *
+     * @param instance the instance
+     * @param now the current timestamp in nanoseconds
+     * @return the weight between the min weight and 1
+     */
+    public double weight(BackendInstance instance, long now) {
+        final long elapsed = now - instance.getAvailableSince();
+        if (elapsed >= window) {
+            return 1.0;
+        }
+
+        final double progress = Math.max(elapsed, 0) / (double) window;
+        if (exponential) {
+            return Math.pow(minWeight, 1.0 - progress);
+        }
+        return minWeight + (1.0 - minWeight) * progress;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * StickySession.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyStickySession;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.Cookie;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+
+
+/**
+ * The sticky sessions of a node. The affinity cookie holds the compact route id of an instance, see
+ * {@link BackendInstance#getRouteId()}; the pinned instance is found by comparing the route ids of the available
+ * instances, no map is involved. If the pinned instance is not available the load balancer selects another instance
+ * and the cookie is replaced before the response is committed.
+ *
+ * @author patrick
+ */
+public class StickySession {
+    private final NetworkProxyStickySession stickySession;
+    private final String path;
+
+
+    /**
+     * Constructor for StickySession
+     *
+     * @param stickySession the sticky session settings
+     * @param path the path of the affinity cookie
+     */
+    public StickySession(NetworkProxyStickySession stickySession, String path) {
+        this.stickySession = stickySession;
+        if (path == null || path.isBlank()) {
+            this.path = "/";
+        } else {
+            this.path = path;
+        }
+    }
+
+
+    /**
+     * Select the pinned instance of a request
+     *
+     * @param instances the available instances
+     * @param exchange the exchange
+     * @return the index of the pinned instance or -1 if the request is not pinned or the instance is not available
+     */
+    public int select(BackendInstance[] instances, HttpServerExchange exchange) {
+        final long routeId = parseRouteId(exchange.getRequestCookie(stickySession.getCookie()));
+        if (routeId < 0) {
+            return -1;
+        }
+
+        for (int i = 0; i < instances.length; i++) {
+            if (instances[i].getRouteId() == (int) routeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Pin the client to the instance which serves the request, the cookie is only issued if it changes
+     *
+     * @param exchange the exchange
+     * @param instance the instance
+     */
+    public void pin(HttpServerExchange exchange, BackendInstance instance) {
+        final Cookie cookie = exchange.getRequestCookie(stickySession.getCookie());
+        if (cookie != null && instance.getRoute().equals(cookie.getValue())) {
+            return;
+        }
+
+        exchange.addResponseCommitListener(ex -> issue(ex, instance));
+    }
+
+
+    /**
+     * Issue the affinity cookie, in case of a configured session cookie only if the instance creates a session
+     *
+     * @param exchange the exchange
+     * @param instance the instance
+     */
+    protected void issue(HttpServerExchange exchange, BackendInstance instance) {
+        final String sessionCookie = stickySession.getSessionCookie();
+        if (sessionCookie != null && !createsSession(exchange, sessionCookie)) {
+            return;
+        }
+
+        final StringBuilder value = new StringBuilder().append(stickySession.getCookie()).append('=').append(instance.getRoute())
+                .append("; Path=").append(path).append("; HttpOnly; SameSite=Lax");
+        if (exchange.isSecure()) {
+            value.append("; Secure");
+        }
+        exchange.getResponseHeaders().add(Headers.SET_COOKIE, value.toString());
+    }
+
+
+    /**
+     * Check if the response sets the session cookie
+     *
+     * @param exchange the exchange
+     * @param sessionCookie the name of the session cookie
+     * @return true if the response sets the session cookie
+     */
+    private static boolean createsSession(HttpServerExchange exchange, String sessionCookie) {
+        final HeaderValues values = exchange.getResponseHeaders().get(Headers.SET_COOKIE);
+        if (values == null) {
+            return false;
+        }
+
+        for (String value : values) {
+            if (value.length() > sessionCookie.length() && value.charAt(sessionCookie.length()) == '=' && value.startsWith(sessionCookie)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Parse the route id of an affinity cookie
+     *
+     * @param cookie the cookie or null
+     * @return the unsigned route id or -1 if the cookie is missing or invalid
+     */
+    private static long parseRouteId(Cookie cookie) {
+        if (cookie == null || cookie.getValue() == null || cookie.getValue().isEmpty()) {
+            return -1;
+        }
+
+        try {
+            return Integer.toUnsignedLong(Integer.parseUnsignedInt(cookie.getValue(), Character.MAX_RADIX));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * ConsistentHashLoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.config.HashKey;
+import com.github.toolarium.network.proxy.config.NetworkProxyConsistentHash;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.Cookie;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Consistent hash load balancer with bounded loads: every instance has virtual nodes on a hash ring which are placed
+ * by the hash of its key, a request is passed to the instance of the next virtual node of its key. An added or removed
+ * instance only remaps the keys of its own virtual nodes. With a load factor an instance whose outstanding requests
+ * reach the load factor of the average is skipped and the next instance on the ring is used. The ring is built once
+ * per set of instances and replaced as soon as the instances change. Requests without key are balanced round robin.
+ *
+ * @author patrick
+ */
+public class ConsistentHashLoadBalancer implements ILoadBalancer {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final NetworkProxyConsistentHash consistentHash;
+    private final AtomicInteger counter;
+    private volatile Ring ring;
+
+
+    /**
+     * Constructor for ConsistentHashLoadBalancer
+     *
+     * @param consistentHash the consistent hash settings
+     */
+    public ConsistentHashLoadBalancer(NetworkProxyConsistentHash consistentHash) {
+        this.consistentHash = consistentHash;
+        this.counter = new AtomicInteger();
+        this.ring = new Ring(new BackendInstance[0], consistentHash.getVirtualNodes());
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer#select(com.github.toolarium.network.proxy.handler.proxy.BackendInstance[], io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public int select(BackendInstance[] instances, HttpServerExchange exchange) {
+        return select(instances, resolveKey(exchange));
+    }
+
+
+    /**
+     * Select the instance of a key
+     *
+     * @param instances the instances, at least one
+     * @param key the key or null
+     * @return the index of the selected instance
+     */
+    public int select(BackendInstance[] instances, String key) {
+        if (key == null || instances.length == 1) {
+            return Math.floorMod(counter.getAndIncrement(), instances.length);
+        }
+
+        Ring currentRing = ring;
+        if (!currentRing.matches(instances)) {
+            currentRing = new Ring(instances, consistentHash.getVirtualNodes());
+            ring = currentRing;
+        }
+
+        final int start = currentRing.position(hash(key));
+        if (consistentHash.getLoadFactor() <= 0) {
+            return currentRing.owners[start];
+        }
+
+        // bounded load: skip the instances whose outstanding requests reach the capacity
+        long total = 1;
+        for (BackendInstance instance : instances) {
+            total += instance.getOutstandingRequests();
+        }
+
+        final long capacity = (total * consistentHash.getLoadFactor() + 100L * instances.length - 1) / (100L * instances.length);
+        final int[] owners = currentRing.owners;
+        int position = start;
+        for (int i = 0; i < owners.length; i++) {
+            final int owner = owners[position];
+            if (instances[owner].getOutstandingRequests() < capacity) {
+                return owner;
+            }
+
+            position++;
+            if (position == owners.length) {
+                position = 0;
+            }
+        }
+        return owners[start];
+    }
+
+
+    /**
+     * Resolve the key of a request
+     *
+     * @param exchange the exchange or null
+     * @return the key or null
+     */
+    protected String resolveKey(HttpServerExchange exchange) {
+        if (exchange == null) {
+            return null;
+        }
+
+        final HashKey key = consistentHash.getKey();
+        final String name = consistentHash.getName();
+        if (HashKey.HEADER.equals(key) && name != null) {
+            final String value = exchange.getRequestHeaders().getFirst(name);
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        } else if (HashKey.COOKIE.equals(key) && name != null) {
+            final Cookie cookie = exchange.getRequestCookie(name);
+            if (cookie != null && cookie.getValue() != null && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        } else if (HashKey.PATH_SEGMENT.equals(key)) {
+            final String segment = pathSegment(exchange.getRequestPath(), consistentHash.getSegment());
+            if (segment != null) {
+                return segment;
+            }
+        }
+
+        final InetSocketAddress sourceAddress = exchange.getSourceAddress();
+        if (sourceAddress != null && sourceAddress.getAddress() != null) {
+            return sourceAddress.getAddress().getHostAddress();
+        }
+        return null;
+    }
+
+
+    /**
+     * Get a segment of a path
+     *
+     * @param path the path
+     * @param index the index of the segment, the first segment has the index 0
+     * @return the segment or null if the path has less segments
+     */
+    static String pathSegment(String path, int index) {
+        if (path == null) {
+            return null;
+        }
+
+        int start = 0;
+        int count = 0;
+        final int length = path.length();
+        while (start < length) {
+            while (start < length && path.charAt(start) == '/') {
+                start++;
+            }
+
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            if (start < end) {
+                if (count == index) {
+                    return path.substring(start, end);
+                }
+                count++;
+            }
+            start = end;
+        }
+        return null;
+    }
+
+
+    /**
+     * Hash a value: FNV-1a over the characters, spread by the finalizer of MurmurHash3
+     *
+     * @param value the value
+     * @return the hash
+     */
+    static long hash(String value) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    /**
+     * The immutable hash ring of a set of instances: the sorted points of the virtual nodes and the index of their instance.
+     */
+    private static final class Ring {
+        private final BackendInstance[] instances;
+        private final long[] points;
+        private final int[] owners;
+
+
+        /**
+         * Constructor for Ring
+         *
+         * @param instances the instances
+         * @param virtualNodes the number of virtual nodes per instance
+         */
+        Ring(BackendInstance[] instances, int virtualNodes) {
+            this.instances = instances;
+
+            final int size = instances.length * virtualNodes;
+            final long[] hashes = new long[size];
+            final Integer[] order = new Integer[size];
+            for (int i = 0; i < instances.length; i++) {
+                for (int v = 0; v < virtualNodes; v++) {
+                    final int index = i * virtualNodes + v;
+                    hashes[index] = hash(instances[i].getKey() + "#" + v);
+                    order[index] = index;
+                }
+            }
+            Arrays.sort(order, Comparator.comparingLong(index -> hashes[index]));
+
+            this.points = new long[size];
+            this.owners = new int[size];
+            for (int i = 0; i < size; i++) {
+                points[i] = hashes[order[i]];
+                owners[i] = order[i] / virtualNodes;
+            }
+        }
+
+
+        /**
+         * Check if the ring was built for the instances
+         *
+         * @param otherInstances the instances
+         * @return true if the ring was built for the same instances in the same order
+         */
+        boolean matches(BackendInstance[] otherInstances) {
+            return instances == otherInstances || Arrays.equals(instances, otherInstances);
+        }
+
+
+        /**
+         * Get the position of the first virtual node at or after a hash
+         *
+         * @param hash the hash
+         * @return the position
+         */
+        int position(long hash) {
+            int position = Arrays.binarySearch(points, hash);
+            if (position < 0) {
+                position = -position - 1;
+            }
+
+            if (position >= points.length) {
+                return 0;
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * ILoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.undertow.server.HttpServerExchange;
+
+
+/**
+ * Defines the load balancer which selects the backend instance of a request. Implementations are called
+ * concurrently from the I/O threads and must not block.
+ *
+ * @author patrick
+ */
+public interface ILoadBalancer {
+
+    /**
+     * Select the instance which should handle the request
+     *
+     * @param instances the instances, at least one
+     * @param exchange the exchange
+     * @return the index of the selected instance
+     */
+    int select(BackendInstance[] instances, HttpServerExchange exchange);
+
+}
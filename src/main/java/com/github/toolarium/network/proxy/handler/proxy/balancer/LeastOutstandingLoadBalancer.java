@@ -0,0 +1,42 @@
+/*
+ * LeastOutstandingLoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Least outstanding requests load balancer: all instances are compared, the scan starts at a rotating
+ * offset that instances with the same number of outstanding requests are used evenly.
+ *
+ * @author patrick
+ */
+public class LeastOutstandingLoadBalancer implements ILoadBalancer {
+    private final AtomicInteger counter = new AtomicInteger();
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer#select(com.github.toolarium.network.proxy.handler.proxy.BackendInstance[], io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public int select(BackendInstance[] instances, HttpServerExchange exchange) {
+        final int length = instances.length;
+        final int offset = Math.floorMod(counter.getAndIncrement(), length);
+        int result = offset;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            final int index = (offset + i) % length;
+            final int outstanding = instances[index].getOutstandingRequests();
+            if (outstanding < min) {
+                min = outstanding;
+                result = index;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * LoadBalancerFactory.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import com.github.toolarium.network.proxy.config.LoadBalancingStrategy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConsistentHash;
+
+
+/**
+ * The load balancer factory
+ *
+ * @author patrick
+ */
+public final class LoadBalancerFactory {
+
+    /**
+     * Constructor for LoadBalancerFactory
+     */
+    private LoadBalancerFactory() {
+        // NOP
+    }
+
+
+    /**
+     * Create a new load balancer of a node. A node with instance groups or weights is balanced weighted unless
+     * another strategy than round robin is configured.
+     *
+     * @param node the node
+     * @return the load balancer
+     */
+    public static ILoadBalancer createLoadBalancer(INetworkProxyNode node) {
+        final LoadBalancingStrategy strategy = node.getLoadBalancingStrategy();
+        final boolean weighted = (node.getGroups() != null && !node.getGroups().isEmpty()) || (node.getWeights() != null && !node.getWeights().isEmpty());
+        if (LoadBalancingStrategy.WEIGHTED.equals(strategy) || (weighted && (strategy == null || LoadBalancingStrategy.ROUND_ROBIN.equals(strategy)))) {
+            return new WeightedLoadBalancer(node.getGroups(), node.getWeights());
+        }
+        return createLoadBalancer(strategy, node.getConsistentHash());
+    }
+
+
+    /**
+     * Create a new load balancer
+     *
+     * @param strategy the strategy, null for round robin
+     * @return the load balancer
+     */
+    public static ILoadBalancer createLoadBalancer(LoadBalancingStrategy strategy) {
+        return createLoadBalancer(strategy, null);
+    }
+
+
+    /**
+     * Create a new load balancer
+     *
+     * @param strategy the strategy, null for round robin
+     * @param consistentHash the consistent hash settings, null for the default
+     * @return the load balancer
+     */
+    public static ILoadBalancer createLoadBalancer(LoadBalancingStrategy strategy, NetworkProxyConsistentHash consistentHash) {
+        if (strategy == null) {
+            return new RoundRobinLoadBalancer();
+        }
+
+        switch (strategy) {
+            case LEAST_OUTSTANDING:
+                return new LeastOutstandingLoadBalancer();
+            case POWER_OF_TWO_CHOICES:
+                return new PowerOfTwoChoicesLoadBalancer();
+            case PEAK_EWMA:
+                return new PeakEwmaLoadBalancer();
+            case CONSISTENT_HASH:
+                if (consistentHash == null) {
+                    return new ConsistentHashLoadBalancer(new NetworkProxyConsistentHash());
+                }
+                return new ConsistentHashLoadBalancer(consistentHash);
+            case WEIGHTED:
+                return new WeightedLoadBalancer(null, null);
+            case ROUND_ROBIN:
+            default:
+                return new RoundRobinLoadBalancer();
+        }
+    }
+}
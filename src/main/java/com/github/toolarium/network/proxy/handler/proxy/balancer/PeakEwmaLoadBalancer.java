@@ -0,0 +1,26 @@
+/*
+ * PeakEwmaLoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+
+
+/**
+ * Peak EWMA load balancer: two random instances are compared by their peak EWMA latency multiplied with
+ * the outstanding requests, see {@link BackendInstance#getCost()}. A slow instance gets less traffic.
+ *
+ * @author patrick
+ */
+public class PeakEwmaLoadBalancer extends PowerOfTwoChoicesLoadBalancer {
+
+    /**
+     * @see com.github.toolarium.network.proxy.handler.proxy.balancer.PowerOfTwoChoicesLoadBalancer#cost(com.github.toolarium.network.proxy.handler.proxy.BackendInstance)
+     */
+    @Override
+    protected double cost(BackendInstance instance) {
+        return instance.getCost();
+    }
+}
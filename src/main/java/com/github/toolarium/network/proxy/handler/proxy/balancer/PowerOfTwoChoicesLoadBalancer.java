@@ -0,0 +1,54 @@
+/*
+ * PowerOfTwoChoicesLoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Power of two choices load balancer: two random instances are compared and the cheaper one is selected.
+ * By default the outstanding requests are compared.
+ *
+ * @author patrick
+ */
+public class PowerOfTwoChoicesLoadBalancer implements ILoadBalancer {
+
+    /**
+     * @see com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer#select(com.github.toolarium.network.proxy.handler.proxy.BackendInstance[], io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public int select(BackendInstance[] instances, HttpServerExchange exchange) {
+        final int length = instances.length;
+        if (length == 1) {
+            return 0;
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(length);
+        int second = random.nextInt(length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        if (cost(instances[second]) < cost(instances[first])) {
+            return second;
+        }
+        return first;
+    }
+
+
+    /**
+     * Get the cost of an instance
+     *
+     * @param instance the instance
+     * @return the cost
+     */
+    protected double cost(BackendInstance instance) {
+        return instance.getOutstandingRequests();
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * RoundRobinLoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Round robin load balancer
+ *
+ * @author patrick
+ */
+public class RoundRobinLoadBalancer implements ILoadBalancer {
+    private final AtomicInteger counter = new AtomicInteger();
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer#select(com.github.toolarium.network.proxy.handler.proxy.BackendInstance[], io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public int select(BackendInstance[] instances, HttpServerExchange exchange) {
+        return Math.floorMod(counter.getAndIncrement(), instances.length);
+    }
+}
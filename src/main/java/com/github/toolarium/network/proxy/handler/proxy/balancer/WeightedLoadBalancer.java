@@ -0,0 +1,214 @@
+/*
+ * WeightedLoadBalancer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.proxy.balancer;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyInstanceGroup;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.undertow.server.HttpServerExchange;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Weighted load balancer: every group gets its weight as share of the requests, within a group the requests are split
+ * by the weights of the instances. The instances which are not in a group form the default group with the weight 100.
+ * The share of an unavailable instance goes to the other instances of its group as long as one is available.
+ * The selection is O(1) by an alias table (Vose) which is built once per set of instances and replaced as soon as
+ * the instances change.
+ *
+ * @author patrick
+ */
+public class WeightedLoadBalancer implements ILoadBalancer {
+    private static final int DEFAULT_GROUP_WEIGHT = 100;
+    private final Map<URI, Integer> groupIndexes;
+    private final int[] groupWeights;
+    private final Map<URI, Integer> weights;
+    private volatile AliasTable aliasTable;
+
+
+    /**
+     * Constructor for WeightedLoadBalancer
+     *
+     * @param groups the instance groups or null
+     * @param weights the weights of the instances or null
+     */
+    public WeightedLoadBalancer(List<NetworkProxyInstanceGroup> groups, Map<URI, Integer> weights) {
+        this.groupIndexes = new HashMap<>();
+        if (groups == null) {
+            this.groupWeights = new int[] {DEFAULT_GROUP_WEIGHT};
+        } else {
+            this.groupWeights = new int[groups.size() + 1];
+            this.groupWeights[0] = DEFAULT_GROUP_WEIGHT;
+            for (int i = 0; i < groups.size(); i++) {
+                final NetworkProxyInstanceGroup group = groups.get(i);
+                groupWeights[i + 1] = group.getWeight();
+                for (URI uri : group.getInstances()) {
+                    // an instance belongs to its first group
+                    groupIndexes.putIfAbsent(uri, i + 1);
+                }
+            }
+        }
+
+        this.weights = new HashMap<>();
+        if (weights != null) {
+            this.weights.putAll(weights);
+        }
+        this.aliasTable = new AliasTable(new BackendInstance[0], new double[0]);
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer#select(com.github.toolarium.network.proxy.handler.proxy.BackendInstance[], io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public int select(BackendInstance[] instances, HttpServerExchange exchange) {
+        if (instances.length == 1) {
+            return 0;
+        }
+
+        AliasTable currentAliasTable = aliasTable;
+        if (!currentAliasTable.matches(instances)) {
+            currentAliasTable = new AliasTable(instances, weights(instances));
+            aliasTable = currentAliasTable;
+        }
+        return currentAliasTable.select(ThreadLocalRandom.current());
+    }
+
+
+    /**
+     * Get the effective weights of the instances: the weight of the group split by the weights of its instances
+     *
+     * @param instances the instances
+     * @return the weights
+     */
+    protected double[] weights(BackendInstance[] instances) {
+        final int[] groups = new int[instances.length];
+        final int[] instanceWeights = new int[instances.length];
+        final long[] groupSums = new long[groupWeights.length];
+        for (int i = 0; i < instances.length; i++) {
+            final URI uri = instances[i].getUri();
+            groups[i] = groupIndexes.getOrDefault(uri, 0);
+            instanceWeights[i] = weights.getOrDefault(uri, 1);
+            groupSums[groups[i]] += instanceWeights[i];
+        }
+
+        final double[] result = new double[instances.length];
+        for (int i = 0; i < instances.length; i++) {
+            if (groupSums[groups[i]] > 0) {
+                result[i] = (double) groupWeights[groups[i]] * instanceWeights[i] / groupSums[groups[i]];
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * The immutable alias table of a set of instances: a column is selected uniformly, then either the column or its alias
+     * by the probability of the column.
+     */
+    private static final class AliasTable {
+        private final BackendInstance[] instances;
+        private final double[] probabilities;
+        private final int[] aliases;
+
+
+        /**
+         * Constructor for AliasTable
+         *
+         * @param instances the instances
+         * @param weights the weights of the instances
+         */
+        AliasTable(BackendInstance[] instances, double[] weights) {
+            this.instances = instances;
+
+            final int size = weights.length;
+            this.probabilities = new double[size];
+            this.aliases = new int[size];
+
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+
+            // all weights are 0: better to balance uniformly than to reject every request
+            final double[] scaled = new double[size];
+            for (int i = 0; i < size; i++) {
+                if (total > 0) {
+                    scaled[i] = weights[i] * size / total;
+                } else {
+                    scaled[i] = 1;
+                }
+            }
+
+            final int[] small = new int[size];
+            final int[] large = new int[size];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (scaled[i] < 1) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
+
+            while (smallCount > 0 && largeCount > 0) {
+                final int less = small[--smallCount];
+                final int more = large[--largeCount];
+                probabilities[less] = scaled[less];
+                aliases[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                if (scaled[more] < 1) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+
+            // the remaining columns are full, rounding errors included
+            while (largeCount > 0) {
+                final int index = large[--largeCount];
+                probabilities[index] = 1;
+                aliases[index] = index;
+            }
+            while (smallCount > 0) {
+                final int index = small[--smallCount];
+                probabilities[index] = 1;
+                aliases[index] = index;
+            }
+        }
+
+
+        /**
+         * Check if the table was built for the instances
+         *
+         * @param otherInstances the instances
+         * @return true if the table was built for the same instances in the same order
+         */
+        boolean matches(BackendInstance[] otherInstances) {
+            return instances == otherInstances || Arrays.equals(instances, otherInstances);
+        }
+
+
+        /**
+         * Select an instance
+         *
+         * @param random the random
+         * @return the index of the instance
+         */
+        int select(ThreadLocalRandom random) {
+            final int column = random.nextInt(probabilities.length);
+            if (random.nextDouble() < probabilities[column]) {
+                return column;
+            }
+            return aliases[column];
+        }
+    }
+}
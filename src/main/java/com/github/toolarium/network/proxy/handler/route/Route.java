@@ -0,0 +1,155 @@
+/*
+ * Route.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.route;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import io.undertow.server.HttpHandler;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import java.util.Collection;
+
+
+/**
+ * Defines a compiled route: a resource path, the supported methods as bitmask and the handler.
+ *
+ * @author patrick
+ */
+public final class Route {
+    private static final HttpString[] METHODS = {Methods.GET, Methods.POST, Methods.PUT, Methods.DELETE, Methods.PATCH,
+                                                 Methods.HEAD, Methods.OPTIONS, Methods.TRACE, Methods.CONNECT};
+    private final INetworkProxyNode node;
+    private final String resource;
+    private final int methodMask;
+    private final HttpHandler handler;
+
+
+    /**
+     * Constructor for Route
+     *
+     * @param resource the resource path
+     * @param methodMask the method mask
+     * @param handler the handler
+     */
+    public Route(String resource, int methodMask, HttpHandler handler) {
+        this(null, resource, methodMask, handler);
+    }
+
+
+    /**
+     * Constructor for Route
+     *
+     * @param node the network proxy node or null
+     * @param resource the resource path
+     * @param methodMask the method mask
+     * @param handler the handler
+     */
+    public Route(INetworkProxyNode node, String resource, int methodMask, HttpHandler handler) {
+        this.node = node;
+        this.resource = resource;
+        this.methodMask = methodMask;
+        this.handler = handler;
+    }
+
+
+    /**
+     * Get the network proxy node
+     *
+     * @return the network proxy node or null
+     */
+    public INetworkProxyNode getNode() {
+        return node;
+    }
+
+
+    /**
+     * Get the resource path
+     *
+     * @return the resource path
+     */
+    public String getResource() {
+        return resource;
+    }
+
+
+    /**
+     * Get the method mask
+     *
+     * @return the method mask
+     */
+    public int getMethodMask() {
+        return methodMask;
+    }
+
+
+    /**
+     * Get the handler
+     *
+     * @return the handler
+     */
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+
+    /**
+     * Check if the method is supported
+     *
+     * @param methodBit the method bit, see {@link #toMethodBit(HttpString)}
+     * @return true if the method is supported
+     */
+    public boolean supports(int methodBit) {
+        return (methodMask & methodBit) != 0;
+    }
+
+
+    /**
+     * Get the bit of a method. Unknown methods result in 0.
+     *
+     * @param method the method
+     * @return the method bit
+     */
+    public static int toMethodBit(HttpString method) {
+        if (method == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i] == method || METHODS[i].equals(method)) {
+                return 1 << i;
+            }
+        }
+
+        return 0;
+    }
+
+
+    /**
+     * Convert a method list into a method mask
+     *
+     * @param methods the methods
+     * @return the method mask
+     */
+    public static int toMethodMask(Collection<String> methods) {
+        int mask = 0;
+        if (methods != null) {
+            for (String method : methods) {
+                if (method != null && !method.isBlank()) {
+                    mask |= toMethodBit(Methods.fromString(method.trim().toUpperCase()));
+                }
+            }
+        }
+        return mask;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "Route [resource=" + resource + ", methodMask=" + Integer.toBinaryString(methodMask) + "]";
+    }
+}
@@ -7,65 +7,330 @@ package com.github.toolarium.network.proxy.handler.route;
 
 import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
 import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import com.github.toolarium.network.proxy.config.NetworkProxyInstanceGroup;
 import com.github.toolarium.network.proxy.handler.auth.BasicAuthenticationHttpHandler;
+import com.github.toolarium.network.proxy.handler.cache.ResponseCacheHandler;
+import com.github.toolarium.network.proxy.handler.compression.CompressionHandler;
+import com.github.toolarium.network.proxy.handler.limit.ConcurrencyLimitHandler;
+import com.github.toolarium.network.proxy.handler.limit.RateLimitHandler;
+import com.github.toolarium.network.proxy.handler.metrics.MetricsHandler;
+import com.github.toolarium.network.proxy.handler.metrics.MetricsRegistry;
+import com.github.toolarium.network.proxy.handler.metrics.RouteMetrics;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import com.github.toolarium.network.proxy.handler.proxy.BackendRegistry;
+import com.github.toolarium.network.proxy.handler.proxy.HedgingHandler;
+import com.github.toolarium.network.proxy.handler.proxy.NodeProxyClient;
+import com.github.toolarium.network.proxy.handler.proxy.RetryBufferingHandler;
+import com.github.toolarium.network.proxy.handler.proxy.RetryPolicy;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
 import io.undertow.server.RoutingHandler;
-import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import io.undertow.server.handlers.ResponseCodeHandler;
 import io.undertow.server.handlers.proxy.ProxyHandler;
-import io.undertow.util.Methods;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
- * Defines the route handler
- * 
+ * Defines the route handler. All network proxy nodes are compiled into one {@link RouteTable} which is
+ * used as fallback of the routing handler. The route table can be replaced at runtime: a new table is
+ * completely built before it is published, requests which are already routed finish on the old table.
+ * The metrics of a route are kept in the {@link MetricsRegistry} as long as the route exists.
+ *
  * @author patrick
  */
-public final class RouteHandler {
-    private static final String STAR = "*";
+public final class RouteHandler implements HttpHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteHandler.class);
+    private final INetworkProxyConfiguration configuration;
+    private final BackendRegistry backendRegistry;
+    private final MetricsRegistry metricsRegistry;
+    private volatile RouteTable routeTable;
+    private Map<String, NodeRoute> nodeRoutes;
 
 
     /**
      * Constructor for RouteHandler
+     *
+     * @param configuration the configuration
+     */
+    public RouteHandler(INetworkProxyConfiguration configuration) {
+        this.configuration = configuration;
+        this.backendRegistry = new BackendRegistry(configuration);
+        this.metricsRegistry = new MetricsRegistry();
+        this.routeTable = RouteTable.empty();
+        this.nodeRoutes = Collections.emptyMap();
+    }
+
+
+    /**
+     * Get the current route table
+     *
+     * @return the route table
+     */
+    public RouteTable getRouteTable() {
+        return routeTable;
+    }
+
+
+    /**
+     * Get the backend registry
+     *
+     * @return the backend registry
+     */
+    public BackendRegistry getBackendRegistry() {
+        return backendRegistry;
+    }
+
+
+    /**
+     * Get the metrics registry
+     *
+     * @return the metrics registry
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
      */
-    private RouteHandler() {
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final RouteTable currentRouteTable = routeTable;
+        final String path = exchange.getRelativePath();
+        final Route route = currentRouteTable.match(Route.toMethodBit(exchange.getRequestMethod()), path);
+        if (route != null) {
+            route.getHandler().handleRequest(exchange);
+        } else if (currentRouteTable.matchesPath(path)) {
+            ResponseCodeHandler.HANDLE_405.handleRequest(exchange);
+        } else {
+            ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+        }
     }
-    
+
 
     /**
-     * Add basic authentication
+     * Update the network proxy nodes. Unchanged nodes keep their routes, the connection pools of unchanged
+     * instances are reused and a changed node takes over its response cache. The new route table is published
+     * atomically, afterwards the replaced routes are closed.
+     *
+     * @param networkProxyNodeList the network proxy nodes
+     * @return the new route table
+     */
+    public synchronized RouteTable update(List<INetworkProxyNode> networkProxyNodeList) {
+        final Map<String, NodeRoute> previousNodeRoutes = nodeRoutes;
+        final Map<String, NodeRoute> newNodeRoutes = new LinkedHashMap<>();
+        final List<BackendInstance> activeInstances = new ArrayList<>();
+        final RouteTable.Builder builder = RouteTable.builder();
+        int added = 0;
+        int changed = 0;
+
+        if (networkProxyNodeList != null) {
+            for (INetworkProxyNode node : networkProxyNodeList) {
+                String resourcePath = node.getResource();
+                if (resourcePath == null || resourcePath.isBlank()) {
+                    resourcePath = "/";
+                }
+
+                NodeRoute nodeRoute = previousNodeRoutes.get(resourcePath);
+                if (nodeRoute == null || !nodeRoute.node.equals(node)) {
+                    ResponseCacheHandler previousCacheHandler = null;
+                    if (nodeRoute == null) {
+                        added++;
+                    } else {
+                        changed++;
+                        previousCacheHandler = nodeRoute.cacheHandler;
+                        if (ResponseCacheHandler.isRemapped(previousCacheHandler, node.getCache())) {
+                            // the cache file is mapped with another size, it is released before the new route maps it
+                            nodeRoute.closeCache();
+                            previousCacheHandler = null;
+                        }
+                    }
+
+                    nodeRoute = createNodeRoute(node, resourcePath, previousCacheHandler);
+                }
+
+                newNodeRoutes.put(resourcePath, nodeRoute);
+                activeInstances.addAll(nodeRoute.proxyClient.getInstances());
+                builder.add(nodeRoute.route);
+            }
+        }
+
+        int removed = 0;
+        for (String resourcePath : previousNodeRoutes.keySet()) {
+            if (!newNodeRoutes.containsKey(resourcePath)) {
+                removed++;
+            }
+        }
+
+        // publish the new route table, afterwards release the connection pools of removed instances
+        final RouteTable newRouteTable = builder.build();
+        nodeRoutes = newNodeRoutes;
+        routeTable = newRouteTable;
+        for (NodeRoute previousNodeRoute : previousNodeRoutes.values()) {
+            final NodeRoute newNodeRoute = newNodeRoutes.get(previousNodeRoute.route.getResource());
+            if (newNodeRoute != previousNodeRoute) {
+                previousNodeRoute.close(newNodeRoute);
+            }
+        }
+        backendRegistry.retain(activeInstances);
+        metricsRegistry.retain(newNodeRoutes.keySet());
+
+        if (!previousNodeRoutes.isEmpty()) {
+            LOG.info("Updated network proxy nodes: " + added + " added, " + changed + " changed, " + removed + " removed, " + newRouteTable.size() + " active.");
+        }
+        return newRouteTable;
+    }
+
+
+    /**
+     * Close the route handler and all backend connection pools
+     */
+    public synchronized void close() {
+        for (NodeRoute nodeRoute : nodeRoutes.values()) {
+            nodeRoute.close(null);
+        }
+        nodeRoutes = Collections.emptyMap();
+        routeTable = RouteTable.empty();
+        backendRegistry.close();
+    }
+
+
+    /**
+     * Add the routes of the backend nodes
      *
      * @param configuration the configuration
      * @param routingHandler the routing handler
-     * @return the handler
+     * @return the route handler
      */
-    public static RoutingHandler addHandler(INetworkProxyConfiguration configuration, RoutingHandler routingHandler) {
-        
-        for (INetworkProxyNode node : configuration.getNetworkProxyNodeList()) {
-            String resourcePath = node.getResource();
-            String resourcePathFilter = resourcePath;
-            if (resourcePath == null || resourcePath.isBlank()) {
-                resourcePath = "/";
-                resourcePathFilter = resourcePath;
+    public static RouteHandler addHandler(INetworkProxyConfiguration configuration, RoutingHandler routingHandler) {
+        RouteHandler routeHandler = new RouteHandler(configuration);
+        routeHandler.update(configuration.getNetworkProxyNodeList());
+        routingHandler.setFallbackHandler(routeHandler);
+        return routeHandler;
+    }
+
+
+    /**
+     * Create the route of a node
+     *
+     * @param node the node
+     * @param resourcePath the resource path
+     * @param previousCacheHandler the cache handler of the previous route of the node or null
+     * @return the node route
+     */
+    private NodeRoute createNodeRoute(INetworkProxyNode node, String resourcePath, ResponseCacheHandler previousCacheHandler) {
+        List<BackendInstance> instances = new ArrayList<>();
+        for (URI uri : node.getInstances()) {
+            instances.add(backendRegistry.getInstance(node, uri));
+        }
+
+        if (node.getGroups() != null) {
+            for (NetworkProxyInstanceGroup group : node.getGroups()) {
+                for (URI uri : group.getInstances()) {
+                    final BackendInstance instance = backendRegistry.getInstance(node, uri);
+                    if (!instances.contains(instance)) {
+                        instances.add(instance);
+                    }
+                }
+            }
+        }
+
+        NodeProxyClient proxyClient = new NodeProxyClient(node, instances, backendRegistry.getScheduler());
+        ProxyHandler.Builder proxyHandlerBuilder = ProxyHandler.builder().setProxyClient(proxyClient).setMaxRequestTime(configuration.getMaxRequestTime());
+        final RetryPolicy retryPolicy = proxyClient.getRetryPolicy();
+        if (retryPolicy != null) {
+            proxyHandlerBuilder.setMaxConnectionRetries(retryPolicy.getRetry().getMaxRetries()).setIdempotentRequestPredicate(retryPolicy);
+        }
+
+        HttpHandler handler = proxyHandlerBuilder.build();
+        if (retryPolicy != null && retryPolicy.getRetry().getMaxBufferSize() > 0) {
+            handler = new RetryBufferingHandler(handler, retryPolicy.getRetry().getMaxBufferSize());
+        }
+
+        if (node.getHedge() != null && node.getHedge().isEnabled()) {
+            if (HedgingHandler.isSupported(node)) {
+                handler = new HedgingHandler(handler, node.getHedge(), proxyClient, configuration.getMaxRequestTime());
             } else {
-                resourcePathFilter += STAR;
+                LOG.warn("Hedged requests of node [" + node.getName() + "] are disabled, they don't support sticky sessions and HTTP/2 backends.");
             }
+        }
+
+        if (node.getConcurrencyLimit() != null && node.getConcurrencyLimit().isEnabled()) {
+            // cache hits are not limited
+            handler = new ConcurrencyLimitHandler(handler, node.getConcurrencyLimit());
+        }
+
+        ResponseCacheHandler cacheHandler = null;
+        if (node.getCache() != null && node.getCache().isEnabled()) {
+            cacheHandler = new ResponseCacheHandler(handler, node.getCache(), proxyClient, configuration.getMaxRequestTime(), previousCacheHandler);
+            handler = cacheHandler;
+        }
+
+        // cached responses are compressed by the accepted encoding of every request
+        handler = CompressionHandler.addHandler(node.getCompression(), handler);
+
+        RouteMetrics routeMetrics = metricsRegistry.getRouteMetrics(resourcePath, node.getName(), instances);
+        handler = RateLimitHandler.addHandler(node.getRateLimit(), handler);
+        handler = new MetricsHandler(BasicAuthenticationHttpHandler.addHandler(configuration, handler), routeMetrics.getRequestMetrics());
+        Route route = new Route(node, resourcePath, Route.toMethodMask(node.getMethods()), handler);
+        return new NodeRoute(node, route, proxyClient, cacheHandler);
+    }
 
-            LoadBalancingProxyClient loadBalancer = new LoadBalancingProxyClient()
-                    .setConnectionsPerThread(configuration.getConnectionsByThread());
-            for (URI uri : node.getInstances()) {
-                loadBalancer.addHost(uri, resourcePath);
+
+    /**
+     * The route of a node
+     */
+    private static final class NodeRoute {
+        private final INetworkProxyNode node;
+        private final Route route;
+        private final NodeProxyClient proxyClient;
+        private final ResponseCacheHandler cacheHandler;
+
+
+        /**
+         * Constructor for NodeRoute
+         *
+         * @param node the node
+         * @param route the route
+         * @param proxyClient the proxy client
+         * @param cacheHandler the cache handler or null
+         */
+        NodeRoute(INetworkProxyNode node, Route route, NodeProxyClient proxyClient, ResponseCacheHandler cacheHandler) {
+            this.node = node;
+            this.route = route;
+            this.proxyClient = proxyClient;
+            this.cacheHandler = cacheHandler;
+        }
+
+
+        /**
+         * Close the cache of the route
+         */
+        void closeCache() {
+            if (cacheHandler != null) {
+                cacheHandler.close();
             }
+        }
 
-            ProxyHandler proxyHandler = ProxyHandler.builder().setProxyClient(loadBalancer).setMaxRequestTime(configuration.getMaxRequestTime()).build();
-            for (String method : node.getMethods()) {
-                routingHandler.add(Methods.fromString(method.trim()), resourcePath, BasicAuthenticationHttpHandler.addHandler(configuration, proxyHandler));
-                
-                if (!"/".equals(resourcePath)) {
-                    routingHandler.add(Methods.fromString(method.trim()), resourcePathFilter, BasicAuthenticationHttpHandler.addHandler(configuration, proxyHandler));
-                }
+
+        /**
+         * Close the route, a cache which is taken over by the new route of the node is kept
+         *
+         * @param newNodeRoute the new route of the node or null
+         */
+        void close(NodeRoute newNodeRoute) {
+            if (cacheHandler != null && (newNodeRoute == null || !cacheHandler.isSharedWith(newNodeRoute.cacheHandler))) {
+                cacheHandler.close();
             }
+            proxyClient.close();
         }
-        
-        return routingHandler;
     }
 }
@@ -0,0 +1,307 @@
+/*
+ * RouteTable.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Immutable route table. All routes are compiled into a prefix trie keyed by path segments. The children of
+ * a trie node are kept in sorted arrays and are resolved by a binary search directly on the request path,
+ * therefore a lookup does not allocate and only depends on the depth of the path and not on the number of routes.
+ * The longest resource prefix which supports the request method wins.
+ *
+ * @author patrick
+ */
+public final class RouteTable {
+    private static final RouteTable EMPTY = new RouteTable(new Node(new String[0], new Node[0], null), 0);
+    private final Node root;
+    private final int size;
+
+
+    /**
+     * Constructor for RouteTable
+     *
+     * @param root the root node
+     * @param size the number of routes
+     */
+    private RouteTable(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+
+    /**
+     * Get an empty route table
+     *
+     * @return the empty route table
+     */
+    public static RouteTable empty() {
+        return EMPTY;
+    }
+
+
+    /**
+     * Create a new builder
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * Get the number of routes
+     *
+     * @return the number of routes
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Find the route with the longest resource prefix of the given path which supports the method.
+     *
+     * @param methodBit the method bit, see {@link Route#toMethodBit(io.undertow.util.HttpString)}
+     * @param path the request path
+     * @return the route or null
+     */
+    public Route match(int methodBit, String path) {
+        Node node = root;
+        Route result = null;
+        if (node.route != null && node.route.supports(methodBit)) {
+            result = node.route;
+        }
+
+        final int length = path.length();
+        int start = 0;
+        while (start < length && node.children.length > 0) {
+            // skip slashes
+            while (start < length && path.charAt(start) == '/') {
+                start++;
+            }
+
+            if (start >= length) {
+                break;
+            }
+
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            node = node.child(path, start, end);
+            if (node == null) {
+                break;
+            }
+
+            if (node.route != null && node.route.supports(methodBit)) {
+                result = node.route;
+            }
+            start = end;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Check if there is any route which matches the path independent of the method. This is used to distinguish
+     * between an unknown resource and a not supported method.
+     *
+     * @param path the request path
+     * @return true if there is at least one route for the path
+     */
+    public boolean matchesPath(String path) {
+        return match(-1, path) != null;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "RouteTable [size=" + size + "]";
+    }
+
+
+    /**
+     * The compiled trie node
+     */
+    private static final class Node {
+        private final String[] segments;
+        private final Node[] children;
+        private final Route route;
+
+
+        /**
+         * Constructor for Node
+         *
+         * @param segments the sorted child segments
+         * @param children the children, same order as the segments
+         * @param route the route or null
+         */
+        Node(String[] segments, Node[] children, Route route) {
+            this.segments = segments;
+            this.children = children;
+            this.route = route;
+        }
+
+
+        /**
+         * Binary search of a child by a segment of the path
+         *
+         * @param path the path
+         * @param start the start index of the segment
+         * @param end the end index of the segment (exclusive)
+         * @return the child or null
+         */
+        Node child(String path, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], path, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+
+        /**
+         * Compare a segment with a region of the path, same order as {@link String#compareTo(String)}.
+         *
+         * @param segment the segment
+         * @param path the path
+         * @param start the start index
+         * @param end the end index (exclusive)
+         * @return the comparison result
+         */
+        private static int compare(String segment, String path, int start, int end) {
+            final int len1 = segment.length();
+            final int len2 = end - start;
+            final int min = Math.min(len1, len2);
+            for (int i = 0; i < min; i++) {
+                char c1 = segment.charAt(i);
+                char c2 = path.charAt(start + i);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return len1 - len2;
+        }
+    }
+
+
+    /**
+     * The route table builder
+     */
+    public static final class Builder {
+        private final BuilderNode root;
+        private int size;
+
+
+        /**
+         * Constructor for Builder
+         */
+        private Builder() {
+            root = new BuilderNode();
+            size = 0;
+        }
+
+
+        /**
+         * Add a route. An already existing route for the same resource will be replaced.
+         *
+         * @param route the route
+         * @return the builder
+         */
+        public Builder add(Route route) {
+            BuilderNode node = root;
+            for (String segment : split(route.getResource())) {
+                node = node.children.computeIfAbsent(segment, s -> new BuilderNode());
+            }
+
+            if (node.route == null) {
+                size++;
+            }
+            node.route = route;
+            return this;
+        }
+
+
+        /**
+         * Compile the routes into an immutable route table
+         *
+         * @return the route table
+         */
+        public RouteTable build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new RouteTable(compile(root), size);
+        }
+
+
+        /**
+         * Compile a node
+         *
+         * @param node the node to compile
+         * @return the compiled node
+         */
+        private static Node compile(BuilderNode node) {
+            String[] segments = new String[node.children.size()];
+            Node[] children = new Node[segments.length];
+            int i = 0;
+            for (Map.Entry<String, BuilderNode> e : node.children.entrySet()) {
+                segments[i] = e.getKey();
+                children[i] = compile(e.getValue());
+                i++;
+            }
+            return new Node(segments, children, node.route);
+        }
+
+
+        /**
+         * Split a resource path into its segments
+         *
+         * @param resource the resource
+         * @return the segments
+         */
+        private static List<String> split(String resource) {
+            List<String> result = new ArrayList<>();
+            if (resource != null) {
+                for (String segment : resource.split("/")) {
+                    if (!segment.isBlank()) {
+                        result.add(segment.trim());
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * The mutable node of the builder
+     */
+    private static final class BuilderNode {
+        private final Map<String, BuilderNode> children = new TreeMap<>();
+        private Route route;
+    }
+}
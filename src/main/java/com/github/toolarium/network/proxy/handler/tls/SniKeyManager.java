@@ -0,0 +1,293 @@
+/*
+ * SniKeyManager.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.tls;
+
+import com.github.toolarium.network.proxy.handler.metrics.TlsMetrics;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Selects the certificate of a handshake by the server name (SNI) of the client. The host names of the certificates,
+ * the DNS names of the subject alternative names and the common name, are preloaded into a map when the listener is
+ * started: a handshake looks up its host name and then its wildcard name, the first certificate of the key type is the
+ * default. Only a full handshake selects a certificate, it is counted once per handshake session.
+ *
+ * @author patrick
+ */
+public class SniKeyManager extends X509ExtendedKeyManager {
+    private static final Logger LOG = LoggerFactory.getLogger(SniKeyManager.class);
+    private static final String FULL_HANDSHAKE = SniKeyManager.class.getName() + ".fullHandshake";
+    private static final int DNS_NAME = 2;
+    private final X509ExtendedKeyManager keyManager;
+    private final List<String> aliases;
+    private final Map<String, String> keyAlgorithms;
+    private final Map<String, List<String>> hostAliases;
+    private final TlsMetrics tlsMetrics;
+
+
+    /**
+     * Constructor for SniKeyManager
+     *
+     * @param keyManager the key manager of the certificates
+     * @param aliases the aliases of the certificates, the first one is the default
+     * @param tlsMetrics the metrics of the HTTPS listener
+     */
+    public SniKeyManager(X509ExtendedKeyManager keyManager, List<String> aliases, TlsMetrics tlsMetrics) {
+        this.keyManager = keyManager;
+        this.aliases = List.copyOf(aliases);
+        this.keyAlgorithms = new HashMap<>();
+        this.hostAliases = new HashMap<>();
+        this.tlsMetrics = tlsMetrics;
+
+        for (String alias : this.aliases) {
+            final X509Certificate[] chain = keyManager.getCertificateChain(alias);
+            if (chain == null || chain.length == 0) {
+                continue;
+            }
+
+            keyAlgorithms.put(alias, chain[0].getPublicKey().getAlgorithm());
+            for (String hostName : getHostNames(chain[0])) {
+                hostAliases.computeIfAbsent(hostName, key -> new ArrayList<>()).add(alias);
+            }
+        }
+        LOG.debug("Certificates by host name: " + hostAliases);
+    }
+
+
+    /**
+     * Get the host names of the certificates
+     *
+     * @return the host names, wildcard names start with <code>*.</code>
+     */
+    public Collection<String> getHostNames() {
+        return hostAliases.keySet();
+    }
+
+
+    /**
+     * Select the alias of a certificate
+     *
+     * @param keyType the key type
+     * @param hostName the requested host name or null
+     * @return the alias or null if there is no certificate of the key type
+     */
+    public String select(String keyType, String hostName) {
+        if (hostName != null) {
+            final String host = hostName.toLowerCase(Locale.ROOT);
+            String alias = select(keyType, hostAliases.get(host));
+            if (alias != null) {
+                return alias;
+            }
+
+            final int index = host.indexOf('.');
+            if (index > 0) {
+                alias = select(keyType, hostAliases.get("*" + host.substring(index)));
+                if (alias != null) {
+                    return alias;
+                }
+            }
+        }
+        return select(keyType, aliases);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509ExtendedKeyManager#chooseEngineServerAlias(java.lang.String, java.security.Principal[], javax.net.ssl.SSLEngine)
+     */
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        SSLSession session = null;
+        if (engine != null) {
+            session = engine.getHandshakeSession();
+        }
+        return choose(keyType, session);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509KeyManager#chooseServerAlias(java.lang.String, java.security.Principal[], java.net.Socket)
+     */
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        SSLSession session = null;
+        if (socket instanceof SSLSocket) {
+            session = ((SSLSocket) socket).getHandshakeSession();
+        }
+        return choose(keyType, session);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509KeyManager#getServerAliases(java.lang.String, java.security.Principal[])
+     */
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        return keyManager.getServerAliases(keyType, issuers);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509KeyManager#getClientAliases(java.lang.String, java.security.Principal[])
+     */
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return keyManager.getClientAliases(keyType, issuers);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509KeyManager#chooseClientAlias(java.lang.String[], java.security.Principal[], java.net.Socket)
+     */
+    @Override
+    public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+        return keyManager.chooseClientAlias(keyType, issuers, socket);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509ExtendedKeyManager#chooseEngineClientAlias(java.lang.String[], java.security.Principal[], javax.net.ssl.SSLEngine)
+     */
+    @Override
+    public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+        return keyManager.chooseEngineClientAlias(keyType, issuers, engine);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509KeyManager#getCertificateChain(java.lang.String)
+     */
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        return keyManager.getCertificateChain(alias);
+    }
+
+
+    /**
+     * @see javax.net.ssl.X509KeyManager#getPrivateKey(java.lang.String)
+     */
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        return keyManager.getPrivateKey(alias);
+    }
+
+
+    /**
+     * Choose the alias of a handshake
+     *
+     * @param keyType the key type
+     * @param session the handshake session or null
+     * @return the alias or null
+     */
+    protected String choose(String keyType, SSLSession session) {
+        final String alias = select(keyType, getRequestedHostName(session));
+        if (alias != null && session != null && session.getValue(FULL_HANDSHAKE) == null) {
+            session.putValue(FULL_HANDSHAKE, Boolean.TRUE);
+            tlsMetrics.recordFullHandshake();
+        }
+        return alias;
+    }
+
+
+    /**
+     * Select the first alias of a key type
+     *
+     * @param keyType the key type
+     * @param candidates the candidates or null
+     * @return the alias or null
+     */
+    private String select(String keyType, List<String> candidates) {
+        if (candidates == null || keyType == null) {
+            return null;
+        }
+
+        for (String alias : candidates) {
+            final String keyAlgorithm = keyAlgorithms.get(alias);
+            if (keyAlgorithm != null && (keyType.equals(keyAlgorithm) || keyType.startsWith(keyAlgorithm + "_"))) {
+                return alias;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Get the requested host name of a handshake
+     *
+     * @param session the handshake session or null
+     * @return the host name or null
+     */
+    private static String getRequestedHostName(SSLSession session) {
+        if (!(session instanceof ExtendedSSLSession)) {
+            return null;
+        }
+
+        for (SNIServerName serverName : ((ExtendedSSLSession) session).getRequestedServerNames()) {
+            if (serverName instanceof SNIHostName) {
+                return ((SNIHostName) serverName).getAsciiName();
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Get the host names of a certificate: the DNS names of the subject alternative names and the common name
+     *
+     * @param certificate the certificate
+     * @return the lower case host names
+     */
+    private static List<String> getHostNames(X509Certificate certificate) {
+        final List<String> result = new ArrayList<>();
+        try {
+            final Collection<List<?>> subjectAlternativeNames = certificate.getSubjectAlternativeNames();
+            if (subjectAlternativeNames != null) {
+                for (List<?> subjectAlternativeName : subjectAlternativeNames) {
+                    if (subjectAlternativeName.size() > 1 && Integer.valueOf(DNS_NAME).equals(subjectAlternativeName.get(0))) {
+                        result.add(String.valueOf(subjectAlternativeName.get(1)).toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        } catch (CertificateParsingException e) {
+            LOG.warn("Invalid subject alternative names of certificate [" + certificate.getSubjectX500Principal() + "]: " + e.getMessage());
+        }
+
+        try {
+            for (Rdn rdn : new LdapName(certificate.getSubjectX500Principal().getName()).getRdns()) {
+                if ("CN".equalsIgnoreCase(rdn.getType())) {
+                    final String commonName = String.valueOf(rdn.getValue()).toLowerCase(Locale.ROOT);
+                    if (!result.contains(commonName)) {
+                        result.add(commonName);
+                    }
+                }
+            }
+        } catch (InvalidNameException e) {
+            LOG.warn("Invalid subject of certificate [" + certificate.getSubjectX500Principal() + "]: " + e.getMessage());
+        }
+        return result;
+    }
+}
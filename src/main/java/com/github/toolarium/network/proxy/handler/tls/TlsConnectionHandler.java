@@ -0,0 +1,53 @@
+/*
+ * TlsConnectionHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.tls;
+
+import com.github.toolarium.network.proxy.handler.metrics.TlsMetrics;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ServerConnection;
+import io.undertow.util.AttachmentKey;
+
+
+/**
+ * Counts the connections of the HTTPS listener: the first request of a connection records it, the handshake of the
+ * connection is completed at this point. The connection is marked by an attachment without a shared lock: HTTP/2
+ * creates a server connection per stream, its attachments are kept by the HTTP/2 channel which exists once per TCP
+ * connection and whose streams are handled on its I/O thread.
+ *
+ * @author patrick
+ */
+public class TlsConnectionHandler implements HttpHandler {
+    private static final AttachmentKey<Boolean> RECORDED = AttachmentKey.create(Boolean.class);
+    private final HttpHandler next;
+    private final TlsMetrics tlsMetrics;
+
+
+    /**
+     * Constructor for TlsConnectionHandler
+     *
+     * @param next the next handler
+     * @param tlsMetrics the metrics of the HTTPS listener
+     */
+    public TlsConnectionHandler(HttpHandler next, TlsMetrics tlsMetrics) {
+        this.next = next;
+        this.tlsMetrics = tlsMetrics;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final ServerConnection connection = exchange.getConnection();
+        if (connection.getAttachment(RECORDED) == null) {
+            connection.putAttachment(RECORDED, Boolean.TRUE);
+            tlsMetrics.recordConnection();
+        }
+        next.handleRequest(exchange);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * WorkerHttpHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.handler.worker;
+
+import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.WorkerMode;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+
+/**
+ * Implements the worker mode: the handler sets the dispatch executor of the exchange, every dispatch without an
+ * explicit executor (e.g. a blocking handler) is executed by this executor instead of the XNIO worker pool.
+ * The non-blocking proxy path still runs on the I/O threads. The XNIO worker is owned by the network proxy that the
+ * connection pools can be pre-warmed on its I/O threads before the listeners are started.
+ *
+ * @author patrick
+ */
+public final class WorkerHttpHandler implements HttpHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerHttpHandler.class);
+    private static final String VIRTUAL_THREAD_EXECUTOR_METHOD = "newVirtualThreadPerTaskExecutor";
+    private final HttpHandler next;
+    private final ExecutorService executor;
+
+
+    /**
+     * Constructor for WorkerHttpHandler
+     *
+     * @param next the next handler
+     * @param executor the dispatch executor
+     */
+    private WorkerHttpHandler(HttpHandler next, ExecutorService executor) {
+        this.next = next;
+        this.executor = executor;
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        exchange.setDispatchExecutor(executor);
+        next.handleRequest(exchange);
+    }
+
+
+    /**
+     * Create the dispatch executor of the worker mode. The virtual thread executor is looked up at runtime that the
+     * network proxy still runs on older Java versions; in this case the XNIO worker pool is used.
+     *
+     * @param configuration the configuration
+     * @return the executor or null if the XNIO worker pool is used
+     */
+    public static ExecutorService createExecutor(final INetworkProxyConfiguration configuration) {
+        if (!WorkerMode.VIRTUAL.equals(configuration.getWorkerMode())) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD).invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Virtual threads are not supported by Java [" + System.getProperty("java.version") + "], use the worker pool: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Create the XNIO worker with the same options as Undertow creates its internal worker
+     *
+     * @param configuration the configuration
+     * @return the worker
+     * @throws IOException In case the worker could not be created
+     */
+    public static XnioWorker createWorker(final INetworkProxyConfiguration configuration) throws IOException {
+        return Xnio.getInstance(Undertow.class.getClassLoader()).createWorker(OptionMap.builder()
+                .set(Options.WORKER_IO_THREADS, configuration.getIoThreads())
+                .set(Options.CONNECTION_HIGH_WATER, 1000000)
+                .set(Options.CONNECTION_LOW_WATER, 1000000)
+                .set(Options.WORKER_TASK_CORE_THREADS, configuration.getWorkerThreads())
+                .set(Options.WORKER_TASK_MAX_THREADS, configuration.getWorkerThreads())
+                .set(Options.TCP_NODELAY, true)
+                .set(Options.CORK, true)
+                .getMap());
+    }
+
+
+    /**
+     * Add the worker handler
+     *
+     * @param executor the dispatch executor or null
+     * @param handlerToWrap the handler to wrap
+     * @return the handler
+     */
+    public static HttpHandler addHandler(final ExecutorService executor, final HttpHandler handlerToWrap) {
+        if (executor == null) {
+            return handlerToWrap;
+        }
+
+        return new WorkerHttpHandler(handlerToWrap, executor);
+    }
+
+
+    /**
+     * Close a dispatch executor, the running tasks are completed
+     *
+     * @param executor the dispatch executor or null
+     */
+    public static void close(final ExecutorService executor) {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Close a worker, the running tasks are completed
+     *
+     * @param worker the worker or null
+     */
+    public static void closeWorker(final XnioWorker worker) {
+        if (worker == null) {
+            return;
+        }
+
+        worker.shutdown();
+        try {
+            worker.awaitTermination();
+        } catch (InterruptedException e) {
+            worker.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -6,8 +6,10 @@
 package com.github.toolarium.network.proxy.logger;
 
 import com.github.toolarium.network.proxy.Version;
+import com.github.toolarium.network.proxy.config.BackendProtocol;
 import com.github.toolarium.network.proxy.config.INetworkProxyConfiguration;
 import com.github.toolarium.network.proxy.config.INetworkProxyNode;
+import com.github.toolarium.network.proxy.config.NetworkProxyInstanceGroup;
 import com.github.toolarium.network.proxy.logger.ansi.ColoredStackTraceWriter;
 import io.undertow.Undertow.ListenerInfo;
 import java.io.PrintWriter;
@@ -112,6 +114,10 @@ public class LifecycleLogger {
             if (configuration.hasHealthCheck()) {
                 prepareHeader(message, "Health").append(commandText(colorScheme, configuration.getHealthPath())).append(NL);
             }
+
+            if (configuration.hasMetrics()) {
+                prepareHeader(message, "Metrics").append(commandText(colorScheme, configuration.getMetricsPath())).append(NL);
+            }
             
             /* TODO
             if (configuration.hasBasicAuthentication()) {
@@ -215,33 +221,33 @@ public class LifecycleLogger {
             for (INetworkProxyNode node : configuration.getNetworkProxyNodeList()) {
                 message.append("    - " + commandText(colorScheme, node.getResource()));
                 
-                if (node.getInstances() != null && !node.getInstances().isEmpty()) {
+                final boolean hasInstances = node.getInstances() != null && !node.getInstances().isEmpty();
+                final boolean hasGroups = node.getGroups() != null && !node.getGroups().isEmpty();
+                if (hasInstances || hasGroups) {
                     if (node.getName() != null && !node.getName().equals(node.getResource())) {
                         message.append(NL);
                         message.append("       - NAME  " + commandText(colorScheme, node.getName()));
                     }
+
+                    if (BackendProtocol.HTTP_2.equals(node.getBackendProtocol())) {
+                        message.append(NL);
+                        message.append("       - PROTO " + commandText(colorScheme, "HTTP/2"));
+                    }
                     
-                    message.append(NL);
-                    message.append("       - URL   ");
-                    
-                    int lineLength = 0;
-                    int i = 0;
-                    for (URI uri : node.getInstances()) {
-                        if (i > 0) {
-                            message.append(",");
-                            lineLength++;
-                        }
-    
-                        String uriStr = uri.toString();
-                        if (lineLength + uriStr.length() > 74) {
+                    if (hasInstances) {
+                        message.append(NL);
+                        message.append("       - URL   ");
+                        prepareInstances(colorScheme, message, node.getInstances());
+                    }
+
+                    if (hasGroups) {
+                        for (NetworkProxyInstanceGroup group : node.getGroups()) {
+                            message.append(NL);
+                            message.append("       - GROUP " + commandText(colorScheme, group.getName()) + " (" + group.getWeight() + ")");
                             message.append(NL);
                             message.append("               ");
-                            lineLength = 0;
+                            prepareInstances(colorScheme, message, group.getInstances());
                         }
-                        
-                        lineLength += uriStr.length();
-                        message.append(commandText(colorScheme, uriStr));
-                        i++;
                     }
                 } else {
                     message.append("n/a");
@@ -254,6 +260,36 @@ public class LifecycleLogger {
         return message;
     }
 
+
+    /**
+     * Prepare the instances
+     * 
+     * @param colorScheme the color schema
+     * @param message the message
+     * @param instances the instances
+     */
+    private void prepareInstances(ColorScheme colorScheme, StringBuilder message, List<URI> instances) {
+        int lineLength = 0;
+        int i = 0;
+        for (URI uri : instances) {
+            if (i > 0) {
+                message.append(",");
+                lineLength++;
+            }
+
+            String uriStr = uri.toString();
+            if (lineLength + uriStr.length() > 74) {
+                message.append(NL);
+                message.append("               ");
+                lineLength = 0;
+            }
+            
+            lineLength += uriStr.length();
+            message.append(commandText(colorScheme, uriStr));
+            i++;
+        }
+    }
+
     
     /**
      * Command text
@@ -0,0 +1,519 @@
+/*
+ * AccessLogFormat.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger.access;
+
+import io.undertow.attribute.ExchangeAttribute;
+import io.undertow.attribute.ExchangeAttributes;
+import io.undertow.attribute.SubstituteEmptyWrapper;
+import io.undertow.security.api.SecurityContext;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ServerConnection;
+import io.undertow.server.handlers.Cookie;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.HttpString;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+
+/**
+ * An access log format which is compiled once from the format string into a sequence of field writers. The writers
+ * append the values directly into an {@link AccessLogLineBuffer}, that the documented fields create no garbage per
+ * request. The addresses are encoded once per connection. Fields which are not known are resolved by the exchange
+ * attributes of undertow.
+ *
+ * @author patrick
+ * @see com.github.toolarium.network.proxy.config.INetworkProxyConfiguration#getAccessLogFormatString()
+ */
+public final class AccessLogFormat {
+    private static final String COMMON = "%h %l %u %t \"%r\" %s %b";
+    private static final String COMBINED = "%h %l %u %t \"%r\" %s %b \"%{i,Referer}\" \"%{i,User-Agent}\"";
+    private static final String COMMON_OBFUSCATED = "%o %l %u %t \"%r\" %s %b";
+    private static final String COMBINED_OBFUSCATED = "%o %l %u %t \"%r\" %s %b \"%{i,Referer}\" \"%{i,User-Agent}\"";
+    private static final byte DASH = '-';
+    private static final byte SPACE = ' ';
+    private final String formatString;
+    private final FieldWriter[] writers;
+
+
+    /**
+     * Constructor for AccessLogFormat
+     *
+     * @param formatString the format string
+     * @param writers the writers
+     */
+    private AccessLogFormat(String formatString, FieldWriter[] writers) {
+        this.formatString = formatString;
+        this.writers = writers;
+    }
+
+
+    /**
+     * Compile a format string
+     *
+     * @param formatString the format string or one of the aliases common, combined, commonobf or combinedobf
+     * @param classLoader the class loader to resolve the exchange attributes of undertow
+     * @return the compiled format
+     */
+    public static AccessLogFormat compile(String formatString, ClassLoader classLoader) {
+        final String pattern = resolveAlias(formatString);
+        final List<FieldWriter> writers = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            final boolean isToken = (c == '%' || c == '$') && i + 1 < pattern.length();
+            if (!isToken || (c == '$' && pattern.charAt(i + 1) != '{')) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            int end = i + 2;
+            if (pattern.charAt(i + 1) == '{') {
+                end = pattern.indexOf('}', i + 2) + 1;
+                if (end == 0) {
+                    throw new IllegalArgumentException("Invalid access log format, missing } in [" + formatString + "]!");
+                }
+            }
+
+            final String token = pattern.substring(i, end);
+            if ("%%".equals(token)) {
+                literal.append('%');
+            } else {
+                addLiteral(writers, literal);
+                writers.add(compileToken(token, classLoader));
+            }
+            i = end;
+        }
+        addLiteral(writers, literal);
+
+        return new AccessLogFormat(pattern, writers.toArray(new FieldWriter[writers.size()]));
+    }
+
+
+    /**
+     * Format the access log line of an exchange
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer, the line is appended
+     */
+    public void format(HttpServerExchange exchange, AccessLogLineBuffer buffer) {
+        for (FieldWriter writer : writers) {
+            writer.write(exchange, buffer);
+        }
+    }
+
+
+    /**
+     * Get the format string where an alias is resolved
+     *
+     * @return the format string
+     */
+    public String getFormatString() {
+        return formatString;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return formatString;
+    }
+
+
+    /**
+     * Writes a field of the access log line
+     */
+    @FunctionalInterface
+    interface FieldWriter {
+        /**
+         * Write the field
+         *
+         * @param exchange the exchange
+         * @param buffer the buffer
+         */
+        void write(HttpServerExchange exchange, AccessLogLineBuffer buffer);
+    }
+
+
+    /**
+     * Resolve the alias of a format string
+     *
+     * @param formatString the format string
+     * @return the format string
+     */
+    private static String resolveAlias(String formatString) {
+        if ("common".equals(formatString)) {
+            return COMMON;
+        } else if ("combined".equals(formatString)) {
+            return COMBINED;
+        } else if ("commonobf".equals(formatString)) {
+            return COMMON_OBFUSCATED;
+        } else if ("combinedobf".equals(formatString)) {
+            return COMBINED_OBFUSCATED;
+        }
+        return formatString;
+    }
+
+
+    /**
+     * Add the collected literal as writer
+     *
+     * @param writers the writers
+     * @param literal the literal, it is cleared
+     */
+    private static void addLiteral(List<FieldWriter> writers, StringBuilder literal) {
+        if (literal.length() == 0) {
+            return;
+        }
+
+        final byte[] bytes = literal.toString().getBytes(StandardCharsets.UTF_8);
+        literal.setLength(0);
+        if (bytes.length == 1) {
+            final byte b = bytes[0];
+            writers.add((exchange, buffer) -> buffer.append(b));
+        } else {
+            writers.add((exchange, buffer) -> buffer.append(bytes));
+        }
+    }
+
+
+    /**
+     * Compile a token
+     *
+     * @param token the token, e.g. <code>%h</code> or <code>%{i,Referer}</code>
+     * @param classLoader the class loader
+     * @return the writer
+     */
+    private static FieldWriter compileToken(String token, ClassLoader classLoader) {
+        switch (token) {
+            case "%a":
+                return new AddressWriter(true, address -> address.getAddress().getHostAddress());
+            case "%A":
+                return new AddressWriter(false, address -> address.getAddress().getHostAddress());
+            case "%h":
+                return new AddressWriter(true, InetSocketAddress::getHostString);
+            case "%o":
+                return new AddressWriter(true, AccessLogFormat::obfuscate);
+            case "%b":
+                return (exchange, buffer) -> writeBytesSent(exchange, buffer, true);
+            case "%B":
+                return (exchange, buffer) -> writeBytesSent(exchange, buffer, false);
+            case "%H":
+                return (exchange, buffer) -> buffer.append(exchange.getProtocol());
+            case "%l":
+                return (exchange, buffer) -> buffer.append(DASH);
+            case "%m":
+                return (exchange, buffer) -> buffer.append(exchange.getRequestMethod());
+            case "%p":
+                return AccessLogFormat::writeLocalPort;
+            case "%q":
+                return AccessLogFormat::writeQueryString;
+            case "%r":
+                return AccessLogFormat::writeRequestLine;
+            case "%s":
+                return (exchange, buffer) -> buffer.append(exchange.getStatusCode());
+            case "%t":
+                return (exchange, buffer) -> buffer.appendCommonLogTime(System.currentTimeMillis());
+            case "%u":
+                return AccessLogFormat::writeRemoteUser;
+            case "%U":
+                return (exchange, buffer) -> buffer.appendOrDash(exchange.getRequestURI());
+            case "%v":
+                return (exchange, buffer) -> buffer.appendOrDash(exchange.getHostName());
+            case "%D":
+                return (exchange, buffer) -> writeResponseTime(exchange, buffer, false);
+            case "%T":
+                return (exchange, buffer) -> writeResponseTime(exchange, buffer, true);
+            case "%I":
+                return (exchange, buffer) -> buffer.appendOrDash(Thread.currentThread().getName());
+            default:
+                return compileLongToken(token, classLoader);
+        }
+    }
+
+
+    /**
+     * Compile a token with parameter, e.g. <code>%{i,Referer}</code>
+     *
+     * @param token the token
+     * @param classLoader the class loader
+     * @return the writer
+     */
+    private static FieldWriter compileLongToken(String token, ClassLoader classLoader) {
+        if (token.length() > 5 && token.startsWith("%{") && token.charAt(3) == ',') {
+            final String name = token.substring(4, token.length() - 1).trim();
+            final char type = token.charAt(2);
+            if (type == 'i') {
+                final HttpString headerName = new HttpString(name);
+                return (exchange, buffer) -> writeHeader(exchange.getRequestHeaders().get(headerName), buffer);
+            } else if (type == 'o') {
+                final HttpString headerName = new HttpString(name);
+                return (exchange, buffer) -> writeHeader(exchange.getResponseHeaders().get(headerName), buffer);
+            } else if (type == 'c') {
+                return (exchange, buffer) -> {
+                    final Cookie cookie = exchange.getRequestCookie(name);
+                    if (cookie == null) {
+                        buffer.append(DASH);
+                    } else {
+                        buffer.appendOrDash(cookie.getValue());
+                    }
+                };
+            }
+        }
+
+        // all other attributes are resolved as the access log handler of undertow does
+        final ExchangeAttribute attribute = ExchangeAttributes.parser(classLoader, new SubstituteEmptyWrapper("-")).parse(token);
+        return (exchange, buffer) -> buffer.appendOrDash(attribute.readAttribute(exchange));
+    }
+
+
+    /**
+     * Write the request line, e.g. <code>GET /path?query HTTP/1.1</code>
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer
+     */
+    private static void writeRequestLine(HttpServerExchange exchange, AccessLogLineBuffer buffer) {
+        buffer.append(exchange.getRequestMethod()).append(SPACE).append(exchange.getRequestURI());
+        final String queryString = exchange.getQueryString();
+        if (queryString != null && !queryString.isEmpty()) {
+            buffer.append((byte) '?').append(queryString);
+        }
+        buffer.append(SPACE).append(exchange.getProtocol());
+    }
+
+
+    /**
+     * Write the query string with the leading <code>?</code> as the query string attribute of undertow does
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer
+     */
+    private static void writeQueryString(HttpServerExchange exchange, AccessLogLineBuffer buffer) {
+        final String queryString = exchange.getQueryString();
+        if (queryString == null || queryString.isEmpty()) {
+            buffer.append(DASH);
+        } else {
+            buffer.append((byte) '?').append(queryString);
+        }
+    }
+
+
+    /**
+     * Write the bytes sent
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer
+     * @param dashIfZero true to write a dash if no byte was sent
+     */
+    private static void writeBytesSent(HttpServerExchange exchange, AccessLogLineBuffer buffer, boolean dashIfZero) {
+        final long bytesSent = exchange.getResponseBytesSent();
+        if (dashIfZero && bytesSent == 0) {
+            buffer.append(DASH);
+        } else {
+            buffer.append(bytesSent);
+        }
+    }
+
+
+    /**
+     * Write the local port
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer
+     */
+    private static void writeLocalPort(HttpServerExchange exchange, AccessLogLineBuffer buffer) {
+        final InetSocketAddress address = exchange.getDestinationAddress();
+        if (address == null) {
+            buffer.append(DASH);
+        } else {
+            buffer.append(address.getPort());
+        }
+    }
+
+
+    /**
+     * Write the authenticated user
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer
+     */
+    private static void writeRemoteUser(HttpServerExchange exchange, AccessLogLineBuffer buffer) {
+        final SecurityContext securityContext = exchange.getSecurityContext();
+        if (securityContext == null || !securityContext.isAuthenticated()) {
+            buffer.append(DASH);
+        } else {
+            buffer.appendOrDash(securityContext.getAuthenticatedAccount().getPrincipal().getName());
+        }
+    }
+
+
+    /**
+     * Write the time taken to process the request, it needs the recorded request start time
+     *
+     * @param exchange the exchange
+     * @param buffer the buffer
+     * @param inSeconds true for seconds with three decimals, otherwise milliseconds
+     */
+    private static void writeResponseTime(HttpServerExchange exchange, AccessLogLineBuffer buffer, boolean inSeconds) {
+        final long requestStartTime = exchange.getRequestStartTime();
+        if (requestStartTime == -1) {
+            buffer.append(DASH);
+            return;
+        }
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStartTime);
+        if (!inSeconds) {
+            buffer.append(millis);
+            return;
+        }
+
+        final long remainder = millis % 1000;
+        buffer.append(millis / 1000).append((byte) '.').append(remainder / 100).append(remainder / 10 % 10).append(remainder % 10);
+    }
+
+
+    /**
+     * Write header values: one value as it is, more values as list
+     *
+     * @param values the values or null
+     * @param buffer the buffer
+     */
+    private static void writeHeader(HeaderValues values, AccessLogLineBuffer buffer) {
+        if (values == null || values.isEmpty()) {
+            buffer.append(DASH);
+        } else if (values.size() == 1) {
+            buffer.appendOrDash(values.getFirst());
+        } else {
+            buffer.append((byte) '[');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    buffer.append((byte) ',').append(SPACE);
+                }
+                buffer.append(values.get(i));
+            }
+            buffer.append((byte) ']');
+        }
+    }
+
+
+    /**
+     * Obfuscate the address: IPv4 without the last byte, IPv6 cut off after the second colon, e.g. <code>1.2.3.</code>
+     * or <code>fe08:44:</code>
+     *
+     * @param address the address
+     * @return the obfuscated address
+     */
+    private static String obfuscate(InetSocketAddress address) {
+        final String hostAddress = address.getAddress().getHostAddress();
+        int idx;
+        if (address.getAddress() instanceof Inet4Address) {
+            idx = hostAddress.lastIndexOf('.');
+        } else {
+            idx = hostAddress.indexOf(':');
+            if (idx >= 0) {
+                idx = hostAddress.indexOf(':', idx + 1);
+            }
+        }
+
+        if (idx < 0) {
+            return hostAddress;
+        }
+        return hostAddress.substring(0, idx + 1);
+    }
+
+
+    /**
+     * Writes the remote or local address. The encoded address is attached to the connection and reused as long as the
+     * exchange has the same address.
+     */
+    private static final class AddressWriter implements FieldWriter {
+        private final boolean remote;
+        private final Function<InetSocketAddress, String> converter;
+        private final AttachmentKey<EncodedAddress> key;
+
+
+        /**
+         * Constructor for AddressWriter
+         *
+         * @param remote true for the remote address, false for the local address
+         * @param converter the converter of the address
+         */
+        AddressWriter(boolean remote, Function<InetSocketAddress, String> converter) {
+            this.remote = remote;
+            this.converter = converter;
+            this.key = AttachmentKey.create(EncodedAddress.class);
+        }
+
+
+        /**
+         * @see com.github.toolarium.network.proxy.logger.access.AccessLogFormat.FieldWriter#write(io.undertow.server.HttpServerExchange,
+         *      com.github.toolarium.network.proxy.logger.access.AccessLogLineBuffer)
+         */
+        @Override
+        public void write(HttpServerExchange exchange, AccessLogLineBuffer buffer) {
+            InetSocketAddress address;
+            if (remote) {
+                address = exchange.getSourceAddress();
+            } else {
+                address = exchange.getDestinationAddress();
+            }
+
+            if (address == null || address.getAddress() == null) {
+                buffer.append(DASH);
+                return;
+            }
+
+            final ServerConnection connection = exchange.getConnection();
+            EncodedAddress encodedAddress = null;
+            if (connection != null) {
+                encodedAddress = connection.getAttachment(key);
+            }
+
+            if (encodedAddress == null || encodedAddress.address != address) {
+                encodedAddress = new EncodedAddress(address, converter.apply(address));
+                if (connection != null) {
+                    connection.putAttachment(key, encodedAddress);
+                }
+            }
+            buffer.append(encodedAddress.bytes);
+        }
+    }
+
+
+    /**
+     * An encoded address
+     */
+    private static final class EncodedAddress {
+        private final InetSocketAddress address;
+        private final byte[] bytes;
+
+
+        /**
+         * Constructor for EncodedAddress
+         *
+         * @param address the address
+         * @param value the value of the address
+         */
+        EncodedAddress(InetSocketAddress address, String value) {
+            this.address = address;
+            if (value == null || value.isEmpty()) {
+                this.bytes = new byte[] {DASH};
+            } else {
+                this.bytes = value.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * AccessLogFormatHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger.access;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+
+/**
+ * Access log handler which writes the line of a completed exchange with a compiled {@link AccessLogFormat} into a
+ * reusable buffer of the current thread and passes the encoded line to the receiver.
+ *
+ * @author patrick
+ */
+public class AccessLogFormatHandler implements HttpHandler {
+    private final HttpHandler next;
+    private final IAccessLogLineReceiver accessLogReceiver;
+    private final AccessLogFormat accessLogFormat;
+    private final ExchangeCompletionListener exchangeCompletionListener;
+    private final ThreadLocal<AccessLogLineBuffer> lineBuffers;
+
+
+    /**
+     * Constructor for AccessLogFormatHandler
+     *
+     * @param next the next handler
+     * @param accessLogReceiver the access log receiver
+     * @param accessLogFormat the access log format
+     */
+    public AccessLogFormatHandler(HttpHandler next, IAccessLogLineReceiver accessLogReceiver, AccessLogFormat accessLogFormat) {
+        this.next = next;
+        this.accessLogReceiver = accessLogReceiver;
+        this.accessLogFormat = accessLogFormat;
+        this.lineBuffers = ThreadLocal.withInitial(AccessLogLineBuffer::new);
+        this.exchangeCompletionListener = (exchange, nextListener) -> {
+            try {
+                log(exchange);
+            } finally {
+                nextListener.proceed();
+            }
+        };
+    }
+
+
+    /**
+     * @see io.undertow.server.HttpHandler#handleRequest(io.undertow.server.HttpServerExchange)
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        exchange.addExchangeCompleteListener(exchangeCompletionListener);
+        next.handleRequest(exchange);
+    }
+
+
+    /**
+     * Get the access log format
+     *
+     * @return the access log format
+     */
+    public AccessLogFormat getAccessLogFormat() {
+        return accessLogFormat;
+    }
+
+
+    /**
+     * Format and log the line of an exchange
+     *
+     * @param exchange the exchange
+     */
+    void log(HttpServerExchange exchange) {
+        final AccessLogLineBuffer lineBuffer = lineBuffers.get();
+        lineBuffer.reset();
+        accessLogFormat.format(exchange, lineBuffer);
+        accessLogReceiver.logLine(lineBuffer.getBytes(), lineBuffer.length());
+    }
+}
@@ -27,26 +27,56 @@ public final class AccessLogHttpHandler {
 
     
     /**
-     * Add basic authentication
+     * Create the access log receiver of the verbose level
      *
      * @param configuration the configuration
-     * @param handlerToWrap the handler to wrap
-     * @return the handler
+     * @return the access log receiver or null if there is no access log
      */
-    public static HttpHandler addHandler(final INetworkProxyConfiguration configuration, final HttpHandler handlerToWrap) {
-        
+    public static AccessLogReceiver createReceiver(final INetworkProxyConfiguration configuration) {
         if (VerboseLevel.VERBOSE.equals(configuration.getVerboseLevel()) || VerboseLevel.ACCESS.equals(configuration.getVerboseLevel())) {
             String name = "access"; // TODO: - configuration.getNetworkProxyName();
-            final AccessLogReceiver accessLogReceiver = new FileAccessLogReceiver(name);
-            return new AccessLogHandler(handlerToWrap, accessLogReceiver, configuration.getAccessLogFormatString(), AccessLogHttpHandler.class.getClassLoader());
+            return new FileAccessLogReceiver(name, configuration.getAccessLogBufferSize(), configuration.getAccessLogOverflowPolicy());
         } else if (VerboseLevel.ACCESS_CONSOLE.equals(configuration.getVerboseLevel())) {
             //LogbackUtil.getInstance().detachAppender(ACCESSLOG_APPENDER_NAME);
-            final AccessLogReceiver accessLogReceiver = new StdoutAccessLogReceiver();
-            return new AccessLogHandler(handlerToWrap, accessLogReceiver, configuration.getAccessLogFormatString(), AccessLogHttpHandler.class.getClassLoader());
+            return new StdoutAccessLogReceiver();
         } else {
             //LogbackUtil.getInstance().detachAppender(ACCESSLOG_APPENDER_NAME);
         }
         
-        return handlerToWrap;
+        return null;
+    }
+
+    
+    /**
+     * Add the access log
+     *
+     * @param configuration the configuration
+     * @param accessLogReceiver the access log receiver or null
+     * @param handlerToWrap the handler to wrap
+     * @return the handler
+     */
+    public static HttpHandler addHandler(final INetworkProxyConfiguration configuration, final AccessLogReceiver accessLogReceiver, final HttpHandler handlerToWrap) {
+        if (accessLogReceiver == null) {
+            return handlerToWrap;
+        }
+        
+        if (accessLogReceiver instanceof IAccessLogLineReceiver) {
+            AccessLogFormat accessLogFormat = AccessLogFormat.compile(configuration.getAccessLogFormatString(), AccessLogHttpHandler.class.getClassLoader());
+            return new AccessLogFormatHandler(handlerToWrap, (IAccessLogLineReceiver) accessLogReceiver, accessLogFormat);
+        }
+        
+        return new AccessLogHandler(handlerToWrap, accessLogReceiver, configuration.getAccessLogFormatString(), AccessLogHttpHandler.class.getClassLoader());
+    }
+
+    
+    /**
+     * Close an access log receiver, the buffered lines are written
+     *
+     * @param accessLogReceiver the access log receiver or null
+     */
+    public static void close(final AccessLogReceiver accessLogReceiver) {
+        if (accessLogReceiver instanceof FileAccessLogReceiver) {
+            ((FileAccessLogReceiver) accessLogReceiver).close();
+        }
     }
 }
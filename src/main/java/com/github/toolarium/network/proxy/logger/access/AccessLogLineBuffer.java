@@ -0,0 +1,233 @@
+/*
+ * AccessLogLineBuffer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger.access;
+
+import io.undertow.util.HttpString;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+
+
+/**
+ * A reusable buffer of an access log line. It is used by one thread only and encodes the values directly as UTF-8
+ * bytes. The timestamp of the common log format is formatted only once per second.
+ *
+ * @author patrick
+ */
+public class AccessLogLineBuffer {
+    private static final int INITIAL_SIZE = 512;
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+    private static final DateTimeFormatter COMMON_LOG_FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private byte[] bytes;
+    private int length;
+    private long timestampSecond;
+    private byte[] timestamp;
+
+
+    /**
+     * Constructor for AccessLogLineBuffer
+     */
+    public AccessLogLineBuffer() {
+        this.bytes = new byte[INITIAL_SIZE];
+        this.length = 0;
+        this.timestampSecond = Long.MIN_VALUE;
+        this.timestamp = null;
+    }
+
+
+    /**
+     * Reset the buffer for the next line, a buffer which was grown by a very long line is released
+     */
+    public void reset() {
+        if (bytes.length > MAX_RETAINED_SIZE) {
+            bytes = new byte[INITIAL_SIZE];
+        }
+        length = 0;
+    }
+
+
+    /**
+     * Append a byte
+     *
+     * @param b the byte
+     * @return this instance
+     */
+    public AccessLogLineBuffer append(byte b) {
+        ensureCapacity(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+
+    /**
+     * Append bytes
+     *
+     * @param value the bytes
+     * @return this instance
+     */
+    public AccessLogLineBuffer append(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+
+    /**
+     * Append a character sequence encoded as UTF-8
+     *
+     * @param value the value
+     * @return this instance
+     */
+    public AccessLogLineBuffer append(CharSequence value) {
+        final int valueLength = value.length();
+        ensureCapacity(valueLength * 3);
+        for (int i = 0; i < valueLength; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < valueLength && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[length++] = (byte) '?';
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Append an http string
+     *
+     * @param value the value
+     * @return this instance
+     */
+    public AccessLogLineBuffer append(HttpString value) {
+        final int valueLength = value.length();
+        ensureCapacity(valueLength);
+        value.copyTo(0, bytes, length, valueLength);
+        length += valueLength;
+        return this;
+    }
+
+
+    /**
+     * Append a number
+     *
+     * @param value the value
+     * @return this instance
+     */
+    public AccessLogLineBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+
+        long number = value;
+        if (number < 0) {
+            append((byte) '-');
+            number = -number;
+        }
+
+        int digits = 1;
+        for (long n = number / 10; n > 0; n /= 10) {
+            digits++;
+        }
+
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = DIGITS[(int) (number % 10)];
+            number /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+
+    /**
+     * Append a value or a dash if it is null or empty
+     *
+     * @param value the value or null
+     * @return this instance
+     */
+    public AccessLogLineBuffer appendOrDash(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return append((byte) '-');
+        }
+        return append(value);
+    }
+
+
+    /**
+     * Append the time in common log format, e.g. <code>[10/Oct/2000:13:55:36 -0700]</code>
+     *
+     * @param currentTimeMillis the time in milliseconds
+     * @return this instance
+     */
+    public AccessLogLineBuffer appendCommonLogTime(long currentTimeMillis) {
+        final long second = Math.floorDiv(currentTimeMillis, 1000L);
+        if (second != timestampSecond) {
+            timestamp = ("[" + COMMON_LOG_FORMATTER.format(Instant.ofEpochSecond(second)) + "]").getBytes(StandardCharsets.UTF_8);
+            timestampSecond = second;
+        }
+        return append(timestamp);
+    }
+
+
+    /**
+     * Get the bytes, they are valid up to the length
+     *
+     * @return the bytes
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+
+    /**
+     * Get the length of the line
+     *
+     * @return the length
+     */
+    public int length() {
+        return length;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Ensure the capacity for additional bytes
+     *
+     * @param additional the number of additional bytes
+     */
+    private void ensureCapacity(int additional) {
+        if (length + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+        }
+    }
+}
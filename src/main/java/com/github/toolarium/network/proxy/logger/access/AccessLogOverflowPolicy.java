@@ -0,0 +1,19 @@
+/*
+ * AccessLogOverflowPolicy.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger.access;
+
+/**
+ * Defines what happens with an access log line if the buffer of the access log writer is full
+ * 
+ * @author patrick
+ */
+public enum AccessLogOverflowPolicy {
+    /** The line is dropped and counted */
+    DROP,
+
+    /** The request thread waits until the writer has free space */
+    BLOCK
+}
@@ -0,0 +1,318 @@
+/*
+ * AccessLogRingBuffer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger.access;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * A bounded multi-producer single-consumer ring buffer of access log lines. Each slot owns a reusable byte array,
+ * a producer claims a slot by a compare and set of the producer sequence, encodes the line as UTF-8 directly into
+ * the slot and publishes it by its slot sequence. The consumer drains the published lines into a buffer.
+ *
+ * <p>If the ring buffer is full a line is either dropped or the producer waits, as defined by the
+ * {@link AccessLogOverflowPolicy}.</p>
+ *
+ * @author patrick
+ */
+public class AccessLogRingBuffer {
+    private static final int SPINS = 100;
+    private static final long BLOCK_PARK_NANOS = 50_000L;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final AtomicLong producerSequence;
+    private final AccessLogOverflowPolicy overflowPolicy;
+    private final LongAdder droppedCount;
+    private long consumerSequence;
+    private volatile Thread waitingConsumer;
+    private volatile boolean closed;
+
+
+    /**
+     * Constructor for AccessLogRingBuffer
+     *
+     * @param capacity the min number of lines, it is rounded up to a power of two
+     * @param slotSize the initial size of a slot in bytes
+     * @param overflowPolicy the overflow policy
+     */
+    public AccessLogRingBuffer(int capacity, int slotSize, AccessLogOverflowPolicy overflowPolicy) {
+        int size = 2;
+        while (size < capacity && size < (1 << 30)) {
+            size <<= 1;
+        }
+
+        this.capacity = size;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.slots = new byte[size][];
+        this.lengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+            slots[i] = new byte[slotSize];
+        }
+
+        this.producerSequence = new AtomicLong(0);
+        this.overflowPolicy = overflowPolicy;
+        this.droppedCount = new LongAdder();
+        this.consumerSequence = 0;
+        this.closed = false;
+    }
+
+
+    /**
+     * Offer a line, a line separator is appended
+     *
+     * @param line the line
+     * @return true if the line was added, false if it was dropped
+     */
+    public boolean offer(CharSequence line) {
+        final long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+
+        final int index = (int) (sequence & mask);
+        final int length = line.length();
+        final byte[] slot = slot(index, length * 3 + 1);
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                slot[position++] = (byte) c;
+            } else if (c < 0x800) {
+                slot[position++] = (byte) (0xC0 | (c >> 6));
+                slot[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(line.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                slot[position++] = (byte) (0xF0 | (codePoint >> 18));
+                slot[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                slot[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                slot[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                slot[position++] = (byte) '?';
+            } else {
+                slot[position++] = (byte) (0xE0 | (c >> 12));
+                slot[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                slot[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        slot[position++] = (byte) '\n';
+        lengths[index] = position;
+        publish(sequence);
+        return true;
+    }
+
+
+    /**
+     * Offer an encoded line, a line separator is appended
+     *
+     * @param line the UTF-8 encoded line
+     * @param offset the offset of the line
+     * @param length the length of the line
+     * @return true if the line was added, false if it was dropped
+     */
+    public boolean offer(byte[] line, int offset, int length) {
+        final long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+
+        final int index = (int) (sequence & mask);
+        final byte[] slot = slot(index, length + 1);
+        System.arraycopy(line, offset, slot, 0, length);
+        slot[length] = (byte) '\n';
+        lengths[index] = length + 1;
+        publish(sequence);
+        return true;
+    }
+
+
+    /**
+     * Drain published lines into the buffer as long as they fit, a line which is larger than the buffer is truncated.
+     * It must be called only by the consumer thread.
+     *
+     * @param buffer the buffer
+     * @return the number of drained lines
+     */
+    public int drainTo(ByteBuffer buffer) {
+        int count = 0;
+        for (;;) {
+            final int index = (int) (consumerSequence & mask);
+            if (sequences.get(index) != consumerSequence + 1) {
+                return count;
+            }
+
+            int length = lengths[index];
+            if (length > buffer.remaining()) {
+                if (buffer.position() > 0) {
+                    return count;
+                }
+                length = buffer.remaining();
+            }
+
+            buffer.put(slots[index], 0, length);
+            sequences.set(index, consumerSequence + capacity);
+            consumerSequence++;
+            count++;
+        }
+    }
+
+
+    /**
+     * Wait until a line is published, the ring buffer is closed or the timeout is elapsed. It must be called only
+     * by the consumer thread.
+     *
+     * @param timeoutNanos the timeout in nanoseconds
+     */
+    public void await(long timeoutNanos) {
+        waitingConsumer = Thread.currentThread();
+        if (isEmpty() && !closed) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        waitingConsumer = null;
+    }
+
+
+    /**
+     * Check if no line is published. It must be called only by the consumer thread.
+     *
+     * @return true if it is empty
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) (consumerSequence & mask)) != consumerSequence + 1;
+    }
+
+
+    /**
+     * Close the ring buffer: new lines are dropped and the consumer is woken up
+     */
+    public void close() {
+        closed = true;
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+
+    /**
+     * Check if the ring buffer is closed
+     *
+     * @return true if it is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * Get the number of slots
+     *
+     * @return the number of slots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Get the overflow policy
+     *
+     * @return the overflow policy
+     */
+    public AccessLogOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+
+    /**
+     * Get the number of dropped lines
+     *
+     * @return the number of dropped lines
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+
+    /**
+     * Get the claimed slot, a slot which is smaller than the line is grown once
+     *
+     * @param index the index of the slot
+     * @param size the required size
+     * @return the slot
+     */
+    private byte[] slot(int index, int size) {
+        byte[] slot = slots[index];
+        if (slot.length < size) {
+            slot = Arrays.copyOf(slot, size);
+            slots[index] = slot;
+        }
+        return slot;
+    }
+
+
+    /**
+     * Claim the next free slot
+     *
+     * @return the sequence of the slot or -1 if the line is dropped
+     */
+    private long claim() {
+        int spins = 0;
+        long sequence = producerSequence.get();
+        for (;;) {
+            if (closed) {
+                droppedCount.increment();
+                return -1;
+            }
+
+            final long difference = sequences.get((int) (sequence & mask)) - sequence;
+            if (difference == 0) {
+                if (producerSequence.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+                sequence = producerSequence.get();
+            } else if (difference < 0) {
+                // the slot is not yet consumed: the ring buffer is full
+                if (AccessLogOverflowPolicy.DROP.equals(overflowPolicy)) {
+                    droppedCount.increment();
+                    return -1;
+                }
+
+                if (spins++ < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                }
+                sequence = producerSequence.get();
+            } else {
+                sequence = producerSequence.get();
+            }
+        }
+    }
+
+
+    /**
+     * Publish a slot and wake up a waiting consumer
+     *
+     * @param sequence the sequence of the slot
+     */
+    private void publish(long sequence) {
+        sequences.set((int) (sequence & mask), sequence + 1);
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+}
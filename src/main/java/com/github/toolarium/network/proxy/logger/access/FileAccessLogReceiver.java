@@ -5,80 +5,133 @@
  */
 package com.github.toolarium.network.proxy.logger.access;
 
-import io.undertow.server.handlers.accesslog.AccessLogReceiver;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
-import jptools.logger.Level;
-import jptools.logger.LogConfig;
-import jptools.logger.LogMessage;
-import jptools.logger.appender.DailyFileAppender;
-import jptools.logger.appender.FileAppender;
+import java.util.concurrent.TimeUnit;
 import jptools.util.EnvironmentHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * Implements a file access log receiver which writes the access log day by day.
- * 
+ * Implements a file access log receiver which writes the access log day by day. The lines are passed by an
+ * {@link AccessLogRingBuffer} to a writer thread, which collects them in a direct buffer and writes a whole batch
+ * at once. The request thread does no file I/O.
+ *
  * @author patrick
  */
-public class FileAccessLogReceiver implements AccessLogReceiver {
+public class FileAccessLogReceiver implements IAccessLogLineReceiver {
     private static final Logger LOG = LoggerFactory.getLogger(FileAccessLogReceiver.class);
-    private static final String CLASS_NAME = FileAccessLogReceiver.class.getName();
-    private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd");    
+    private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int SLOT_SIZE = 512;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private final AccessLogRingBuffer ringBuffer;
+    private final ByteBuffer writeBuffer;
+    private final Thread writerThread;
     private String filename;
     private String baseName;
     private String trailerName;
-    private LogConfig config;
-    private FileAppender fileAppender;
+    private FileChannel channel;
+    private LocalDate currentDay;
+    private volatile long writtenCount;
+
 
-    
     /**
      * Constructor
      *
      * @param filename the filename
      */
     public FileAccessLogReceiver(String filename) {
-        this.config = new LogConfig();
+        this(filename, 8192, AccessLogOverflowPolicy.DROP);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param filename the filename
+     * @param bufferSize the number of lines which can be buffered
+     * @param overflowPolicy the policy if the buffer is full
+     */
+    public FileAccessLogReceiver(String filename, int bufferSize, AccessLogOverflowPolicy overflowPolicy) {
         this.filename = filename;
         this.baseName = "";
         this.trailerName = "";
+        this.ringBuffer = new AccessLogRingBuffer(bufferSize, SLOT_SIZE, overflowPolicy);
+        this.writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        this.writtenCount = 0;
 
         init();
+
+        this.writerThread = new Thread(this::write, "networkproxy-access-log");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
     }
 
-    
+
     /**
      * @see io.undertow.server.handlers.accesslog.AccessLogReceiver#logMessage(java.lang.String)
      */
     @Override
     public void logMessage(String message) {
-        if (fileAppender == null) {
-            synchronized (this) {
-                init();
-            }
-        }
+        ringBuffer.offer(message);
+    }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.logger.access.IAccessLogLineReceiver#logLine(byte[], int)
+     */
+    @Override
+    public void logLine(byte[] line, int length) {
+        ringBuffer.offer(line, 0, length);
+    }
+
 
+    /**
+     * Close the receiver, the buffered lines are written
+     */
+    public void close() {
+        ringBuffer.close();
         try {
-            fileAppender.writeMessage(new LogMessage(CLASS_NAME, message, null, Level.INFO), config);
-        } catch (IOException e) {
-            LOG.warn("Error occured: " + e.getMessage(), e);
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    
+
     /**
-     * Close the Method description
+     * Get the number of written lines
+     *
+     * @return the number of written lines
      */
-    public void close() {
-        fileAppender.close(config);
-        fileAppender = null;
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+
+    /**
+     * Get the number of dropped lines
+     *
+     * @return the number of dropped lines
+     */
+    public long getDroppedCount() {
+        return ringBuffer.getDroppedCount();
     }
 
-    
-    
+
     /**
      * Gets the used filename back
      *
@@ -120,16 +173,123 @@ public class FileAccessLogReceiver implements AccessLogReceiver {
         if (trailerName == null || trailerName.trim().length() == 0) {
             trailerName = ".log";
         }
+    }
+
 
-        config.setProperty(LogConfig.ENABLE_TIMESTAMP, "false");
-        config.setProperty(LogConfig.ENABLE_PACKAGENAME, "false");
-        config.setProperty(LogConfig.ENABLE_CLASSNAME, "false");
-        config.setProperty(LogConfig.ENABLE_LEVEL, "false");
-        config.setProperty(LogConfig.DESTINATION, baseName + "-'yyyy-MM-dd'" + trailerName);
-        config.setProperty(LogConfig.CURRENT_DESTINATION, baseName + trailerName);
-        config.setProperty(LogConfig.APPEND_FILE, "true");
-        fileAppender = new DailyFileAppender();
-        fileAppender.configurationChange(config);
+    /**
+     * The loop of the writer thread: drain the ring buffer into the write buffer and write it as batch
+     */
+    private void write() {
+        try {
+            for (;;) {
+                final int lines = ringBuffer.drainTo(writeBuffer);
+                if (lines > 0) {
+                    writtenCount += lines;
+                }
+
+                if (writeBuffer.position() > 0 && (lines == 0 || writeBuffer.remaining() < SLOT_SIZE)) {
+                    flush();
+                }
+
+                if (lines == 0) {
+                    if (ringBuffer.isClosed() && ringBuffer.isEmpty()) {
+                        break;
+                    }
+                    ringBuffer.await(IDLE_WAIT_NANOS);
+                }
+            }
+        } finally {
+            closeChannel();
+        }
     }
-}
 
+
+    /**
+     * Write the write buffer into the current file
+     */
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            final LocalDate today = LocalDate.now();
+            if (channel == null || !today.equals(currentDay)) {
+                open(today);
+            }
+
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not write access log [" + getCurrentFileName() + "]: " + e.getMessage());
+            closeChannel();
+        } finally {
+            writeBuffer.clear();
+        }
+    }
+
+
+    /**
+     * Open the current file, a file of a former day is renamed to the file of its day
+     *
+     * @param today the current day
+     * @throws IOException In case of an I/O error
+     */
+    private void open(LocalDate today) throws IOException {
+        closeChannel();
+
+        final Path currentFile = Paths.get(getCurrentFileName());
+        if (Files.exists(currentFile)) {
+            final LocalDate fileDay = LocalDate.ofInstant(Files.getLastModifiedTime(currentFile).toInstant(), ZoneId.systemDefault());
+            if (!fileDay.equals(today)) {
+                rotate(currentFile, Paths.get(baseName + "-" + DATE_FORMATTER.format(fileDay) + trailerName));
+            }
+        } else if (currentFile.getParent() != null) {
+            Files.createDirectories(currentFile.getParent());
+        }
+
+        channel = FileChannel.open(currentFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentDay = today;
+    }
+
+
+    /**
+     * Move the current file to the file of its day, an existing file of the day is appended
+     *
+     * @param currentFile the current file
+     * @param dayFile the file of the day
+     * @throws IOException In case of an I/O error
+     */
+    private void rotate(Path currentFile, Path dayFile) throws IOException {
+        LOG.debug("Rotate access log [" + currentFile + "] to [" + dayFile + "].");
+        if (!Files.exists(dayFile)) {
+            Files.move(currentFile, dayFile);
+            return;
+        }
+
+        try (FileChannel source = FileChannel.open(currentFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(dayFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = 0;
+            final long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+        Files.delete(currentFile);
+    }
+
+
+    /**
+     * Close the current file
+     */
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Could not close access log [" + getCurrentFileName() + "]: " + e.getMessage());
+        }
+        channel = null;
+    }
+}
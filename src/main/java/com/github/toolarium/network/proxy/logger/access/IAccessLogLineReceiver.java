@@ -0,0 +1,27 @@
+/*
+ * IAccessLogLineReceiver.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger.access;
+
+import io.undertow.server.handlers.accesslog.AccessLogReceiver;
+
+
+/**
+ * Defines an access log receiver which accepts an already encoded line. The bytes are only valid during the call
+ * and must be copied by the receiver.
+ *
+ * @author patrick
+ */
+public interface IAccessLogLineReceiver extends AccessLogReceiver {
+
+    /**
+     * Log a line
+     *
+     * @param line the UTF-8 encoded line without line separator
+     * @param length the length of the line
+     */
+    void logLine(byte[] line, int length);
+
+}
@@ -5,15 +5,13 @@
  */
 package com.github.toolarium.network.proxy.logger.access;
 
-import io.undertow.server.handlers.accesslog.AccessLogReceiver;
-
 
 /**
  * Implements a standard out access log receiver
  *  
  * @author patrick
  */
-public class StdoutAccessLogReceiver implements AccessLogReceiver {
+public class StdoutAccessLogReceiver implements IAccessLogLineReceiver {
 
     /**
      * @see io.undertow.server.handlers.accesslog.AccessLogReceiver#logMessage(java.lang.String)
@@ -22,5 +20,17 @@ public class StdoutAccessLogReceiver implements AccessLogReceiver {
     public void logMessage(String message) {
         System.out.println(message); // CHECKSTYLE IGNORE THIS LINE
     }
+
+
+    /**
+     * @see com.github.toolarium.network.proxy.logger.access.IAccessLogLineReceiver#logLine(byte[], int)
+     */
+    @Override
+    public void logLine(byte[] line, int length) {
+        synchronized (System.out) { // CHECKSTYLE IGNORE THIS LINE
+            System.out.write(line, 0, length); // CHECKSTYLE IGNORE THIS LINE
+            System.out.println(); // CHECKSTYLE IGNORE THIS LINE
+        }
+    }
 }
 
@@ -47,6 +47,7 @@ public class AbstractNetworkProxyTest {
         configuration.setPort(getNewPort());
         configuration.setBasicAuthentication(null);
         configuration.setHealthPath(null);
+        configuration.setMetricsPath(null);
         return configuration;
     }
 
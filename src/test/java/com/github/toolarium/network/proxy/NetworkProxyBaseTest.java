@@ -62,7 +62,7 @@ public class NetworkProxyBaseTest extends AbstractNetworkProxyTest {
             assertTrue(given().when().get(propagatedResource2).getBody().asPrettyString().startsWith(serverName2));
             assertTrue(given().when().get(propagatedResource1 + "/").getBody().asPrettyString().startsWith(serverName1));
             assertTrue(given().when().get(propagatedResource1 + "/cc/ggg").getBody().asPrettyString().startsWith(serverName1));
-            //TODO:  assertTrue(given().when().get(propagatedResource1).getBody().asPrettyString().startsWith(serverName1));
+            assertTrue(given().when().get(propagatedResource1).getBody().asPrettyString().startsWith(serverName1));
 
             // verify servers
             for (int i = 0; i < 100; i++) {
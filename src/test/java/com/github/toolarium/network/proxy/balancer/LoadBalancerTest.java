@@ -0,0 +1,293 @@
+/*
+ * LoadBalancerTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.balancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.config.LoadBalancingStrategy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConsistentHash;
+import com.github.toolarium.network.proxy.config.NetworkProxyInstanceGroup;
+import com.github.toolarium.network.proxy.config.NetworkProxyNode;
+import com.github.toolarium.network.proxy.config.NetworkProxySlowStart;
+import com.github.toolarium.network.proxy.config.SlowStartMode;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import com.github.toolarium.network.proxy.handler.proxy.SlowStart;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.ConsistentHashLoadBalancer;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.ILoadBalancer;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.LoadBalancerFactory;
+import com.github.toolarium.network.proxy.handler.proxy.balancer.WeightedLoadBalancer;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the load balancers.
+ *
+ * @author patrick
+ */
+public class LoadBalancerTest {
+
+    /**
+     * Test round robin
+     */
+    @Test void testRoundRobin() {
+        BackendInstance[] instances = createInstances(3);
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.ROUND_ROBIN);
+        assertEquals(0, loadBalancer.select(instances, null));
+        assertEquals(1, loadBalancer.select(instances, null));
+        assertEquals(2, loadBalancer.select(instances, null));
+        assertEquals(0, loadBalancer.select(instances, null));
+    }
+
+
+    /**
+     * Test least outstanding requests
+     */
+    @Test void testLeastOutstanding() {
+        BackendInstance[] instances = createInstances(3);
+        instances[0].start();
+        instances[0].start();
+        instances[2].start();
+
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.LEAST_OUTSTANDING);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, loadBalancer.select(instances, null));
+        }
+    }
+
+
+    /**
+     * Test power of two choices
+     */
+    @Test void testPowerOfTwoChoices() {
+        BackendInstance[] instances = createInstances(2);
+        instances[1].start();
+
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, loadBalancer.select(instances, null));
+        }
+    }
+
+
+    /**
+     * Test peak EWMA
+     */
+    @Test void testPeakEwma() {
+        BackendInstance[] instances = createInstances(2);
+        instances[0].end(instances[0].start() - TimeUnit.MILLISECONDS.toNanos(500), true);
+        instances[1].end(instances[1].start() - TimeUnit.MILLISECONDS.toNanos(5), true);
+        assertTrue(instances[0].getPeakEwma() > instances[1].getPeakEwma());
+        assertEquals(0, instances[0].getOutstandingRequests());
+
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.PEAK_EWMA);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, loadBalancer.select(instances, null));
+        }
+
+        // a failure is penalized
+        instances[1].end(instances[1].start(), false);
+        assertEquals(0, loadBalancer.select(instances, null));
+    }
+
+
+    /**
+     * Test consistent hashing
+     */
+    @Test void testConsistentHash() {
+        final int keys = 1000;
+        BackendInstance[] instances = createInstances(5);
+        ConsistentHashLoadBalancer loadBalancer = new ConsistentHashLoadBalancer(new NetworkProxyConsistentHash().setLoadFactor(0));
+        int[] selected = new int[keys];
+        int[] counts = new int[instances.length];
+        for (int i = 0; i < keys; i++) {
+            selected[i] = loadBalancer.select(instances, "key-" + i);
+            counts[selected[i]]++;
+            assertEquals(selected[i], loadBalancer.select(instances, "key-" + i));
+        }
+
+        for (int count : counts) {
+            assertTrue(count > keys / 10, "" + count);
+        }
+
+        // only the keys of a removed instance are remapped
+        BackendInstance[] remaining = {instances[0], instances[1], instances[3], instances[4]};
+        for (int i = 0; i < keys; i++) {
+            if (selected[i] != 2) {
+                assertEquals(instances[selected[i]], remaining[loadBalancer.select(remaining, "key-" + i)]);
+            }
+        }
+
+        // only keys of an added instance are remapped
+        BackendInstance[] added = {instances[0], instances[1], instances[2], instances[3], instances[4], createInstances(6)[5]};
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            final int index = loadBalancer.select(added, "key-" + i);
+            if (index != selected[i]) {
+                assertEquals(5, index);
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < keys / 3, "" + moved);
+
+        // a request without key is balanced round robin
+        assertNotEquals(loadBalancer.select(instances, (String) null), loadBalancer.select(instances, (String) null));
+    }
+
+
+    /**
+     * Test consistent hashing with bounded load
+     */
+    @Test void testConsistentHashBoundedLoad() {
+        BackendInstance[] instances = createInstances(5);
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.CONSISTENT_HASH, new NetworkProxyConsistentHash().setLoadFactor(125));
+        ConsistentHashLoadBalancer consistentHashLoadBalancer = (ConsistentHashLoadBalancer) loadBalancer;
+        final int index = consistentHashLoadBalancer.select(instances, "key");
+        assertEquals(index, consistentHashLoadBalancer.select(instances, "key"));
+
+        // the overloaded instance passes the key to the next instance on the ring
+        for (int i = 0; i < 10; i++) {
+            instances[index].start();
+        }
+        final int next = consistentHashLoadBalancer.select(instances, "key");
+        assertNotEquals(index, next);
+        assertEquals(next, consistentHashLoadBalancer.select(instances, "key"));
+    }
+
+
+    /**
+     * Test the slow start
+     */
+    @Test void testSlowStart() throws InterruptedException {
+        final long window = TimeUnit.SECONDS.toNanos(10);
+        BackendInstance[] instances = createInstances(2);
+        final long start = instances[0].getAvailableSince();
+        SlowStart slowStart = new SlowStart(new NetworkProxySlowStart().setEnabled(true).setWindow(10000).setMinWeight(10), LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.ROUND_ROBIN));
+        assertEquals(0.1, slowStart.weight(instances[0], start), 0.0001);
+        assertEquals(0.55, slowStart.weight(instances[0], start + window / 2), 0.0001);
+        assertEquals(1.0, slowStart.weight(instances[0], start + window), 0.0001);
+
+        SlowStart exponentialSlowStart = new SlowStart(new NetworkProxySlowStart().setEnabled(true).setWindow(10000).setMinWeight(10).setMode(SlowStartMode.EXPONENTIAL), LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.ROUND_ROBIN));
+        assertEquals(0.1, exponentialSlowStart.weight(instances[0], start), 0.0001);
+        assertEquals(Math.sqrt(0.1), exponentialSlowStart.weight(instances[0], start + window / 2), 0.0001);
+        assertEquals(1.0, exponentialSlowStart.weight(instances[0], start + window), 0.0001);
+
+        // all instances are in the slow start, the selection is kept
+        assertEquals(0, slowStart.select(instances, 0, null, start, 0.5));
+
+        // the recovered instance gets only a part of the requests
+        slowStart = new SlowStart(new NetworkProxySlowStart().setEnabled(true).setWindow(200).setMinWeight(10), LoadBalancerFactory.createLoadBalancer(LoadBalancingStrategy.ROUND_ROBIN));
+        Thread.sleep(300);
+        instances[0].setHealthy(false);
+        instances[0].setHealthy(true);
+        final long recovered = instances[0].getAvailableSince();
+        assertTrue(recovered > start);
+        assertEquals(1, slowStart.select(instances, 0, null, recovered, 0.5));
+        assertEquals(0, slowStart.select(instances, 0, null, recovered, 0.05));
+        assertEquals(1, slowStart.select(instances, 1, null, recovered, 0.99));
+    }
+
+
+    /**
+     * Test the split of the requests shed by the slow start
+     */
+    @Test void testSlowStartDistribution() throws InterruptedException {
+        BackendInstance[] instances = createInstances(3);
+        NetworkProxyNode node = new NetworkProxyNode(null, "/", null, null).addInstance("http://localhost:9500,http://localhost:9501,http://localhost:9502").setWeight("http://localhost:9502", 3);
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(node);
+        SlowStart slowStart = new SlowStart(new NetworkProxySlowStart().setEnabled(true).setWindow(200).setMinWeight(10), LoadBalancerFactory.createLoadBalancer(node));
+        Thread.sleep(300);
+        instances[0].setHealthy(false);
+        instances[0].setHealthy(true);
+        final long recovered = instances[0].getAvailableSince();
+
+        // the recovered instance keeps 10% of its share of 1/5, the rest is split 1:3 like the warmed instances
+        final int count = 100000;
+        int[] counts = new int[instances.length];
+        for (int i = 0; i < count; i++) {
+            counts[slowStart.select(instances, loadBalancer.select(instances, null), null, recovered, ThreadLocalRandom.current().nextDouble())]++;
+        }
+        assertEquals(count * 0.02, counts[0], count * 0.01);
+        assertEquals(count * 0.245, counts[1], count * 0.01);
+        assertEquals(count * 0.735, counts[2], count * 0.01);
+    }
+
+
+    /**
+     * Test the weighted instances and groups
+     */
+    @Test void testWeighted() {
+        BackendInstance[] instances = createInstances(4);
+        NetworkProxyNode node = new NetworkProxyNode(null, "/", null, null).addInstance("http://localhost:9500,http://localhost:9501").setWeight("http://localhost:9501", 3)
+                .addGroup(new NetworkProxyInstanceGroup("canary", 25).addInstance("http://localhost:9502"))
+                .addGroup(new NetworkProxyInstanceGroup("drained", 0).addInstance("http://localhost:9503"));
+
+        // groups and weights switch round robin to weighted
+        ILoadBalancer loadBalancer = LoadBalancerFactory.createLoadBalancer(node);
+        assertTrue(loadBalancer instanceof WeightedLoadBalancer);
+
+        // default group 100 split 1:3, canary 25, drained 0
+        final int count = 100000;
+        int[] counts = select(loadBalancer, instances, count);
+        assertEquals(count * 0.2, counts[0], count * 0.01);
+        assertEquals(count * 0.6, counts[1], count * 0.01);
+        assertEquals(count * 0.2, counts[2], count * 0.01);
+        assertEquals(0, counts[3]);
+
+        // an unavailable instance passes its share to its group
+        counts = select(loadBalancer, new BackendInstance[] {instances[0], instances[2], instances[3]}, count);
+        assertEquals(count * 0.8, counts[0], count * 0.01);
+        assertEquals(count * 0.2, counts[1], count * 0.01);
+        assertEquals(0, counts[2]);
+
+        // only weight 0 is left: balanced uniformly
+        counts = select(loadBalancer, new BackendInstance[] {instances[3], instances[3]}, count);
+        assertEquals(count * 0.5, counts[0], count * 0.01);
+
+        // another strategy is kept
+        assertFalse(LoadBalancerFactory.createLoadBalancer(node.setLoadBalancingStrategy(LoadBalancingStrategy.LEAST_OUTSTANDING)) instanceof WeightedLoadBalancer);
+        assertEquals(Arrays.asList(URI.create("http://localhost:9502")), node.getGroups().get(0).getInstances());
+    }
+
+
+    /**
+     * Select instances
+     *
+     * @param loadBalancer the load balancer
+     * @param instances the instances
+     * @param count the number of selections
+     * @return the number of selections of each instance
+     */
+    private int[] select(ILoadBalancer loadBalancer, BackendInstance[] instances, int count) {
+        int[] counts = new int[instances.length];
+        for (int i = 0; i < count; i++) {
+            counts[loadBalancer.select(instances, null)]++;
+        }
+        return counts;
+    }
+
+
+    /**
+     * Create backend instances
+     *
+     * @param amount the amount of instances
+     * @return the instances
+     */
+    private BackendInstance[] createInstances(int amount) {
+        BackendInstance[] instances = new BackendInstance[amount];
+        for (int i = 0; i < amount; i++) {
+            URI uri = URI.create("http://localhost:" + (9500 + i));
+            instances[i] = new BackendInstance("/ " + uri, uri, 1);
+        }
+        return instances;
+    }
+}
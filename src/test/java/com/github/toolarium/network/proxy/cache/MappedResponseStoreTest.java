@@ -0,0 +1,180 @@
+/*
+ * MappedResponseStoreTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.handler.cache.CachedResponse;
+import com.github.toolarium.network.proxy.handler.cache.MappedResponseStore;
+import com.github.toolarium.network.proxy.handler.cache.OpenAddressingIndex;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the memory-mapped response store and its index.
+ *
+ * @author patrick
+ */
+public class MappedResponseStoreTest {
+
+    /**
+     * Test the open addressing index
+     */
+    @Test void testIndex() {
+        OpenAddressingIndex index = new OpenAddressingIndex(100);
+        for (long i = 1; i <= 100; i++) {
+            assertTrue(index.put(i * index.capacity(), i));
+        }
+        assertEquals(100, index.size());
+
+        for (long i = 1; i <= 100; i++) {
+            assertEquals(i, index.get(i * index.capacity()));
+        }
+        assertEquals(-1, index.get(4711));
+
+        // the removed slots are refilled by backward shifting
+        assertEquals(1, index.remove(index.capacity()));
+        assertEquals(-1, index.remove(index.capacity()));
+        assertEquals(50, index.removeIf(value -> value % 2 == 0));
+        for (long i = 3; i <= 100; i += 2) {
+            assertEquals(i, index.get(i * index.capacity()));
+            assertEquals(-1, index.get((i - 1) * index.capacity()));
+        }
+        assertEquals(49, index.size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(OpenAddressingIndex.hash("a") != OpenAddressingIndex.hash("b"));
+    }
+
+
+    /**
+     * Test that the responses are available after a restart
+     *
+     * @throws IOException in case of an error
+     */
+    @Test void testRestart() throws IOException {
+        Path file = Files.createTempDirectory("networkproxy-cache").resolve("cache.bin");
+        MappedResponseStore store = new MappedResponseStore(file, 64 * 1024);
+        CachedResponse response = createResponse("hello mapped world");
+        assertTrue(store.put("localhost/a", response));
+        assertTrue(store.put("localhost/b", createResponse("b")));
+        assertTrue(store.put("localhost/b", createResponse("b2")));
+
+        CachedResponse cachedResponse = store.get("localhost/a");
+        assertNotNull(cachedResponse);
+        assertEquals(200, cachedResponse.getStatusCode());
+        assertEquals("hello mapped world", toString(cachedResponse.getBody()));
+        assertTrue(cachedResponse.isFresh(System.nanoTime()));
+        assertTrue(cachedResponse.getBody().isDirect());
+        cachedResponse.release();
+        assertNull(store.get("localhost/c"));
+        store.close();
+        assertNull(store.get("localhost/a"));
+
+        store = new MappedResponseStore(file, 64 * 1024);
+        assertEquals(2, store.size());
+        cachedResponse = store.get("localhost/a");
+        assertEquals("hello mapped world", toString(cachedResponse.getBody()));
+        HeaderMap headers = new HeaderMap();
+        cachedResponse.copyHeaders(headers);
+        assertEquals("text/plain", headers.getFirst(Headers.CONTENT_TYPE));
+        cachedResponse.release();
+
+        cachedResponse = store.get("localhost/b");
+        assertEquals("b2", toString(cachedResponse.getBody()));
+        cachedResponse.release();
+
+        store.remove("localhost/b");
+        assertNull(store.get("localhost/b"));
+        store.close();
+
+        // a different size discards the content
+        store = new MappedResponseStore(file, 128 * 1024);
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+
+    /**
+     * Test the recycling of the segments
+     *
+     * @throws IOException in case of an error
+     */
+    @Test void testRecycle() throws IOException {
+        Path file = Files.createTempDirectory("networkproxy-cache").resolve("cache.bin");
+        MappedResponseStore store = new MappedResponseStore(file, 4 * 4096);
+        char[] body = new char[1000];
+        Arrays.fill(body, 'x');
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(store.put("localhost/" + i, createResponse(new String(body))));
+        }
+        assertNull(store.get("localhost/0"));
+        CachedResponse cachedResponse = store.get("localhost/99");
+        assertNotNull(cachedResponse);
+        assertEquals(1000, cachedResponse.getContentLength());
+
+        // a pinned segment is skipped by the recycling, the writes go on in the other segments
+        for (int i = 100; i < 200; i++) {
+            assertTrue(store.put("localhost/" + i, createResponse(new String(body))));
+        }
+        assertEquals(new String(body), toString(cachedResponse.getBody()));
+        CachedResponse pinnedResponse = store.get("localhost/99");
+        assertNotNull(pinnedResponse);
+        pinnedResponse.release();
+        cachedResponse.release();
+
+        // the released segment is recycled again
+        for (int i = 200; i < 300; i++) {
+            assertTrue(store.put("localhost/" + i, createResponse(new String(body))));
+        }
+        assertNull(store.get("localhost/99"));
+
+        // too large for a segment
+        assertFalse(store.put("localhost/large", createResponse(new String(new char[8192]))));
+        store.close();
+    }
+
+
+    /**
+     * Create a response
+     *
+     * @param body the body
+     * @return the response
+     */
+    private CachedResponse createResponse(String body) {
+        HeaderMap headers = new HeaderMap();
+        headers.put(Headers.CACHE_CONTROL, "max-age=60");
+        headers.put(Headers.CONTENT_TYPE, "text/plain");
+        return CachedResponse.createTemplate(200, headers, false, 1024 * 1024).build(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), System.nanoTime());
+    }
+
+
+    /**
+     * Read a buffer
+     *
+     * @param buffer the buffer
+     * @return the content
+     */
+    private String toString(ByteBuffer buffer) {
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return new String(content, StandardCharsets.UTF_8);
+    }
+}
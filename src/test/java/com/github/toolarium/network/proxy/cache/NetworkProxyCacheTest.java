@@ -0,0 +1,193 @@
+/*
+ * NetworkProxyCacheTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.cache;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyCache;
+import com.github.toolarium.network.proxy.config.LoadBalancingStrategy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyNode;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import io.undertow.Undertow;
+import io.undertow.util.Headers;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the response cache
+ *
+ * @author patrick
+ */
+public class NetworkProxyCacheTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test cached responses
+     */
+    @Test void testCache() {
+        final AtomicInteger counter = new AtomicInteger();
+        final Undertow server = Undertow.builder().addHttpListener(9320, "localhost").setIoThreads(1).setHandler(exchange -> {
+            int count = counter.incrementAndGet();
+            if (exchange.getRequestPath().startsWith("/cache/private")) {
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "private, max-age=60");
+            } else if (exchange.getRequestPath().startsWith("/cache/vary")) {
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseHeaders().put(Headers.VARY, "Accept-Language");
+            } else {
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+            }
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+            exchange.getResponseSender().send("content-" + count);
+        }).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/cache", null, null).addInstance("http://localhost:9320/").setCache(new NetworkProxyCache().setEnabled(true));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            Response response = given().when().get("/cache/a");
+            assertEquals("content-1", response.getBody().asString());
+            assertEquals("MISS", response.getHeader("X-Cache"));
+
+            response = given().when().get("/cache/a");
+            assertEquals("content-1", response.getBody().asString());
+            assertEquals("HIT", response.getHeader("X-Cache"));
+            assertEquals("text/plain", response.getHeader("Content-Type"));
+            assertEquals(1, counter.get());
+
+            // query is part of the key
+            assertEquals("content-2", given().when().get("/cache/a?x=1").getBody().asString());
+            assertEquals("content-2", given().when().get("/cache/a?x=1").getBody().asString());
+
+            // request no-cache
+            assertEquals("content-3", given().header("Cache-Control", "no-cache").when().get("/cache/a").getBody().asString());
+
+            // private responses are not stored
+            assertEquals("content-4", given().when().get("/cache/private").getBody().asString());
+            assertEquals("content-5", given().when().get("/cache/private").getBody().asString());
+
+            // variants
+            assertEquals("content-6", given().header("Accept-Language", "de").when().get("/cache/vary").getBody().asString());
+            assertEquals("content-7", given().header("Accept-Language", "en").when().get("/cache/vary").getBody().asString());
+            assertEquals("content-6", given().header("Accept-Language", "de").when().get("/cache/vary").getBody().asString());
+            assertEquals("content-7", given().header("Accept-Language", "en").when().get("/cache/vary").getBody().asString());
+
+            // not cached methods
+            assertEquals("content-8", given().when().post("/cache/a").getBody().asString());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Test that a changed node keeps its cache as long as the cache settings are unchanged
+     */
+    @Test void testReload() {
+        final AtomicInteger counter = new AtomicInteger();
+        final Undertow server = Undertow.builder().addHttpListener(9321, "localhost").setIoThreads(1).setHandler(exchange -> {
+            exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+            exchange.getResponseSender().send("content-" + counter.incrementAndGet());
+        }).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        final NetworkProxyNode node = configuration.addNetworkProxyNode(null, "/reload", null, null).addInstance("http://localhost:9321/")
+                .setCache(new NetworkProxyCache().setEnabled(true));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+            assertEquals("MISS", given().when().get("/reload/a").getHeader("X-Cache"));
+            assertEquals("HIT", given().when().get("/reload/a").getHeader("X-Cache"));
+
+            // the node is changed, the cache is taken over
+            networkProxy.reload(List.of(new NetworkProxyNode(node).setLoadBalancingStrategy(LoadBalancingStrategy.LEAST_OUTSTANDING)));
+            Response response = given().when().get("/reload/a");
+            assertEquals("HIT", response.getHeader("X-Cache"));
+            assertEquals("content-1", response.getBody().asString());
+
+            // the cache settings are changed, the cache is replaced
+            networkProxy.reload(List.of(new NetworkProxyNode(node).setCache(new NetworkProxyCache().setEnabled(true).setMaxSize(1024 * 1024))));
+            response = given().when().get("/reload/a");
+            assertEquals("MISS", response.getHeader("X-Cache"));
+            assertEquals("content-2", response.getBody().asString());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Test that concurrent identical requests are coalesced
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testCoalescing() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final Undertow server = Undertow.builder().addHttpListener(9330, "localhost").setHandler(exchange -> exchange.dispatch(() -> {
+            int count = counter.incrementAndGet();
+            try {
+                // a slow backend that the requests overlap
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+            exchange.getResponseSender().send("content-" + count);
+        })).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/coalesce", null, null).addInstance("http://localhost:9330/").setCache(new NetworkProxyCache().setEnabled(true));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + configuration.getPort() + "/coalesce/a")).GET().build();
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.get().statusCode());
+                assertEquals("content-1", response.get().body());
+            }
+            assertEquals(1, counter.get());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * TinyLfuCacheTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.handler.cache.CacheControl;
+import com.github.toolarium.network.proxy.handler.cache.TinyLfuCache;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the W-TinyLFU cache and the cache control parser.
+ *
+ * @author patrick
+ */
+public class TinyLfuCacheTest {
+
+    /**
+     * Test the weight bound
+     */
+    @Test void testWeight() {
+        TinyLfuCache<String, byte[]> cache = new TinyLfuCache<>(1000, 100, value -> value.length);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new byte[100]);
+            assertTrue(cache.getWeightedSize() <= 1000);
+        }
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.getEvictionCount() >= 90);
+
+        // too heavy
+        cache.put("large", new byte[1001]);
+        assertNull(cache.get("large"));
+
+        // replace and remove
+        cache.put("a", new byte[10]);
+        cache.put("a", new byte[20]);
+        assertEquals(20, cache.get("a").length);
+        assertNotNull(cache.remove("a"));
+        assertNull(cache.get("a"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeightedSize());
+    }
+
+
+    /**
+     * Test that frequently used entries survive a scan
+     */
+    @Test void testScanResistance() {
+        TinyLfuCache<String, byte[]> cache = new TinyLfuCache<>(100 * 10, 100, value -> value.length);
+        for (int i = 0; i < 5; i++) {
+            cache.put("hot" + i, new byte[10]);
+        }
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(cache.get("hot" + i));
+            }
+        }
+
+        // a scan of entries which are used only once
+        for (int i = 0; i < 1000; i++) {
+            cache.put("scan" + i, new byte[10]);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("hot" + i));
+        }
+        assertTrue(cache.getWeightedSize() <= 1000);
+        assertTrue(cache.getHitCount() > 0);
+    }
+
+
+    /**
+     * Test the cache control parser
+     */
+    @Test void testCacheControl() {
+        CacheControl cacheControl = CacheControl.parse("public, max-age=60, stale-while-revalidate=30");
+        assertTrue(cacheControl.isStorable(true));
+        assertEquals(60, cacheControl.getFreshnessLifetime(null, null));
+        assertEquals(30, cacheControl.getStaleWhileRevalidate());
+
+        cacheControl = CacheControl.parse("max-age=60, s-maxage=10, must-revalidate, stale-while-revalidate=30");
+        assertEquals(10, cacheControl.getFreshnessLifetime(null, null));
+        assertEquals(0, cacheControl.getStaleWhileRevalidate());
+
+        assertTrue(!CacheControl.parse("private, max-age=60").isStorable(false));
+        assertTrue(!CacheControl.parse("no-store").isStorable(false));
+        assertTrue(!CacheControl.parse("max-age=60").isStorable(true));
+        assertEquals(-1, CacheControl.parse(null).getFreshnessLifetime(null, null));
+        assertEquals(3600, CacheControl.parse(null).getFreshnessLifetime("Sun, 06 Nov 1994 09:49:37 GMT", "Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertEquals(0, CacheControl.parse(null).getFreshnessLifetime("0", null));
+    }
+}
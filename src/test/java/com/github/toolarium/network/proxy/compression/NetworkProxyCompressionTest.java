@@ -0,0 +1,140 @@
+/*
+ * NetworkProxyCompressionTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.compression;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyCompression;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.handler.compression.DeflaterPool;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import io.undertow.Undertow;
+import io.undertow.util.Headers;
+import io.undertow.util.PooledObject;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the response compression
+ *
+ * @author patrick
+ */
+public class NetworkProxyCompressionTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the deflater pool
+     */
+    @Test void testDeflaterPool() {
+        DeflaterPool deflaterPool = new DeflaterPool(6, true, 1);
+        PooledObject<Deflater> first = deflaterPool.allocate();
+        PooledObject<Deflater> second = deflaterPool.allocate();
+        final Deflater deflater = first.getObject();
+        assertNotSame(deflater, second.getObject());
+
+        // the deflater is reused, the second one exceeds the max per thread
+        first.close();
+        first.close();
+        second.close();
+        assertEquals(1, deflaterPool.size());
+        assertSame(deflater, deflaterPool.allocate().getObject());
+        assertEquals(0, deflaterPool.size());
+    }
+
+
+    /**
+     * Test the response compression
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testCompression() throws Exception {
+        final String json = createJson(4096);
+        final Undertow server = Undertow.builder().addHttpListener(9420, "localhost").setIoThreads(1).setHandler(exchange -> {
+            if (exchange.getRequestPath().endsWith("/small")) {
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                exchange.getResponseSender().send("{}");
+            } else if (exchange.getRequestPath().endsWith("/png")) {
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "image/png");
+                exchange.getResponseSender().send(json);
+            } else {
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json; charset=UTF-8");
+                exchange.getResponseSender().send(json);
+            }
+        }).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/zip", null, null).addInstance("http://localhost:9420/")
+                .setCompression(new NetworkProxyCompression().setEnabled(true).setMinSize(1024).setLevel(1));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            Response response = given().header("Accept-Encoding", "gzip").when().get("/zip/json").then().statusCode(200).extract().response();
+            assertEquals("gzip", response.getHeader("Content-Encoding"));
+            assertTrue(response.getHeader("Vary").contains("Accept-Encoding"));
+            assertEquals(json, response.asString());
+
+            // the http client of rest assured adds the encodings it decodes, the raw client sends only deflate and doesn't decode
+            final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + configuration.getPort() + "/zip/json"))
+                    .header("Accept-Encoding", "deflate").GET().build();
+            final HttpResponse<byte[]> deflateResponse = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, deflateResponse.statusCode());
+            assertEquals("deflate", deflateResponse.headers().firstValue("Content-Encoding").orElse(null));
+            try (InflaterInputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(deflateResponse.body()))) {
+                assertEquals(json, new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            // too small or not compressible
+            response = given().header("Accept-Encoding", "gzip").when().get("/zip/small").then().statusCode(200).extract().response();
+            assertNull(response.getHeader("Content-Encoding"));
+            assertEquals("{}", response.asString());
+            response = given().header("Accept-Encoding", "gzip").when().get("/zip/png").then().statusCode(200).extract().response();
+            assertNull(response.getHeader("Content-Encoding"));
+            assertNull(response.getHeader("Vary"));
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Create a json document
+     *
+     * @param size the min size
+     * @return the json document
+     */
+    private String createJson(int size) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"name\":\"instance-").append(i).append("\"}");
+        }
+        return json.append(']').toString();
+    }
+}
@@ -55,4 +55,31 @@ public class NetworkProxyConfigurationParserTest {
         assertEquals(NetworkProxyConfigurationParser.getInstance().parse("a=http://localhost:1/k,http://localhost:2/l,b=http://localhost:3/k,http://localhost:4/l"), referenceList);
         assertEquals(NetworkProxyConfigurationParser.getInstance().parse(" a  =  http://localhost:1/k   ,   http://localhost:2/l    ,   b  =  http://localhost:3/k  ,  http://localhost:4/l  "), referenceList);
     }
+
+
+    /**
+     * Test json configuration 
+     */
+    @Test void testJson() {
+        List<NetworkProxyNode> referenceList = Arrays.asList(new NetworkProxyNode(null, "/a/", null, Arrays.asList(URI.create("http://localhost:1/k"), URI.create("http://localhost:2/l"))));
+        assertEquals(NetworkProxyConfigurationParser.getInstance().parse("{\"/a/\":[\"http://localhost:1/k\",\"http://localhost:2/l\"]}"), referenceList);
+        assertEquals(NetworkProxyConfigurationParser.getInstance().parse("[{\"resource\":\"/a/\",\"instances\":[\"http://localhost:1/k\",\"http://localhost:2/l\"]}]").get(0).getInstances(),
+                     referenceList.get(0).getInstances());
+        assertEquals(NetworkProxyConfigurationParser.getInstance().parse("{\"/a/\":{\"instances\":[\"http://localhost:1/k\",\"http://localhost:2/l\"]}}").get(0).getResource(), "/a/");
+        assertEquals(NetworkProxyConfigurationParser.getInstance().parse("[]").size(), 0);
+    }
+
+
+    /**
+     * Test json configuration with instance groups and weights
+     */
+    @Test void testJsonGroups() {
+        INetworkProxyNode node = NetworkProxyConfigurationParser.getInstance().parse("[{\"resource\":\"/a/\",\"instances\":[\"http://localhost:1/k\",\"http://localhost:2/l\"],"
+                + "\"weights\":{\"http://localhost:2/l\":3},\"groups\":[{\"name\":\"canary\",\"weight\":5,\"instances\":[\"http://localhost:3/m\"]}]}]").get(0);
+        assertEquals("/a/", node.getName());
+        assertEquals(Arrays.asList(URI.create("http://localhost:1/k"), URI.create("http://localhost:2/l")), node.getInstances());
+        assertEquals(Integer.valueOf(3), node.getWeights().get(URI.create("http://localhost:2/l")));
+        assertEquals(new NetworkProxyInstanceGroup("canary", 5).addInstance("http://localhost:3/m"), node.getGroups().get(0));
+        assertEquals(node, new NetworkProxyNode(node));
+    }
 }
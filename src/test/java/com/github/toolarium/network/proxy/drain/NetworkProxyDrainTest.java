@@ -0,0 +1,135 @@
+/*
+ * NetworkProxyDrainTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.drain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import io.undertow.Undertow;
+import io.undertow.server.handlers.BlockingHandler;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the graceful shutdown
+ *
+ * @author patrick
+ */
+public class NetworkProxyDrainTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the drain of the in-flight requests
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testDrain() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final Undertow server = Undertow.builder().addHttpListener(9460, "localhost").setIoThreads(1).setHandler(new BlockingHandler(exchange -> {
+            received.countDown();
+            Thread.sleep(1000);
+            exchange.getResponseSender().send("slow");
+        })).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.setHealthPath("/q/health").setShutdownTimeout(5000);
+        configuration.addNetworkProxyNode(null, "/drain", null, null).addInstance("http://localhost:9460/");
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            final HttpClient healthClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            HttpResponse<String> health = healthClient.send(createRequest(configuration, "/q/health").GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, health.statusCode());
+
+            final CompletableFuture<HttpResponse<String>> slow = client.sendAsync(createRequest(configuration, "/drain/slow").GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+
+            final NetworkProxy drainingNetworkProxy = networkProxy;
+            final Thread shutdown = new Thread(drainingNetworkProxy::shutdown);
+            shutdown.start();
+            while (!networkProxy.isDraining() && networkProxy.isRunning()) {
+                Thread.sleep(10);
+            }
+
+            // the listener keeps serving while it drains: the health reports DOWN and the connection is closed
+            health = healthClient.send(createRequest(configuration, "/q/health").GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, health.statusCode());
+            assertTrue(health.body().contains("DOWN"));
+            assertEquals("close", health.headers().firstValue("Connection").orElse(null));
+            assertTrue(networkProxy.isRunning());
+
+            // the in-flight request is completed before the network proxy stops
+            final HttpResponse<String> response = slow.get(5, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+            assertEquals("slow", response.body());
+            shutdown.join(5000);
+            assertFalse(networkProxy.isRunning());
+            networkProxy = null;
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Test the shutdown endpoint
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testShutdownPath() throws Exception {
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.setShutdownPath("/q/shutdown").setShutdownTimeout(1000);
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            final HttpResponse<String> response = client.send(createRequest(configuration, "/q/shutdown").POST(HttpRequest.BodyPublishers.noBody()).build(),
+                                                              HttpResponse.BodyHandlers.ofString());
+            assertEquals(202, response.statusCode());
+            assertTrue(response.body().contains("DRAINING"));
+
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (networkProxy.isRunning() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(networkProxy.isRunning());
+            networkProxy = null;
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+        }
+    }
+
+
+    /**
+     * Create a request to the network proxy
+     *
+     * @param configuration the configuration
+     * @param path the path
+     * @return the request builder
+     */
+    private HttpRequest.Builder createRequest(NetworkProxyConfiguration configuration, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + configuration.getPort() + path));
+    }
+}
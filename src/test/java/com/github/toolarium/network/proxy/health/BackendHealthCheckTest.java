@@ -0,0 +1,114 @@
+/*
+ * BackendHealthCheckTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.health;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyHealthCheck;
+import com.github.toolarium.network.proxy.config.NetworkProxyNode;
+import com.github.toolarium.network.proxy.handler.proxy.BackendHealthChecker;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the active health check of the backend instances
+ *
+ * @author patrick
+ */
+public class BackendHealthCheckTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the health state of an instance
+     *
+     * @throws InterruptedException In case of interruption
+     */
+    @Test void testHealthChecker() throws InterruptedException {
+        Undertow server = createServer("localhost", 9300, "server");
+        server.start();
+
+        BackendInstance instance = new BackendInstance("/ http://localhost:9300", URI.create("http://localhost:9300"), 1);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        BackendHealthChecker healthChecker = new BackendHealthChecker(scheduler);
+        try {
+            healthChecker.schedule(instance, new NetworkProxyHealthCheck().setPath("/").setInterval(50).setTimeout(500).setHealthyThreshold(1).setUnhealthyThreshold(1));
+            assertEquals(1, healthChecker.size());
+            assertTrue(instance.isHealthy());
+
+            server.stop();
+            waitForHealth(instance, false);
+            assertFalse(instance.isAvailable());
+
+            server.start();
+            waitForHealth(instance, true);
+            assertTrue(instance.isAvailable());
+
+            // disabled health check
+            healthChecker.schedule(instance, new NetworkProxyHealthCheck());
+            assertEquals(0, healthChecker.size());
+        } finally {
+            healthChecker.close();
+            scheduler.shutdownNow();
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Test the ejection of an unhealthy instance
+     *
+     * @throws InterruptedException In case of interruption
+     */
+    @Test void testEjection() throws InterruptedException {
+        NetworkProxyConfiguration configuration = newConfiguration();
+        final List<Undertow> servers = createServers("localhost", 9310, "/", "/h", "server-h", 2, configuration);
+        ((NetworkProxyNode) configuration.getNetworkProxyNode("/h/")).setHealthCheck(new NetworkProxyHealthCheck().setPath("/").setInterval(50).setTimeout(500).setHealthyThreshold(1).setUnhealthyThreshold(1));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            servers.get(1).stop();
+            Thread.sleep(500);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("server-h0", given().when().get("/h/x").getBody().asString());
+            }
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            servers.get(0).stop();
+        }
+    }
+
+
+    /**
+     * Wait until the instance has the expected health state
+     *
+     * @param instance the instance
+     * @param healthy the expected health state
+     * @throws InterruptedException In case of interruption
+     */
+    private void waitForHealth(BackendInstance instance, boolean healthy) throws InterruptedException {
+        for (int i = 0; i < 100 && instance.isHealthy() != healthy; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(healthy, instance.isHealthy());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * OutlierDetectorTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.health;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.config.NetworkProxyOutlierDetection;
+import com.github.toolarium.network.proxy.handler.proxy.BackendInstance;
+import com.github.toolarium.network.proxy.handler.proxy.CircuitState;
+import com.github.toolarium.network.proxy.handler.proxy.OutlierDetector;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the passive outlier detection
+ *
+ * @author patrick
+ */
+public class OutlierDetectorTest {
+
+    /**
+     * Test ejection and recovery
+     *
+     * @throws InterruptedException In case of interruption
+     */
+    @Test void testEjection() throws InterruptedException {
+        BackendInstance[] instances = createInstances(3);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            NetworkProxyOutlierDetection outlierDetection = new NetworkProxyOutlierDetection().setEnabled(true).setConsecutiveErrors(2).setBaseEjectionTime(100).setMaxEjectionPercent(50);
+            OutlierDetector outlierDetector = new OutlierDetector(outlierDetection, instances, scheduler);
+
+            // a success resets the consecutive errors
+            outlierDetector.response(instances[0], 500, 0);
+            outlierDetector.response(instances[0], 200, 0);
+            outlierDetector.response(instances[0], 503, 0);
+            assertEquals(CircuitState.CLOSED, instances[0].getCircuitState());
+            outlierDetector.response(instances[0], 503, 0);
+            assertEquals(CircuitState.OPEN, instances[0].getCircuitState());
+            assertFalse(instances[0].isAvailable());
+            assertEquals(1, instances[0].getEjectionCount());
+
+            // max ejection percent
+            outlierDetector.connectFailure(instances[1]);
+            outlierDetector.connectFailure(instances[1]);
+            outlierDetector.connectFailure(instances[1]);
+            assertEquals(CircuitState.CLOSED, instances[1].getCircuitState());
+
+            // half open and close
+            waitForCircuitState(instances[0], CircuitState.HALF_OPEN);
+            assertTrue(instances[0].isAvailable());
+            outlierDetector.response(instances[0], 200, 0);
+            assertEquals(CircuitState.CLOSED, instances[0].getCircuitState());
+
+            // a failure in half open state ejects immediately with a longer ejection time
+            outlierDetector.response(instances[0], 500, 0);
+            outlierDetector.response(instances[0], 500, 0);
+            waitForCircuitState(instances[0], CircuitState.HALF_OPEN);
+            outlierDetector.response(instances[0], 500, 0);
+            assertEquals(CircuitState.OPEN, instances[0].getCircuitState());
+            assertEquals(3, instances[0].getEjectionCount());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Test latency outliers
+     */
+    @Test void testLatency() {
+        BackendInstance[] instances = createInstances(2);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            NetworkProxyOutlierDetection outlierDetection = new NetworkProxyOutlierDetection().setEnabled(true).setConsecutiveErrors(2).setLatencyThreshold(100);
+            OutlierDetector outlierDetector = new OutlierDetector(outlierDetection, instances, scheduler);
+            outlierDetector.response(instances[1], 200, TimeUnit.MILLISECONDS.toNanos(50));
+            outlierDetector.response(instances[1], 200, TimeUnit.MILLISECONDS.toNanos(150));
+            assertEquals(CircuitState.CLOSED, instances[1].getCircuitState());
+            outlierDetector.response(instances[1], 200, TimeUnit.MILLISECONDS.toNanos(150));
+            assertEquals(CircuitState.OPEN, instances[1].getCircuitState());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Test disabled outlier detection
+     */
+    @Test void testDisabled() {
+        BackendInstance[] instances = createInstances(2);
+        OutlierDetector outlierDetector = new OutlierDetector(new NetworkProxyOutlierDetection(), instances, null);
+        assertFalse(outlierDetector.isEnabled());
+        for (int i = 0; i < 10; i++) {
+            outlierDetector.response(instances[0], 500, 0);
+            outlierDetector.connectFailure(instances[0]);
+        }
+        assertEquals(CircuitState.CLOSED, instances[0].getCircuitState());
+    }
+
+
+    /**
+     * Wait until the instance has the expected circuit state
+     *
+     * @param instance the instance
+     * @param circuitState the expected circuit state
+     * @throws InterruptedException In case of interruption
+     */
+    private void waitForCircuitState(BackendInstance instance, CircuitState circuitState) throws InterruptedException {
+        for (int i = 0; i < 100 && instance.getCircuitState() != circuitState; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(circuitState, instance.getCircuitState());
+    }
+
+
+    /**
+     * Create backend instances
+     *
+     * @param amount the amount of instances
+     * @return the instances
+     */
+    private BackendInstance[] createInstances(int amount) {
+        BackendInstance[] instances = new BackendInstance[amount];
+        for (int i = 0; i < amount; i++) {
+            URI uri = URI.create("http://localhost:" + (9600 + i));
+            instances[i] = new BackendInstance("/ " + uri, uri, 1);
+        }
+        return instances;
+    }
+}
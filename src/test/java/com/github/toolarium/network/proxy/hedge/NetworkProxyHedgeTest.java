@@ -0,0 +1,163 @@
+/*
+ * NetworkProxyHedgeTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.hedge;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.BackendProtocol;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyHedge;
+import com.github.toolarium.network.proxy.config.NetworkProxyNode;
+import com.github.toolarium.network.proxy.config.NetworkProxyStickySession;
+import com.github.toolarium.network.proxy.handler.proxy.HedgeDelay;
+import com.github.toolarium.network.proxy.handler.proxy.HedgingHandler;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import io.undertow.server.handlers.BlockingHandler;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the hedged requests
+ *
+ * @author patrick
+ */
+public class NetworkProxyHedgeTest extends AbstractNetworkProxyTest {
+    private static final long SLOW_MILLIS = 2000;
+
+
+    /**
+     * Test the hedge delay
+     */
+    @Test void testHedgeDelay() {
+        HedgeDelay hedgeDelay = new HedgeDelay(50, 5, 1000);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), hedgeDelay.getDelay());
+
+        for (int i = 1; i <= 32; i++) {
+            hedgeDelay.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(17), hedgeDelay.getDelay());
+
+        // the delay is bounded by the min delay
+        for (int i = 0; i < 256; i++) {
+            hedgeDelay.record(0);
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), hedgeDelay.getDelay());
+    }
+
+
+    /**
+     * Test the nodes which can be hedged
+     */
+    @Test void testSupported() {
+        assertTrue(HedgingHandler.isSupported(new NetworkProxyNode("/a", URI.create("http://localhost:1/"))));
+        assertFalse(HedgingHandler.isSupported(new NetworkProxyNode("/a", URI.create("http://localhost:1/")).setBackendProtocol(BackendProtocol.HTTP_2)));
+        assertFalse(HedgingHandler.isSupported(new NetworkProxyNode("/a", URI.create("http://localhost:1/")).setStickySession(new NetworkProxyStickySession().setEnabled(true))));
+    }
+
+
+    /**
+     * Test a large response, it is streamed and the request is sent once
+     */
+    @Test void testLargeResponse() {
+        final String content = "x".repeat(4 * 1024 * 1024);
+        final AtomicInteger count = new AtomicInteger();
+        final Undertow server = Undertow.builder().addHttpListener(9392, "localhost").setIoThreads(1).setHandler(new BlockingHandler(exchange -> {
+            count.incrementAndGet();
+            if (exchange.getRequestPath().endsWith("/chunked")) {
+                // unknown length
+                final OutputStream outputStream = exchange.getOutputStream();
+                final byte[] chunk = content.substring(0, 1024 * 1024).getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < 4; i++) {
+                    outputStream.write(chunk);
+                    outputStream.flush();
+                }
+            } else {
+                exchange.getResponseSender().send(content);
+            }
+        })).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/hedge", null, null).addInstance("http://localhost:9392/").addInstance("http://127.0.0.1:9392/")
+                .setHedge(new NetworkProxyHedge().setEnabled(true).setMaxDelay(1000));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            assertEquals(content, given().when().get("/hedge/large").then().statusCode(200).header("Content-Length", "" + content.length()).extract().asString());
+            assertEquals(1, count.get());
+            assertEquals(content, given().when().get("/hedge/chunked").then().statusCode(200).extract().asString());
+            assertEquals(2, count.get());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Test a hedged request to a slow instance
+     */
+    @Test void testHedge() {
+        final AtomicInteger slowCount = new AtomicInteger();
+        final Undertow slowServer = Undertow.builder().addHttpListener(9390, "localhost").setHandler(exchange -> exchange.dispatch(() -> {
+            slowCount.incrementAndGet();
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseSender().send("slow");
+        })).build();
+        final Undertow fastServer = Undertow.builder().addHttpListener(9391, "localhost").setIoThreads(1)
+                .setHandler(exchange -> exchange.getResponseSender().send("fast")).build();
+        slowServer.start();
+        fastServer.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/hedge", null, null).addInstance("http://localhost:9390/").addInstance("http://localhost:9391/")
+                .setHedge(new NetworkProxyHedge().setEnabled(true).setMinDelay(10).setMaxDelay(50).setBudgetPercent(100));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            // the first request initializes the client, it is not timed
+            assertEquals("fast", given().when().get("/hedge/a").then().statusCode(200).extract().asString());
+            for (int i = 0; i < 4; i++) {
+                final long start = System.currentTimeMillis();
+                assertEquals("fast", given().when().get("/hedge/a").then().statusCode(200).extract().asString());
+                final long duration = System.currentTimeMillis() - start;
+                assertTrue(duration < SLOW_MILLIS, "" + duration);
+            }
+
+            // the slow instance was selected first but did not answer
+            assertTrue(slowCount.get() > 0);
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            fastServer.stop();
+            slowServer.stop();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * NetworkProxyHttp2Test.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.http2;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.BackendProtocol;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyConnectionPool;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test HTTP/2 on the listener and to the backend instances
+ *
+ * @author patrick
+ */
+public class NetworkProxyHttp2Test extends AbstractNetworkProxyTest {
+
+    /**
+     * Test HTTP/2
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testHttp2() throws Exception {
+        final Undertow server = Undertow.builder().addHttpListener(9440, "localhost").setIoThreads(1)
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .setHandler(exchange -> exchange.getResponseSender().send(exchange.getProtocol().toString())).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+
+        // the multiplexed requests exceed the connections of the single IO thread, the exceeding requests wait for a connection
+        configuration.addNetworkProxyNode(null, "/h1", null, null).addInstance("http://localhost:9440/")
+                .setConnectionPool(new NetworkProxyConnectionPool().setMaxQueueSize(20));
+        configuration.addNetworkProxyNode(null, "/h2", null, null).addInstance("http://localhost:9440/").setBackendProtocol(BackendProtocol.HTTP_2)
+                .setConnectionPool(new NetworkProxyConnectionPool().setMaxQueueSize(20));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            // the protocol to the backend instance is independent of the client protocol
+            assertEquals("HTTP/1.1", given().when().get("/h1/a").then().statusCode(200).extract().asString());
+            assertEquals("HTTP/2.0", given().when().get("/h2/a").then().statusCode(200).extract().asString());
+
+            // the client upgrades to h2c, the requests are multiplexed over the connection
+            final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+            HttpResponse<String> response = client.send(createRequest(configuration, "/h2/a"), HttpResponse.BodyHandlers.ofString());
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals("HTTP/2.0", response.body());
+
+            final List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(client.sendAsync(createRequest(configuration, "/h2/" + i), HttpResponse.BodyHandlers.ofString()));
+                responses.add(client.sendAsync(createRequest(configuration, "/h1/" + i), HttpResponse.BodyHandlers.ofString()));
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                response = responses.get(i).get();
+                assertEquals(200, response.statusCode());
+                assertEquals(HttpClient.Version.HTTP_2, response.version());
+                if (i % 2 == 0) {
+                    assertEquals("HTTP/2.0", response.body());
+                } else {
+                    assertEquals("HTTP/1.1", response.body());
+                }
+            }
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Create a request to the network proxy
+     *
+     * @param configuration the configuration
+     * @param path the path
+     * @return the request
+     */
+    private HttpRequest createRequest(NetworkProxyConfiguration configuration, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + configuration.getPort() + path)).GET().build();
+    }
+}
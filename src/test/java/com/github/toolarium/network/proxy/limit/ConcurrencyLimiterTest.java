@@ -0,0 +1,167 @@
+/*
+ * ConcurrencyLimiterTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.limit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConcurrencyLimit;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.handler.limit.ConcurrencyLimiter;
+import io.undertow.Undertow;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the adaptive concurrency limit
+ *
+ * @author patrick
+ */
+public class ConcurrencyLimiterTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the limit by the latency
+     */
+    @Test void testLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new NetworkProxyConcurrencyLimit().setInitialLimit(10).setMinLimit(2).setMaxLimit(100));
+        assertEquals(10, limiter.getLimit());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(10, limiter.getInFlight());
+
+        // stable latency: the limit grows
+        final long rtt = TimeUnit.MILLISECONDS.toNanos(1);
+        for (int i = 0; i < 10; i++) {
+            limiter.release(rtt, false);
+        }
+        assertEquals(0, limiter.getInFlight());
+        runRound(limiter, 10, rtt);
+        assertEquals(0, limiter.getInFlight());
+        final int grownLimit = limiter.getLimit();
+        assertTrue(grownLimit > 10, "" + grownLimit);
+
+        // the latency increases: the limit shrinks
+        for (int i = 0; i < 5; i++) {
+            runRound(limiter, limiter.getLimit(), rtt * 10);
+        }
+        final int reducedLimit = limiter.getLimit();
+        assertTrue(reducedLimit < grownLimit, grownLimit + " / " + reducedLimit);
+
+        // a dropped request reduces the limit, an unknown latency not
+        assertTrue(limiter.tryAcquire());
+        limiter.release(-1, true);
+        assertTrue(limiter.getLimit() < reducedLimit);
+        final int droppedLimit = limiter.getLimit();
+        assertTrue(limiter.tryAcquire());
+        limiter.release(-1, false);
+        assertEquals(droppedLimit, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        // the limit doesn't grow while it is not used
+        for (int i = 0; i < 100; i++) {
+            runRound(limiter, 1, rtt);
+        }
+        assertEquals(droppedLimit, limiter.getLimit());
+
+        // bounded by the min limit
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(-1, true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+
+    /**
+     * Test the load shedding of a node
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testLoadShedding() throws Exception {
+        final Undertow server = Undertow.builder().addHttpListener(9360, "localhost").setIoThreads(1).setHandler(exchange -> exchange.dispatch(() -> {
+            try {
+                // a slow backend that the requests overlap
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseSender().send("content");
+        })).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/limit", null, null).addInstance("http://localhost:9360/")
+                .setConcurrencyLimit(new NetworkProxyConcurrencyLimit().setEnabled(true).setInitialLimit(2).setMaxLimit(2).setRetryAfter(3));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + configuration.getPort() + "/limit/a")).GET().build();
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+
+            int admitted = 0;
+            int rejected = 0;
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                if (response.get().statusCode() == 200) {
+                    admitted++;
+                } else {
+                    assertEquals(503, response.get().statusCode());
+                    assertEquals("3", response.get().headers().firstValue("Retry-After").orElse(null));
+                    rejected++;
+                }
+            }
+            assertTrue(admitted >= 1 && admitted <= 2, "admitted: " + admitted);
+            assertEquals(6 - admitted, rejected);
+
+            // the load is gone
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Acquire the given number of requests and release them with the given latency
+     *
+     * @param limiter the limiter
+     * @param requests the number of requests
+     * @param rtt the latency in nanoseconds
+     */
+    private void runRound(ConcurrencyLimiter limiter, int requests, long rtt) {
+        int acquired = 0;
+        for (int i = 0; i < requests; i++) {
+            if (limiter.tryAcquire()) {
+                acquired++;
+            }
+        }
+
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rtt, false);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * RateLimitTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.limit;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyRateLimit;
+import com.github.toolarium.network.proxy.config.RateLimitKey;
+import com.github.toolarium.network.proxy.handler.limit.TokenBucketTable;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the rate limit
+ *
+ * @author patrick
+ */
+public class RateLimitTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the token buckets
+     */
+    @Test void testTokenBucketTable() {
+        final long now = System.nanoTime();
+        TokenBucketTable table = new TokenBucketTable(10, 2, 1000);
+        assertEquals(0, table.tryAcquire("a", now));
+        assertEquals(0, table.tryAcquire("a", now));
+        final long waitTime = table.tryAcquire("a", now);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), waitTime);
+        assertEquals(0, table.tryAcquire("b", now));
+        assertEquals(0, table.tryAcquire("a", now + waitTime));
+        assertTrue(table.tryAcquire("a", now + waitTime) > 0);
+        assertEquals(2, table.size());
+
+        // the number of keys is bounded: a bucket is refilled after 100ms
+        assertTrue(table.getCapacity() >= 1000 && table.getCapacity() < 4096, "" + table.getCapacity());
+        final long interval = TimeUnit.MILLISECONDS.toNanos(100);
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(0, table.tryAcquire("key-" + i, now + i * interval));
+        }
+        assertTrue(table.size() <= table.getCapacity());
+
+        // an idle key is replaced without loss: its bucket is full again
+        final long later = now + 100_001 * interval;
+        assertEquals(0, table.tryAcquire("a", later));
+        assertEquals(0, table.tryAcquire("a", later));
+    }
+
+
+    /**
+     * Test that a throttled key can not be evicted by other keys
+     */
+    @Test void testTokenBucketTableFlood() {
+        final long now = System.nanoTime();
+        TokenBucketTable table = new TokenBucketTable(1, 2, 1);
+        assertEquals(0, table.tryAcquire("a", now));
+        assertEquals(0, table.tryAcquire("a", now));
+        assertTrue(table.tryAcquire("a", now) > 0);
+
+        // flood all sets by other keys, the keys of a full set share the overflow bucket
+        int admitted = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (table.tryAcquire("key-" + i, now + i) == 0) {
+                admitted++;
+            }
+        }
+        assertTrue(admitted < 100_000, "" + admitted);
+        assertTrue(table.size() <= table.getCapacity());
+
+        // the throttled key keeps its bucket
+        assertTrue(table.tryAcquire("a", now + 100_000) > 0);
+        assertEquals(0, table.tryAcquire("a", now + TimeUnit.SECONDS.toNanos(1)));
+        assertTrue(table.tryAcquire("a", now + TimeUnit.SECONDS.toNanos(1)) > 0);
+    }
+
+
+    /**
+     * Test the rate limit of a node by a header
+     */
+    @Test void testRateLimit() {
+        final Undertow server = Undertow.builder().addHttpListener(9370, "localhost").setIoThreads(1).setHandler(exchange -> exchange.getResponseSender().send("content")).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/rl", null, null).addInstance("http://localhost:9370/")
+                .setRateLimit(new NetworkProxyRateLimit().setEnabled(true).setKey(RateLimitKey.HEADER).setHeader("X-API-Key").setRate(1).setBurst(2));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            given().header("X-API-Key", "k1").when().get("/rl/a").then().statusCode(200);
+            given().header("X-API-Key", "k1").when().get("/rl/a").then().statusCode(200);
+            given().header("X-API-Key", "k1").when().get("/rl/a").then().statusCode(429).header("Retry-After", "1");
+            given().header("X-API-Key", "k2").when().get("/rl/a").then().statusCode(200);
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Test the rate limit of the configuration
+     */
+    @Test void testConfiguration() {
+        NetworkProxyConfiguration configuration = newConfiguration();
+        assertFalse(configuration.getRateLimit().isEnabled());
+
+        configuration.setRateLimit("{\"enabled\": true, \"key\": \"HEADER\", \"rate\": 50}");
+        assertTrue(configuration.getRateLimit().isEnabled());
+        assertEquals(RateLimitKey.HEADER, configuration.getRateLimit().getKey());
+        assertEquals(50, configuration.getRateLimit().getRate());
+        assertEquals(100, configuration.getRateLimit().getBurst());
+
+        // invalid json keeps the rate limit
+        configuration.setRateLimit("{ invalid");
+        assertEquals(50, configuration.getRateLimit().getRate());
+
+        // the global rate limit runs before the authentication: the principal is rejected
+        configuration.setRateLimit("{\"enabled\": true, \"key\": \"PRINCIPAL\", \"rate\": 10}");
+        assertEquals(RateLimitKey.HEADER, configuration.getRateLimit().getKey());
+        assertEquals(50, configuration.getRateLimit().getRate());
+        assertEquals(configuration.getRateLimit(), new NetworkProxyConfiguration(configuration).getRateLimit());
+    }
+}
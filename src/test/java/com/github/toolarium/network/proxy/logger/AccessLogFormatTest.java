@@ -0,0 +1,143 @@
+/*
+ * AccessLogFormatTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.logger.access.AccessLogFormat;
+import com.github.toolarium.network.proxy.logger.access.AccessLogLineBuffer;
+import io.undertow.Undertow;
+import io.undertow.attribute.ExchangeAttribute;
+import io.undertow.attribute.ExchangeAttributes;
+import io.undertow.attribute.SubstituteEmptyWrapper;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.Protocols;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the compiled access log format.
+ *
+ * @author patrick
+ */
+public class AccessLogFormatTest {
+    private static final ClassLoader CLASS_LOADER = AccessLogFormatTest.class.getClassLoader();
+
+
+    /**
+     * Test the aliases
+     */
+    @Test void testAlias() {
+        HttpServerExchange exchange = createExchange();
+        assertTrue(format("common", exchange).matches("10\\.1\\.2\\.3 - - \\[\\d{2}/\\w{3}/\\d{4}:\\d{2}:\\d{2}:\\d{2} [+-]\\d{4}\\] \"GET /a/b\\?x=1 HTTP/1\\.1\" 404 -"));
+        assertTrue(format("combined", exchange).endsWith("\"GET /a/b?x=1 HTTP/1.1\" 404 - \"-\" \"agent \u00e4\""));
+        assertTrue(format("combinedobf", exchange).startsWith("10.1.2. - - ["));
+        assertEquals("GET 100% /a/b", format("%m 100%% %U", exchange));
+    }
+
+
+    /**
+     * Test that the compiled fields are written as the exchange attributes of undertow, the connection dependent
+     * attributes require the exchange of a started server
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testUndertowCompatibility() throws Exception {
+        final String formatString = "%a %A %h %o %p %H %m %U %q %r %s %b %B %l %u %v \"%{i,User-Agent}\" \"%{i,Referer}\" \"%{o,X-Test}\"";
+        final ExchangeAttribute attribute = ExchangeAttributes.parser(CLASS_LOADER, new SubstituteEmptyWrapper("-")).parse(formatString);
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final Undertow server = Undertow.builder().addHttpListener(9470, "localhost").setIoThreads(1).setHandler(exchange -> {
+            exchange.getResponseHeaders().put(new HttpString("X-Test"), "test");
+            exchange.setStatusCode(404);
+            lines.add(attribute.readAttribute(exchange));
+            lines.add(format(formatString, exchange));
+
+            // not compiled attributes are resolved by undertow
+            lines.add(format("%{REQUEST_LINE}", exchange));
+            exchange.endExchange();
+        }).build();
+        server.start();
+
+        try {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:9470/a/b?x=1")).header("User-Agent", "agent").GET().build();
+            assertEquals(404, HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build().send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        } finally {
+            server.stop();
+        }
+
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("127.0.0.1 127.0.0.1 "), lines.get(0));
+        assertEquals(lines.get(0), lines.get(1));
+        assertEquals("GET /a/b?x=1 HTTP/1.1", lines.get(2));
+    }
+
+
+    /**
+     * Test that the buffer is reused
+     */
+    @Test void testReuse() {
+        HttpServerExchange exchange = createExchange();
+        AccessLogFormat accessLogFormat = AccessLogFormat.compile("%h %r %s", CLASS_LOADER);
+        AccessLogLineBuffer buffer = new AccessLogLineBuffer();
+        accessLogFormat.format(exchange, buffer);
+        byte[] bytes = buffer.getBytes();
+        int length = buffer.length();
+
+        buffer.reset();
+        accessLogFormat.format(exchange, buffer);
+        assertSame(bytes, buffer.getBytes());
+        assertEquals(length, buffer.length());
+        assertEquals("10.1.2.3 GET /a/b?x=1 HTTP/1.1 404", buffer.toString());
+    }
+
+
+    /**
+     * Format an exchange
+     *
+     * @param formatString the format string
+     * @param exchange the exchange
+     * @return the line
+     */
+    private String format(String formatString, HttpServerExchange exchange) {
+        AccessLogLineBuffer buffer = new AccessLogLineBuffer();
+        AccessLogFormat.compile(formatString, CLASS_LOADER).format(exchange, buffer);
+        return buffer.toString();
+    }
+
+
+    /**
+     * Create an exchange
+     *
+     * @return the exchange
+     */
+    private HttpServerExchange createExchange() {
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.setRequestMethod(Methods.GET);
+        exchange.setProtocol(Protocols.HTTP_1_1);
+        exchange.setRequestURI("/a/b");
+        exchange.setRequestPath("/a/b");
+        exchange.setQueryString("x=1");
+        exchange.setSourceAddress(new InetSocketAddress("10.1.2.3", 4711));
+        exchange.setDestinationAddress(new InetSocketAddress("127.0.0.1", 8080));
+        exchange.getRequestHeaders().put(Headers.HOST, "localhost:8080");
+        exchange.getRequestHeaders().put(Headers.USER_AGENT, "agent \u00e4");
+        exchange.getResponseHeaders().put(new HttpString("X-Test"), "test");
+        exchange.setStatusCode(404);
+        return exchange;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * AccessLogRingBufferTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.logger.access.AccessLogOverflowPolicy;
+import com.github.toolarium.network.proxy.logger.access.AccessLogRingBuffer;
+import com.github.toolarium.network.proxy.logger.access.FileAccessLogReceiver;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the access log ring buffer and the asynchronous file access log receiver.
+ *
+ * @author patrick
+ */
+public class AccessLogRingBufferTest {
+
+    /**
+     * Test the drop policy and the encoding
+     */
+    @Test void testDrop() {
+        AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(4, 8, AccessLogOverflowPolicy.DROP);
+        assertEquals(4, ringBuffer.getCapacity());
+        assertTrue(ringBuffer.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer("line " + i + " \u00e4\u20ac"));
+        }
+        assertFalse(ringBuffer.offer("dropped"));
+        assertEquals(1, ringBuffer.getDroppedCount());
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        assertEquals(4, ringBuffer.drainTo(buffer));
+        assertTrue(ringBuffer.isEmpty());
+        buffer.flip();
+        String content = StandardCharsets.UTF_8.decode(buffer).toString();
+        assertEquals("line 0 \u00e4\u20ac\nline 1 \u00e4\u20ac\nline 2 \u00e4\u20ac\nline 3 \u00e4\u20ac\n", content);
+
+        // the slots are reused
+        assertTrue(ringBuffer.offer("next"));
+        ringBuffer.close();
+        assertFalse(ringBuffer.offer("closed"));
+        assertEquals(2, ringBuffer.getDroppedCount());
+    }
+
+
+    /**
+     * Test concurrent producers with the block policy
+     *
+     * @throws InterruptedException in case of an interrupt
+     */
+    @Test void testBlock() throws InterruptedException {
+        final AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(16, 32, AccessLogOverflowPolicy.BLOCK);
+        final int producerCount = 4;
+        final int lineCount = 2000;
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < lineCount; i++) {
+                    ringBuffer.offer(producer + "-" + i);
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        Set<String> lines = new HashSet<>();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        long end = System.currentTimeMillis() + 30000;
+        while (lines.size() < producerCount * lineCount && System.currentTimeMillis() < end) {
+            if (ringBuffer.drainTo(buffer) == 0) {
+                ringBuffer.await(1000000L);
+            }
+
+            buffer.flip();
+            for (String line : StandardCharsets.UTF_8.decode(buffer).toString().split("\n")) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            buffer.clear();
+        }
+
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        assertEquals(producerCount * lineCount, lines.size());
+        assertEquals(0, ringBuffer.getDroppedCount());
+    }
+
+
+    /**
+     * Test the file access log receiver
+     *
+     * @throws IOException in case of an error
+     */
+    @Test void testFileAccessLogReceiver() throws IOException {
+        Path directory = Files.createTempDirectory("networkproxy-access");
+        FileAccessLogReceiver receiver = new FileAccessLogReceiver(directory.resolve("access").toString(), 1024, AccessLogOverflowPolicy.BLOCK);
+        for (int i = 0; i < 5000; i++) {
+            receiver.logMessage("127.0.0.1 - - \"GET /" + i + " HTTP/1.1\" 200 0");
+        }
+        receiver.close();
+
+        assertEquals(5000, receiver.getWrittenCount());
+        assertEquals(0, receiver.getDroppedCount());
+        List<String> lines = Files.readAllLines(directory.resolve("access.log"));
+        assertEquals(5000, lines.size());
+        assertEquals("127.0.0.1 - - \"GET /4999 HTTP/1.1\" 200 0", lines.get(4999));
+    }
+}
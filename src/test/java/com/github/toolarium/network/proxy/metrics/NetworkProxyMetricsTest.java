@@ -0,0 +1,125 @@
+/*
+ * NetworkProxyMetricsTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.metrics;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.handler.metrics.LatencyHistogram;
+import com.github.toolarium.network.proxy.handler.metrics.RequestMetrics;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import io.undertow.Undertow;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the metrics
+ *
+ * @author patrick
+ */
+public class NetworkProxyMetricsTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the buckets of the latency histogram
+     */
+    @Test void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(64, LatencyHistogram.getUpperBound(0));
+        assertEquals(96, LatencyHistogram.getUpperBound(1));
+        assertEquals(128, LatencyHistogram.getUpperBound(2));
+        assertEquals(192, LatencyHistogram.getUpperBound(3));
+        assertEquals(1L << 27, LatencyHistogram.getUpperBound(LatencyHistogram.getUpperBoundCount() - 1));
+
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(64));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(65));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(128));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(129));
+        histogram.record(TimeUnit.SECONDS.toNanos(1000));
+
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(LatencyHistogram.getUpperBoundCount() + 1, counts.length);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[2]);
+        assertEquals(1, counts[3]);
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(5, histogram.getCount());
+
+        RequestMetrics requestMetrics = new RequestMetrics();
+        requestMetrics.start();
+        requestMetrics.end(204, 1000);
+        requestMetrics.record(503, -1);
+        requestMetrics.record(42, -1);
+        assertEquals(0, requestMetrics.getInFlight());
+        assertEquals(1, requestMetrics.getResponseCount(2));
+        assertEquals(1, requestMetrics.getResponseCount(5));
+        assertEquals(1, requestMetrics.getResponseCount(0));
+        assertEquals(1, requestMetrics.getLatency().getCount());
+    }
+
+
+    /**
+     * Test the metrics endpoint
+     */
+    @Test void testMetrics() {
+        final Undertow server = Undertow.builder().addHttpListener(9340, "localhost").setIoThreads(1).setHandler(exchange -> {
+            if (exchange.getRequestPath().endsWith("/fail")) {
+                exchange.setStatusCode(500);
+            }
+            exchange.getResponseSender().send("content");
+        }).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.setMetricsPath("/q/metrics");
+        configuration.addNetworkProxyNode("metrics-node", "/m", null, null).addInstance("http://localhost:9340/");
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            assertTrue(configuration.hasMetrics());
+            RestAssured.port = configuration.getPort();
+
+            given().when().get("/m/ok").then().statusCode(200);
+            given().when().get("/m/ok").then().statusCode(200);
+            given().when().get("/m/fail").then().statusCode(500);
+
+            Response response = given().when().get(configuration.getMetricsPath());
+            assertEquals(200, response.getStatusCode());
+            assertTrue(response.getContentType().startsWith("text/plain"));
+
+            String metrics = response.getBody().asString();
+            String labels = "node=\"metrics-node\",route=\"/m/\"";
+            String instanceLabels = labels + ",instance=\"http://localhost:9340/\"";
+            assertTrue(metrics.contains("networkproxy_requests_total{" + labels + ",status=\"2xx\"} 2\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_requests_total{" + labels + ",status=\"5xx\"} 1\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_request_duration_seconds_count{" + labels + "} 3\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 3\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_backend_requests_total{" + instanceLabels + ",status=\"2xx\"} 2\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_backend_requests_total{" + instanceLabels + ",status=\"5xx\"} 1\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_backend_request_duration_seconds_count{" + instanceLabels + "} 3\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_backend_up{" + instanceLabels + "} 1\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_io_threads 1\n"), metrics);
+            assertTrue(metrics.contains("networkproxy_worker_threads{state=\"max\"}"), metrics);
+
+            // disabled metrics
+            NetworkProxyConfiguration disabledConfiguration = newConfiguration();
+            assertFalse(disabledConfiguration.hasMetrics());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+}
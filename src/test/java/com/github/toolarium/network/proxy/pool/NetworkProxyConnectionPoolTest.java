@@ -0,0 +1,83 @@
+/*
+ * NetworkProxyConnectionPoolTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.pool;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyConnectionPool;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.ConnectorStatistics;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the connection pool settings and the pre-warm
+ *
+ * @author patrick
+ */
+public class NetworkProxyConnectionPoolTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the settings
+     */
+    @Test void testSettings() {
+        NetworkProxyConnectionPool connectionPool = new NetworkProxyConnectionPool().setConnectionsPerThread(-1).setTtl(0).setProblemServerRetry(0).setMaxQueueSize(-1).setPrewarm(-1);
+        assertEquals(new NetworkProxyConnectionPool(), connectionPool);
+
+        connectionPool.setConnectionsPerThread(4).setSoftMaxConnectionsPerThread(2).setTtl(30000).setProblemServerRetry(5).setMaxQueueSize(100).setPrewarm(2);
+        assertEquals(4, connectionPool.getConnectionsPerThread());
+        assertEquals(2, connectionPool.getSoftMaxConnectionsPerThread());
+        assertEquals(30000, connectionPool.getTtl());
+        assertEquals(5, connectionPool.getProblemServerRetry());
+        assertEquals(100, connectionPool.getMaxQueueSize());
+        assertEquals(2, connectionPool.getPrewarm());
+    }
+
+
+    /**
+     * Test the pre-warm of the connections
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testPrewarm() throws Exception {
+        final Undertow server = Undertow.builder().addHttpListener(9450, "localhost").setIoThreads(1)
+                .setServerOption(UndertowOptions.ENABLE_STATISTICS, true)
+                .setHandler(exchange -> exchange.getResponseSender().send("backend")).build();
+        server.start();
+        final ConnectorStatistics statistics = server.getListenerInfo().get(0).getConnectorStatistics();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/pool", null, null).addInstance("http://localhost:9450/")
+                .setConnectionPool(new NetworkProxyConnectionPool().setConnectionsPerThread(4).setPrewarm(3));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            // the connections are open before the first request
+            assertEquals(3, statistics.getActiveConnections());
+            assertEquals(0, statistics.getRequestCount());
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals("backend", given().when().get("/pool/a").then().statusCode(200).extract().asString());
+            }
+            assertEquals(3, statistics.getActiveConnections());
+            assertEquals(5, statistics.getRequestCount());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * NetworkProxyRetryTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.retry;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyRetry;
+import com.github.toolarium.network.proxy.handler.proxy.RetryBudget;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.xnio.IoUtils;
+
+
+/**
+ * Test the retries
+ *
+ * @author patrick
+ */
+public class NetworkProxyRetryTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test the retry budget
+     */
+    @Test void testRetryBudget() {
+        RetryBudget retryBudget = new RetryBudget(10, 0);
+        assertFalse(retryBudget.tryRetry(100));
+        for (int i = 0; i < 20; i++) {
+            retryBudget.recordRequest(100 + i % 5);
+        }
+        assertTrue(retryBudget.tryRetry(105));
+        assertTrue(retryBudget.tryRetry(105));
+        assertFalse(retryBudget.tryRetry(105));
+
+        // the requests are outside of the window
+        assertFalse(retryBudget.tryRetry(120));
+
+        // the min retries per second
+        retryBudget = new RetryBudget(0, 1);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(retryBudget.tryRetry(200));
+        }
+        assertFalse(retryBudget.tryRetry(200));
+        assertTrue(retryBudget.tryRetry(210));
+    }
+
+
+    /**
+     * Test the retry of a request which was already sent
+     */
+    @Test void testRetry() {
+        final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+        final Undertow server = Undertow.builder().addHttpListener(9380, "localhost").setIoThreads(1).setHandler(exchange -> {
+            exchange.getRequestReceiver().receiveFullString((ex, body) -> {
+                // the first request of every path fails without a response
+                if (counters.computeIfAbsent(ex.getRequestPath(), path -> new AtomicInteger()).incrementAndGet() == 1) {
+                    IoUtils.safeClose(ex.getConnection());
+                    return;
+                }
+                ex.getResponseSender().send(ex.getRequestMethod() + ":" + body);
+            });
+        }).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/retry", null, null).addInstance("http://localhost:9380/").setRetry(new NetworkProxyRetry().setEnabled(true));
+        configuration.addNetworkProxyNode(null, "/nobudget", null, null).addInstance("http://localhost:9380/")
+                .setRetry(new NetworkProxyRetry().setEnabled(true).setBudgetPercent(0).setMinRetriesPerSecond(0));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            given().when().get("/retry/get").then().statusCode(200).body(equalTo("GET:"));
+            assertEquals(2, counters.get("/retry/get").get());
+
+            // the buffered body is sent again
+            given().body("payload").when().put("/retry/put").then().statusCode(200).body(equalTo("PUT:payload"));
+            assertEquals(2, counters.get("/retry/put").get());
+
+            // a non-idempotent request is not retried after it was sent
+            given().body("payload").when().post("/retry/post").then().statusCode(503);
+            assertEquals(1, counters.get("/retry/post").get());
+
+            // the retry budget is exhausted
+            given().when().get("/nobudget/nobudget").then().statusCode(503);
+            assertEquals(1, counters.get("/nobudget/nobudget").get());
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+}
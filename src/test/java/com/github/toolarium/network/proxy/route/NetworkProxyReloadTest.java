@@ -0,0 +1,107 @@
+/*
+ * NetworkProxyReloadTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.route;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the reload of the network proxy nodes
+ *
+ * @author patrick
+ */
+public class NetworkProxyReloadTest extends AbstractNetworkProxyTest {
+
+    /**
+     * Test reload by api.
+     */
+    @Test void testReload() {
+        NetworkProxyConfiguration configuration = newConfiguration();
+        final List<Undertow> servers1 = createServers("localhost", 9200, "/", "/a", "server-a", 2, configuration);
+
+        NetworkProxyConfiguration newNodes = newConfiguration();
+        final List<Undertow> servers2 = createServers("localhost", 9210, "/", "/b", "server-b", 2, newNodes);
+        newNodes.addNetworkProxyNode(null, "/a", null, null).setInstances(configuration.getNetworkProxyNode("/a/").getInstances());
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+            assertTrue(given().when().get("/a/x").getBody().asPrettyString().startsWith("server-a"));
+            given().when().get("/b/x").then().statusCode(404);
+
+            // add node
+            networkProxy.reload(newNodes.getNetworkProxyNodeList());
+            assertTrue(given().when().get("/a/x").getBody().asPrettyString().startsWith("server-a"));
+            assertTrue(given().when().get("/b/x").getBody().asPrettyString().startsWith("server-b"));
+
+            // remove node
+            newNodes.setNetworkProxyNodeList(List.of(newNodes.getNetworkProxyNode("/b/")));
+            networkProxy.reload(newNodes.getNetworkProxyNodeList());
+            given().when().get("/a/x").then().statusCode(404);
+            assertTrue(given().when().get("/b/x").getBody().asPrettyString().startsWith("server-b"));
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            stopServers(servers1);
+            stopServers(servers2);
+        }
+    }
+
+
+    /**
+     * Test reload by changed configuration file.
+     *
+     * @throws IOException In case of an I/O error
+     * @throws InterruptedException In case of interruption
+     */
+    @Test void testReloadConfigurationFile() throws IOException, InterruptedException {
+        NetworkProxyConfiguration nodes = newConfiguration();
+        final List<Undertow> servers = createServers("localhost", 9220, "/", "/c", "server-c", 1, nodes);
+        final String uri = nodes.getNetworkProxyNode("/c/").getInstances().get(0).toString();
+
+        Path file = Files.createTempFile("networkproxy", ".json");
+        NetworkProxy networkProxy = null;
+        try {
+            Files.writeString(file, "{\"/d/\":[\"" + uri + "\"]}", StandardCharsets.UTF_8);
+            NetworkProxyConfiguration configuration = newConfiguration().setConfigurationFile(file.toString()).readProperties();
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+            assertTrue(given().when().get("/d/x").getBody().asPrettyString().startsWith("server-c"));
+            given().when().get("/c/x").then().statusCode(404);
+
+            Files.writeString(file, "{\"/c/\":[\"" + uri + "\"]}", StandardCharsets.UTF_8);
+            int statusCode = 404;
+            for (int i = 0; i < 50 && statusCode != 200; i++) {
+                Thread.sleep(100);
+                statusCode = given().when().get("/c/x").statusCode();
+            }
+
+            given().when().get("/c/x").then().statusCode(200);
+            given().when().get("/d/x").then().statusCode(404);
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            stopServers(servers);
+            Files.deleteIfExists(file);
+        }
+    }
+}
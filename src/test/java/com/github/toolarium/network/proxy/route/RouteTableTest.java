@@ -0,0 +1,88 @@
+/*
+ * RouteTableTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.route;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.handler.route.Route;
+import com.github.toolarium.network.proxy.handler.route.RouteTable;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.util.Methods;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link RouteTable}.
+ *
+ * @author patrick
+ */
+public class RouteTableTest {
+    private static final int GET = Route.toMethodBit(Methods.GET);
+    private static final int POST = Route.toMethodBit(Methods.POST);
+
+
+    /**
+     * Test empty route table
+     */
+    @Test void testEmpty() {
+        RouteTable routeTable = RouteTable.builder().build();
+        assertEquals(0, routeTable.size());
+        assertNull(routeTable.match(GET, "/"));
+        assertFalse(routeTable.matchesPath("/abc"));
+    }
+
+
+    /**
+     * Test longest prefix
+     */
+    @Test void testLongestPrefix() {
+        Route root = new Route("/", Route.toMethodMask(Arrays.asList("GET", "POST")), ResponseCodeHandler.HANDLE_200);
+        Route abc = new Route("/abc/", Route.toMethodMask(Arrays.asList("GET")), ResponseCodeHandler.HANDLE_404);
+        Route abcDef = new Route("/abc/def", Route.toMethodMask(Arrays.asList("GET")), ResponseCodeHandler.HANDLE_500);
+        RouteTable routeTable = RouteTable.builder().add(root).add(abc).add(abcDef).build();
+        assertEquals(3, routeTable.size());
+
+        assertEquals(root, routeTable.match(GET, "/"));
+        assertEquals(root, routeTable.match(GET, ""));
+        assertEquals(root, routeTable.match(GET, "/ab"));
+        assertEquals(root, routeTable.match(GET, "/abcd"));
+        assertEquals(abc, routeTable.match(GET, "/abc"));
+        assertEquals(abc, routeTable.match(GET, "/abc/"));
+        assertEquals(abc, routeTable.match(GET, "//abc//de"));
+        assertEquals(abcDef, routeTable.match(GET, "/abc/def"));
+        assertEquals(abcDef, routeTable.match(GET, "/abc/def/ghi/jkl"));
+
+        // method not supported by the longer prefix
+        assertEquals(root, routeTable.match(POST, "/abc/def"));
+        assertNull(routeTable.match(Route.toMethodBit(Methods.DELETE), "/abc/def"));
+        assertTrue(routeTable.matchesPath("/abc/def"));
+    }
+
+
+    /**
+     * Test many routes
+     */
+    @Test void testManyRoutes() {
+        RouteTable.Builder builder = RouteTable.builder();
+        Route[] routes = new Route[10000];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = new Route("/service-" + i + "/v" + (i % 3), Route.toMethodMask(Arrays.asList("GET")), ResponseCodeHandler.HANDLE_200);
+            builder.add(routes[i]);
+        }
+        RouteTable routeTable = builder.build();
+        assertEquals(routes.length, routeTable.size());
+
+        for (int i = 0; i < routes.length; i++) {
+            assertEquals(routes[i], routeTable.match(GET, "/service-" + i + "/v" + (i % 3) + "/resource"));
+        }
+        assertNull(routeTable.match(GET, "/service-1/v2"));
+        assertNull(routeTable.match(GET, "/service-10000/v1"));
+    }
+}
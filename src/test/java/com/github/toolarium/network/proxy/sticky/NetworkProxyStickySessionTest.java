@@ -0,0 +1,104 @@
+/*
+ * NetworkProxyStickySessionTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.sticky;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyStickySession;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.util.Headers;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the sticky sessions
+ *
+ * @author patrick
+ */
+public class NetworkProxyStickySessionTest extends AbstractNetworkProxyTest {
+    private static final String COOKIE = "NETWORK_PROXY_ROUTE";
+
+
+    /**
+     * Test the sticky sessions
+     */
+    @Test void testStickySession() {
+        final Undertow serverA = Undertow.builder().addHttpListener(9400, "localhost").setIoThreads(1).setHandler(createHandler("a")).build();
+        final Undertow serverB = Undertow.builder().addHttpListener(9401, "localhost").setIoThreads(1).setHandler(createHandler("b")).build();
+        serverA.start();
+        serverB.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.addNetworkProxyNode(null, "/sticky", null, null).addInstance("http://localhost:9400/").addInstance("http://localhost:9401/")
+                .setStickySession(new NetworkProxyStickySession().setEnabled(true));
+        configuration.addNetworkProxyNode(null, "/session", null, null).addInstance("http://localhost:9400/").addInstance("http://localhost:9401/")
+                .setStickySession(new NetworkProxyStickySession().setEnabled(true).setSessionCookie("JSESSIONID"));
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            Response response = given().when().get("/sticky/a").then().statusCode(200).extract().response();
+            final String route = response.getCookie(COOKIE);
+            final String instance = response.asString();
+            assertNotNull(route);
+
+            // the client stays on its instance, the cookie is not issued again
+            for (int i = 0; i < 5; i++) {
+                response = given().cookie(COOKIE, route).when().get("/sticky/a").then().statusCode(200).extract().response();
+                assertEquals(instance, response.asString());
+                assertNull(response.getCookie(COOKIE));
+            }
+
+            // an unknown instance is replaced
+            response = given().cookie(COOKIE, "unknown").when().get("/sticky/a").then().statusCode(200).extract().response();
+            assertNotNull(response.getCookie(COOKIE));
+
+            // the cookie is only issued with a session
+            response = given().when().get("/session/a").then().statusCode(200).extract().response();
+            assertNull(response.getCookie(COOKIE));
+            response = given().when().get("/session/login").then().statusCode(200).extract().response();
+            final String sessionRoute = response.getCookie(COOKIE);
+            final String sessionInstance = response.asString();
+            assertNotNull(sessionRoute);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(sessionInstance, given().cookie(COOKIE, sessionRoute).when().get("/session/a").then().statusCode(200).extract().asString());
+            }
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            serverB.stop();
+            serverA.stop();
+        }
+    }
+
+
+    /**
+     * Create the handler of a backend
+     *
+     * @param name the name of the instance
+     * @return the handler
+     */
+    private HttpHandler createHandler(String name) {
+        return exchange -> {
+            if (exchange.getRequestPath().endsWith("/login")) {
+                exchange.getResponseHeaders().add(Headers.SET_COOKIE, "JSESSIONID=" + name + "; Path=/");
+            }
+            exchange.getResponseSender().send(name);
+        };
+    }
+}
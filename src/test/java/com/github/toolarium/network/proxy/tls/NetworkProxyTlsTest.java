@@ -0,0 +1,206 @@
+/*
+ * NetworkProxyTlsTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.tls;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.NetworkProxy;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.NetworkProxyTls;
+import io.restassured.RestAssured;
+import io.undertow.Undertow;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the HTTPS listener
+ *
+ * @author patrick
+ */
+public class NetworkProxyTlsTest extends AbstractNetworkProxyTest {
+    private static final String PASSWORD = "changeit";
+
+
+    /**
+     * Test the HTTPS listener with SNI
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testTls() throws Exception {
+        final Path keyStore = Files.createTempDirectory("networkproxy-tls").resolve("proxy.p12");
+        createKeyPair(keyStore, "a", "a.example.com");
+        createKeyPair(keyStore, "b", "b.example.com");
+
+        final Undertow server = Undertow.builder().addHttpListener(9430, "localhost").setIoThreads(1)
+                .setHandler(exchange -> exchange.getResponseSender().send("backend")).build();
+        server.start();
+
+        NetworkProxyConfiguration configuration = newConfiguration();
+        configuration.setMetricsPath("/q/metrics");
+        configuration.setTls(new NetworkProxyTls().setEnabled(true).setPort(9443).setKeyStore(keyStore.toString()).setKeyStorePassword(PASSWORD));
+        configuration.addNetworkProxyNode(null, "/tls", null, null).addInstance("http://localhost:9430/");
+
+        NetworkProxy networkProxy = null;
+        try {
+            networkProxy = run(configuration);
+            RestAssured.port = configuration.getPort();
+
+            // the certificate is selected by the server name of the client, the second connection resumes the session
+            final SSLContext sslContext = createClientSslContext();
+            assertEquals("CN=b.example.com", request(sslContext, "b.example.com"));
+            assertEquals("CN=b.example.com", request(sslContext, "b.example.com"));
+            assertEquals("CN=a.example.com", request(createClientSslContext(), "a.example.com"));
+
+            // the streams of a HTTP/2 connection are counted once, the first request opens the connection
+            final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).sslContext(createClientSslContext()).build();
+            final HttpRequest request = HttpRequest.newBuilder(URI.create("https://localhost:9443/tls/a")).GET().build();
+            assertEquals(HttpClient.Version.HTTP_2, client.send(request, HttpResponse.BodyHandlers.ofString()).version());
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(HttpClient.Version.HTTP_2, response.get().version());
+                assertEquals("backend", response.get().body());
+            }
+
+            final String metrics = given().when().get("/q/metrics").then().statusCode(200).extract().asString();
+            assertTrue(metrics.contains("networkproxy_tls_connections_total 4"), metrics);
+            assertTrue(metrics.contains("networkproxy_tls_handshakes_total{type=\"full\"} 3"), metrics);
+            assertTrue(metrics.contains("networkproxy_tls_handshakes_total{type=\"resumed\"} 1"), metrics);
+        } finally {
+            if (networkProxy != null) {
+                networkProxy.stop();
+            }
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Send a request over a new connection
+     *
+     * @param sslContext the ssl context
+     * @param serverName the server name
+     * @return the subject of the server certificate
+     * @throws IOException in case of an error
+     */
+    private String request(SSLContext sslContext, String serverName) throws IOException {
+        try (SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket("localhost", 9443)) {
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setServerNames(List.of(new SNIHostName(serverName)));
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(("GET /tls/a HTTP/1.1\r\nHost: " + serverName + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 200 OK", reader.readLine());
+            String line = reader.readLine();
+            while (line != null && !line.isEmpty()) {
+                line = reader.readLine();
+            }
+            assertEquals("backend", reader.readLine());
+            return ((X509Certificate) socket.getSession().getPeerCertificates()[0]).getSubjectX500Principal().getName();
+        }
+    }
+
+
+    /**
+     * Create a ssl context of a client which trusts all certificates
+     *
+     * @return the ssl context
+     * @throws GeneralSecurityException in case of an error
+     */
+    private SSLContext createClientSslContext() throws GeneralSecurityException {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] {new X509ExtendedTrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                // NOP
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+                // NOP
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+                // NOP
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                // NOP
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+                // NOP
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+                // NOP
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        } }, null);
+        return sslContext;
+    }
+
+
+    /**
+     * Create a self-signed key pair in a key store
+     *
+     * @param keyStore the key store
+     * @param alias the alias
+     * @param hostName the host name
+     * @throws Exception in case of an error
+     */
+    private void createKeyPair(Path keyStore, String alias, String hostName) throws Exception {
+        final String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        final Process process = new ProcessBuilder(keytool, "-genkeypair", "-keystore", keyStore.toString(), "-storetype", "PKCS12", "-storepass", PASSWORD,
+                                                   "-alias", alias, "-keyalg", "RSA", "-keysize", "2048", "-validity", "2", "-dname", "CN=" + hostName,
+                                                   "-ext", "SAN=dns:" + hostName).redirectErrorStream(true).start();
+        process.getInputStream().readAllBytes();
+        assertEquals(0, process.waitFor());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * NetworkProxyWorkerModeTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.network.proxy.worker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.network.proxy.AbstractNetworkProxyTest;
+import com.github.toolarium.network.proxy.config.NetworkProxyConfiguration;
+import com.github.toolarium.network.proxy.config.WorkerMode;
+import com.github.toolarium.network.proxy.handler.worker.WorkerHttpHandler;
+import io.undertow.Undertow;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Test the worker mode: blocking handlers on the XNIO worker pool compared to virtual threads
+ *
+ * @author patrick
+ */
+public class NetworkProxyWorkerModeTest extends AbstractNetworkProxyTest {
+    private static final Logger LOG = LoggerFactory.getLogger(NetworkProxyWorkerModeTest.class);
+    private static final int CONCURRENT_REQUESTS = 32;
+    private static final long SLOW_MILLIS = 100;
+
+
+    /**
+     * Test the dispatch executor of the worker mode
+     *
+     * @throws Exception in case of an error
+     */
+    @Test void testBlockingHandler() throws Exception {
+        NetworkProxyConfiguration configuration = newConfiguration();
+        assertEquals(WorkerMode.PLATFORM, configuration.getWorkerMode());
+        assertNull(WorkerHttpHandler.createExecutor(configuration));
+        final long platformDuration = runBlockingHandler(9350, null, "XNIO");
+
+        configuration.setWorkerMode(WorkerMode.VIRTUAL);
+        final ExecutorService executor = WorkerHttpHandler.createExecutor(configuration);
+        if (Runtime.version().feature() < 21) {
+            assertNull(executor);
+            return;
+        }
+
+        assertNotNull(executor);
+        try {
+            final long virtualDuration = runBlockingHandler(9351, executor, "VirtualThread");
+            LOG.info("Blocking handler with " + CONCURRENT_REQUESTS + " requests, platform: " + platformDuration + "ms, virtual: " + virtualDuration + "ms");
+            assertTrue(virtualDuration < platformDuration, "platform: " + platformDuration + "ms, virtual: " + virtualDuration + "ms");
+        } finally {
+            WorkerHttpHandler.close(executor);
+        }
+    }
+
+
+    /**
+     * Run a blocking handler with two worker threads
+     *
+     * @param port the port
+     * @param executor the dispatch executor or null
+     * @param expectedThread the expected part of the name of the thread
+     * @return the duration in milliseconds
+     * @throws Exception in case of an error
+     */
+    private long runBlockingHandler(int port, ExecutorService executor, String expectedThread) throws Exception {
+        final Undertow server = Undertow.builder().addHttpListener(port, "localhost").setIoThreads(1).setWorkerThreads(2)
+                .setHandler(WorkerHttpHandler.addHandler(executor, exchange -> exchange.dispatch(() -> {
+                    try {
+                        Thread.sleep(SLOW_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    exchange.getResponseSender().send(Thread.currentThread().toString());
+                }))).build();
+        server.start();
+
+        try {
+            return sendRequests(URI.create("http://localhost:" + port + "/"), expectedThread);
+        } finally {
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Send concurrent requests
+     *
+     * @param uri the uri
+     * @param expectedContent the expected part of the content
+     * @return the duration in milliseconds
+     * @throws Exception in case of an error
+     */
+    private long sendRequests(URI uri, String expectedContent) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+
+        final long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+            assertTrue(response.get().body().contains(expectedContent), response.get().body());
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}